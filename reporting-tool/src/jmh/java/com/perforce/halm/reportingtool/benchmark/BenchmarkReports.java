@@ -0,0 +1,58 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.benchmark;
+
+import com.perforce.halm.reportingtool.synthetic.SyntheticReportGenerator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Writes the JUnit report files used by the benchmarks.
+ */
+final class BenchmarkReports {
+    /**
+     * Writes a synthetic JUnit report with the default seed, so every benchmark run uses identical input.
+     * Suites have non-standard attributes, and a mix of failed and skipped testcases.
+     *
+     * @param testCaseCount The number of testcases to write
+     * @return The report file. It is deleted when the JVM exits.
+     * @throws IOException Thrown when the file can't be written
+     */
+    static Path writeReport(final int testCaseCount) throws IOException {
+        SyntheticReportGenerator generator = new SyntheticReportGenerator();
+        generator.setTestCaseCount(testCaseCount);
+        generator.setSkippedRatio(0.05);
+        generator.setNonStandardAttributes(true);
+        return generator.writeTemporaryReport();
+    }
+
+    /**
+     * Private constructor, so the class cannot be created
+     */
+    private BenchmarkReports() {}
+}
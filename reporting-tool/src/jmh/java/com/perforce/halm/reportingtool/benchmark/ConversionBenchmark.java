@@ -0,0 +1,87 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.benchmark;
+
+import com.perforce.halm.reportingtool.format.UniqueNameTracker;
+import com.perforce.halm.reportingtool.format.junit.JUnitMetaBuild;
+import com.perforce.halm.reportingtool.format.junit.JUnitMetaResult;
+import com.perforce.halm.reportingtool.format.junit.parser.JUnitJAXBParser;
+import com.perforce.halm.reportingtool.format.junit.parser.JUnitTestCase;
+import com.perforce.halm.reportingtool.format.junit.parser.JUnitTestSuite;
+import com.perforce.halm.rest.types.automation.build.AutomationBuild;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.xml.bind.JAXBException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures converting JUnit report data into a Helix ALM automation build, both end-to-end from the report files and
+ * for the result formatting step alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ConversionBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int testcases;
+
+    private List<String> reportFiles;
+    private List<JUnitTestSuite> testSuites;
+
+    @Setup(Level.Trial)
+    public void parseReport() throws IOException, JAXBException {
+        Path report = BenchmarkReports.writeReport(this.testcases);
+        this.reportFiles = Collections.singletonList(report.toString());
+        this.testSuites = new JUnitJAXBParser(this.reportFiles).parseReportFiles();
+    }
+
+    /**
+     * Parses the report files and converts them into a build, as done before submitting.
+     */
+    @Benchmark
+    public AutomationBuild generateAutomationBuild() {
+        return new JUnitMetaBuild().generateAutomationBuild("Benchmark", this.reportFiles, null);
+    }
+
+    /**
+     * Formats every pre-parsed testcase into a result, excluding the cost of parsing.
+     */
+    @Benchmark
+    public void formatResults(Blackhole blackhole) {
+        UniqueNameTracker uniqueNameTracker = new UniqueNameTracker();
+        for (JUnitTestSuite suite : this.testSuites) {
+            for (JUnitTestCase testCase : suite.getTestCases()) {
+                blackhole.consume(new JUnitMetaResult(testCase, suite).formatResult(uniqueNameTracker));
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.benchmark;
+
+import com.perforce.halm.reportingtool.format.UniqueNameTracker;
+import com.perforce.halm.rest.types.automation.build.AutomationResult;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the unique name tracker with distinct names, and in its worst case where every result has the same name
+ * and each new result has to probe past all earlier suffixes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class UniqueNameTrackerBenchmark {
+    /**
+     * Worst case collisions are quadratic, so larger sizes would take hours per iteration.
+     */
+    @Param({"1000", "10000"})
+    public int results;
+
+    @Benchmark
+    public void distinctNames(Blackhole blackhole) {
+        UniqueNameTracker tracker = new UniqueNameTracker();
+        for (int i = 0; i < this.results; i++) {
+            blackhole.consume(ensureUniqueName(tracker, "Suite:com.example.Tests:test" + i));
+        }
+    }
+
+    @Benchmark
+    public void collidingNames(Blackhole blackhole) {
+        UniqueNameTracker tracker = new UniqueNameTracker();
+        for (int i = 0; i < this.results; i++) {
+            blackhole.consume(ensureUniqueName(tracker, "Suite:com.example.Tests:test"));
+        }
+    }
+
+    private static AutomationResult ensureUniqueName(final UniqueNameTracker tracker, final String uniqueName) {
+        AutomationResult result = new AutomationResult();
+        result.setUniqueName(uniqueName);
+        tracker.ensureUniqueNameForResult(result);
+        return result;
+    }
+}
@@ -26,16 +26,17 @@
 
 package com.perforce.halm.reportingtool;
 
-import com.perforce.halm.reportingtool.models.HelixALMSuiteContext;
-import com.perforce.halm.rest.*;
+import com.perforce.halm.reportingtool.format.ReportFormatType;
+import com.perforce.halm.reportingtool.format.junit.JUnitUtils;
+import com.perforce.halm.reportingtool.input.ReportDirectoryWatcher;
+import com.perforce.halm.reportingtool.ledger.SubmissionLedger;
+import com.perforce.halm.reportingtool.metrics.RunMetrics;
+import com.perforce.halm.reportingtool.metrics.RunMetricsWriter;
+import com.perforce.halm.reportingtool.models.ReportContext;
 import picocli.CommandLine;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.Properties;
-import java.util.function.Consumer;
-import java.util.function.Supplier;
+import java.nio.file.Paths;
 
 /**
  * Application object for handling command line arguments
@@ -47,134 +48,153 @@ public class App {
      * @param args Command line arguments to process
      */
     public static void main(String[] args) {
+        // Every run other than help or version parses report files, and creating the JAXB context is the slowest part
+        // of startup. Start it now, so it overlaps with argument parsing and connecting to the REST API.
+        if (!App.isInfoRequested(args)) {
+            JUnitUtils.initializeJAXBContextInBackground();
+        }
+
         ReportingToolArgs parsedArgs = new ReportingToolArgs();
         try {
             CommandLine cmdLine = new CommandLine(parsedArgs);
+            cmdLine.setCaseInsensitiveEnumValuesAllowed(true);
+            // '@<file>' lists report files, read as they are converted, rather than expanding into arguments.
+            cmdLine.setExpandAtFiles(false);
             cmdLine.parseArgs(args);
             if (cmdLine.isUsageHelpRequested()) {
                 CommandLine.usage(parsedArgs, System.out);
             }
             else if (cmdLine.isVersionHelpRequested()) {
                 System.out.println(App.class.getPackage().getImplementationVersion());
+            } else if (!parsedArgs.hasReportFiles() && !parsedArgs.watchContext.isWatchRequested()) {
+                throw new CommandLine.ParameterException(cmdLine, "Missing required parameter: report files, --files-from or --watch <dir>.");
+            } else if (parsedArgs.hasReportFiles() && parsedArgs.watchContext.isWatchRequested()) {
+                throw new CommandLine.ParameterException(cmdLine, "Report files can't be given with --watch <dir>.");
+            } else if (parsedArgs.isFileListOnStandardInput() && parsedArgs.filterContext.hoistConstantAttributes) {
+                throw new CommandLine.ParameterException(cmdLine,
+                        "A report file list on standard input can't be used with --hoist-constant-attributes, which reads the list twice.");
+            } else if (parsedArgs.watchContext.isWatchRequested() && parsedArgs.filterContext.hoistConstantAttributes) {
+                throw new CommandLine.ParameterException(cmdLine,
+                        "--watch <dir> can't be used with --hoist-constant-attributes, which reads the report files twice.");
+            } else if (parsedArgs.buildNumber == null && !parsedArgs.shardContext.isConvertRequested()) {
+                throw new CommandLine.ParameterException(cmdLine, "Missing required option: '--number=<buildNumber>'");
+            } else if (parsedArgs.shardContext.isConvertRequested()) {
+                if (parsedArgs.reportFileFormat == ReportFormatType.Shard) {
+                    throw new CommandLine.ParameterException(cmdLine, "Shard files are merged with --format Shard, not converted with --convert-shard.");
+                } else if (parsedArgs.exportContext.isExportRequested()) {
+                    throw new CommandLine.ParameterException(cmdLine, "--convert-shard can't be used with --output.");
+                } else if (parsedArgs.filterContext.hoistConstantAttributes) {
+                    throw new CommandLine.ParameterException(cmdLine,
+                            "--convert-shard can't be used with --hoist-constant-attributes, since attributes constant on one node may not be on the others.");
+                } else if (parsedArgs.filterContext.deduplicateFailures) {
+                    throw new CommandLine.ParameterException(cmdLine,
+                            "--convert-shard can't be used with --dedupe-failures. Failure bodies are deduplicated when the shards are merged.");
+                } else if (!parsedArgs.filterContext.statuses.isEmpty() || parsedArgs.filterContext.passSampleRate < 1) {
+                    throw new CommandLine.ParameterException(cmdLine, "--convert-shard can't be used with --status or --pass-sample-rate. " +
+                            "Results are filtered by status and sampled when the shards are merged, once the runs of each test are merged.");
+                }
+                RunMetrics metrics = App.createRunMetrics(parsedArgs);
+                ShardConverter converter = new ShardConverter(App.createReportContext(parsedArgs));
+                converter.setMetrics(metrics);
+                converter.setConversionOptions(parsedArgs.getConversionOptions());
+                converter.convertShard(parsedArgs.shardContext.output, parsedArgs.shardContext.getShardID());
+                App.writeRunMetrics(parsedArgs, metrics);
+            } else if (parsedArgs.exportContext.isExportRequested()) {
+                // Offline export, we don't need to talk to the Helix ALM REST API at all.
+                RunMetrics metrics = App.createRunMetrics(parsedArgs);
+                BuildExporter exporter = new BuildExporter(parsedArgs.buildNumber, App.createReportContext(parsedArgs), parsedArgs.getBuildMetadata());
+                exporter.setMetrics(metrics);
+                exporter.setConversionOptions(parsedArgs.getConversionOptions());
+                exporter.exportAutomationBuild(parsedArgs.exportContext.output, parsedArgs.exportContext.format);
+                App.writeRunMetrics(parsedArgs, metrics);
             } else {
                 // If we got here, we should be ready to try and generate the report and submit.
-                BuildSubmitter submitter = new BuildSubmitter(parsedArgs.buildNumber, parsedArgs.getReportContext(),
-                        App.getHelixALMSuiteContext(parsedArgs), parsedArgs.getBuildMetadata());
+                RunMetrics metrics = App.createRunMetrics(parsedArgs);
+                BuildSubmitter submitter = new BuildSubmitter(parsedArgs.buildNumber, App.createReportContext(parsedArgs),
+                        HelixALMSuiteContextLoader.load(parsedArgs, metrics), parsedArgs.getBuildMetadata());
+                submitter.setTransportType(parsedArgs.restAPIContext.transport);
+                submitter.setMetrics(metrics);
+                submitter.setConversionOptions(parsedArgs.getConversionOptions());
+                if (parsedArgs.restAPIContext.submissionLedger != null) {
+                    submitter.setSubmissionLedger(new SubmissionLedger(Paths.get(parsedArgs.restAPIContext.submissionLedger)));
+                }
                 submitter.submitAutomationBuild();
+                App.writeRunMetrics(parsedArgs, metrics);
             }
-        } catch (Exception e) {
-            // If we run into an exception, print out help.
+        } catch (CommandLine.ParameterException e) {
+            // If the arguments are wrong, print out help.
+            System.err.println(e.getMessage());
             CommandLine.usage(parsedArgs, System.out);
+        } catch (Exception e) {
+            // The arguments were fine, so help won't fix it. Say what went wrong instead.
+            //todo: ENHANCEMENT - Implement actual error logging.
+            System.err.println("Error: " + e.getLocalizedMessage());
         }
     }
 
     /**
-     * Function that will create a Helix ALM suite context from the parsed CLI arguments,
-     * filling in any default values necessary from a config.properties file if found.
+     * Checks for the help and version options without parsing the arguments.
      *
-     * @param parsedArgs Parsed command line arguments
-     * @return See description
+     * @param args Command line arguments to check
+     * @return Whether only help or version information was requested
      */
-    private static HelixALMSuiteContext getHelixALMSuiteContext(ReportingToolArgs parsedArgs) throws IOException {
-        // Start with the parsed arguments, only use defaults if arguments were not specified.
-        final HelixALMSuiteContext context = parsedArgs.getHelixALMSuiteContext();
-
-        // See if a config.properties file even exists. If not, then skip this section.
-        Properties config = App.loadConfigProperties();
-        if (config != null) {
-            // Apply default parameters if the values were not provided via the CLI and defaults exist.
-            App.applyDefaultStringPropertyIfNeeded(config, "REST_API_BASE_URL", () -> context.getRestAPIConnectionInfo().getUrl(), url -> context.getRestAPIConnectionInfo().setUrl(url));
-            App.applyDefaultStringPropertyIfNeeded(config, "HALM_PROJECT_ID", context::getHelixALMProjectID, context::setHelixALMProjectID);
-            App.applyDefaultStringPropertyIfNeeded(config, "HALM_SUITE_ID", context::getHelixALMSuiteID, context::setHelixALMSuiteID);
-
-            // For username/password/APIkey, it will be easier to just check the CLI params directly.
-            // Assume if no username/api key ID CLI parameter was provided, that we should use the defaults.
-            // Note that the system defaults to using API key over username/password if both are in the config.
-            if (parsedArgs.restAPIContext.username.isEmpty()) {
-                IAuthInfo defaultAuthInfo = App.buildDefaultAuthInfoFromConfig(config);
-                if (defaultAuthInfo != null) {
-                    context.getRestAPIConnectionInfo().setAuthInfo(defaultAuthInfo);
-                }
-            }
-        }
-
-        // Check the certificate information for our connection. If the certificate status returns INVALID_DOWNLOADABLE and also returns
-        // pem certificates, then we need to see if we have a matching SSL fingerprint provided either via the CLI or configuration file.
-        // If we have a matching SSL fingerprint, then we will take that as authorization to accept the certificates and proceed.
-        CertificateInfo certInfo = CertUtils.getServerCertStatus(context.getRestAPIConnectionInfo());
-        if (certInfo.getStatus() == CertificateStatus.INVALID_DOWNLOADABLE && !certInfo.getPemCertificates().isEmpty()) {
-            String sslFingerprint = parsedArgs.restAPIContext.sslFingerprint;
-            if (sslFingerprint.isEmpty() && config != null) {
-                sslFingerprint = config.getProperty("SSL_FINGERPRINT", "");
-            }
-            if (!sslFingerprint.isEmpty() && certInfo.getFingerprints().contains(sslFingerprint)) {
-                // SSL fingerprint matches, accept the certificates.
-                context.getRestAPIConnectionInfo().setPemCertContents(certInfo.getPemCertificates());
-            } else if (!certInfo.getFingerprints().isEmpty()) {
-                System.out.println("SSL fingerprint was not provided, or does not match the fingerprint provided by the Helix ALM REST API: " + certInfo.getFingerprints().get(0));
+    private static boolean isInfoRequested(String[] args) {
+        for (String arg : args) {
+            if ("-h".equals(arg) || "--help".equals(arg) || "-v".equals(arg) || "--version".equals(arg)) {
+                return true;
             }
         }
-
-        return context;
+        return args.length == 0;
     }
 
     /**
-     * Loads the config.properties file, which contains default parameters, into a Properties object
-     * @return See description
+     * Creates the report context, and starts watching for report files if a directory should be watched. The watcher
+     * stops by itself once the test run has finished.
+     *
+     * @param parsedArgs Parsed command line arguments
+     * @return The report context
+     * @throws IOException Thrown when the directory can't be watched
      */
-    private static Properties loadConfigProperties() {
-        Properties config = null;
-        final File fileExtConfig = new File(System.getenv("APP_HOME") + File.separator + "config.properties");
-        if (fileExtConfig.exists()) {
-            try (FileInputStream in = new FileInputStream(fileExtConfig)) {
-                config = new Properties();
-                config.load(in);
-            } catch (Exception ignored) {}
+    private static ReportContext createReportContext(ReportingToolArgs parsedArgs) throws IOException {
+        ReportContext reportContext = parsedArgs.getReportContext();
+        if (parsedArgs.watchContext.isWatchRequested()) {
+            ReportDirectoryWatcher watcher = parsedArgs.watchContext.createWatcher();
+            watcher.start();
+            reportContext.setReportFileSource(watcher);
         }
-        return config;
+        return reportContext;
     }
 
     /**
-     * Convenience function for applying default config properties if they were not explicitly specified on the command line.
-     *
-     * @param config The config.properties contents
-     * @param propertyKey The property key to lookup
-     * @param getterFn The getter function to see if the value is already set
-     * @param setterFn The setter function to use if we want to apply the default value
+     * @param parsedArgs Parsed command line arguments
+     * @return A metrics object that records measurements if metrics output was requested, otherwise one that does nothing
      */
-    private static void applyDefaultStringPropertyIfNeeded(final Properties config, final String propertyKey,
-                                                           Supplier<String> getterFn, Consumer<String> setterFn) {
-        if (getterFn.get() == null || getterFn.get().isEmpty()) {
-            String propertyValue = config.getProperty(propertyKey, "");
-            if (!propertyValue.isEmpty()) {
-                setterFn.accept(propertyValue);
-            }
-        }
+    private static RunMetrics createRunMetrics(ReportingToolArgs parsedArgs) {
+        return parsedArgs.metricsContext.isMetricsRequested() ? new RunMetrics() : RunMetrics.DISABLED;
     }
 
     /**
-     * Function that will build an IAuthInfo object based on the specified default configuration options.
-     * Will return null if no configuration properties or default parameters exist.
+     * Writes the recorded metrics to the requested outputs. Failing to write metrics does not fail the run.
      *
-     * @param config The default configuration properties
-     * @return See description
+     * @param parsedArgs Parsed command line arguments
+     * @param metrics The metrics recorded for the run
      */
-    private static IAuthInfo buildDefaultAuthInfoFromConfig(Properties config) {
-        IAuthInfo authInfo = null;
-
-        if (config != null) {
-            String apiKey = config.getProperty("REST_API_APIKEY", "");
-            if (!apiKey.isEmpty()) {
-                authInfo = new AuthInfoAPIKey(apiKey);
-            } else {
-                String user = config.getProperty("REST_API_USERNAME", "");
-                String pass = config.getProperty("REST_API_PASSWORD", "");
-                if (!user.isEmpty()) {
-                    authInfo = new AuthInfoBasic(user, pass);
+    private static void writeRunMetrics(ReportingToolArgs parsedArgs, RunMetrics metrics) {
+        if (metrics.isEnabled()) {
+            RunMetricsWriter writer = new RunMetricsWriter(metrics);
+            try {
+                String jsonOutput = parsedArgs.metricsContext.jsonOutput;
+                if (jsonOutput != null && !jsonOutput.isEmpty()) {
+                    writer.writeJSON(Paths.get(jsonOutput));
+                }
+                String prometheusOutput = parsedArgs.metricsContext.prometheusOutput;
+                if (prometheusOutput != null && !prometheusOutput.isEmpty()) {
+                    writer.writePrometheusTextfile(Paths.get(prometheusOutput));
                 }
+            } catch (IOException e) {
+                //todo: ENHANCEMENT - Implement actual error logging.
+                System.err.println("Unable to write run metrics: " + e.getLocalizedMessage());
             }
         }
-
-        return authInfo;
     }
 }
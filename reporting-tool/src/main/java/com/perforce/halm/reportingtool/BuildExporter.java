@@ -0,0 +1,193 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool;
+
+import com.perforce.halm.reportingtool.format.IMetaBuild;
+import com.perforce.halm.reportingtool.format.ReportFormatFactory;
+import com.perforce.halm.reportingtool.json.AutomationBuildJSONWriter;
+import com.perforce.halm.reportingtool.json.ExportFormat;
+import com.perforce.halm.reportingtool.metrics.RunMetrics;
+import com.perforce.halm.reportingtool.models.BuildMetadata;
+import com.perforce.halm.reportingtool.models.ConversionOptions;
+import com.perforce.halm.reportingtool.models.ReportContext;
+import com.perforce.halm.rest.types.automation.build.AutomationBuild;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Object that generates a build from the specified information and writes it out as JSON, instead of submitting it
+ * to Helix ALM. Results are written as they are converted, so the full document is never held in memory.
+ */
+public class BuildExporter {
+    /**
+     * Output path that writes the build to standard output
+     */
+    public static final String STANDARD_OUTPUT = "-";
+
+    private final String buildNumber;
+    private final ReportContext reportContext;
+    private final BuildMetadata buildMetadata;
+    private RunMetrics metrics = RunMetrics.DISABLED;
+    private ConversionOptions conversionOptions = new ConversionOptions();
+
+    /**
+     * Constructor
+     *
+     * @param buildNumber The build number that will be specified in the exported build
+     * @param reportContext The context object containing information about the report being exported
+     * @param buildMetadata The metadata for the build
+     */
+    public BuildExporter(final String buildNumber, final ReportContext reportContext, final BuildMetadata buildMetadata) {
+        this.buildNumber = buildNumber;
+        this.reportContext = reportContext;
+        this.buildMetadata = buildMetadata;
+    }
+
+    /**
+     * @param metrics The metrics to record parsing and conversion measurements in
+     */
+    public void setMetrics(RunMetrics metrics) {
+        this.metrics = metrics != null ? metrics : RunMetrics.DISABLED;
+    }
+
+    /**
+     * @param conversionOptions The options for how results are converted, such as which results to keep
+     */
+    public void setConversionOptions(ConversionOptions conversionOptions) {
+        this.conversionOptions = conversionOptions != null ? conversionOptions : new ConversionOptions();
+    }
+
+    /**
+     * Exports the automation build to the specified output. A summary of the export is written to standard error,
+     * so it does not interfere with a build written to standard output.
+     *
+     * @param output The file path to write to, or {@link #STANDARD_OUTPUT}
+     * @param format The format to write the build in
+     * @return Whether the build was exported
+     */
+    public boolean exportAutomationBuild(final String output, final ExportFormat format) {
+        if (!this.validateParameters() || output == null || output.isEmpty()) {
+            System.err.println("Invalid parameters were passed when exporting the build.");
+            return false;
+        }
+
+        IMetaBuild metaBuild = ReportFormatFactory.createBuildFormatterForType(this.reportContext.getReportFormatType());
+        metaBuild.setMetrics(this.metrics);
+        metaBuild.setConversionOptions(this.conversionOptions);
+        long startTime = System.nanoTime();
+        Writer writer = null;
+        try {
+            writer = openOutput(output);
+            final Writer resultWriter = writer;
+            final AutomationBuildJSONWriter jsonWriter = new AutomationBuildJSONWriter(writer);
+            final AtomicLong resultCount = new AtomicLong();
+            AutomationBuild build = metaBuild.streamAutomationBuild(this.buildNumber, this.reportContext.getReportFileSource(), this.buildMetadata, result -> {
+                try {
+                    if (format == ExportFormat.ndjson) {
+                        jsonWriter.writeResult(result);
+                        resultWriter.write('\n');
+                    } else {
+                        jsonWriter.writeStreamedResult(result);
+                    }
+                    resultCount.incrementAndGet();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            if (build == null) {
+                System.err.println("Unable to create an automation build object from the specified data.");
+                return false;
+            }
+            if (format == ExportFormat.ndjson) {
+                jsonWriter.writeBuildWithoutResults(build);
+            } else {
+                jsonWriter.endStreamedBuild(build);
+            }
+            writer.write('\n');
+            writer.flush();
+
+            long elapsedMS = Math.max(1, (System.nanoTime() - startTime) / 1000000);
+            System.err.println(String.format("Exported %d results from %d report files in %d ms (%d results/sec).",
+                    resultCount.get(), metaBuild.getReportFileCount(), elapsedMS, resultCount.get() * 1000 / elapsedMS));
+            return true;
+        } catch (Exception e) {
+            //todo: ENHANCEMENT - Implement actual error logging.
+            e.printStackTrace();
+            return false;
+        } finally {
+            closeOutput(output, writer);
+        }
+    }
+
+    /**
+     * @param output The file path to write to, or {@link #STANDARD_OUTPUT}
+     * @return A buffered writer for the output
+     * @throws IOException Thrown when the output file can't be created
+     */
+    private static Writer openOutput(final String output) throws IOException {
+        if (STANDARD_OUTPUT.equals(output)) {
+            return new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        }
+        return Files.newBufferedWriter(Paths.get(output), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Closes the output file. Standard output is flushed, but left open.
+     *
+     * @param output The file path that was written to, or {@link #STANDARD_OUTPUT}
+     * @param writer The writer to close, may be null
+     */
+    private static void closeOutput(final String output, final Writer writer) {
+        if (writer != null) {
+            try {
+                if (STANDARD_OUTPUT.equals(output)) {
+                    writer.flush();
+                } else {
+                    writer.close();
+                }
+            } catch (IOException ignored) {}
+        }
+    }
+
+    /**
+     * Validates our parameters to ensure we have enough information to continue
+     *
+     * @return Returns true if parameters may be valid, false if we know they are not
+     */
+    private boolean validateParameters() {
+        return this.buildNumber != null && !this.buildNumber.isEmpty() && this.reportContext != null && this.reportContext.isValidContext();
+    }
+}
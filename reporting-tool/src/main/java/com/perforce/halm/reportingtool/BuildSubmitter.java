@@ -26,23 +26,56 @@
 
 package com.perforce.halm.reportingtool;
 
+import com.perforce.halm.reportingtool.events.ReportingEvent;
+import com.perforce.halm.reportingtool.events.ReportingEvents;
 import com.perforce.halm.reportingtool.format.IMetaBuild;
 import com.perforce.halm.reportingtool.format.ReportFormatFactory;
+import com.perforce.halm.reportingtool.json.AutomationBuildJSONWriter;
+import com.perforce.halm.reportingtool.ledger.SubmissionFingerprint;
+import com.perforce.halm.reportingtool.ledger.SubmissionLedger;
+import com.perforce.halm.reportingtool.metrics.CountingOutputStream;
+import com.perforce.halm.reportingtool.metrics.RunMetrics;
+import com.perforce.halm.reportingtool.metrics.RunPhase;
 import com.perforce.halm.reportingtool.models.BuildMetadata;
+import com.perforce.halm.reportingtool.models.ConversionOptions;
 import com.perforce.halm.reportingtool.models.HelixALMSuiteContext;
 import com.perforce.halm.reportingtool.models.ReportContext;
+import com.perforce.halm.reportingtool.models.SubmissionResult;
+import com.perforce.halm.reportingtool.transport.GzipStreamingTransport;
+import com.perforce.halm.rest.AuthToken;
 import com.perforce.halm.rest.Client;
 import com.perforce.halm.rest.responses.SubmitAutomationBuildResponse;
 import com.perforce.halm.rest.types.automation.build.AutomationBuild;
 
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 /**
- * Object that generates a build to report based on the specified information
+ * Object that generates a build to report based on the specified information.
+ * <p>
+ * Each submitter handles one build. Any number of submitters can run at the same time in one JVM, on any threads: the
+ * shared JAXBContext is created once and safely published, and each submission parses with its own unmarshaller,
+ * REST API client and unique name tracker. Configure a submitter before submitting it; a {@link RunMetrics} object
+ * records a single submission, so don't share one between submitters.
+ * <p>
+ * With a {@link SubmissionLedger}, a build that was already acknowledged for the same suite isn't submitted again.
+ * Report files that haven't changed are recognized before they are parsed, and a build converted from changed files
+ * is recognized if its content is the same, whatever order its results were converted in.
  */
 public class BuildSubmitter {
     private final String buildNumber;
     private final ReportContext reportContext;
     private final HelixALMSuiteContext helixALMContext;
     private final BuildMetadata buildMetadata;
+    private SubmitTransportType transportType = SubmitTransportType.client;
+    private RunMetrics metrics = RunMetrics.DISABLED;
+    private ConversionOptions conversionOptions = new ConversionOptions();
+    private SubmissionLedger submissionLedger;
 
     /**
      * Constructor
@@ -61,23 +94,89 @@ public class BuildSubmitter {
     }
 
     /**
-     * Submits the automation build report
-     * @return The response object
+     * @param transportType How the build should be sent to the Helix ALM REST API
+     */
+    public void setTransportType(SubmitTransportType transportType) {
+        this.transportType = transportType;
+    }
+
+    /**
+     * @param metrics The metrics to record authentication, conversion and submission measurements in
+     */
+    public void setMetrics(RunMetrics metrics) {
+        this.metrics = metrics != null ? metrics : RunMetrics.DISABLED;
+    }
+
+    /**
+     * @param conversionOptions The options for how results are converted, such as which results to keep
+     */
+    public void setConversionOptions(ConversionOptions conversionOptions) {
+        this.conversionOptions = conversionOptions != null ? conversionOptions : new ConversionOptions();
+    }
+
+    /**
+     * @param submissionLedger The ledger of acknowledged submissions to check and record this submission in, or null
+     *                         to always submit
+     */
+    public void setSubmissionLedger(SubmissionLedger submissionLedger) {
+        this.submissionLedger = submissionLedger;
+    }
+
+    /**
+     * Submits the automation build report on the specified executor, for callers that report several builds in parallel
+     * or can't block. Parsing, conversion and submission all run on the executor. Failures are reported in the
+     * result's error message, the same as {@link #submitAutomationBuild()}; the future only completes
+     * exceptionally if the executor rejects the task or an error is thrown.
+     *
+     * @param executor The executor to run the submission on
+     * @return A future that completes with the submission result
+     */
+    public CompletableFuture<SubmissionResult> submitAutomationBuildAsync(final Executor executor) {
+        Objects.requireNonNull(executor, "executor");
+        return CompletableFuture.supplyAsync(this::submitAutomationBuild, executor);
+    }
+
+    /**
+     * Submits the automation build report, blocking until the response is received
+     * @return The submission result, with the response object, or saying the build was already submitted
      */
-    public SubmitAutomationBuildResponse submitAutomationBuild() {
+    public SubmissionResult submitAutomationBuild() {
         SubmitAutomationBuildResponse response = new SubmitAutomationBuildResponse();
         if (this.validateParameters()) {
             // Ensure we can build the necessary formatter.
             IMetaBuild metaBuild = ReportFormatFactory.createBuildFormatterForType(this.reportContext.getReportFormatType());
+            metaBuild.setMetrics(this.metrics);
+            metaBuild.setConversionOptions(this.conversionOptions);
 
             try {
+                // Unchanged report files don't need to be parsed, or the server contacted, to know they were submitted.
+                String inputFingerprint = this.getInputFingerprint();
+                if (inputFingerprint != null && this.submissionLedger.contains(inputFingerprint)) {
+                    return this.skipSubmission("its report files match");
+                }
+
                 // Attempt to create the Helix ALM Rest API client connection.
+                long authStartTime = this.metrics.startTimer();
                 Client restAPIClient = new Client(this.helixALMContext.getRestAPIConnectionInfo());
-                if (restAPIClient.getAuthToken(this.helixALMContext.getHelixALMProjectID()) != null) {
+                AuthToken authToken = restAPIClient.getAuthToken(this.helixALMContext.getHelixALMProjectID());
+                this.metrics.recordPhase(RunPhase.authentication, authStartTime);
+                if (authToken != null) {
                     // We know we are connected. Now we need to format the report files into an automation build to submit.
-                    AutomationBuild build = metaBuild.generateAutomationBuild(this.buildNumber, this.reportContext.getReportFiles(), this.buildMetadata);
+                    AutomationBuild build = metaBuild.generateAutomationBuild(this.buildNumber, this.reportContext.getReportFileSource(), this.buildMetadata);
                     if (build != null) {
-                        response = restAPIClient.submitAutomationBuild(build, this.helixALMContext.getHelixALMProjectID(), this.helixALMContext.getHelixALMSuiteID());
+                        String buildFingerprint = this.submissionLedger != null ? SubmissionFingerprint.ofBuild(build, this.helixALMContext) : null;
+                        if (buildFingerprint != null && this.submissionLedger.contains(buildFingerprint)) {
+                            this.recordSubmission(inputFingerprint);
+                            return this.skipSubmission("its converted build matches");
+                        }
+                        long submitStartTime = this.metrics.startTimer();
+                        response = this.sendAutomationBuild(restAPIClient, authToken, build);
+                        this.metrics.recordPhase(RunPhase.submit, submitStartTime);
+                        this.metrics.recordSubmitResponse(response);
+                        if (response != null && response.getErrorMessage() == null) {
+                            this.recordSubmission(buildFingerprint);
+                            this.recordSubmission(inputFingerprint);
+                        }
                     } else {
                         response.setErrorMessage("Unable to create an automation build object from the specified data.");
                     }
@@ -92,7 +191,109 @@ public class BuildSubmitter {
         } else {
             response.setErrorMessage("Invalid parameters were passed when submitting the build.");
         }
-        return response;
+        return new SubmissionResult(response, false);
+    }
+
+    /**
+     * @return The fingerprint of the report files, or null if there is no ledger, or the report files are read as they
+     *         are converted, such as from a watched directory, and can't be fingerprinted up front
+     * @throws IOException Thrown if a report file can't be read
+     */
+    private String getInputFingerprint() throws IOException {
+        if (this.submissionLedger == null || this.reportContext.getReportFileSource() != this.reportContext.getReportFiles()) {
+            return null;
+        }
+        return SubmissionFingerprint.ofInputs(this.reportContext.getReportFiles(), this.reportContext.getReportFormatType(),
+                this.buildNumber, this.buildMetadata, this.conversionOptions, this.helixALMContext);
+    }
+
+    /**
+     * Reports that the submission was skipped, because the ledger shows it was already submitted.
+     *
+     * @param matched Says what was recognized, such as the report files or the converted build
+     * @return A result saying the build was already submitted
+     */
+    private SubmissionResult skipSubmission(final String matched) {
+        System.err.println(String.format("Build %s was already submitted to project %s, suite %s; %s a submission recorded in %s. Skipping the submission.",
+                this.buildNumber, this.helixALMContext.getHelixALMProjectID(), this.helixALMContext.getHelixALMSuiteID(),
+                matched, this.submissionLedger.getPath()));
+        return new SubmissionResult(new SubmitAutomationBuildResponse(), true);
+    }
+
+    /**
+     * Records an acknowledged submission in the ledger. The submission has already been made, so failing to record it
+     * does not fail the submission.
+     *
+     * @param fingerprint The fingerprint to record, or null if there isn't one
+     */
+    private void recordSubmission(final String fingerprint) {
+        if (fingerprint == null) {
+            return;
+        }
+        try {
+            this.submissionLedger.record(fingerprint, String.format("build %s, project %s, suite %s", this.buildNumber,
+                    this.helixALMContext.getHelixALMProjectID(), this.helixALMContext.getHelixALMSuiteID()));
+        } catch (IOException e) {
+            //todo: ENHANCEMENT - Implement actual error logging.
+            System.err.println("Unable to record the submission in " + this.submissionLedger.getPath() + ": " + e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Sends the build using the configured transport. If the compressed transport can't be used, for example because
+     * the server does not accept compressed request bodies, this falls back to the REST API client.
+     *
+     * @param restAPIClient The connected REST API client
+     * @param authToken The token the REST API client authenticated with
+     * @param build The build to send
+     * @return The response object
+     * @throws Exception Thrown when the submission fails
+     */
+    private SubmitAutomationBuildResponse sendAutomationBuild(final Client restAPIClient, final AuthToken authToken,
+                                                              final AutomationBuild build) throws Exception {
+        final String projectID = this.helixALMContext.getHelixALMProjectID();
+        final String suiteID = this.helixALMContext.getHelixALMSuiteID();
+        if (this.transportType == SubmitTransportType.gzip) {
+            GzipStreamingTransport transport = new GzipStreamingTransport(this.helixALMContext.getRestAPIConnectionInfo().getUrl(),
+                    authToken.getAccessToken());
+            transport.setMetrics(this.metrics);
+            SubmitAutomationBuildResponse response = transport.submitAutomationBuild(build, projectID, suiteID);
+            if (response != null) {
+                return response;
+            }
+            this.metrics.recordSubmitRetry();
+        }
+        ReportingEvent submitEvent = ReportingEvents.get().beginSubmit(SubmitTransportType.client.name(), projectID, suiteID);
+        try {
+            if (this.metrics.isEnabled()) {
+                long payloadBytes = measureJSONBytes(build);
+                this.metrics.recordPayload(payloadBytes, -1);
+                submitEvent.setPayloadBytes(payloadBytes);
+            }
+            // The REST API client does not expose the HTTP status code, so the event's status code is left unknown.
+            return restAPIClient.submitAutomationBuild(build, projectID, suiteID);
+        } finally {
+            submitEvent.end();
+        }
+    }
+
+    /**
+     * Measures the size of the build as JSON. The REST API client does not expose the request it sends, so this
+     * serializes the build a second time, and is only done when metrics are recorded.
+     *
+     * @param build The build to measure
+     * @return The size of the build in bytes, or -1 if it can't be measured
+     * @throws IOException Thrown if the build can't be serialized
+     */
+    private static long measureJSONBytes(final AutomationBuild build) throws IOException {
+        if (!AutomationBuildJSONWriter.canWriteBuild(build)) {
+            return -1;
+        }
+        CountingOutputStream bytes = new CountingOutputStream(null);
+        try (Writer writer = new OutputStreamWriter(bytes, StandardCharsets.UTF_8)) {
+            new AutomationBuildJSONWriter(writer).writeBuild(build);
+        }
+        return bytes.getCount();
     }
 
     /**
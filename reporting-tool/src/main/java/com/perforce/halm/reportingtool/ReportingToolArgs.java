@@ -27,17 +27,27 @@
 package com.perforce.halm.reportingtool;
 
 import com.perforce.halm.reportingtool.format.ReportFormatType;
+import com.perforce.halm.reportingtool.format.DuplicatePolicy;
+import com.perforce.halm.reportingtool.format.ResultGranularity;
+import com.perforce.halm.reportingtool.format.junit.parser.DoctypePolicy;
+import com.perforce.halm.reportingtool.input.ReportDirectoryWatcher;
+import com.perforce.halm.reportingtool.input.ReportFileList;
+import com.perforce.halm.reportingtool.json.ExportFormat;
 import com.perforce.halm.reportingtool.models.BuildMetadata;
+import com.perforce.halm.reportingtool.models.ConversionOptions;
 import com.perforce.halm.reportingtool.models.HelixALMSuiteContext;
 import com.perforce.halm.reportingtool.models.ReportContext;
 import com.perforce.halm.rest.AuthInfoAPIKey;
 import com.perforce.halm.rest.ConnectionInfo;
 import com.perforce.halm.rest.types.IDLabelPair;
+import com.perforce.halm.rest.types.automation.build.AutomationResultStatus;
 import picocli.CommandLine;
 import picocli.CommandLine.Parameters;
 import picocli.CommandLine.Option;
 
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 
 /**
@@ -47,13 +57,22 @@ import java.util.List;
     description = "Assists with submitting automated testing results to the Helix ALM Server.")
 public class ReportingToolArgs {
     // Required arguments
-    @Parameters(description = "Report files", arity = "1..")
+    @Parameters(description = "Report files. Use '-' to read reports from standard input; named pipes are also read as they are written, " +
+            "and either can hold several reports one after another. Use '@<list file>' to read the paths from a list file, as with " +
+            "--files-from. Not needed with --watch.", arity = "0..")
     public List<String> reportFiles = new ArrayList<>();
 
-    @Option(names = {"--format", "-f"}, description = "Report file format. Valid values: ${COMPLETION-CANDIDATES}", required = true)
+    @Option(names = {"--files-from"}, paramLabel = "<file|->",
+            description = "Read report file paths from a list file, or from standard input with '-', one per line or separated by NUL " +
+                    "characters as written by find -print0. The list is read as the reports are converted, and listed files that don't " +
+                    "exist are reported and skipped. Can be repeated.")
+    public List<String> filesFrom = new ArrayList<>();
+
+    @Option(names = {"--format", "-f"}, description = "Report file format. Use Shard to merge shard files written with --convert-shard. " +
+            "Valid values: ${COMPLETION-CANDIDATES}", required = true)
     public ReportFormatType reportFileFormat;
 
-    @Option(names = {"--number", "-n"}, description = "Build number", required = true)
+    @Option(names = {"--number", "-n"}, description = "Build number. Not needed with --convert-shard.")
     public String buildNumber;
 
     @Option(names = {"--project", "-p"}, description = "Helix ALM Project")
@@ -86,6 +105,16 @@ public class ReportingToolArgs {
         @CommandLine.Option(names = {"--fingerprint", "-F"}, description = "SSL fingerprint for certificates to accept")
         public String sslFingerprint = "";
 
+        @CommandLine.Option(names = {"--transport", "-T"},
+                description = "How the build is sent to the Helix ALM REST API. 'gzip' streams a compressed request body " +
+                        "and falls back to 'client' if the server does not accept it. Valid values: ${COMPLETION-CANDIDATES}")
+        public SubmitTransportType transport = SubmitTransportType.client;
+
+        @CommandLine.Option(names = {"--submission-ledger"}, paramLabel = "<file>",
+                description = "Record acknowledged submissions in this file, and skip submitting a build that is already " +
+                        "recorded for the same project and suite. Unchanged report files are recognized without parsing them.")
+        public String submissionLedger;
+
         /**
          * @return Converts our data into a ConnectionInfo object
          */
@@ -112,6 +141,243 @@ public class ReportingToolArgs {
     @Option(names = {"--testRunSetLabel", "-l"}, description = "Test Run Set label")
     public String testRunSetLabel;
 
+    @CommandLine.ArgGroup(validate = false, heading = "%nOffline export%n")
+    public ExportContext exportContext = new ExportContext();
+
+    /**
+     * Options for writing the converted build to a file instead of submitting it to Helix ALM
+     */
+    static class ExportContext {
+        @Option(names = {"--output", "-o"}, paramLabel = "<file|->",
+                description = "Write the converted build to a file, or '-' for standard output, instead of submitting it. " +
+                        "Skips the certificate check, authentication and submission.")
+        public String output;
+
+        @Option(names = {"--output-format"}, description = "Format for the --output build. Valid values: ${COMPLETION-CANDIDATES}")
+        public ExportFormat format = ExportFormat.json;
+
+        /**
+         * @return Whether the build should be exported instead of submitted
+         */
+        public boolean isExportRequested() {
+            return this.output != null && !this.output.isEmpty();
+        }
+    }
+
+    @CommandLine.ArgGroup(validate = false, heading = "%nSharded conversion%n")
+    public ShardContext shardContext = new ShardContext();
+
+    /**
+     * Options for converting one shard of a test run into a shard file, to be merged with the other shards later
+     */
+    static class ShardContext {
+        @Option(names = {"--convert-shard"}, paramLabel = "<file>",
+                description = "Convert the report files into a shard file instead of submitting them. Run this on each node of a sharded " +
+                        "test run, then merge the shard files into one build with --format Shard.")
+        public String output;
+
+        @Option(names = {"--shard-id"}, paramLabel = "<id>",
+                description = "Identifies the shard. When shards are merged, results with the same uniqueName are ordered by shard ID, " +
+                        "so their uniqueNames are the same on every run. Default: the shard file name.")
+        public String shardID;
+
+        /**
+         * @return Whether the report files should be converted into a shard file instead of submitted
+         */
+        public boolean isConvertRequested() {
+            return this.output != null && !this.output.isEmpty();
+        }
+
+        /**
+         * @return The shard ID, or the shard file name if none was given
+         */
+        public String getShardID() {
+            return this.shardID != null ? this.shardID : Paths.get(this.output).getFileName().toString();
+        }
+    }
+
+    @CommandLine.ArgGroup(validate = false, heading = "%nWatch mode%n")
+    public WatchContext watchContext = new WatchContext();
+
+    /**
+     * Options for reading report files as a test run writes them, instead of after it has finished
+     */
+    static class WatchContext {
+        @Option(names = {"--watch"}, paramLabel = "<dir>",
+                description = "Watch the directory, and its subdirectories, for report files. Each file is converted as soon as it has been " +
+                        "written, and the build is submitted once the sentinel file appears or the timeout passes. Used instead of report files.")
+        public String directory;
+
+        @Option(names = {"--watch-pattern"}, paramLabel = "<glob>", description = "File names to read as report files. Default: ${DEFAULT-VALUE}")
+        public String pattern = ReportDirectoryWatcher.DEFAULT_PATTERN;
+
+        @Option(names = {"--watch-sentinel"}, paramLabel = "<file name>",
+                description = "File the test run creates in the watched directory when it has finished. Default: ${DEFAULT-VALUE}")
+        public String sentinelName = "reports.done";
+
+        @Option(names = {"--watch-settle"}, paramLabel = "<ms>",
+                description = "How long a report file must stay the same size before it is read. Default: ${DEFAULT-VALUE}")
+        public long settleMillis = 2000;
+
+        @Option(names = {"--watch-timeout"}, paramLabel = "<seconds>",
+                description = "Stop watching after this long, even without the sentinel file. Files still being written are read as they are. " +
+                        "0 waits for the sentinel file.")
+        public long timeoutSeconds;
+
+        /**
+         * @return Whether a directory should be watched for report files
+         */
+        public boolean isWatchRequested() {
+            return this.directory != null && !this.directory.isEmpty();
+        }
+
+        /**
+         * @return A watcher for the directory, not yet started
+         */
+        public ReportDirectoryWatcher createWatcher() {
+            ReportDirectoryWatcher watcher = new ReportDirectoryWatcher(Paths.get(this.directory));
+            watcher.setPattern(this.pattern);
+            watcher.setSentinelName(this.sentinelName);
+            watcher.setSettleMillis(this.settleMillis);
+            watcher.setTimeoutSeconds(this.timeoutSeconds);
+            return watcher;
+        }
+    }
+
+    @CommandLine.ArgGroup(validate = false, heading = "%nResult filtering%n")
+    public FilterContext filterContext = new FilterContext();
+
+    /**
+     * Options for choosing which results are submitted. Dropped results are never converted.
+     */
+    static class FilterContext {
+        @Option(names = {"--include"}, paramLabel = "<glob>", split = ",",
+                description = "Only keep results whose class name or suite name matches one of the globs. '*' matches any characters, '?' one character.")
+        public List<String> includePatterns = new ArrayList<>();
+
+        @Option(names = {"--exclude"}, paramLabel = "<glob>", split = ",",
+                description = "Drop results whose class name or suite name matches one of the globs.")
+        public List<String> excludePatterns = new ArrayList<>();
+
+        @Option(names = {"--status"}, paramLabel = "<status>", split = ",",
+                description = "Only keep results with one of the statuses. With --merge-duplicates, the merged result's status is used. " +
+                        "Valid values: ${COMPLETION-CANDIDATES}")
+        public List<AutomationResultStatus> statuses = new ArrayList<>();
+
+        @Option(names = {"--include-tag"}, paramLabel = "<tag>", split = ",", description = "Only keep results with at least one of the tags.")
+        public List<String> includeTags = new ArrayList<>();
+
+        @Option(names = {"--exclude-tag"}, paramLabel = "<tag>", split = ",", description = "Drop results with any of the tags.")
+        public List<String> excludeTags = new ArrayList<>();
+
+        @Option(names = {"--pass-sample-rate"}, paramLabel = "<0-1>",
+                description = "Portion of passing results to keep, from 0 (none) to 1 (all). The same tests are kept from build to build. " +
+                        "Failed and skipped results are always kept, and the number of passing results is added to the build properties. " +
+                        "With --merge-duplicates, merged results are sampled.")
+        public double passSampleRate = 1;
+
+        @Option(names = {"--granularity"},
+                description = "How finely results are reported. 'parameterized' combines the invocations of each parameterized test, such as " +
+                        "name[1] and name[2], and 'testclass' combines each class's tests. A combined result has the worst status and total " +
+                        "duration of its members, and lists failed members in its properties. Valid values: ${COMPLETION-CANDIDATES}")
+        public ResultGranularity granularity = ResultGranularity.testcase;
+
+        @Option(names = {"--merge-duplicates"}, paramLabel = "<policy>",
+                description = "How results with the same uniqueName, such as a testcase in the report files of a shard and of its retry, " +
+                        "are handled. 'rename' keeps each one, numbering the uniqueNames of later ones. 'last' keeps the one read last, " +
+                        "'worst' and 'best' the one with the worst or best status, and 'flaky' the best one, marked flaky when the " +
+                        "statuses differ. Merged results count their runs in an attempts property. Valid values: ${COMPLETION-CANDIDATES}")
+        public DuplicatePolicy duplicatePolicy = DuplicatePolicy.rename;
+
+        @Option(names = {"--hoist-constant-attributes"},
+                description = "Add testcase attributes that have the same value on every result, such as device, os or browser, to the " +
+                        "build properties once instead of to each result. The report files are scanned an extra time to find them.")
+        public boolean hoistConstantAttributes;
+
+        @Option(names = {"--dedupe-failures"},
+                description = "Only send each distinct failure or error body, such as a stack trace, with the first result that has it. " +
+                        "Every result gets a fingerprint property for its body, and the build properties count how often each repeated fingerprint occurred.")
+        public boolean deduplicateFailures;
+
+        @Option(names = {"--fingerprint-line-numbers"},
+                description = "With --dedupe-failures, treat stack traces that only differ by line numbers as different.")
+        public boolean fingerprintLineNumbers;
+    }
+
+    @CommandLine.ArgGroup(validate = false, heading = "%nInput limits%n")
+    public LimitsContext limitsContext = new LimitsContext();
+
+    /**
+     * Options for keeping a runaway or malformed report from stalling the run or making the build too large to submit.
+     * Sizes are in bytes, 0 for no limit.
+     */
+    static class LimitsContext {
+        @Option(names = {"--max-message-bytes"}, paramLabel = "<bytes>",
+                description = "Truncate error and failure messages longer than this. Truncated fields end with a marker showing their original size.")
+        public int maxMessageBytes;
+
+        @Option(names = {"--max-body-bytes"}, paramLabel = "<bytes>",
+                description = "Truncate failure and error bodies, such as stack traces, and system output longer than this. " +
+                        "Bodies are truncated as they are read, so they are never held in memory in full.")
+        public int maxBodyBytes;
+
+        @Option(names = {"--max-property-bytes"}, paramLabel = "<bytes>", description = "Truncate property values longer than this.")
+        public int maxPropertyBytes;
+
+        @Option(names = {"--payload-budget"}, paramLabel = "<bytes>",
+                description = "Estimated size the results can use. Room for failure bodies is set aside first. Passing results " +
+                        "that don't fit in 75%% are sent without their details, and failures that don't fit are sent without their bodies. " +
+                        "Every result is still sent.")
+        public long payloadBudgetBytes;
+
+        @Option(names = {"--doctype"},
+                description = "How a DOCTYPE in a report file is handled. 'internal', the default, expands entities declared in the report itself, " +
+                        "'ignore' skips the DOCTYPE, and 'reject' fails the report as soon as one is found. External DTDs and entities are never loaded. " +
+                        "Valid values: ${COMPLETION-CANDIDATES}")
+        public DoctypePolicy doctypePolicy = DoctypePolicy.internal;
+
+        @Option(names = {"--sanitize-input"},
+                description = "Repair report files that aren't valid XML as they are read, instead of failing them. Control characters and " +
+                        "references to them are dropped, and invalid byte sequences are replaced. The number of repairs is reported for each file.")
+        public boolean sanitizeInput;
+
+        @Option(names = {"--allow-partial-builds"},
+                description = "Skip report files that can't be read, such as a truncated file from a crashed run, and submit the rest. " +
+                        "Suites read before the error are kept. Skipped files are listed on standard error and in the build properties. " +
+                        "Without this, any unreadable file fails the run.")
+        public boolean allowPartialBuilds;
+
+        @Option(names = {"--salvage-truncated-reports"},
+                description = "Recover report files that end part way through, such as one left by a test JVM that was killed mid-run. " +
+                        "Testcases closed before the end of the file are kept, the testcase that was running is dropped, and the open " +
+                        "suites are closed. Recovered files are listed in the build properties.")
+        public boolean salvageTruncatedReports;
+    }
+
+    @CommandLine.ArgGroup(validate = false, heading = "%nRun metrics%n")
+    public MetricsContext metricsContext = new MetricsContext();
+
+    /**
+     * Options for writing timing, throughput and size measurements for the run
+     */
+    static class MetricsContext {
+        @Option(names = {"--metrics-json"}, paramLabel = "<file>",
+                description = "Write a JSON summary of phase timings, report sizes, result counts and payload size to the file.")
+        public String jsonOutput;
+
+        @Option(names = {"--metrics-prometheus"}, paramLabel = "<file>",
+                description = "Write the run metrics to the file in the Prometheus text format, for the node exporter textfile collector.")
+        public String prometheusOutput;
+
+        /**
+         * @return Whether metrics should be recorded for the run
+         */
+        public boolean isMetricsRequested() {
+            return (this.jsonOutput != null && !this.jsonOutput.isEmpty()) ||
+                    (this.prometheusOutput != null && !this.prometheusOutput.isEmpty());
+        }
+    }
+
     // Help information
     @CommandLine.ArgGroup(validate = false, heading = "%nReporting Tool Info%n")
     public ReportingToolInfo reportingToolInfo;
@@ -133,7 +399,32 @@ public class ReportingToolArgs {
      * @return See description
      */
     public ReportContext getReportContext() {
-        return new ReportContext(this.reportFileFormat, this.reportFiles);
+        if (this.filesFrom.isEmpty() && !ReportFileList.hasListFiles(this.reportFiles)) {
+            return new ReportContext(this.reportFileFormat, this.reportFiles);
+        }
+        // List files are only read as the reports are converted.
+        List<String> entries = new ArrayList<>(this.reportFiles);
+        for (String listFile : this.filesFrom) {
+            entries.add(ReportFileList.LIST_FILE_PREFIX + listFile);
+        }
+        ReportContext reportContext = new ReportContext(this.reportFileFormat, new ArrayList<>());
+        reportContext.setReportFileSource(new ReportFileList(entries));
+        return reportContext;
+    }
+
+    /**
+     * @return Whether any report files, or lists of them, were given
+     */
+    public boolean hasReportFiles() {
+        return !this.reportFiles.isEmpty() || !this.filesFrom.isEmpty();
+    }
+
+    /**
+     * @return Whether a list of report files is read from standard input
+     */
+    public boolean isFileListOnStandardInput() {
+        return this.filesFrom.contains(ReportFileList.STANDARD_INPUT) ||
+                this.reportFiles.contains(ReportFileList.LIST_FILE_PREFIX + ReportFileList.STANDARD_INPUT);
     }
 
     /**
@@ -144,6 +435,36 @@ public class ReportingToolArgs {
         return new HelixALMSuiteContext(this.restAPIContext.getConnectionInfo(), this.almProjectID, this.almSuiteID);
     }
 
+    /**
+     * Returns a conversion options object from the args
+     * @return See description
+     */
+    public ConversionOptions getConversionOptions() {
+        ConversionOptions options = new ConversionOptions();
+        options.setIncludePatterns(this.filterContext.includePatterns);
+        options.setExcludePatterns(this.filterContext.excludePatterns);
+        if (!this.filterContext.statuses.isEmpty()) {
+            options.setStatuses(EnumSet.copyOf(this.filterContext.statuses));
+        }
+        options.setIncludeTags(this.filterContext.includeTags);
+        options.setExcludeTags(this.filterContext.excludeTags);
+        options.setPassSampleRate(this.filterContext.passSampleRate);
+        options.setGranularity(this.filterContext.granularity);
+        options.setDuplicatePolicy(this.filterContext.duplicatePolicy);
+        options.setHoistConstantAttributes(this.filterContext.hoistConstantAttributes);
+        options.setDeduplicateFailures(this.filterContext.deduplicateFailures);
+        options.setFingerprintLineNumbers(this.filterContext.fingerprintLineNumbers);
+        options.setMaxMessageBytes(this.limitsContext.maxMessageBytes);
+        options.setMaxBodyBytes(this.limitsContext.maxBodyBytes);
+        options.setMaxPropertyBytes(this.limitsContext.maxPropertyBytes);
+        options.setPayloadBudgetBytes(this.limitsContext.payloadBudgetBytes);
+        options.setDoctypePolicy(this.limitsContext.doctypePolicy);
+        options.setSanitizeInput(this.limitsContext.sanitizeInput);
+        options.setAllowPartialBuilds(this.limitsContext.allowPartialBuilds);
+        options.setSalvageTruncatedReports(this.limitsContext.salvageTruncatedReports);
+        return options;
+    }
+
     /**
      * Returns a build metadata object from the args
      * @return See description
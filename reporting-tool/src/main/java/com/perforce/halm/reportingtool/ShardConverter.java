@@ -0,0 +1,149 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool;
+
+import com.perforce.halm.reportingtool.format.IMetaBuild;
+import com.perforce.halm.reportingtool.format.ReportFormatFactory;
+import com.perforce.halm.reportingtool.format.ReportFormatType;
+import com.perforce.halm.reportingtool.format.shard.ShardWriter;
+import com.perforce.halm.reportingtool.metrics.RunMetrics;
+import com.perforce.halm.reportingtool.models.ConversionOptions;
+import com.perforce.halm.reportingtool.models.ReportContext;
+import com.perforce.halm.rest.types.automation.build.AutomationBuild;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Object that converts the report files of one shard of a test run into a shard file, instead of submitting them to
+ * Helix ALM. Each node of a sharded test run converts its own report files, and the shard files are then merged into
+ * one build with the {@link ReportFormatType#Shard} format. Only the converted results are moved to the merging node,
+ * and uniqueName collisions are resolved there, across every shard.
+ */
+public class ShardConverter {
+    private final ReportContext reportContext;
+    private RunMetrics metrics = RunMetrics.DISABLED;
+    private ConversionOptions conversionOptions = new ConversionOptions();
+
+    /**
+     * Constructor
+     *
+     * @param reportContext The context object containing information about the report being converted
+     */
+    public ShardConverter(final ReportContext reportContext) {
+        this.reportContext = reportContext;
+    }
+
+    /**
+     * @param metrics The metrics to record parsing and conversion measurements in
+     */
+    public void setMetrics(RunMetrics metrics) {
+        this.metrics = metrics != null ? metrics : RunMetrics.DISABLED;
+    }
+
+    /**
+     * @param conversionOptions The options for how results are converted, such as which results to keep
+     */
+    public void setConversionOptions(ConversionOptions conversionOptions) {
+        this.conversionOptions = conversionOptions != null ? conversionOptions : new ConversionOptions();
+    }
+
+    /**
+     * Converts the report files and writes the shard file. A summary is written to standard error.
+     *
+     * @param output The shard file to write. It is only replaced once the conversion has succeeded.
+     * @param shardID Identifies the shard, and orders its results against other shards when they are merged
+     * @return Whether the shard file was written
+     */
+    public boolean convertShard(final String output, final String shardID) {
+        if (!this.validateParameters() || output == null || output.isEmpty() || shardID == null) {
+            System.err.println("Invalid parameters were passed when converting the shard.");
+            return false;
+        }
+        if (this.conversionOptions.isHoistConstantAttributes()) {
+            //todo: ENHANCEMENT - Implement actual error logging.
+            System.err.println("Constant attributes can't be hoisted when converting a shard, since they may not be constant on the other nodes.");
+            return false;
+        }
+        if (this.conversionOptions.isDeduplicateFailures()) {
+            //todo: ENHANCEMENT - Implement actual error logging.
+            System.err.println("Failure bodies are deduplicated when the shards are merged, not when converting a shard.");
+            return false;
+        }
+        if (!this.conversionOptions.getStatuses().isEmpty() || this.conversionOptions.getPassSampleRate() < 1) {
+            //todo: ENHANCEMENT - Implement actual error logging.
+            System.err.println("Results are filtered by status and sampled when the shards are merged, not when converting a shard.");
+            return false;
+        }
+
+        IMetaBuild metaBuild = ReportFormatFactory.createBuildFormatterForType(this.reportContext.getReportFormatType());
+        metaBuild.setMetrics(this.metrics);
+        metaBuild.setConversionOptions(this.conversionOptions);
+        metaBuild.setUniqueNameTracker(new ShardWriter.BaseNameTracker());
+        long startTime = System.nanoTime();
+        Path outputPath = Paths.get(output).toAbsolutePath();
+        Path partialPath = outputPath.resolveSibling(outputPath.getFileName() + ".partial");
+        try {
+            ShardWriter shardWriter = new ShardWriter(shardID);
+            AutomationBuild build = metaBuild.streamAutomationBuild(null, this.reportContext.getReportFileSource(), null, shardWriter::addResult);
+            if (build == null) {
+                System.err.println("Unable to create an automation build object from the specified data.");
+                return false;
+            }
+            try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(partialPath))) {
+                shardWriter.write(stream, metaBuild.getReportFileCount(), build);
+            }
+            Files.move(partialPath, outputPath, StandardCopyOption.REPLACE_EXISTING);
+
+            long elapsedMS = Math.max(1, (System.nanoTime() - startTime) / 1000000);
+            System.err.println(String.format("Converted %d results from %d report files into shard %s (%d bytes) in %d ms.",
+                    shardWriter.getResultCount(), metaBuild.getReportFileCount(), shardID, Files.size(outputPath), elapsedMS));
+            return true;
+        } catch (Exception e) {
+            //todo: ENHANCEMENT - Implement actual error logging.
+            e.printStackTrace();
+            try {
+                Files.deleteIfExists(partialPath);
+            } catch (Exception ignored) {}
+            return false;
+        }
+    }
+
+    /**
+     * Validates our parameters to ensure we have enough information to continue
+     *
+     * @return Returns true if parameters may be valid, false if we know they are not
+     */
+    private boolean validateParameters() {
+        return this.reportContext != null && this.reportContext.isValidContext() &&
+                this.reportContext.getReportFormatType() != ReportFormatType.Shard;
+    }
+}
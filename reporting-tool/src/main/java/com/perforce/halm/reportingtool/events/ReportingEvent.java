@@ -0,0 +1,56 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.events;
+
+/**
+ * A timed event that was started by {@link ReportingEvents}, and is recorded when it ends.
+ */
+public interface ReportingEvent {
+    /**
+     * Event that records nothing
+     */
+    ReportingEvent NONE = new ReportingEvent() {
+        @Override public void setPayloadBytes(long payloadBytes) {}
+        @Override public void setStatusCode(int statusCode) {}
+        @Override public void end() {}
+    };
+
+    /**
+     * @param payloadBytes The size of the request body, for submit events
+     */
+    void setPayloadBytes(long payloadBytes);
+
+    /**
+     * @param statusCode The HTTP status code returned, for submit events
+     */
+    void setStatusCode(int statusCode);
+
+    /**
+     * Ends the event, recording it if anything is listening.
+     */
+    void end();
+}
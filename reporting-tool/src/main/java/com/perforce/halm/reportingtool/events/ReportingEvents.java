@@ -0,0 +1,103 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.events;
+
+/**
+ * Emits diagnostic events for the work done by the reporting tool, so it can be correlated with other runtime events.
+ * This base class records nothing. When Java Flight Recorder is available, {@link #get()} returns an implementation
+ * that emits JFR events instead; it is loaded by name, so the tool still runs on JVMs without JFR.
+ * Set the system property halm.reportingtool.jfr=false to never emit JFR events.
+ */
+public class ReportingEvents {
+    private static final String JFR_EVENTS_CLASS = "com.perforce.halm.reportingtool.events.jfr.JFRReportingEvents";
+    private static final ReportingEvents INSTANCE = load();
+
+    /**
+     * Constructor, for the implementation that records nothing
+     */
+    protected ReportingEvents() {}
+
+    /**
+     * @return The events implementation for this JVM
+     */
+    public static ReportingEvents get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param reportFile The report file about to be parsed
+     * @return The event to end once the file has been parsed
+     */
+    public ReportingEvent beginReportFileParse(final String reportFile) {
+        return ReportingEvent.NONE;
+    }
+
+    /**
+     * @param suiteName The name of the suite about to be converted
+     * @param testCaseCount The number of testcases in the suite
+     * @return The event to end once the suite has been converted
+     */
+    public ReportingEvent beginSuiteConversion(final String suiteName, final int testCaseCount) {
+        return ReportingEvent.NONE;
+    }
+
+    /**
+     * @param transport The transport used for the submission
+     * @param projectID The Helix ALM project identifier
+     * @param suiteID The Helix ALM automation suite identifier
+     * @return The event to end once the response has been received
+     */
+    public ReportingEvent beginSubmit(final String transport, final String projectID, final String suiteID) {
+        return ReportingEvent.NONE;
+    }
+
+    /**
+     * Records that a uniqueName was already in use, and had to be changed.
+     *
+     * @param requestedName The uniqueName requested by the result
+     * @param assignedName The uniqueName the result was given
+     */
+    public void uniqueNameCollision(final String requestedName, final String assignedName) {
+        // Nothing to record
+    }
+
+    /**
+     * @return The JFR implementation if JFR can be used on this JVM, otherwise the implementation that records nothing
+     */
+    private static ReportingEvents load() {
+        if (!"false".equalsIgnoreCase(System.getProperty("halm.reportingtool.jfr"))) {
+            try {
+                Class.forName("jdk.jfr.FlightRecorder", false, ReportingEvents.class.getClassLoader());
+                Object events = Class.forName(JFR_EVENTS_CLASS).getDeclaredConstructor().newInstance();
+                return (ReportingEvents) events;
+            } catch (ReflectiveOperationException | LinkageError ignored) {
+                // JFR is not part of this JVM.
+            }
+        }
+        return new ReportingEvents();
+    }
+}
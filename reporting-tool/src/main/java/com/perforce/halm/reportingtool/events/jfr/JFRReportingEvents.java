@@ -0,0 +1,123 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.events.jfr;
+
+import com.perforce.halm.reportingtool.events.ReportingEvent;
+import com.perforce.halm.reportingtool.events.ReportingEvents;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Emits the reporting tool's events to Java Flight Recorder. Only loaded by {@link ReportingEvents#get()} when the
+ * JVM includes JFR. Events that no recording is listening for are skipped before any of their data is gathered.
+ */
+public class JFRReportingEvents extends ReportingEvents {
+    /**
+     * Constructor
+     */
+    public JFRReportingEvents() {
+        super();
+    }
+
+    @Override
+    public ReportingEvent beginReportFileParse(final String reportFile) {
+        ReportFileParseEvent event = new ReportFileParseEvent();
+        if (!event.isEnabled()) {
+            return ReportingEvent.NONE;
+        }
+        event.path = reportFile;
+        try {
+            event.bytes = Files.size(Paths.get(reportFile));
+        } catch (IOException | RuntimeException e) {
+            event.bytes = -1;
+        }
+        event.begin();
+        return new TimedEvent(event);
+    }
+
+    @Override
+    public ReportingEvent beginSuiteConversion(final String suiteName, final int testCaseCount) {
+        SuiteConversionEvent event = new SuiteConversionEvent();
+        if (!event.isEnabled()) {
+            return ReportingEvent.NONE;
+        }
+        event.suiteName = suiteName;
+        event.testCaseCount = testCaseCount;
+        event.begin();
+        return new TimedEvent(event);
+    }
+
+    @Override
+    public ReportingEvent beginSubmit(final String transport, final String projectID, final String suiteID) {
+        final SubmitBuildEvent event = new SubmitBuildEvent();
+        if (!event.isEnabled()) {
+            return ReportingEvent.NONE;
+        }
+        event.transport = transport;
+        event.projectID = projectID;
+        event.suiteID = suiteID;
+        event.begin();
+        return new TimedEvent(event) {
+            @Override public void setPayloadBytes(long payloadBytes) { event.payloadBytes = payloadBytes; }
+            @Override public void setStatusCode(int statusCode) { event.statusCode = statusCode; }
+        };
+    }
+
+    @Override
+    public void uniqueNameCollision(final String requestedName, final String assignedName) {
+        UniqueNameCollisionEvent event = new UniqueNameCollisionEvent();
+        if (event.shouldCommit()) {
+            event.requestedName = requestedName;
+            event.assignedName = assignedName;
+            event.commit();
+        }
+    }
+
+    /**
+     * Adapts a started JFR event to the reporting event interface
+     */
+    private static class TimedEvent implements ReportingEvent {
+        private final jdk.jfr.Event event;
+
+        TimedEvent(jdk.jfr.Event event) {
+            this.event = event;
+        }
+
+        @Override public void setPayloadBytes(long payloadBytes) {}
+        @Override public void setStatusCode(int statusCode) {}
+
+        @Override
+        public void end() {
+            this.event.end();
+            if (this.event.shouldCommit()) {
+                this.event.commit();
+            }
+        }
+    }
+}
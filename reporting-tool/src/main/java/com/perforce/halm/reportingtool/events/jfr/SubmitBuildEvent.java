@@ -0,0 +1,60 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.events.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for submitting a build to the Helix ALM REST API
+ */
+@Name("com.perforce.halm.reportingtool.SubmitBuild")
+@Label("Submit Build")
+@Description("Sending an automation build to the Helix ALM REST API")
+@Category({"Helix ALM", "Reporting Tool"})
+class SubmitBuildEvent extends jdk.jfr.Event {
+    @Label("Transport")
+    String transport;
+
+    @Label("Project")
+    String projectID;
+
+    @Label("Automation Suite")
+    String suiteID;
+
+    @Label("Payload Size")
+    @Description("Size of the JSON request body, or -1 if unknown")
+    @DataAmount
+    long payloadBytes = -1;
+
+    @Label("Status Code")
+    @Description("HTTP status code returned, or 0 if unknown")
+    int statusCode;
+}
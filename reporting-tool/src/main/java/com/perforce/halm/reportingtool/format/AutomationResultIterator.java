@@ -0,0 +1,188 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.format;
+
+import com.perforce.halm.reportingtool.models.BuildMetadata;
+import com.perforce.halm.rest.types.automation.build.AutomationResult;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+
+/**
+ * Iterator over the results of an automation build, for callers that would rather pull results than have them pushed
+ * to a consumer. The report files are converted on an executor, which hands results over through a bounded buffer.
+ * When the buffer is full, conversion waits for the caller to catch up, so results never pile up in memory.
+ * Once every result has been returned, {@link #getSummary()} returns the build-level summary.
+ * Close the iterator to stop conversion early.
+ */
+public class AutomationResultIterator implements Iterator<AutomationResult>, AutoCloseable {
+    private final BlockingQueue<Object> buffer;
+    private volatile boolean closed = false;
+    private AutomationResult nextResult = null;
+    private BuildSummary summary = null;
+
+    /**
+     * Marks that conversion failed, holding the reason
+     */
+    private static final class Failure {
+        private final RuntimeException exception;
+        Failure(RuntimeException exception) { this.exception = exception; }
+    }
+
+    /**
+     * Marks that conversion produced no build
+     */
+    private static final Object NO_BUILD = new Object();
+
+    /**
+     * Thrown inside the conversion task to stop it once the iterator has been closed
+     */
+    private static final class ClosedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ClosedException() { super("The result iterator was closed.", null, false, false); }
+    }
+
+    /**
+     * Starts converting the build on the executor.
+     *
+     * @param metaBuild The formatter to convert the build with
+     * @param buildNumber The build number to specify when submitting the build
+     * @param reportFiles The report files to format the build results for
+     * @param buildMetadata The metadata for the build
+     * @param bufferSize The maximum number of results converted ahead of the caller
+     * @param executor The executor to convert the build on
+     */
+    AutomationResultIterator(final IMetaBuild metaBuild, final String buildNumber, final Iterable<String> reportFiles,
+                             final BuildMetadata buildMetadata, final int bufferSize,
+                             final Executor executor) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("The buffer size must be at least 1.");
+        }
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        executor.execute(() -> {
+            Object end;
+            try {
+                BuildSummary buildSummary = metaBuild.streamResults(buildNumber, reportFiles, buildMetadata, this::put);
+                end = buildSummary != null ? buildSummary : NO_BUILD;
+            } catch (ClosedException e) {
+                return;
+            } catch (RuntimeException e) {
+                end = new Failure(e);
+            }
+            try {
+                this.put(end);
+            } catch (ClosedException ignored) {
+                // Nobody is waiting for the end of the build.
+            }
+        });
+    }
+
+    /**
+     * Waits for space in the buffer, then adds the item. Called on the conversion thread.
+     *
+     * @param item The result or end of build marker
+     */
+    private void put(final Object item) {
+        if (this.closed) {
+            throw new ClosedException();
+        }
+        try {
+            this.buffer.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClosedException();
+        }
+    }
+
+    /**
+     * Waits for the next result to be converted.
+     *
+     * @return Whether there is another result
+     * @throws RuntimeException Thrown if conversion failed
+     */
+    @Override
+    public boolean hasNext() {
+        if (this.nextResult != null) {
+            return true;
+        }
+        if (this.closed || this.summary != null) {
+            return false;
+        }
+        Object item;
+        try {
+            item = this.buffer.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the next result.", e);
+        }
+        if (item instanceof AutomationResult) {
+            this.nextResult = (AutomationResult) item;
+            return true;
+        }
+        this.closed = true;
+        if (item instanceof Failure) {
+            throw ((Failure) item).exception;
+        }
+        if (item instanceof BuildSummary) {
+            this.summary = (BuildSummary) item;
+        }
+        return false;
+    }
+
+    @Override
+    public AutomationResult next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        AutomationResult result = this.nextResult;
+        this.nextResult = null;
+        return result;
+    }
+
+    /**
+     * @return The build summary once every result has been returned, or null if conversion is still running,
+     * produced no build, or the iterator was closed early
+     */
+    public BuildSummary getSummary() {
+        return this.summary;
+    }
+
+    /**
+     * Stops conversion and discards any buffered results.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        this.nextResult = null;
+        // Frees space for a conversion thread blocked on a full buffer, so it can see that the iterator is closed.
+        this.buffer.clear();
+    }
+}
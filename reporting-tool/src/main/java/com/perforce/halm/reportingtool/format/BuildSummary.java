@@ -0,0 +1,91 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.format;
+
+import com.perforce.halm.rest.types.automation.build.AutomationBuild;
+import com.perforce.halm.rest.types.automation.build.AutomationResult;
+import com.perforce.halm.rest.types.automation.build.AutomationResultStatus;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Build-level summary of a streamed automation build, available once every result has been passed along.
+ * Holds the build without its results, including the start date and duration worked out from the report files,
+ * and the number of results streamed for each status.
+ */
+public class BuildSummary {
+    private final AutomationBuild build;
+    private final Map<AutomationResultStatus, Long> resultCounts;
+
+    /**
+     * Constructor
+     *
+     * @param build The automation build, without results
+     * @param resultCounts The number of results streamed for each status
+     */
+    public BuildSummary(final AutomationBuild build, final Map<AutomationResultStatus, Long> resultCounts) {
+        this.build = build;
+        this.resultCounts = new EnumMap<>(AutomationResultStatus.class);
+        this.resultCounts.putAll(resultCounts);
+    }
+
+    public AutomationBuild getBuild() { return this.build; }
+    public String getStartDate() { return this.build.getStartDate(); }
+    public Number getDuration() { return this.build.getDuration(); }
+
+    /**
+     * @return The total number of results streamed
+     */
+    public long getResultCount() {
+        return this.resultCounts.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * @param status The status to get the count for
+     * @return The number of results streamed with the status
+     */
+    public long getResultCount(final AutomationResultStatus status) {
+        return this.resultCounts.getOrDefault(status, 0L);
+    }
+
+    /**
+     * @param result The result to get the status for
+     * @return The result's status, or UNKNOWN if it has none or it isn't a known status
+     */
+    public static AutomationResultStatus getStatus(final AutomationResult result) {
+        if (result.getStatus() != null && result.getStatus().getId() != null) {
+            int id = result.getStatus().getId().intValue();
+            for (AutomationResultStatus status : AutomationResultStatus.values()) {
+                if (status.id() == id) {
+                    return status;
+                }
+            }
+        }
+        return AutomationResultStatus.UNKNOWN;
+    }
+}
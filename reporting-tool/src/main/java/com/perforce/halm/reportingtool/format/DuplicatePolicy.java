@@ -0,0 +1,55 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.format;
+
+/**
+ * How results with the same uniqueName are handled, such as a testcase that is in the report files of a shard and of
+ * the shard's retry
+ */
+@SuppressWarnings({"squid:S115"})
+public enum DuplicatePolicy {
+    /**
+     * Every result is kept, and later ones get a numbered uniqueName, such as name.1
+     */
+    rename,
+    /**
+     * The result read last is kept
+     */
+    last,
+    /**
+     * The result with the worst status is kept: failed, then unknown, then skipped, then passed
+     */
+    worst,
+    /**
+     * The result with the best status is kept
+     */
+    best,
+    /**
+     * The result with the best status is kept, and marked flaky if the others had a different status
+     */
+    flaky
+}
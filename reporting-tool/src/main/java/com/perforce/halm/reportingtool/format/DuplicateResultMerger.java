@@ -0,0 +1,212 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.format;
+
+import com.perforce.halm.rest.types.NameValuePair;
+import com.perforce.halm.rest.types.automation.build.AutomationBuild;
+import com.perforce.halm.rest.types.automation.build.AutomationResult;
+import com.perforce.halm.rest.types.automation.build.AutomationResultStatus;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Merges results with the same uniqueName into one, following a {@link DuplicatePolicy}, so a test that was run again
+ * is reported once instead of under a numbered uniqueName that breaks cross build tracking. Results are looked up by
+ * uniqueName as they are added, so only one result per uniqueName is held, and merged results are passed along in the
+ * order their uniqueNames were first seen. When statuses are tied, the result added later is kept.
+ * <p>
+ * A merged result keeps the properties of the result chosen, and its {@link #ATTEMPTS_PROPERTY} counts the runs
+ * merged into it.
+ */
+public class DuplicateResultMerger {
+    /** Result property with the number of times the test was run, when it was run more than once */
+    public static final String ATTEMPTS_PROPERTY = "attempts";
+    /** Result property marking a test whose runs had different statuses */
+    public static final String FLAKY_PROPERTY = "flaky";
+    /** Build property with the number of duplicate results merged into another result */
+    public static final String MERGED_DUPLICATES_PROPERTY = "mergedDuplicateResults";
+    /** Build property with the number of results marked flaky when they were merged */
+    public static final String FLAKY_RESULTS_PROPERTY = "flakyResults";
+
+    private final DuplicatePolicy policy;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private long mergedDuplicates = 0;
+    private long flakyResults = 0;
+
+    /**
+     * The result kept for a uniqueName so far, and what is known about the runs merged into it
+     */
+    private static final class Entry {
+        private AutomationResult result;
+        private AutomationResultStatus status;
+        private int attempts;
+        private boolean mixedStatuses = false;
+    }
+
+    /**
+     * Constructor
+     *
+     * @param policy How results with the same uniqueName are merged. With {@link DuplicatePolicy#rename}, nothing is merged.
+     */
+    public DuplicateResultMerger(final DuplicatePolicy policy) {
+        this.policy = policy != null ? policy : DuplicatePolicy.rename;
+    }
+
+    /**
+     * @return Whether results are merged, or left for the uniqueName tracker to rename
+     */
+    public boolean isActive() {
+        return this.policy != DuplicatePolicy.rename;
+    }
+
+    /**
+     * Adds a result, merging it with any result already added with the same uniqueName.
+     *
+     * @param result The result to add. Its uniqueName must be set, but not yet made unique across the build.
+     */
+    public void add(final AutomationResult result) {
+        String uniqueName = result.getUniqueName() != null ? result.getUniqueName() : "";
+        AutomationResultStatus status = BuildSummary.getStatus(result);
+        int attempts = getAttempts(result);
+        Entry entry = this.entries.get(uniqueName);
+        if (entry == null) {
+            entry = new Entry();
+            entry.result = result;
+            entry.status = status;
+            entry.attempts = attempts;
+            this.entries.put(uniqueName, entry);
+            return;
+        }
+
+        this.mergedDuplicates++;
+        entry.attempts += attempts;
+        entry.mixedStatuses |= status != entry.status;
+        if (this.replaces(status, entry.status)) {
+            entry.result = result;
+            entry.status = status;
+        }
+    }
+
+    /**
+     * Passes the merged results to the consumer, then clears the merger.
+     *
+     * @param uniqueNameTracker The uniqueName tracker that ensures uniqueNames are actually unique across all results
+     * @param resultConsumer The consumer to pass each merged result to
+     */
+    public void flush(final UniqueNameTracker uniqueNameTracker, final Consumer<AutomationResult> resultConsumer) {
+        for (Entry entry : this.entries.values()) {
+            AutomationResult result = entry.result;
+            if (entry.attempts > 1) {
+                setProperty(result, ATTEMPTS_PROPERTY, String.valueOf(entry.attempts));
+            }
+            if (this.policy == DuplicatePolicy.flaky && entry.mixedStatuses && getProperty(result, FLAKY_PROPERTY) == null) {
+                result.addProperty(new NameValuePair(FLAKY_PROPERTY, "true"));
+                this.flakyResults++;
+            }
+            uniqueNameTracker.ensureUniqueNameForResult(result);
+            resultConsumer.accept(result);
+        }
+        this.entries.clear();
+    }
+
+    /**
+     * Adds the number of merged duplicates and flaky results to the build properties, if any were merged.
+     *
+     * @param build The build to add properties to
+     */
+    public void addBuildProperties(final AutomationBuild build) {
+        if (this.mergedDuplicates > 0) {
+            build.addProperty(new NameValuePair(MERGED_DUPLICATES_PROPERTY, String.valueOf(this.mergedDuplicates)));
+        }
+        if (this.flakyResults > 0) {
+            build.addProperty(new NameValuePair(FLAKY_RESULTS_PROPERTY, String.valueOf(this.flakyResults)));
+        }
+    }
+
+    /**
+     * @param status The status of the result being added
+     * @param keptStatus The status of the result kept so far
+     * @return Whether the result being added replaces the one kept so far
+     */
+    private boolean replaces(final AutomationResultStatus status, final AutomationResultStatus keptStatus) {
+        switch (this.policy) {
+            case worst:
+                return ResultAggregator.severity(status) >= ResultAggregator.severity(keptStatus);
+            case best:
+            case flaky:
+                return ResultAggregator.severity(status) <= ResultAggregator.severity(keptStatus);
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * @param result The result
+     * @return The number of runs the result already stands for, such as a test rerun by Maven Surefire
+     */
+    private static int getAttempts(final AutomationResult result) {
+        String attempts = getProperty(result, ATTEMPTS_PROPERTY);
+        if (attempts != null) {
+            try {
+                return Math.max(1, Integer.parseInt(attempts));
+            } catch (NumberFormatException ignored) {
+                // Set by the report file, so count it as a single run.
+            }
+        }
+        return 1;
+    }
+
+    private static String getProperty(final AutomationResult result, final String name) {
+        List<NameValuePair> properties = result.getProperties();
+        if (properties != null) {
+            for (NameValuePair property : properties) {
+                if (name.equals(property.getName())) {
+                    return property.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sets a property, replacing the value of an existing property with the same name.
+     */
+    private static void setProperty(final AutomationResult result, final String name, final String value) {
+        if (result.getProperties() != null) {
+            for (NameValuePair property : result.getProperties()) {
+                if (name.equals(property.getName())) {
+                    property.setValue(value);
+                    return;
+                }
+            }
+        }
+        result.addProperty(new NameValuePair(name, value));
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.format;
+
+import com.perforce.halm.rest.types.NameValuePair;
+import com.perforce.halm.rest.types.automation.build.AutomationBuild;
+import com.perforce.halm.rest.types.automation.build.AutomationResult;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Fingerprints failure and error bodies, such as stack traces, so a body shared by many results is only sent once.
+ * Bodies are normalized before they are hashed: line endings and trailing whitespace are ignored, generated lambda
+ * names lose their numbering, and line numbers can optionally be ignored too. The first result with a body keeps it
+ * in full; later results with the same fingerprint only reference it. Results are deduplicated once they are final, after
+ * duplicates are merged, so the result kept for a test is the one that keeps its body.
+ */
+public class FailureDeduplicator {
+    /** Build property prefix; each property is named after a repeated fingerprint, and its value is how many results had it */
+    public static final String FINGERPRINT_COUNT_PROPERTY_PREFIX = "failureFingerprint:";
+    /** Build property with the number of bodies that were left off results because they were already sent */
+    public static final String DUPLICATE_BODIES_PROPERTY = "duplicateFailureBodies";
+    /** The most fingerprint counts added to the build, most frequent first */
+    public static final int MAX_FINGERPRINT_COUNTS = 100;
+
+    private static final Map<String, String> BODY_PROPERTIES = new LinkedHashMap<>();
+    static {
+        BODY_PROPERTIES.put("failureValue", "failureFingerprint");
+        BODY_PROPERTIES.put("errorValue", "errorFingerprint");
+    }
+
+    private static final Pattern LINE_NUMBER_PATTERN = Pattern.compile("\\(([^()\\s:]+):\\d+\\)");
+    private static final Pattern LAMBDA_METHOD_PATTERN = Pattern.compile("lambda\\$([\\w$]*?)\\$\\d+");
+    private static final Pattern LAMBDA_CLASS_PATTERN = Pattern.compile("\\$\\$Lambda(\\$\\d+)?(/(0x)?[0-9a-fA-F]+)?");
+    private static final Pattern TRAILING_WHITESPACE_PATTERN = Pattern.compile("[ \\t]+$", Pattern.MULTILINE);
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final int FINGERPRINT_BYTES = 8;
+
+    private final boolean keepLineNumbers;
+    private final MessageDigest digest;
+    private final Map<String, Long> counts = new HashMap<>();
+    private long duplicateBodies = 0;
+
+    /**
+     * Constructor
+     *
+     * @param keepLineNumbers Whether bodies that only differ by line numbers get different fingerprints
+     */
+    public FailureDeduplicator(final boolean keepLineNumbers) {
+        this.keepLineNumbers = keepLineNumbers;
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Fingerprints the failure and error bodies of a finished result. Each body is followed by its fingerprint, and
+     * is only kept if no earlier result had the same fingerprint.
+     *
+     * @param result The result to deduplicate
+     */
+    public void apply(final AutomationResult result) {
+        List<NameValuePair> properties = result.getProperties();
+        if (properties == null) {
+            return;
+        }
+        for (int i = 0; i < properties.size(); i++) {
+            NameValuePair property = properties.get(i);
+            String fingerprintName = BODY_PROPERTIES.get(property.getName());
+            if (fingerprintName == null || property.getValue() == null) {
+                continue;
+            }
+            String fingerprint = this.add(property.getValue());
+            NameValuePair fingerprintProperty = new NameValuePair(fingerprintName, fingerprint);
+            if (this.isFirstOccurrence(fingerprint)) {
+                properties.add(++i, fingerprintProperty);
+            } else {
+                properties.set(i, fingerprintProperty);
+            }
+        }
+    }
+
+    /**
+     * Counts an occurrence of the body.
+     *
+     * @param body The failure or error body
+     * @return The body's fingerprint
+     */
+    public String add(final String body) {
+        String fingerprint = this.fingerprint(body);
+        if (this.counts.merge(fingerprint, 1L, Long::sum) > 1) {
+            this.duplicateBodies++;
+        }
+        return fingerprint;
+    }
+
+    /**
+     * @param fingerprint A fingerprint returned by {@link #add(String)}
+     * @return Whether the fingerprint has been seen once, so the body should be kept
+     */
+    public boolean isFirstOccurrence(final String fingerprint) {
+        return this.counts.getOrDefault(fingerprint, 0L) == 1;
+    }
+
+    /**
+     * @param body The failure or error body
+     * @return The fingerprint for the normalized body, as hex
+     */
+    public String fingerprint(final String body) {
+        byte[] hash = this.digest.digest(normalize(body, this.keepLineNumbers).getBytes(StandardCharsets.UTF_8));
+        char[] hex = new char[FINGERPRINT_BYTES * 2];
+        for (int i = 0; i < FINGERPRINT_BYTES; i++) {
+            hex[i * 2] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX_DIGITS[hash[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Adds the counts of fingerprints seen more than once to the build properties, most frequent first, along with
+     * the number of bodies that were left off results. Nothing is added if no body was repeated.
+     *
+     * @param build The build to add properties to
+     */
+    public void addBuildProperties(final AutomationBuild build) {
+        if (this.duplicateBodies == 0) {
+            return;
+        }
+        List<Map.Entry<String, Long>> repeated = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : this.counts.entrySet()) {
+            if (entry.getValue() > 1) {
+                repeated.add(entry);
+            }
+        }
+        repeated.sort(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        for (Map.Entry<String, Long> entry : repeated.subList(0, Math.min(repeated.size(), MAX_FINGERPRINT_COUNTS))) {
+            build.addProperty(new NameValuePair(FINGERPRINT_COUNT_PROPERTY_PREFIX + entry.getKey(), String.valueOf(entry.getValue())));
+        }
+        build.addProperty(new NameValuePair(DUPLICATE_BODIES_PROPERTY, String.valueOf(this.duplicateBodies)));
+    }
+
+    public long getDuplicateBodies() { return this.duplicateBodies; }
+
+    /**
+     * Normalizes a failure or error body so that traces of the same failure compare equal.
+     *
+     * @param body The failure or error body
+     * @param keepLineNumbers Whether line numbers in stack frames are kept
+     * @return See description
+     */
+    public static String normalize(final String body, final boolean keepLineNumbers) {
+        String normalized = body.replace("\r\n", "\n").replace('\r', '\n');
+        normalized = TRAILING_WHITESPACE_PATTERN.matcher(normalized).replaceAll("");
+        normalized = LAMBDA_METHOD_PATTERN.matcher(normalized).replaceAll("lambda\\$$1\\$");
+        normalized = LAMBDA_CLASS_PATTERN.matcher(normalized).replaceAll("\\$\\$Lambda");
+        if (!keepLineNumbers) {
+            normalized = LINE_NUMBER_PATTERN.matcher(normalized).replaceAll("($1)");
+        }
+        return normalized.trim();
+    }
+}
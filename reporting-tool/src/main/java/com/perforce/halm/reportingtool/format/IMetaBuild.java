@@ -26,15 +26,75 @@
 
 package com.perforce.halm.reportingtool.format;
 
+import com.perforce.halm.reportingtool.metrics.RunMetrics;
 import com.perforce.halm.reportingtool.models.BuildMetadata;
+import com.perforce.halm.reportingtool.models.ConversionOptions;
+import com.perforce.halm.reportingtool.models.SkippedReportFile;
 import com.perforce.halm.rest.types.automation.build.AutomationBuild;
+import com.perforce.halm.rest.types.automation.build.AutomationResult;
+import com.perforce.halm.rest.types.automation.build.AutomationResultStatus;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 /**
  * Abstract class defining the interface for converting build artifacts into a Helix ALM AutomationBuild object.
  */
 public abstract class IMetaBuild {
+    protected RunMetrics metrics = RunMetrics.DISABLED;
+    protected ConversionOptions conversionOptions = new ConversionOptions();
+    protected List<SkippedReportFile> skippedReportFiles = new ArrayList<>();
+    protected int reportFileCount = 0;
+    protected UniqueNameTracker uniqueNameTracker = null;
+
+    /**
+     * @param metrics The metrics to record parsing and conversion measurements in
+     */
+    public void setMetrics(RunMetrics metrics) {
+        this.metrics = metrics != null ? metrics : RunMetrics.DISABLED;
+    }
+
+    /**
+     * @param conversionOptions The options for how results are converted, such as which results to keep
+     */
+    public void setConversionOptions(ConversionOptions conversionOptions) {
+        this.conversionOptions = conversionOptions != null ? conversionOptions : new ConversionOptions();
+    }
+
+    /**
+     * @param uniqueNameTracker The tracker that makes the uniqueNames of the converted results unique. By default, each
+     *                          conversion uses a new one.
+     */
+    public void setUniqueNameTracker(UniqueNameTracker uniqueNameTracker) {
+        this.uniqueNameTracker = uniqueNameTracker;
+    }
+
+    /**
+     * @return The report files skipped by the last conversion because they couldn't be read. Files are only
+     *         skipped when partial builds are allowed; otherwise the conversion fails.
+     */
+    public List<SkippedReportFile> getSkippedReportFiles() {
+        return this.skippedReportFiles;
+    }
+
+    /**
+     * @return The number of report files read by the last conversion, including skipped files
+     */
+    public int getReportFileCount() {
+        return this.reportFileCount;
+    }
+
+    /**
+     * @return The tracker for a new conversion
+     */
+    protected UniqueNameTracker createUniqueNameTracker() {
+        return this.uniqueNameTracker != null ? this.uniqueNameTracker : new UniqueNameTracker();
+    }
+
     /**
      * Function that processes the specified report files, and returns an automation build object that can be sent to Helix ALM
      *
@@ -43,5 +103,103 @@ public abstract class IMetaBuild {
      * @param buildMetadata The metadata for the build
      * @return See description
      */
-    public abstract AutomationBuild generateAutomationBuild(final String buildNumber, final List<String> reportFiles, final BuildMetadata buildMetadata);
+    public abstract AutomationBuild generateAutomationBuild(final String buildNumber, final Iterable<String> reportFiles, final BuildMetadata buildMetadata);
+
+    /**
+     * Function that processes the specified report files, passing each automation result to the consumer as soon as it
+     * has been converted instead of collecting them on the build. Returns the automation build object once all
+     * results have been passed along; the returned build does not contain any results.
+     * Formatters that can convert incrementally should override this. By default, the full build is generated first.
+     *
+     * @param buildNumber The build number to specify when submitting the build
+     * @param reportFiles The report files to format the build results for
+     * @param buildMetadata The metadata for the build
+     * @param resultConsumer The consumer to pass each automation result to
+     * @return See description
+     */
+    public AutomationBuild streamAutomationBuild(final String buildNumber, final Iterable<String> reportFiles, final BuildMetadata buildMetadata,
+                                                 final Consumer<AutomationResult> resultConsumer) {
+        AutomationBuild build = this.generateAutomationBuild(buildNumber, reportFiles, buildMetadata);
+        if (build != null && build.getResults() != null) {
+            build.getResults().forEach(resultConsumer);
+            build.setResults(null);
+        }
+        return build;
+    }
+
+    /**
+     * Function that processes the specified report files, passing each automation result to the consumer as soon as it
+     * has been converted, then returns a summary of the build. Results are converted on the calling thread, and the
+     * next one isn't converted until the consumer returns, so a slow consumer slows down parsing instead of results
+     * building up in memory.
+     *
+     * @param buildNumber The build number to specify when submitting the build
+     * @param reportFiles The report files to format the build results for
+     * @param buildMetadata The metadata for the build
+     * @param resultConsumer The consumer to pass each automation result to
+     * @return The build summary, or null if no build could be created from the report files
+     */
+    public BuildSummary streamResults(final String buildNumber, final Iterable<String> reportFiles, final BuildMetadata buildMetadata,
+                                      final Consumer<AutomationResult> resultConsumer) {
+        Map<AutomationResultStatus, Long> resultCounts = new EnumMap<>(AutomationResultStatus.class);
+        AutomationBuild build = this.streamAutomationBuild(buildNumber, reportFiles, buildMetadata, result -> {
+            resultCounts.merge(BuildSummary.getStatus(result), 1L, Long::sum);
+            resultConsumer.accept(result);
+        });
+        return build != null ? new BuildSummary(build, resultCounts) : null;
+    }
+
+    /**
+     * Function that starts processing the specified report files on the executor, and returns an iterator over the
+     * automation results. At most bufferSize results are converted ahead of the caller.
+     *
+     * @param buildNumber The build number to specify when submitting the build
+     * @param reportFiles The report files to format the build results for
+     * @param buildMetadata The metadata for the build
+     * @param bufferSize The maximum number of results converted ahead of the caller
+     * @param executor The executor to process the report files on
+     * @return The result iterator. Close it if the results aren't read to the end.
+     */
+    public AutomationResultIterator iterateResults(final String buildNumber, final Iterable<String> reportFiles, final BuildMetadata buildMetadata,
+                                                   final int bufferSize, final Executor executor) {
+        return new AutomationResultIterator(this, buildNumber, reportFiles, buildMetadata, bufferSize, executor);
+    }
+
+    /**
+     * Sets metadata on the build that is not related to the report file data.
+     *
+     * @param build The build to set data on
+     * @param buildNumber The build number to specify when submitting the build
+     * @param buildMetadata The metadata for the build
+     */
+    protected static void setBuildMetadata(AutomationBuild build, final String buildNumber, final BuildMetadata buildMetadata) {
+        build.setNumber(buildNumber);
+        if (buildMetadata != null) {
+            setIfNotEmpty(buildMetadata.getDescription(), build::setDescription);
+            setIfNotEmpty(buildMetadata.getBranch(), build::setBranch);
+            setIfNotEmpty(buildMetadata.getExternalURL(), build::setExternalURL);
+            setIfNotEmpty(buildMetadata.getSourceOverride(), build::setSourceOverride);
+            setIfNotEmpty(buildMetadata.getPendingRunID(), build::setPendingRunID);
+            if (buildMetadata.getTestRunSet() != null) {
+                build.setTestRunSet(buildMetadata.getTestRunSet());
+            }
+            if (buildMetadata.getRunConfigurationInfo() != null) {
+                build.setRunConfigurationInfo(buildMetadata.getRunConfigurationInfo());
+            }
+            if (buildMetadata.getProperties() != null) {
+                // Copied, since properties can be added to the build while it is converted.
+                build.setProperties(new ArrayList<>(buildMetadata.getProperties()));
+            }
+        }
+    }
+
+    /**
+     * @param value The value to set
+     * @param setterFn The setter, only called if the value isn't null or empty
+     */
+    private static void setIfNotEmpty(final String value, final Consumer<String> setterFn) {
+        if (value != null && !value.isEmpty()) {
+            setterFn.accept(value);
+        }
+    }
 }
@@ -28,6 +28,8 @@ package com.perforce.halm.reportingtool.format;
 
 import com.perforce.halm.rest.types.automation.build.AutomationResult;
 
+import java.util.function.Consumer;
+
 /**
  * Interface defining how we convert a build artifact into a Helix ALM AutomationResult object.
  */
@@ -39,4 +41,18 @@ public interface IMetaResult {
      * @return See description
      */
     AutomationResult formatResult(UniqueNameTracker uniqueNameTracker);
+
+    /**
+     * Function that converts the build result artifact, passing the Helix ALM AutomationResult object to the consumer.
+     * Used when streaming results, so formats that convert an artifact into no results, or several, can override it.
+     *
+     * @param uniqueNameTracker The uniqueName tracker that ensures uniqueNames are actually unique across all results
+     * @param resultConsumer The consumer to pass the converted result to
+     */
+    default void formatResult(UniqueNameTracker uniqueNameTracker, Consumer<AutomationResult> resultConsumer) {
+        AutomationResult result = this.formatResult(uniqueNameTracker);
+        if (result != null) {
+            resultConsumer.accept(result);
+        }
+    }
 }
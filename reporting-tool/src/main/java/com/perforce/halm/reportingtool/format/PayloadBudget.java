@@ -0,0 +1,202 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.format;
+
+import com.perforce.halm.rest.types.NameValuePair;
+import com.perforce.halm.rest.types.automation.build.AutomationBuild;
+import com.perforce.halm.rest.types.automation.build.AutomationResult;
+import com.perforce.halm.rest.types.automation.build.AutomationResultStatus;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps the results of a build within an overall size budget by removing detail from results as the budget is used up,
+ * instead of failing the submission. Room for the failure and error bodies still to come can be reserved ahead, so
+ * passing results that are sent first can't use it up. A passing result is sent without its properties and message
+ * if it would take the results, with the reserved room, past {@link #PASS_DETAILS_SHARE} of the budget. A failure or
+ * error is sent without its body if it would take them past the whole budget.
+ * <p>
+ * Every result is still sent, so the budget is only kept to while results fit in it. Once it is used up, passing
+ * results take the size of their name, status, duration and other identifying fields, and failures and errors also
+ * keep their message and remaining properties, which only the field limits cap.
+ * Sizes are estimated from the result's text, not measured. The reservation is an upper bound: failures that are
+ * filtered out or merged into another result never give back their room, which only means passes lose detail sooner.
+ */
+public class PayloadBudget {
+    /** Build property with the number of passing results sent without their details */
+    public static final String DROPPED_PASS_DETAILS_PROPERTY = "budgetDroppedPassDetails";
+    /** Build property with the number of results sent without their failure or error body */
+    public static final String DROPPED_BODIES_PROPERTY = "budgetDroppedBodies";
+    /** The share of the budget that passing results can use with their details */
+    public static final double PASS_DETAILS_SHARE = 0.75;
+
+    private static final Set<String> BODY_PROPERTIES = new HashSet<>(Arrays.asList("failureValue", "errorValue"));
+    private static final int BODY_NAME_BYTES = "failureValue".length();
+    // Rough size of the JSON field names and punctuation for a result, and for each property
+    private static final int RESULT_OVERHEAD_BYTES = 160;
+    private static final int PROPERTY_OVERHEAD_BYTES = 24;
+
+    private final long budgetBytes;
+    private long usedBytes = 0;
+    private long reservedBytes = 0;
+    private long droppedPassDetails = 0;
+    private long droppedBodies = 0;
+
+    /**
+     * Constructor
+     *
+     * @param budgetBytes The estimated size all the results can use, or 0 for no budget
+     */
+    public PayloadBudget(final long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * @return Whether there is a budget to keep to
+     */
+    public boolean isActive() {
+        return this.budgetBytes > 0;
+    }
+
+    /**
+     * Sets aside room for a failure or error body that has yet to be sent.
+     *
+     * @param bodyLength The length of the body
+     */
+    public void reserveBody(final long bodyLength) {
+        if (this.isActive()) {
+            this.reservedBytes += PROPERTY_OVERHEAD_BYTES + BODY_NAME_BYTES + bodyLength;
+        }
+    }
+
+    /**
+     * Sets aside room for the failure and error bodies of a result that is read ahead of being sent.
+     *
+     * @param result The result
+     */
+    public void reserveBodies(final AutomationResult result) {
+        if (this.isActive() && result.getProperties() != null) {
+            for (NameValuePair property : result.getProperties()) {
+                if (BODY_PROPERTIES.contains(property.getName())) {
+                    this.reserveBody(length(property.getValue()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Gives back the room reserved for the result's failure or error body. This must be called before anything else
+     * removes the body, such as the failure deduplicator, or the room is held until the end.
+     *
+     * @param result The result about to be sent
+     */
+    public void release(final AutomationResult result) {
+        if (this.isActive() && result.getProperties() != null) {
+            for (NameValuePair property : result.getProperties()) {
+                if (BODY_PROPERTIES.contains(property.getName())) {
+                    this.reservedBytes -= Math.min(this.reservedBytes, PROPERTY_OVERHEAD_BYTES + BODY_NAME_BYTES + length(property.getValue()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes detail from the result if it doesn't fit in what is left of the budget, then counts it against the budget.
+     *
+     * @param result The result about to be sent
+     */
+    public void apply(AutomationResult result) {
+        if (!this.isActive()) {
+            return;
+        }
+        long resultBytes = estimateBytes(result);
+        if (BuildSummary.getStatus(result) == AutomationResultStatus.PASSED) {
+            if (this.usedBytes + this.reservedBytes + resultBytes > this.budgetBytes * PASS_DETAILS_SHARE
+                    && (result.getProperties() != null || result.getErrorMessage() != null)) {
+                result.setProperties(null);
+                result.setErrorMessage(null);
+                this.droppedPassDetails++;
+                resultBytes = estimateBytes(result);
+            }
+        } else if (this.usedBytes + this.reservedBytes + resultBytes > this.budgetBytes && result.getProperties() != null
+                && result.getProperties().removeIf(property -> BODY_PROPERTIES.contains(property.getName()))) {
+            this.droppedBodies++;
+            resultBytes = estimateBytes(result);
+        }
+        this.usedBytes += resultBytes;
+    }
+
+    /**
+     * Adds the number of results that lost detail to the build properties. Nothing is added if every result was sent in full.
+     *
+     * @param build The build to add properties to
+     */
+    public void addBuildProperties(final AutomationBuild build) {
+        if (this.droppedPassDetails > 0) {
+            build.addProperty(new NameValuePair(DROPPED_PASS_DETAILS_PROPERTY, String.valueOf(this.droppedPassDetails)));
+        }
+        if (this.droppedBodies > 0) {
+            build.addProperty(new NameValuePair(DROPPED_BODIES_PROPERTY, String.valueOf(this.droppedBodies)));
+        }
+    }
+
+    public long getUsedBytes() { return this.usedBytes; }
+    public long getReservedBytes() { return this.reservedBytes; }
+    public long getDroppedPassDetails() { return this.droppedPassDetails; }
+    public long getDroppedBodies() { return this.droppedBodies; }
+
+    /**
+     * @param result The result
+     * @return The estimated size of the result when it is sent
+     */
+    static long estimateBytes(final AutomationResult result) {
+        long bytes = RESULT_OVERHEAD_BYTES + length(result.getName()) + length(result.getUniqueName()) + length(result.getErrorMessage())
+                + length(result.getDevice()) + length(result.getManufacturer()) + length(result.getModel()) + length(result.getOS())
+                + length(result.getOSVersion()) + length(result.getBrowser()) + length(result.getBrowserVersion())
+                + length(result.getExternalURL()) + length(result.getStartDate());
+        List<String> tags = result.getTags();
+        if (tags != null) {
+            for (String tag : tags) {
+                bytes += length(tag) + 3;
+            }
+        }
+        List<NameValuePair> properties = result.getProperties();
+        if (properties != null) {
+            for (NameValuePair property : properties) {
+                bytes += PROPERTY_OVERHEAD_BYTES + length(property.getName()) + length(property.getValue());
+            }
+        }
+        return bytes;
+    }
+
+    private static int length(final String value) {
+        return value != null ? value.length() : 0;
+    }
+}
@@ -28,6 +28,7 @@ package com.perforce.halm.reportingtool.format;
 
 import com.perforce.halm.reportingtool.format.junit.JUnitMetaBuild;
 import com.perforce.halm.reportingtool.format.junit.JUnitMetaResult;
+import com.perforce.halm.reportingtool.format.shard.ShardMetaBuild;
 
 import java.security.InvalidParameterException;
 
@@ -47,6 +48,8 @@ public final class ReportFormatFactory {
             case JUnit:
             case xUnit: // Treat xUnit the same as JUnit. The XML schemas are close enough that we shouldn't need a different parser.
                 return new JUnitMetaBuild();
+            case Shard:
+                return new ShardMetaBuild();
             default:
                 throw new InvalidParameterException("Report format type is not supported.");
         }
@@ -31,5 +31,9 @@ package com.perforce.halm.reportingtool.format;
  */
 public enum ReportFormatType {
     JUnit,
-    xUnit
+    xUnit,
+    /**
+     * Shard files written with --convert-shard on each node of a sharded test run, merged into one build
+     */
+    Shard
 }
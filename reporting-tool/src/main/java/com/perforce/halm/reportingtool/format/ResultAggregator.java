@@ -0,0 +1,154 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.format;
+
+import com.perforce.halm.rest.types.IDLabelPair;
+import com.perforce.halm.rest.types.NameValuePair;
+import com.perforce.halm.rest.types.automation.build.AutomationResult;
+import com.perforce.halm.rest.types.automation.build.AutomationResultStatus;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Combines groups of results, such as the invocations of a parameterized test or the tests in a class, into a single
+ * result each. Members are folded into their group as they are added, so only one result per group is held.
+ * A group's status is the worst of its members (failed, then unknown, then skipped, then passed), its duration is the
+ * sum of theirs, and failed members are listed in its properties. Groups are passed along in the order they were first
+ * seen.
+ */
+public class ResultAggregator {
+    /** Result property with the number of results combined into the group */
+    public static final String MEMBER_COUNT_PROPERTY = "memberCount";
+    /** Result property naming a failed member, with its error message if it has one */
+    public static final String FAILED_MEMBER_PROPERTY = "failedMember";
+    /** Result property with the number of failed members not listed, once the limit is reached */
+    public static final String OMITTED_FAILED_MEMBERS_PROPERTY = "omittedFailedMembers";
+    /** The most failed members listed on a group */
+    public static final int MAX_FAILED_MEMBERS = 100;
+
+    private final Map<String, Group> groups = new LinkedHashMap<>();
+
+    /**
+     * The combined result for a group, and the counts needed to finish it
+     */
+    private static final class Group {
+        private final AutomationResult result = new AutomationResult();
+        private AutomationResultStatus status = null;
+        private long duration = 0;
+        private int memberCount = 0;
+        private int failedMembers = 0;
+    }
+
+    /**
+     * Adds a result to its group.
+     *
+     * @param groupKey The key shared by every member of the group
+     * @param groupName The name of the combined result
+     * @param groupUniqueName The uniqueName of the combined result, before it is made unique across the build
+     * @param member The result to add
+     */
+    public void add(final String groupKey, final String groupName, final String groupUniqueName, final AutomationResult member) {
+        Group group = this.groups.get(groupKey);
+        if (group == null) {
+            group = new Group();
+            group.result.setName(groupName);
+            group.result.setUniqueName(groupUniqueName);
+            // Descriptive fields come from the first member.
+            group.result.setTags(member.getTags());
+            group.result.setDevice(member.getDevice());
+            group.result.setManufacturer(member.getManufacturer());
+            group.result.setModel(member.getModel());
+            group.result.setOS(member.getOS());
+            group.result.setOSVersion(member.getOSVersion());
+            group.result.setBrowser(member.getBrowser());
+            group.result.setBrowserVersion(member.getBrowserVersion());
+            group.result.setExternalURL(member.getExternalURL());
+            group.result.setStartDate(member.getStartDate());
+            this.groups.put(groupKey, group);
+        }
+
+        AutomationResultStatus memberStatus = BuildSummary.getStatus(member);
+        if (group.status == null || severity(memberStatus) > severity(group.status)) {
+            group.status = memberStatus;
+        }
+        group.duration += member.getDuration() != null ? member.getDuration().longValue() : 0;
+        group.memberCount++;
+        if (memberStatus == AutomationResultStatus.FAILED) {
+            if (group.result.getErrorMessage() == null && member.getErrorMessage() != null) {
+                group.result.setErrorMessage(member.getErrorMessage());
+            }
+            if (++group.failedMembers <= MAX_FAILED_MEMBERS) {
+                String description = member.getErrorMessage() != null && !member.getErrorMessage().isEmpty()
+                        ? member.getName() + ": " + member.getErrorMessage() : member.getName();
+                group.result.addProperty(new NameValuePair(FAILED_MEMBER_PROPERTY, description));
+            }
+        }
+    }
+
+    /**
+     * @return The number of groups
+     */
+    public int getGroupCount() {
+        return this.groups.size();
+    }
+
+    /**
+     * Finishes every group and passes the combined results to the consumer, then clears the aggregator.
+     *
+     * @param uniqueNameTracker The uniqueName tracker that ensures uniqueNames are actually unique across all results
+     * @param resultConsumer The consumer to pass each combined result to
+     */
+    public void flush(final UniqueNameTracker uniqueNameTracker, final Consumer<AutomationResult> resultConsumer) {
+        for (Group group : this.groups.values()) {
+            AutomationResult result = group.result;
+            result.setStatus(new IDLabelPair(group.status.id(), ""));
+            result.setDuration(group.duration);
+            result.addProperty(new NameValuePair(MEMBER_COUNT_PROPERTY, String.valueOf(group.memberCount)));
+            if (group.failedMembers > MAX_FAILED_MEMBERS) {
+                result.addProperty(new NameValuePair(OMITTED_FAILED_MEMBERS_PROPERTY, String.valueOf(group.failedMembers - MAX_FAILED_MEMBERS)));
+            }
+            uniqueNameTracker.ensureUniqueNameForResult(result);
+            resultConsumer.accept(result);
+        }
+        this.groups.clear();
+    }
+
+    /**
+     * @param status The status
+     * @return How bad the status is, higher is worse
+     */
+    static int severity(final AutomationResultStatus status) {
+        switch (status) {
+            case FAILED: return 3;
+            case UNKNOWN: return 2;
+            case SKIPPED: return 1;
+            default: return 0;
+        }
+    }
+}
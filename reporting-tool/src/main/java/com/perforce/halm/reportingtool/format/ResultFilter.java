@@ -0,0 +1,272 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.format;
+
+import com.perforce.halm.reportingtool.models.ConversionOptions;
+import com.perforce.halm.rest.types.NameValuePair;
+import com.perforce.halm.rest.types.automation.build.AutomationBuild;
+import com.perforce.halm.rest.types.automation.build.AutomationResultStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Decides which results to keep while a build is converted, based on the conversion options, and counts what was
+ * dropped from that build. Formatters check each result before converting it, so dropped results are never created.
+ * When the runs of a test are merged, only the filters that don't depend on a run's outcome are checked first; the
+ * status filter and pass sampling are applied to the merged result.
+ */
+public class ResultFilter {
+    /** Build property with the number of results dropped by the include, exclude, status and tag filters */
+    public static final String EXCLUDED_RESULTS_PROPERTY = "excludedResults";
+    /** Build property with the number of passing results that matched the filters, before sampling */
+    public static final String PASSED_RESULTS_PROPERTY = "passedResults";
+    /** Build property with the number of passing results kept by sampling */
+    public static final String SAMPLED_PASSED_RESULTS_PROPERTY = "sampledPassedResults";
+
+    private final List<Pattern> includePatterns;
+    private final List<Pattern> excludePatterns;
+    private final Set<AutomationResultStatus> statuses;
+    private final Set<String> includeTags;
+    private final Set<String> excludeTags;
+    private final double passSampleRate;
+    private final boolean filtering;
+
+    private long excludedResults = 0;
+    private long passedResults = 0;
+    private long sampledPassedResults = 0;
+    // Tests dropped by acceptTest, so a test with several runs is only counted once
+    private final Set<String> excludedTests = new HashSet<>();
+
+    /**
+     * Constructor
+     *
+     * @param options The conversion options to filter with, may be null to keep every result
+     */
+    public ResultFilter(final ConversionOptions options) {
+        ConversionOptions filterOptions = options != null ? options : new ConversionOptions();
+        this.includePatterns = compileGlobs(filterOptions.getIncludePatterns());
+        this.excludePatterns = compileGlobs(filterOptions.getExcludePatterns());
+        this.statuses = filterOptions.getStatuses().isEmpty() ? EnumSet.allOf(AutomationResultStatus.class) : EnumSet.copyOf(filterOptions.getStatuses());
+        this.includeTags = new HashSet<>(filterOptions.getIncludeTags());
+        this.excludeTags = new HashSet<>(filterOptions.getExcludeTags());
+        this.passSampleRate = filterOptions.getPassSampleRate();
+        this.filtering = !this.includePatterns.isEmpty() || !this.excludePatterns.isEmpty() || !filterOptions.getStatuses().isEmpty() ||
+                !this.includeTags.isEmpty() || !this.excludeTags.isEmpty();
+    }
+
+    /**
+     * @return Whether any result could be dropped
+     */
+    public boolean isActive() {
+        return this.filtering || this.isSampling();
+    }
+
+    /**
+     * Checks whether a result should be kept. Passing results that match the filters are then sampled; the same
+     * sample key is always either kept or dropped for a given rate, so the same tests are reported from build to build.
+     *
+     * @param suiteName The name of the suite the result belongs to
+     * @param className The class name of the result
+     * @param status The status of the result
+     * @param tags Supplies the result's tags, only called if tag filters are set
+     * @param sampleKey Supplies a key identifying the test, such as its uniqueName, only called to sample passing results
+     * @return Whether to convert and keep the result
+     */
+    public boolean accept(final String suiteName, final String className, final AutomationResultStatus status,
+                          final Supplier<List<String>> tags, final Supplier<String> sampleKey) {
+        if (this.filtering && !(this.statuses.contains(status) && this.matchesTest(suiteName, className, tags))) {
+            this.excludedResults++;
+            return false;
+        }
+        return this.samplePassed(status, sampleKey);
+    }
+
+    /**
+     * Checks the filters that don't depend on how a run of the test turned out, for tests whose runs are merged before
+     * the rest are checked with {@link #acceptOutcome}. A test is only counted as excluded once, however many runs it has.
+     *
+     * @param suiteName The name of the suite the result belongs to
+     * @param className The class name of the result
+     * @param tags Supplies the result's tags, only called if tag filters are set
+     * @param sampleKey Supplies a key identifying the test, such as its uniqueName, only called if the test is dropped
+     * @return Whether to convert the run
+     */
+    public boolean acceptTest(final String suiteName, final String className, final Supplier<List<String>> tags,
+                              final Supplier<String> sampleKey) {
+        if (!this.filtering || this.matchesTest(suiteName, className, tags)) {
+            return true;
+        }
+        if (this.excludedTests.add(sampleKey.get())) {
+            this.excludedResults++;
+        }
+        return false;
+    }
+
+    /**
+     * Checks the status filter, then samples passing results, for a result whose runs have been merged.
+     *
+     * @param status The status of the merged result
+     * @param sampleKey Supplies a key identifying the test, such as its uniqueName, only called to sample passing results
+     * @return Whether to keep the result
+     */
+    public boolean acceptOutcome(final AutomationResultStatus status, final Supplier<String> sampleKey) {
+        if (!this.statuses.contains(status)) {
+            this.excludedResults++;
+            return false;
+        }
+        return this.samplePassed(status, sampleKey);
+    }
+
+    /**
+     * Adds the counts of dropped and sampled results to the build properties, so the build still reflects the full run.
+     *
+     * @param build The build to add properties to
+     */
+    public void addBuildProperties(final AutomationBuild build) {
+        if (this.filtering) {
+            build.addProperty(new NameValuePair(EXCLUDED_RESULTS_PROPERTY, String.valueOf(this.excludedResults)));
+        }
+        if (this.isSampling()) {
+            build.addProperty(new NameValuePair(PASSED_RESULTS_PROPERTY, String.valueOf(this.passedResults)));
+            build.addProperty(new NameValuePair(SAMPLED_PASSED_RESULTS_PROPERTY, String.valueOf(this.sampledPassedResults)));
+        }
+    }
+
+    public long getExcludedResults() { return this.excludedResults; }
+    public long getPassedResults() { return this.passedResults; }
+    public long getSampledPassedResults() { return this.sampledPassedResults; }
+
+    private boolean isSampling() {
+        return this.passSampleRate < 1;
+    }
+
+    /**
+     * Counts a passing result, and samples it.
+     *
+     * @param status The status of the result
+     * @param sampleKey Supplies a key identifying the test, only called to sample passing results
+     * @return Whether to keep the result; results that didn't pass are always kept
+     */
+    private boolean samplePassed(final AutomationResultStatus status, final Supplier<String> sampleKey) {
+        if (status == AutomationResultStatus.PASSED) {
+            this.passedResults++;
+            if (this.isSampling() && !isSampled(sampleKey.get(), this.passSampleRate)) {
+                return false;
+            }
+            this.sampledPassedResults++;
+        }
+        return true;
+    }
+
+    /**
+     * @param suiteName The name of the suite the result belongs to
+     * @param className The class name of the result
+     * @param tags Supplies the result's tags
+     * @return Whether the result passes the include, exclude and tag filters
+     */
+    private boolean matchesTest(final String suiteName, final String className, final Supplier<List<String>> tags) {
+        if (!this.includePatterns.isEmpty() && !matchesAny(this.includePatterns, suiteName, className)) {
+            return false;
+        }
+        if (matchesAny(this.excludePatterns, suiteName, className)) {
+            return false;
+        }
+        if (!this.includeTags.isEmpty() || !this.excludeTags.isEmpty()) {
+            List<String> resultTags = tags.get();
+            if (resultTags == null) {
+                resultTags = Collections.emptyList();
+            }
+            if (!this.includeTags.isEmpty() && resultTags.stream().noneMatch(this.includeTags::contains)) {
+                return false;
+            }
+            return resultTags.stream().noneMatch(this.excludeTags::contains);
+        }
+        return true;
+    }
+
+    private static boolean matchesAny(final List<Pattern> patterns, final String suiteName, final String className) {
+        for (Pattern pattern : patterns) {
+            if ((className != null && pattern.matcher(className).matches()) || (suiteName != null && pattern.matcher(suiteName).matches())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param sampleKey The key identifying the test
+     * @param rate The portion of keys to keep, from 0 to 1
+     * @return Whether the key is in the sample. Depends only on the key and rate, not the order results are checked in.
+     */
+    static boolean isSampled(final String sampleKey, final double rate) {
+        // Mix the string hash, so similar names are spread evenly over the range.
+        int hash = sampleKey != null ? sampleKey.hashCode() : 0;
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return (hash & 0xffffffffL) < (long) (rate * 0x100000000L);
+    }
+
+    /**
+     * Converts globs, where '*' matches any characters and '?' matches one character, to patterns.
+     *
+     * @param globs The globs to convert
+     * @return See description
+     */
+    private static List<Pattern> compileGlobs(final List<String> globs) {
+        List<Pattern> patterns = new ArrayList<>();
+        for (String glob : globs) {
+            StringBuilder regex = new StringBuilder();
+            StringBuilder literal = new StringBuilder();
+            for (char c : glob.toCharArray()) {
+                if (c == '*' || c == '?') {
+                    if (literal.length() > 0) {
+                        regex.append(Pattern.quote(literal.toString()));
+                        literal.setLength(0);
+                    }
+                    regex.append(c == '*' ? ".*" : ".");
+                } else {
+                    literal.append(c);
+                }
+            }
+            if (literal.length() > 0) {
+                regex.append(Pattern.quote(literal.toString()));
+            }
+            patterns.add(Pattern.compile(regex.toString(), Pattern.DOTALL));
+        }
+        return patterns;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.format;
+
+/**
+ * How finely test results are reported
+ */
+@SuppressWarnings({"squid:S115"})
+public enum ResultGranularity {
+    /**
+     * One result per testcase
+     */
+    testcase,
+    /**
+     * One result per test, combining the invocations of a parameterized test, such as name[1] and name[2]
+     */
+    parameterized,
+    /**
+     * One result per test class, combining all of its testcases
+     */
+    testclass;
+
+    /**
+     * Removes the trailing parameter suffix from a parameterized test name, such as "[1]" or "[a, [b]]".
+     *
+     * @param name The test name
+     * @return The name without the suffix, or the name unchanged if it has none
+     */
+    public static String stripParameterSuffix(final String name) {
+        if (name == null || !name.endsWith("]")) {
+            return name;
+        }
+        int depth = 0;
+        for (int i = name.length() - 1; i >= 0; i--) {
+            char c = name.charAt(i);
+            if (c == ']') {
+                depth++;
+            } else if (c == '[' && --depth == 0) {
+                String stripped = name.substring(0, i).trim();
+                return stripped.isEmpty() ? name : stripped;
+            }
+        }
+        return name;
+    }
+}
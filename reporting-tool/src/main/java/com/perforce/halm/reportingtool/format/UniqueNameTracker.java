@@ -26,6 +26,7 @@
 
 package com.perforce.halm.reportingtool.format;
 
+import com.perforce.halm.reportingtool.events.ReportingEvents;
 import com.perforce.halm.rest.types.automation.build.AutomationResult;
 
 import java.util.HashSet;
@@ -33,6 +34,7 @@ import java.util.Set;
 
 /**
  * As automated test results require a uniqueName be provided, using this tracker class helps ensure we generate unique names.
+ * Trackers are not thread safe; use one per build.
  */
 public class UniqueNameTracker {
     private final Set<String> allUniqueNames = new HashSet<>();
@@ -66,6 +68,9 @@ public class UniqueNameTracker {
         }
 
         // TODO: ENHANCEMENT: Implement better logging. If uniqueName != name, We should write out some kind of log message indicating that there is a name collision, and test results will not be reliable between two builds.
+        if (identifier > 1) {
+            ReportingEvents.get().uniqueNameCollision(name, uniqueName);
+        }
         return uniqueName;
     }
 }
@@ -26,21 +26,59 @@
 
 package com.perforce.halm.reportingtool.format.junit;
 
+import com.perforce.halm.reportingtool.events.ReportingEvent;
+import com.perforce.halm.reportingtool.events.ReportingEvents;
+import com.perforce.halm.reportingtool.format.BuildSummary;
+import com.perforce.halm.reportingtool.format.DuplicateResultMerger;
+import com.perforce.halm.reportingtool.format.FailureDeduplicator;
 import com.perforce.halm.reportingtool.format.IMetaBuild;
+import com.perforce.halm.reportingtool.format.PayloadBudget;
+import com.perforce.halm.reportingtool.format.ResultAggregator;
+import com.perforce.halm.reportingtool.format.ResultFilter;
+import com.perforce.halm.reportingtool.format.ResultGranularity;
 import com.perforce.halm.reportingtool.format.UniqueNameTracker;
 import com.perforce.halm.reportingtool.format.junit.parser.JUnitJAXBParser;
 import com.perforce.halm.reportingtool.format.junit.parser.JUnitTestCase;
 import com.perforce.halm.reportingtool.format.junit.parser.JUnitTestSuite;
+import com.perforce.halm.reportingtool.input.ReportFileList;
+import com.perforce.halm.reportingtool.metrics.RunMetrics;
+import com.perforce.halm.reportingtool.metrics.RunPhase;
 import com.perforce.halm.reportingtool.models.BuildMetadata;
+import com.perforce.halm.reportingtool.models.ConversionOptions;
+import com.perforce.halm.reportingtool.models.SkippedReportFile;
+import com.perforce.halm.rest.types.NameValuePair;
 import com.perforce.halm.rest.types.automation.build.AutomationBuild;
+import com.perforce.halm.rest.types.automation.build.AutomationResult;
+import com.perforce.halm.rest.types.automation.build.AutomationResultStatus;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Build formatter object for handling JUnit XML build assets.
  * Responsible for initiating the parser, then creating Helix ALM automation build objects from the results.
+ * When duplicate results are merged, results are held until every report file is read, since a duplicate can be in any
+ * of them; otherwise each result is passed along as soon as it is converted.
  */
 public class JUnitMetaBuild extends IMetaBuild {
+    /** Build property with the number of fields truncated to their size limit */
+    public static final String TRUNCATED_FIELDS_PROPERTY = "truncatedFields";
+    /** Build property with the number of invalid characters repaired in the report files */
+    public static final String REPAIRED_CHARACTERS_PROPERTY = "repairedCharacters";
+    /** Build property with the number of report files skipped because they couldn't be read */
+    public static final String SKIPPED_REPORT_FILES_PROPERTY = "skippedReportFiles";
+    /** Build property describing a skipped report file and its error */
+    public static final String SKIPPED_REPORT_FILE_PROPERTY = "skippedReportFile";
+    /** Build property with the number of report files that ended part way through and were recovered */
+    public static final String TRUNCATED_REPORT_FILES_PROPERTY = "truncatedReportFiles";
+    /** Build property naming a report file that ended part way through, and the line it ended on */
+    public static final String TRUNCATED_REPORT_FILE_PROPERTY = "truncatedReportFile";
+    /** The most skipped or truncated report files listed in the build properties */
+    public static final int MAX_SKIPPED_FILE_PROPERTIES = 100;
+
     /**
      * Function that processes the specified report files, and returns an automation build object that can be sent to Helix ALM
      *
@@ -49,83 +87,277 @@ public class JUnitMetaBuild extends IMetaBuild {
      * @param buildMetadata The metadata for the build
      * @return See description
      */
-    public AutomationBuild generateAutomationBuild(final String buildNumber, final List<String> reportFiles, final BuildMetadata buildMetadata) {
-        try {
-            JUnitJAXBParser parser = new JUnitJAXBParser(reportFiles);
-            return convertTestSuitesIntoBuild(parser.parseReportFiles(), buildNumber, buildMetadata);
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new RuntimeException(e);
+    public AutomationBuild generateAutomationBuild(final String buildNumber, final Iterable<String> reportFiles, final BuildMetadata buildMetadata) {
+        List<AutomationResult> results = new ArrayList<>();
+        AutomationBuild build = this.streamAutomationBuild(buildNumber, reportFiles, buildMetadata, results::add);
+        if (build != null) {
+            results.forEach(build::addResult);
         }
+        return build;
     }
 
     /**
-     * Converts the JUnit test suites that were parsed from the XML report files into an AutomationBuild object
+     * Function that processes the specified report files one at a time, passing each automation result to the consumer as
+     * soon as it has been converted. Returns the automation build object, without results, once all files are processed.
      *
-     * @param testSuites The suites to convert
      * @param buildNumber The build number to specify when submitting the build
+     * @param reportFiles The report files to format the build results for
      * @param buildMetadata The metadata for the build
+     * @param resultConsumer The consumer to pass each automation result to
      * @return See description
      */
-    private AutomationBuild convertTestSuitesIntoBuild(final List<JUnitTestSuite> testSuites,
-                                                       final String buildNumber, final BuildMetadata buildMetadata) {
-        if (!testSuites.isEmpty()) {
-            // Create the build, and set unrelated metadata on the build object.
-            AutomationBuild build = new AutomationBuild();
-            setBuildMetadata(build, buildNumber, buildMetadata);
-
-            // We want to keep track of the oldest and newest timestamps given, for setting startDate and duration values.
-            // If timestamps are not provided, then we will have to assume sequential testing and just total the duration values.
-            JUnitBuildTimingInfo timingInfo = new JUnitBuildTimingInfo();
-            UniqueNameTracker uniqueNameTracker = new UniqueNameTracker();
-            for (final JUnitTestSuite suite : testSuites) {
-                // Update timing information
-                timingInfo.updateTimeDataForTestSuite(suite);
-
-                // Loop through the test cases in this suite, adding each one to the build.
-                if (suite.getTestCases() != null) {
-                    for (final JUnitTestCase testCase : suite.getTestCases()) {
-                        // Before adding the result, if we don't have a duration from the suite update timings based on the result.
-                        if (suite.getTime() <= 0) {
-                            timingInfo.updateTimeDataForTestCase(testCase);
+    @Override
+    public AutomationBuild streamAutomationBuild(final String buildNumber, final Iterable<String> reportFiles, final BuildMetadata buildMetadata,
+                                                 final Consumer<AutomationResult> resultConsumer) {
+        try {
+            ConversionState state = new ConversionState(this.conversionOptions, this.createUniqueNameTracker(), resultConsumer);
+            JUnitJAXBParser parser = new JUnitJAXBParser(reportFiles);
+            final RunMetrics runMetrics = this.metrics;
+            parser.setMetrics(runMetrics);
+            parser.setDoctypePolicy(this.conversionOptions.getDoctypePolicy());
+            parser.setSanitizeInput(this.conversionOptions.isSanitizeInput());
+            parser.setSkipInvalidFiles(this.conversionOptions.isAllowPartialBuilds());
+            parser.setSalvageTruncatedFiles(this.conversionOptions.isSalvageTruncatedReports());
+            this.skippedReportFiles = parser.getSkippedFiles();
+            parser.setFieldLimits(this.conversionOptions.getMaxMessageBytes(), this.conversionOptions.getMaxBodyBytes(),
+                    this.conversionOptions.getMaxPropertyBytes());
+            if (this.conversionOptions.isHoistConstantAttributes()) {
+                state.hoistedAttributes = parser.findConstantTestCaseAttributes(JUnitMetaResult.RESULT_SPECIFIC_ATTRIBUTES);
+            }
+            if (state.payloadBudget.isActive() && (this.conversionOptions.getStatuses().isEmpty()
+                    || this.conversionOptions.getStatuses().contains(AutomationResultStatus.FAILED))) {
+                // Failures can come after any number of passes, so their bodies are counted before anything is sent.
+                parser.measureFailureBodies(state.payloadBudget::reserveBody);
+            }
+            int suiteCount = parser.parseReportFiles(suite -> {
+                long startTime = runMetrics.startTimer();
+                ReportingEvent conversionEvent = ReportingEvents.get().beginSuiteConversion(suite.getName(),
+                        suite.getTestCases() != null ? suite.getTestCases().size() : 0);
+                convertTestSuite(suite, state);
+                conversionEvent.end();
+                runMetrics.recordPhase(RunPhase.convert, startTime);
+            });
+            state.duplicateMerger.flush(state.uniqueNameTracker, result -> {
+                // The status filter and sampling apply to the merged result, not to each run.
+                if (state.resultFilter.acceptOutcome(BuildSummary.getStatus(result), result::getUniqueName)) {
+                    this.recordResult(result, state);
+                }
+            });
+            this.reportFileCount = parser.getReportFileCount();
+            if (reportFiles instanceof ReportFileList) {
+                // Listed report files that don't exist never reach the parser, but are skipped all the same.
+                for (SkippedReportFile missingFile : ((ReportFileList) reportFiles).getMissingFiles()) {
+                    parser.getSkippedFiles().add(missingFile);
+                    runMetrics.recordSkippedReportFile(missingFile);
+                    this.reportFileCount++;
+                }
+            }
+            reportSkippedFiles(parser.getSkippedFiles(), this.reportFileCount);
+            if (suiteCount > 0) {
+                // Create the build, and set unrelated metadata on the build object.
+                AutomationBuild build = new AutomationBuild();
+                setBuildMetadata(build, buildNumber, buildMetadata);
+                for (Map.Entry<String, String> attribute : state.hoistedAttributes.entrySet()) {
+                    JUnitUtils.addPropertyForUnmappableAttribute(attribute.getKey(), attribute.getValue(), build::addProperty);
+                }
+
+                // Now that we've processed all the suites and test cases, we can finally set our timing information on the build.
+                state.timingInfo.setTimingInformationOnBuild(build);
+                state.resultFilter.addBuildProperties(build);
+                state.duplicateMerger.addBuildProperties(build);
+                if (state.failureDeduplicator != null) {
+                    state.failureDeduplicator.addBuildProperties(build);
+                }
+                if (parser.getTruncatedFields() > 0) {
+                    build.addProperty(new NameValuePair(TRUNCATED_FIELDS_PROPERTY, String.valueOf(parser.getTruncatedFields())));
+                }
+                if (!parser.getRepairedCharacters().isEmpty()) {
+                    long repaired = 0;
+                    for (Map.Entry<String, Long> file : parser.getRepairedCharacters().entrySet()) {
+                        //todo: ENHANCEMENT - Implement actual error logging.
+                        System.err.println(String.format("Repaired %d invalid characters in report file %s.", file.getValue(), file.getKey()));
+                        repaired += file.getValue();
+                    }
+                    build.addProperty(new NameValuePair(REPAIRED_CHARACTERS_PROPERTY, String.valueOf(repaired)));
+                }
+                state.payloadBudget.addBuildProperties(build);
+                if (!parser.getSalvagedFiles().isEmpty()) {
+                    build.addProperty(new NameValuePair(TRUNCATED_REPORT_FILES_PROPERTY, String.valueOf(parser.getSalvagedFiles().size())));
+                    int listed = 0;
+                    for (Map.Entry<String, Integer> file : parser.getSalvagedFiles().entrySet()) {
+                        //todo: ENHANCEMENT - Implement actual error logging.
+                        System.err.println(String.format("Report file %s ended part way through at line %d. Testcases closed before the end were kept.",
+                                file.getKey(), file.getValue()));
+                        if (listed++ < MAX_SKIPPED_FILE_PROPERTIES) {
+                            build.addProperty(new NameValuePair(TRUNCATED_REPORT_FILE_PROPERTY, String.format("%s (line %d)", file.getKey(), file.getValue())));
                         }
-                        build.addResult(new JUnitMetaResult(testCase, suite).formatResult(uniqueNameTracker));
                     }
                 }
+                if (!parser.getSkippedFiles().isEmpty()) {
+                    build.addProperty(new NameValuePair(SKIPPED_REPORT_FILES_PROPERTY, String.valueOf(parser.getSkippedFiles().size())));
+                    for (SkippedReportFile skippedFile : parser.getSkippedFiles().subList(0, Math.min(parser.getSkippedFiles().size(), MAX_SKIPPED_FILE_PROPERTIES))) {
+                        build.addProperty(new NameValuePair(SKIPPED_REPORT_FILE_PROPERTY, skippedFile.toString()));
+                    }
+                }
+                return build;
             }
-
-            // Now that we've processed all the suites and test cases, we can finally set our timing information on the build.
-            timingInfo.setTimingInformationOnBuild(build);
-
-            return build;
+            return null;
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new RuntimeException(e);
         }
-        return null;
     }
 
     /**
-     * Sets metadata on the build that is not related to the test suite or test case JUnit data.
+     * Writes the skipped report files to standard error, so they can be found in the run output.
      *
-     * @param build The build to set data on
-     * @param buildNumber The build number to specify when submitting the build
-     * @param buildMetadata The metadata for the build
+     * @param skippedFiles The skipped report files
+     * @param reportFileCount The number of report files in the build
      */
-    private void setBuildMetadata(AutomationBuild build, final String buildNumber, final BuildMetadata buildMetadata) {
-        build.setNumber(buildNumber);
-        if (buildMetadata != null) {
-            JUnitUtils.setStringValueIfValid(buildMetadata::getDescription, build::setDescription);
-            JUnitUtils.setStringValueIfValid(buildMetadata::getBranch, build::setBranch);
-            JUnitUtils.setStringValueIfValid(buildMetadata::getExternalURL, build::setExternalURL);
-            JUnitUtils.setStringValueIfValid(buildMetadata::getSourceOverride, build::setSourceOverride);
-            JUnitUtils.setStringValueIfValid(buildMetadata::getPendingRunID, build::setPendingRunID);
-            if (buildMetadata.getTestRunSet() != null) {
-                build.setTestRunSet(buildMetadata.getTestRunSet());
+    private static void reportSkippedFiles(final List<SkippedReportFile> skippedFiles, final int reportFileCount) {
+        if (!skippedFiles.isEmpty()) {
+            //todo: ENHANCEMENT - Implement actual error logging.
+            System.err.println(String.format("Skipped %d of %d report files that could not be read:", skippedFiles.size(), reportFileCount));
+            for (SkippedReportFile skippedFile : skippedFiles) {
+                System.err.println("  " + skippedFile);
             }
-            if (buildMetadata.getRunConfigurationInfo() != null) {
-                build.setRunConfigurationInfo(buildMetadata.getRunConfigurationInfo());
+        }
+    }
+
+    /**
+     * Everything tracked while converting the test suites of one build
+     */
+    private static final class ConversionState {
+        /**
+         * Tracker used when uniqueNames are made unique later: for the members of a group, the group's uniqueName is
+         * made unique instead, and duplicates are merged before their uniqueName is made unique.
+         */
+        private static final UniqueNameTracker DEFERRED_TRACKER = new UniqueNameTracker() {
+            @Override
+            public void ensureUniqueNameForResult(AutomationResult result) {
+                // Made unique once the result is complete
             }
-            if (buildMetadata.getProperties() != null) {
-                build.setProperties(buildMetadata.getProperties());
+        };
+
+        // We want to keep track of the oldest and newest timestamps given, for setting startDate and duration values.
+        // If timestamps are not provided, then we will have to assume sequential testing and just total the duration values.
+        private final JUnitBuildTimingInfo timingInfo = new JUnitBuildTimingInfo();
+        private final UniqueNameTracker uniqueNameTracker;
+        private final ResultFilter resultFilter;
+        private final ResultGranularity granularity;
+        private final ResultAggregator aggregator = new ResultAggregator();
+        private final DuplicateResultMerger duplicateMerger;
+        private final Consumer<AutomationResult> resultConsumer;
+        // Attributes with the same value on every test case, which are added to the build instead of each result.
+        private Map<String, String> hoistedAttributes = Collections.emptyMap();
+        private final FailureDeduplicator failureDeduplicator;
+        private final PayloadBudget payloadBudget;
+
+        ConversionState(final ConversionOptions options, final UniqueNameTracker uniqueNameTracker, final Consumer<AutomationResult> resultConsumer) {
+            this.uniqueNameTracker = uniqueNameTracker;
+            this.failureDeduplicator = options.isDeduplicateFailures() ? new FailureDeduplicator(options.isFingerprintLineNumbers()) : null;
+            this.payloadBudget = new PayloadBudget(options.getPayloadBudgetBytes());
+            this.resultFilter = new ResultFilter(options);
+            this.granularity = options.getGranularity();
+            this.duplicateMerger = new DuplicateResultMerger(options.getDuplicatePolicy());
+            this.resultConsumer = resultConsumer;
+        }
+    }
+
+    /**
+     * Converts a JUnit test suite that was parsed from an XML report file into automation results
+     *
+     * @param suite The suite to convert
+     * @param state The conversion state for the build
+     */
+    private void convertTestSuite(final JUnitTestSuite suite, final ConversionState state) {
+        // Update timing information
+        state.timingInfo.updateTimeDataForTestSuite(suite);
+        this.metrics.recordSuite();
+
+        // Duplicates are merged before results are made unique and recorded.
+        final UniqueNameTracker uniqueNameTracker = state.duplicateMerger.isActive() ? ConversionState.DEFERRED_TRACKER : state.uniqueNameTracker;
+        final Consumer<AutomationResult> convertedConsumer = state.duplicateMerger.isActive()
+                ? state.duplicateMerger::add : result -> this.recordResult(result, state);
+
+        // Loop through the test cases in this suite, adding each one to the build.
+        if (suite.getTestCases() != null) {
+            for (final JUnitTestCase testCase : suite.getTestCases()) {
+                // Before adding the result, if we don't have a duration from the suite update timings based on the result.
+                if (suite.getTime() <= 0) {
+                    state.timingInfo.updateTimeDataForTestCase(testCase);
+                }
+                // Timing includes every test case, since the build still took as long, but dropped ones aren't converted.
+                if (state.resultFilter.isActive() && !acceptTestCase(suite, testCase, state)) {
+                    continue;
+                }
+                JUnitMetaResult metaResult = new JUnitMetaResult(testCase, suite);
+                metaResult.setHoistedAttributes(state.hoistedAttributes.keySet());
+                if (state.granularity == ResultGranularity.testcase) {
+                    metaResult.formatResult(uniqueNameTracker, convertedConsumer);
+                } else {
+                    metaResult.formatResult(ConversionState.DEFERRED_TRACKER, member -> addGroupMember(suite, testCase, member, state));
+                }
             }
         }
+
+        // Groups don't span suites, since the suite name is part of the uniqueName, so they're complete now.
+        state.aggregator.flush(uniqueNameTracker, convertedConsumer);
+    }
+
+    /**
+     * Checks a test case against the result filter. If duplicates are merged, a test case is only one run of its test,
+     * so only the filters that don't depend on its outcome are checked, and the rest are checked once it is merged.
+     *
+     * @param suite The suite the test case belongs to
+     * @param testCase The test case
+     * @param state The conversion state for the build
+     * @return Whether to convert the test case
+     */
+    private static boolean acceptTestCase(final JUnitTestSuite suite, final JUnitTestCase testCase, final ConversionState state) {
+        if (state.duplicateMerger.isActive()) {
+            return state.resultFilter.acceptTest(suite.getName(), testCase.getClassName(), () -> JUnitMetaResult.getTags(testCase),
+                    () -> JUnitMetaResult.getRequestedUniqueName(testCase, suite));
+        }
+        return state.resultFilter.accept(suite.getName(), testCase.getClassName(), JUnitMetaResult.getStatus(testCase),
+                () -> JUnitMetaResult.getTags(testCase), () -> JUnitMetaResult.getRequestedUniqueName(testCase, suite));
+    }
+
+    /**
+     * Passes a finished result along, once its repeated failure bodies are removed and it fits the payload budget.
+     *
+     * @param result The result
+     * @param state The conversion state for the build
+     */
+    private void recordResult(final AutomationResult result, final ConversionState state) {
+        state.payloadBudget.release(result);
+        if (state.failureDeduplicator != null) {
+            state.failureDeduplicator.apply(result);
+        }
+        state.payloadBudget.apply(result);
+        this.metrics.recordResult(result);
+        state.resultConsumer.accept(result);
+    }
+
+    /**
+     * Adds a converted test case to the group for the configured granularity.
+     *
+     * @param suite The suite the test case belongs to
+     * @param testCase The test case
+     * @param member The converted test case
+     * @param state The conversion state for the build
+     */
+    private static void addGroupMember(final JUnitTestSuite suite, final JUnitTestCase testCase, final AutomationResult member,
+                                       final ConversionState state) {
+        String suiteName = JUnitUtils.getStringValueIfValid(suite::getName);
+        String className = JUnitUtils.getStringValueIfValid(testCase::getClassName);
+        if (state.granularity == ResultGranularity.testclass) {
+            state.aggregator.add(className, className.isEmpty() ? suiteName : className,
+                    String.format("%s:%s", suiteName, className), member);
+        } else {
+            String testName = ResultGranularity.stripParameterSuffix(JUnitUtils.getStringValueIfValid(testCase::getName));
+            state.aggregator.add(className + '\u0000' + testName, testName,
+                    String.format("%s:%s:%s", suiteName, className, testName), member);
+        }
     }
 }
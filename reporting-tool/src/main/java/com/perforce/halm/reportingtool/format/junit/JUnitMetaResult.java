@@ -26,11 +26,13 @@
 
 package com.perforce.halm.reportingtool.format.junit;
 
+import com.perforce.halm.reportingtool.format.DuplicateResultMerger;
 import com.perforce.halm.reportingtool.format.IMetaResult;
 import com.perforce.halm.reportingtool.format.UniqueNameTracker;
 import com.perforce.halm.reportingtool.format.junit.parser.JUnitTestCase;
 import com.perforce.halm.reportingtool.format.junit.parser.JUnitTestCaseError;
 import com.perforce.halm.reportingtool.format.junit.parser.JUnitTestCaseFailure;
+import com.perforce.halm.reportingtool.format.junit.parser.JUnitTestCaseRerun;
 import com.perforce.halm.reportingtool.format.junit.parser.JUnitTestCaseSkipped;
 import com.perforce.halm.reportingtool.format.junit.parser.JUnitTestSuite;
 import com.perforce.halm.rest.types.IDLabelPair;
@@ -38,16 +40,33 @@ import com.perforce.halm.rest.types.NameValuePair;
 import com.perforce.halm.rest.types.automation.build.AutomationResult;
 import com.perforce.halm.rest.types.automation.build.AutomationResultStatus;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Formatter object for converting JUnit XML objects into Helix ALM build results.
  */
 public class JUnitMetaResult implements IMetaResult {
+    /**
+     * Non-standard attributes that describe the individual result, so they are never moved to the build even when
+     * every result has the same value.
+     */
+    public static final Set<String> RESULT_SPECIFIC_ATTRIBUTES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "uniqueName", "tags", "externalURL", "errorMessage", "startDate")));
+
     private JUnitTestCase testCase;
 
     private JUnitTestSuite testSuite;
 
+    private Set<String> hoistedAttributes = Collections.emptySet();
+
+
     /**
      * Constructor
      */
@@ -78,6 +97,13 @@ public class JUnitMetaResult implements IMetaResult {
         this.testSuite = testSuite;
     }
 
+    /**
+     * @param hoistedAttributes Non-standard attributes that have been moved to the build, so are left off the result
+     */
+    public void setHoistedAttributes(Set<String> hoistedAttributes) {
+        this.hoistedAttributes = hoistedAttributes != null ? hoistedAttributes : Collections.emptySet();
+    }
+
     /**
      * Formats a result object from the JUnitTestCase specified
      *
@@ -91,8 +117,18 @@ public class JUnitMetaResult implements IMetaResult {
         result.setName(this.testCase.getName());
         result.setDuration(this.testCase.getTimeInMS());
 
-        // Map any non-standard attributes that match our result JSON properties
-        Map<String, String> nonStandardAttributes = this.testCase.getNonStandardLocalAttributes();
+        // Map any non-standard attributes that match our result JSON properties. Attributes hoisted to the build are
+        // left out of the copy they're mapped from.
+        Map<String, String> parsedAttributes = this.testCase.getNonStandardLocalAttributes();
+        Map<String, String> nonStandardAttributes = null;
+        if (parsedAttributes != null) {
+            nonStandardAttributes = new LinkedHashMap<>();
+            for (Map.Entry<String, String> attribute : parsedAttributes.entrySet()) {
+                if (!this.hoistedAttributes.contains(attribute.getKey())) {
+                    nonStandardAttributes.put(attribute.getKey(), attribute.getValue());
+                }
+            }
+        }
         if (nonStandardAttributes != null) {
             // Set uniqueName and tags if they are specified
             JUnitUtils.setStringPropertyFromNonStandardAttribute(nonStandardAttributes, "uniqueName", result::setUniqueName);
@@ -127,6 +163,47 @@ public class JUnitMetaResult implements IMetaResult {
 
 
 
+    /**
+     * Gets the status a test case will be converted to, without converting it.
+     *
+     * @param testCase The test case
+     * @return See description
+     */
+    public static AutomationResultStatus getStatus(final JUnitTestCase testCase) {
+        if (testCase.getError() != null || testCase.getFailure() != null) {
+            return AutomationResultStatus.FAILED;
+        }
+        return testCase.getSkipped() != null ? AutomationResultStatus.SKIPPED : AutomationResultStatus.PASSED;
+    }
+
+    /**
+     * Gets the tags a test case will be converted with, without converting it.
+     *
+     * @param testCase The test case
+     * @return See description, null if the test case has no tags
+     */
+    public static List<String> getTags(final JUnitTestCase testCase) {
+        List<List<String>> tags = new ArrayList<>(1);
+        JUnitUtils.setStringListPropertyFromNonStandardAttribute(testCase.getNonStandardLocalAttributes(), "tags", ",", tags::add);
+        return tags.isEmpty() ? null : tags.get(0);
+    }
+
+    /**
+     * Gets the uniqueName a test case asks for, before it is made unique across the build.
+     *
+     * @param testCase The test case
+     * @param testSuite The test suite the test case belongs to
+     * @return The test case's uniqueName attribute, or the name generated from its suite, class and test names
+     */
+    public static String getRequestedUniqueName(final JUnitTestCase testCase, final JUnitTestSuite testSuite) {
+        String uniqueName = testCase.getNonStandardLocalAttributes().get("uniqueName");
+        if (uniqueName == null || uniqueName.isEmpty()) {
+            uniqueName = String.format("%s:%s:%s", JUnitUtils.getStringValueIfValid(testSuite::getName),
+                    JUnitUtils.getStringValueIfValid(testCase::getClassName), JUnitUtils.getStringValueIfValid(testCase::getName));
+        }
+        return uniqueName;
+    }
+
     /**
      * Handles setting the result status values from the specified test case.
      *
@@ -145,6 +222,44 @@ public class JUnitMetaResult implements IMetaResult {
         else {
             result.setStatus(new IDLabelPair(AutomationResultStatus.PASSED.id(), ""));
         }
+        this.setRerunProperties(result);
+    }
+
+    /**
+     * Adds the runs of a test rerun by Maven Surefire to the result properties. A test that passed after failing is
+     * marked flaky, and every failed run is listed by its type and message.
+     *
+     * @param result The result to set data on
+     */
+    protected void setRerunProperties(AutomationResult result) {
+        int flakyRuns = this.testCase.getFlakyFailures().size() + this.testCase.getFlakyErrors().size();
+        int rerunRuns = this.testCase.getRerunFailures().size() + this.testCase.getRerunErrors().size();
+        if (flakyRuns + rerunRuns == 0) {
+            return;
+        }
+        result.addProperty(new NameValuePair(DuplicateResultMerger.ATTEMPTS_PROPERTY, String.valueOf(1 + flakyRuns + rerunRuns)));
+        if (flakyRuns > 0) {
+            result.addProperty(new NameValuePair(DuplicateResultMerger.FLAKY_PROPERTY, "true"));
+        }
+        addRerunProperties(result, "flakyFailure", this.testCase.getFlakyFailures());
+        addRerunProperties(result, "flakyError", this.testCase.getFlakyErrors());
+        addRerunProperties(result, "rerunFailure", this.testCase.getRerunFailures());
+        addRerunProperties(result, "rerunError", this.testCase.getRerunErrors());
+    }
+
+    /**
+     * Adds a property describing each rerun, with its type and message when they are known.
+     *
+     * @param result The result to set data on
+     * @param name The property name
+     * @param reruns The reruns
+     */
+    private static void addRerunProperties(AutomationResult result, final String name, final List<JUnitTestCaseRerun> reruns) {
+        for (JUnitTestCaseRerun rerun : reruns) {
+            String type = rerun.getType() != null ? rerun.getType() : "";
+            String message = rerun.getMessage() != null ? rerun.getMessage() : "";
+            result.addProperty(new NameValuePair(name, !type.isEmpty() && !message.isEmpty() ? type + ": " + message : type + message));
+        }
     }
 
     /**
@@ -44,22 +44,42 @@ import java.util.stream.Stream;
  * Utility class to hold common static functions used by the JUnit formatting objects.
  */
 public final class JUnitUtils {
-    private static JAXBContext cachedJAXBContext;
+    /**
+     * Holds the JUnit JAXBContext. The JVM creates it the first time the holder is used, exactly once, and makes it
+     * visible to every thread; callers on other threads wait for it rather than creating their own.
+     */
+    private static final class JAXBContextHolder {
+        private static final JAXBContext CONTEXT = createJAXBContext();
+    }
 
     /**
      * Creating a new instance of JAXBContext is expensive. We will create and cache our JUnit JAXBContext the first time it's requested.
      * @return See description
      */
     public static JAXBContext getJAXBContext() {
-        if (cachedJAXBContext == null) {
-            try {
-                cachedJAXBContext = JAXBContext.newInstance(ObjectFactory.class.getPackage().getName(), ObjectFactory.class.getClassLoader());
-            } catch (JAXBException e) {
-                e.printStackTrace();
-                return null;
-            }
+        return JAXBContextHolder.CONTEXT;
+    }
+
+    /**
+     * Starts creating the JUnit JAXBContext on a background thread, so it can overlap with other startup work such as
+     * parsing arguments or connecting to the Helix ALM REST API. {@link #getJAXBContext()} waits for it if needed.
+     */
+    public static void initializeJAXBContextInBackground() {
+        Thread thread = new Thread(JUnitUtils::getJAXBContext, "jaxb-context-init");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return A new JUnit JAXBContext, or null if it could not be created
+     */
+    private static JAXBContext createJAXBContext() {
+        try {
+            return JAXBContext.newInstance(ObjectFactory.class.getPackage().getName(), ObjectFactory.class.getClassLoader());
+        } catch (JAXBException e) {
+            e.printStackTrace();
+            return null;
         }
-        return cachedJAXBContext;
     }
 
     /**
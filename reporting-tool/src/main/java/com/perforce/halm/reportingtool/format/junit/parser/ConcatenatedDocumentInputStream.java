@@ -0,0 +1,298 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.format.junit.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream that splits a stream of XML documents written one after another, such as several reports piped to
+ * standard input, into one document at a time. The stream ends after the root element of the current document has
+ * been closed; {@link #nextDocument()} then moves on to the next one.
+ * <p>
+ * The markup is followed a byte at a time, counting elements while skipping comments, CDATA sections, processing
+ * instructions, DOCTYPE declarations and quoted attribute values, so this only needs to understand encodings where
+ * markup characters are single bytes, such as UTF-8 and the ISO-8859 encodings. A stream that starts with a UTF-16
+ * or UTF-32 byte order mark, or with a wide '&lt;', is passed through as a single document.
+ */
+public class ConcatenatedDocumentInputStream extends InputStream {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int TEXT = 0;
+    private static final int MARKUP = 1;
+    private static final int START_TAG = 2;
+    private static final int END_TAG = 3;
+    private static final int BANG = 4;
+    private static final int COMMENT_START = 5;
+    private static final int COMMENT = 6;
+    private static final int CDATA = 7;
+    private static final int DECLARATION = 8;
+    private static final int PROCESSING_INSTRUCTION = 9;
+
+    private final InputStream input;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    private boolean inputEnded = false;
+    private Boolean splitting = null;
+    private boolean documentEnded = false;
+    private long bytesRead = 0;
+
+    // Where the current document's markup is up to
+    private int state = TEXT;
+    private int depth = 0;
+    private int matched = 0;
+    private byte quote = 0;
+    private byte previous = 0;
+    private int bracketDepth = 0;
+
+    /**
+     * Constructor
+     *
+     * @param input The stream of documents
+     */
+    public ConcatenatedDocumentInputStream(final InputStream input) {
+        this.input = input;
+    }
+
+    /**
+     * @return The number of bytes read from the stream so far, across all documents
+     */
+    public long getBytesRead() { return this.bytesRead; }
+
+    /**
+     * Skips the rest of the current document, and any whitespace after it.
+     *
+     * @return Whether there is another document in the stream
+     * @throws IOException Thrown when the stream can't be read
+     */
+    public boolean nextDocument() throws IOException {
+        byte[] skipped = new byte[BUFFER_SIZE];
+        while (this.read(skipped, 0, skipped.length) >= 0) {
+            // Skipping the part of the document the XML reader didn't need.
+        }
+        this.documentEnded = false;
+        this.state = TEXT;
+        this.depth = 0;
+        this.matched = 0;
+        this.quote = 0;
+        this.previous = 0;
+        this.bracketDepth = 0;
+        while (this.fill()) {
+            byte next = this.buffer[this.position];
+            if (next != ' ' && next != '\t' && next != '\r' && next != '\n') {
+                return true;
+            }
+            this.position++;
+            this.bytesRead++;
+        }
+        return false;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return this.read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] target, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (this.documentEnded || !this.fill()) {
+            return -1;
+        }
+        int available = Math.min(length, this.limit - this.position);
+        int count = available;
+        if (this.splitting) {
+            for (int i = 0; i < available; i++) {
+                if (this.scan(this.buffer[this.position + i])) {
+                    count = i + 1;
+                    this.documentEnded = true;
+                    break;
+                }
+            }
+        }
+        System.arraycopy(this.buffer, this.position, target, offset, count);
+        this.position += count;
+        this.bytesRead += count;
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.input.close();
+    }
+
+    /**
+     * Reads more of the stream if the buffer is empty.
+     *
+     * @return Whether there is anything left to read
+     * @throws IOException Thrown when the stream can't be read
+     */
+    private boolean fill() throws IOException {
+        while (this.position >= this.limit && !this.inputEnded) {
+            int read = this.input.read(this.buffer, 0, this.buffer.length);
+            if (read < 0) {
+                this.inputEnded = true;
+            } else {
+                this.position = 0;
+                this.limit = read;
+            }
+        }
+        if (this.splitting == null && this.position < this.limit) {
+            this.splitting = !this.isWideEncoding();
+        }
+        return this.position < this.limit;
+    }
+
+    /**
+     * @return Whether the stream starts with a UTF-16 or UTF-32 byte order mark, or a '&lt;' wider than a byte
+     */
+    private boolean isWideEncoding() {
+        int first = this.buffer[this.position] & 0xFF;
+        int second = this.position + 1 < this.limit ? this.buffer[this.position + 1] & 0xFF : -1;
+        return (first == 0xFE && second == 0xFF) || (first == 0xFF && second == 0xFE) || first == 0x00 || (first == '<' && second == 0x00);
+    }
+
+    /**
+     * Follows the markup through one byte.
+     *
+     * @param c The byte
+     * @return Whether this byte closes the root element
+     */
+    private boolean scan(final byte c) {
+        switch (this.state) {
+            case TEXT:
+                if (c == '<') {
+                    this.state = MARKUP;
+                }
+                return false;
+            case MARKUP:
+                if (c == '?') {
+                    this.state = PROCESSING_INSTRUCTION;
+                    this.previous = 0;
+                } else if (c == '/') {
+                    this.state = END_TAG;
+                } else if (c == '!') {
+                    this.state = BANG;
+                } else {
+                    this.state = START_TAG;
+                    this.quote = 0;
+                    this.previous = c;
+                }
+                return false;
+            case BANG:
+                if (c == '-') {
+                    this.state = COMMENT_START;
+                } else if (c == '[') {
+                    this.state = CDATA;
+                    this.matched = 0;
+                } else {
+                    this.state = DECLARATION;
+                    this.quote = 0;
+                    this.bracketDepth = 0;
+                }
+                return false;
+            case COMMENT_START:
+                this.state = COMMENT;
+                this.matched = 0;
+                return false;
+            case COMMENT:
+                // Ends at "-->"
+                if (c == '-') {
+                    this.matched++;
+                } else {
+                    if (c == '>' && this.matched >= 2) {
+                        this.state = TEXT;
+                    }
+                    this.matched = 0;
+                }
+                return false;
+            case CDATA:
+                // Ends at "]]>"
+                if (c == ']') {
+                    this.matched++;
+                } else {
+                    if (c == '>' && this.matched >= 2) {
+                        this.state = TEXT;
+                    }
+                    this.matched = 0;
+                }
+                return false;
+            case PROCESSING_INSTRUCTION:
+                if (c == '>' && this.previous == '?') {
+                    this.state = TEXT;
+                }
+                this.previous = c;
+                return false;
+            case DECLARATION:
+                if (this.quote != 0) {
+                    if (c == this.quote) {
+                        this.quote = 0;
+                    }
+                } else if (c == '"' || c == '\'') {
+                    this.quote = c;
+                } else if (c == '[') {
+                    this.bracketDepth++;
+                } else if (c == ']') {
+                    this.bracketDepth--;
+                } else if (c == '>' && this.bracketDepth <= 0) {
+                    this.state = TEXT;
+                }
+                return false;
+            case START_TAG:
+                if (this.quote != 0) {
+                    if (c == this.quote) {
+                        this.quote = 0;
+                    }
+                } else if (c == '"' || c == '\'') {
+                    this.quote = c;
+                } else if (c == '>') {
+                    this.state = TEXT;
+                    if (this.previous != '/') {
+                        this.depth++;
+                    } else if (this.depth == 0) {
+                        // An empty root element
+                        return true;
+                    }
+                }
+                this.previous = c;
+                return false;
+            case END_TAG:
+                if (c == '>') {
+                    this.state = TEXT;
+                    this.depth--;
+                    return this.depth <= 0;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.format.junit.parser;
+
+/**
+ * How a DOCTYPE declaration in a report file is handled. External DTDs and entities are never loaded, so
+ * {@link #internal} is the default; {@link #ignore} and {@link #reject} are stricter options.
+ */
+@SuppressWarnings({"squid:S115"})
+public enum DoctypePolicy {
+    /**
+     * The DOCTYPE is skipped without being read. Reports that use entities declared in it fail to parse.
+     */
+    ignore,
+    /**
+     * A report with a DOCTYPE fails as soon as it is found, before anything else in the file is read
+     */
+    reject,
+    /**
+     * Entities declared in the DOCTYPE's internal subset are expanded, within the entity limits. An external DTD is still ignored.
+     * This is the default.
+     */
+    internal
+}
@@ -0,0 +1,327 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.format.junit.parser;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Streaming reader that limits the size of report fields as they are read, so an oversized field is never built up
+ * in full. Text in failure, error, system-out and system-err elements is limited to the body limit; once a body is over
+ * its limit, the rest of its character events are skipped and counted instead of passed along. Message attributes
+ * and property values are limited the same way. A truncated field keeps as much of its value as fits within the
+ * limit, followed by a marker with its original size in bytes. Sizes are measured in UTF-8 bytes.
+ */
+public class FieldLimitingStreamReader extends StreamReaderDelegate {
+    /** Appended to a truncated field, with the field's original size in bytes */
+    public static final String TRUNCATION_MARKER_FORMAT = "... [truncated from %d bytes]";
+
+    private static final Set<String> BODY_ELEMENTS = new HashSet<>(Arrays.asList("failure", "error", "system-out", "system-err"));
+    private static final Set<String> MESSAGE_ELEMENTS = new HashSet<>(Arrays.asList("failure", "error", "skipped",
+            "flakyFailure", "flakyError", "rerunFailure", "rerunError"));
+    private static final Set<String> UNLIMITED_TEST_CASE_ATTRIBUTES = new HashSet<>(Arrays.asList("name", "classname", "time", "uniqueName", "tags"));
+
+    private final int maxMessageBytes;
+    private final int maxBodyBytes;
+    private final int maxPropertyBytes;
+    private int truncatedFields = 0;
+
+    // The body being read, if the current element is limited
+    private boolean inBody = false;
+    private long bodyBytes = 0;
+    private boolean bodyTruncated = false;
+
+    // Replaces the current character event when a body is truncated. The parent reader is already on the event after it.
+    private String truncatedText = null;
+    private char[] truncatedChars = null;
+
+    /**
+     * Constructor
+     *
+     * @param reader The reader to limit
+     * @param maxMessageBytes The most bytes kept from a message attribute, or 0 for no limit
+     * @param maxBodyBytes The most bytes kept from a failure, error or output body, or 0 for no limit
+     * @param maxPropertyBytes The most bytes kept from a property value or unmapped testcase attribute, or 0 for no limit
+     */
+    public FieldLimitingStreamReader(final XMLStreamReader reader, final int maxMessageBytes, final int maxBodyBytes, final int maxPropertyBytes) {
+        super(reader);
+        this.maxMessageBytes = maxMessageBytes;
+        this.maxBodyBytes = maxBodyBytes;
+        this.maxPropertyBytes = maxPropertyBytes;
+    }
+
+    /**
+     * @return The number of fields that have been truncated so far
+     */
+    public int getTruncatedFields() { return this.truncatedFields; }
+
+    @Override
+    public int next() throws XMLStreamException {
+        if (this.truncatedText != null) {
+            this.truncatedText = null;
+            this.truncatedChars = null;
+            return this.track(super.getEventType());
+        }
+        int event = super.next();
+        if (!this.inBody || !isText(event)) {
+            return this.track(event);
+        }
+        if (this.bodyTruncated) {
+            // Text after a comment or processing instruction in a body that has already been truncated
+            return this.track(this.skipText());
+        }
+
+        char[] chars = super.getTextCharacters();
+        int start = super.getTextStart();
+        int length = super.getTextLength();
+        long remaining = this.maxBodyBytes - this.bodyBytes;
+        int eventBytes = utf8Length(chars, start, length);
+        if (eventBytes <= remaining) {
+            this.bodyBytes += eventBytes;
+            return event;
+        }
+
+        int kept = charsWithinBytes(chars, start, length, remaining);
+        String prefix = new String(chars, start, kept);
+        long originalBytes = this.bodyBytes + eventBytes;
+        while (isText(super.next())) {
+            originalBytes += utf8Length(super.getTextCharacters(), super.getTextStart(), super.getTextLength());
+        }
+        this.bodyTruncated = true;
+        this.truncatedFields++;
+        this.truncatedText = prefix + String.format(TRUNCATION_MARKER_FORMAT, originalBytes);
+        this.truncatedChars = this.truncatedText.toCharArray();
+        return XMLStreamConstants.CHARACTERS;
+    }
+
+    @Override
+    public int nextTag() throws XMLStreamException {
+        int event = this.next();
+        while ((isText(event) && this.isWhiteSpace()) || event == XMLStreamConstants.COMMENT || event == XMLStreamConstants.PROCESSING_INSTRUCTION) {
+            event = this.next();
+        }
+        if (event != XMLStreamConstants.START_ELEMENT && event != XMLStreamConstants.END_ELEMENT) {
+            throw new XMLStreamException("Expected a start or end tag.", this.getLocation());
+        }
+        return event;
+    }
+
+    @Override
+    public boolean hasNext() throws XMLStreamException {
+        return this.truncatedText != null || super.hasNext();
+    }
+
+    @Override
+    public int getEventType() {
+        return this.truncatedText != null ? XMLStreamConstants.CHARACTERS : super.getEventType();
+    }
+
+    @Override
+    public boolean isCharacters() {
+        return this.truncatedText != null || super.isCharacters();
+    }
+
+    @Override
+    public boolean isStartElement() {
+        return this.truncatedText == null && super.isStartElement();
+    }
+
+    @Override
+    public boolean isEndElement() {
+        return this.truncatedText == null && super.isEndElement();
+    }
+
+    @Override
+    public boolean isWhiteSpace() {
+        return this.truncatedText != null ? this.truncatedText.trim().isEmpty() : super.isWhiteSpace();
+    }
+
+    @Override
+    public boolean hasText() {
+        return this.truncatedText != null || super.hasText();
+    }
+
+    @Override
+    public String getText() {
+        return this.truncatedText != null ? this.truncatedText : super.getText();
+    }
+
+    @Override
+    public char[] getTextCharacters() {
+        return this.truncatedChars != null ? this.truncatedChars : super.getTextCharacters();
+    }
+
+    @Override
+    public int getTextCharacters(int sourceStart, char[] target, int targetStart, int length) throws XMLStreamException {
+        if (this.truncatedText != null) {
+            int copied = Math.max(0, Math.min(length, this.truncatedText.length() - sourceStart));
+            this.truncatedText.getChars(sourceStart, sourceStart + copied, target, targetStart);
+            return copied;
+        }
+        return super.getTextCharacters(sourceStart, target, targetStart, length);
+    }
+
+    @Override
+    public int getTextStart() {
+        return this.truncatedText != null ? 0 : super.getTextStart();
+    }
+
+    @Override
+    public int getTextLength() {
+        return this.truncatedText != null ? this.truncatedText.length() : super.getTextLength();
+    }
+
+    @Override
+    public String getAttributeValue(int index) {
+        return this.limitAttribute(super.getAttributeLocalName(index), super.getAttributeValue(index));
+    }
+
+    @Override
+    public String getAttributeValue(String namespaceURI, String localName) {
+        return this.limitAttribute(localName, super.getAttributeValue(namespaceURI, localName));
+    }
+
+    /**
+     * Keeps track of whether the reader is in a body, now that it has moved to a new event.
+     *
+     * @param event The new event
+     * @return The event
+     */
+    private int track(final int event) {
+        if (event == XMLStreamConstants.START_ELEMENT) {
+            this.inBody = this.maxBodyBytes > 0 && BODY_ELEMENTS.contains(super.getLocalName());
+            this.bodyBytes = 0;
+            this.bodyTruncated = false;
+        } else if (event == XMLStreamConstants.END_ELEMENT) {
+            this.inBody = false;
+        }
+        return event;
+    }
+
+    /**
+     * Skips character events.
+     *
+     * @return The first event that isn't text
+     * @throws XMLStreamException Thrown when the XML is not well-formed
+     */
+    private int skipText() throws XMLStreamException {
+        int event = super.getEventType();
+        while (isText(event)) {
+            event = super.next();
+        }
+        return event;
+    }
+
+    /**
+     * @param attributeName The local name of an attribute on the current element
+     * @param value The attribute value
+     * @return The value, truncated if it is over the limit for the attribute
+     */
+    private String limitAttribute(final String attributeName, final String value) {
+        int limit = this.getAttributeLimit(super.getLocalName(), attributeName);
+        if (value == null || limit <= 0) {
+            return value;
+        }
+        char[] chars = value.toCharArray();
+        int valueBytes = utf8Length(chars, 0, chars.length);
+        if (valueBytes <= limit) {
+            return value;
+        }
+        this.truncatedFields++;
+        return value.substring(0, charsWithinBytes(chars, 0, chars.length, limit)) + String.format(TRUNCATION_MARKER_FORMAT, valueBytes);
+    }
+
+    /**
+     * @param elementName The local name of the element
+     * @param attributeName The local name of the attribute
+     * @return The byte limit for the attribute, or 0 if it isn't limited
+     */
+    private int getAttributeLimit(final String elementName, final String attributeName) {
+        if (MESSAGE_ELEMENTS.contains(elementName)) {
+            return "message".equals(attributeName) ? this.maxMessageBytes : 0;
+        } else if ("testcase".equals(elementName)) {
+            if ("errorMessage".equals(attributeName)) {
+                return this.maxMessageBytes;
+            }
+            return UNLIMITED_TEST_CASE_ATTRIBUTES.contains(attributeName) ? 0 : this.maxPropertyBytes;
+        } else if ("property".equals(elementName)) {
+            return "value".equals(attributeName) ? this.maxPropertyBytes : 0;
+        }
+        return 0;
+    }
+
+    private static boolean isText(final int event) {
+        return event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA || event == XMLStreamConstants.SPACE;
+    }
+
+    /**
+     * @return The size of the characters when encoded as UTF-8
+     */
+    private static int utf8Length(final char[] chars, final int start, final int length) {
+        int bytes = 0;
+        for (int i = start; i < start + length; i++) {
+            bytes += utf8Length(chars[i]);
+        }
+        return bytes;
+    }
+
+    /**
+     * @return The number of characters, from the start, that fit within the byte limit without splitting a surrogate pair
+     */
+    private static int charsWithinBytes(final char[] chars, final int start, final int length, final long maxBytes) {
+        long bytes = 0;
+        int count = 0;
+        while (count < length) {
+            char c = chars[start + count];
+            int width = Character.isHighSurrogate(c) && count + 1 < length ? 2 : 1;
+            int charBytes = width == 2 ? 4 : utf8Length(c);
+            if (bytes + charBytes > maxBytes) {
+                break;
+            }
+            bytes += charBytes;
+            count += width;
+        }
+        return count;
+    }
+
+    /**
+     * @return The size of the character when encoded as UTF-8. Each half of a surrogate pair counts for half of its 4 bytes.
+     */
+    private static int utf8Length(final char c) {
+        if (c < 0x80) {
+            return 1;
+        } else if (c < 0x800) {
+            return 2;
+        }
+        return Character.isSurrogate(c) ? 2 : 3;
+    }
+}
@@ -26,33 +26,161 @@
 
 package com.perforce.halm.reportingtool.format.junit.parser;
 
+import com.perforce.halm.reportingtool.events.ReportingEvent;
+import com.perforce.halm.reportingtool.events.ReportingEvents;
 import com.perforce.halm.reportingtool.format.junit.JUnitUtils;
+import com.perforce.halm.reportingtool.metrics.RunMetrics;
+import com.perforce.halm.reportingtool.models.SkippedReportFile;
 
 import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
+import javax.xml.bind.UnmarshalException;
 import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 /**
  * Class that is responsible for parsing the specified report files into our Java JUnit classes.
+ * Files are read with a streaming XML reader, and each testsuite element is unmarshalled on its own, so only one test
+ * suite is held in memory at a time regardless of the size of the file.
  */
 public class JUnitJAXBParser {
-    private final List<String> reportFiles;
+    /** Report file path that reads the report from standard input */
+    public static final String STANDARD_INPUT = "-";
+
+    private static final String TEST_SUITES_ELEMENT = "testsuites";
+    private static final String TEST_SUITE_ELEMENT = "testsuite";
+    private static final String TEST_CASE_ELEMENT = "testcase";
+    private static final Set<String> BODY_ELEMENTS = new HashSet<>(Arrays.asList("failure", "error"));
+    private static final Set<String> STANDARD_TEST_CASE_ATTRIBUTES = new HashSet<>(Arrays.asList("name", "classname", "time"));
+
+    private final Iterable<String> reportFiles;
+    private XMLInputFactory inputFactory = ReportXMLInputFactory.create(DoctypePolicy.internal);
+    private DoctypePolicy doctypePolicy = DoctypePolicy.internal;
+    private RunMetrics metrics = RunMetrics.DISABLED;
+    private int maxMessageBytes = 0;
+    private int maxBodyBytes = 0;
+    private int maxPropertyBytes = 0;
+    private int truncatedFields = 0;
+    private int reportFileCount = 0;
+    private long streamBytes = 0;
+    private boolean sanitizeInput = false;
+    private boolean skipInvalidFiles = false;
+    private boolean salvageTruncatedFiles = false;
+    private final Map<String, Integer> salvagedFiles = new LinkedHashMap<>();
+    private final List<SkippedReportFile> skippedFiles = new ArrayList<>();
+    private final Map<String, Long> repairedCharacters = new LinkedHashMap<>();
 
     /**
      * Constructor
      *
      * @param reportFiles The report files to parse
      */
-    public JUnitJAXBParser(final List<String> reportFiles) {
+    public JUnitJAXBParser(final Iterable<String> reportFiles) {
         this.reportFiles = reportFiles;
     }
 
+    /**
+     * @return The number of report files the parser has read or tried to read so far, including skipped files
+     */
+    public int getReportFileCount() { return this.reportFileCount; }
+
+    /**
+     * @param metrics The metrics to record the size and parse time of each report file in
+     */
+    public void setMetrics(RunMetrics metrics) {
+        this.metrics = metrics != null ? metrics : RunMetrics.DISABLED;
+    }
+
+    /**
+     * @param doctypePolicy How a DOCTYPE declaration in a report file is handled, {@link DoctypePolicy#internal} by default.
+     *                      External DTDs are never loaded.
+     */
+    public void setDoctypePolicy(DoctypePolicy doctypePolicy) {
+        this.doctypePolicy = doctypePolicy != null ? doctypePolicy : DoctypePolicy.internal;
+        this.inputFactory = ReportXMLInputFactory.create(this.doctypePolicy);
+    }
+
+    /**
+     * @param skipInvalidFiles Whether a report file that can't be read is skipped, instead of failing the whole parse.
+     *                         Suites read from the file before the error are still passed along.
+     */
+    public void setSkipInvalidFiles(boolean skipInvalidFiles) {
+        this.skipInvalidFiles = skipInvalidFiles;
+    }
+
+    /**
+     * @return The report files skipped so far because they couldn't be read, with the error for each
+     */
+    public List<SkippedReportFile> getSkippedFiles() { return this.skippedFiles; }
+
+    /**
+     * @param salvageTruncatedFiles Whether a report file that ends part way through is recovered instead of failing.
+     *                              Testcases closed before the end of the file are kept, and the open suites are
+     *                              closed. See {@link SalvagingStreamReader}.
+     */
+    public void setSalvageTruncatedFiles(boolean salvageTruncatedFiles) {
+        this.salvageTruncatedFiles = salvageTruncatedFiles;
+    }
+
+    /**
+     * @return The report files recovered so far because they ended part way through, with the line each one ended on
+     */
+    public Map<String, Integer> getSalvagedFiles() { return this.salvagedFiles; }
+
+    /**
+     * @param sanitizeInput Whether characters and byte sequences that aren't valid XML are repaired as the report files
+     *                      are read, instead of failing the report. See {@link XMLSanitizingReader}.
+     */
+    public void setSanitizeInput(boolean sanitizeInput) {
+        this.sanitizeInput = sanitizeInput;
+    }
+
+    /**
+     * @return The number of characters repaired in each report file parsed so far, for files that needed repairs
+     */
+    public Map<String, Long> getRepairedCharacters() { return this.repairedCharacters; }
+
+    /**
+     * Limits the size of fields as they are read. Longer fields are truncated, and marked with their original size.
+     * See {@link FieldLimitingStreamReader}.
+     *
+     * @param maxMessageBytes The most bytes kept from a message, or 0 for no limit
+     * @param maxBodyBytes The most bytes kept from a failure, error or output body, or 0 for no limit
+     * @param maxPropertyBytes The most bytes kept from a property value, or 0 for no limit
+     */
+    public void setFieldLimits(int maxMessageBytes, int maxBodyBytes, int maxPropertyBytes) {
+        this.maxMessageBytes = Math.max(0, maxMessageBytes);
+        this.maxBodyBytes = Math.max(0, maxBodyBytes);
+        this.maxPropertyBytes = Math.max(0, maxPropertyBytes);
+    }
+
+    /**
+     * @return The number of fields truncated by the field limits in the files parsed so far
+     */
+    public int getTruncatedFields() { return this.truncatedFields; }
+
     /**
      * Function that processes the specified report files.
      * Returns JUnit testsuite objects that can be converted into a Helix ALM automation build object.
@@ -63,26 +191,417 @@ public class JUnitJAXBParser {
      */
     public List<JUnitTestSuite> parseReportFiles() throws JAXBException, IOException {
         List<JUnitTestSuite> testSuites = new ArrayList<>();
+        this.parseReportFiles(testSuites::add);
+        return testSuites;
+    }
+
+    /**
+     * Function that processes the specified report files one at a time, passing each JUnit testsuite object to the
+     * consumer as soon as it has been parsed. The next suite isn't read until the consumer returns, so a slow consumer
+     * slows down parsing instead of suites building up in memory.
+     *
+     * @param suiteConsumer The consumer to pass each parsed test suite to
+     * @return The number of test suites parsed
+     * @throws JAXBException Thrown when we encounter a JAXB parser exception
+     * @throws IOException Thrown when we encounter an error reading the file
+     */
+    public int parseReportFiles(Consumer<JUnitTestSuite> suiteConsumer) throws JAXBException, IOException {
+        int suiteCount = 0;
         JAXBContext context = JUnitUtils.getJAXBContext();
         if (context != null) {
+            // The context is shared, but unmarshallers are not thread safe. Each call gets its own, so parsers on
+            // different threads never share one.
             Unmarshaller unmarshaller = context.createUnmarshaller();
+            final AtomicInteger fileSuiteCount = new AtomicInteger();
+            // Time spent in the consumer, converting suites or waiting for room in a result queue, isn't parse time.
+            final AtomicLong consumerNanos = new AtomicLong();
+            final Consumer<JUnitTestSuite> countingConsumer = suite -> {
+                fileSuiteCount.incrementAndGet();
+                long consumerStartTime = this.metrics.startTimer();
+                suiteConsumer.accept(suite);
+                consumerNanos.addAndGet(this.metrics.startTimer() - consumerStartTime);
+            };
             for (String reportFile : this.reportFiles) {
-                // Each report file's root element could either be a JUnitTestSuitesWrapper or single JUnitTestSuite.
-                // This code may look a bit messy, but it allows us to determine the type and proceed accordingly.
-                JAXBElement rootObject = (JAXBElement)unmarshaller.unmarshal(Files.newInputStream(Paths.get(reportFile)));
-                if (rootObject != null) {
-                    Object baseElement = rootObject.getValue();
-                    if (baseElement instanceof JUnitTestSuitesWrapper) {
-                        JUnitTestSuitesWrapper wrapper = (JUnitTestSuitesWrapper) baseElement;
-                        testSuites.addAll(wrapper.getTestSuites());
-                    } else if (baseElement instanceof JUnitTestSuite) {
-                        JUnitTestSuite suite = (JUnitTestSuite) baseElement;
-                        testSuites.add(suite);
+                long startTime = this.metrics.startTimer();
+                fileSuiteCount.set(0);
+                consumerNanos.set(0);
+                this.reportFileCount++;
+                ReportingEvent parseEvent = ReportingEvents.get().beginReportFileParse(reportFile);
+                try {
+                    boolean streamSource = isStreamSource(reportFile);
+                    long fileBytes = this.metrics.isEnabled() && !streamSource ? Files.size(Paths.get(reportFile)) : 0;
+                    this.parseReportFile(unmarshaller, reportFile, countingConsumer);
+                    if (streamSource) {
+                        fileBytes = this.streamBytes;
+                    }
+                    this.metrics.recordReportFile(reportFile, fileBytes, this.repairedCharacters.getOrDefault(reportFile, 0L),
+                            startTime + consumerNanos.get());
+                } catch (JAXBException | IOException e) {
+                    if (!this.skipInvalidFiles) {
+                        throw e;
                     }
+                    SkippedReportFile skippedFile = SkippedReportFile.fromException(reportFile, e, fileSuiteCount.get());
+                    this.skippedFiles.add(skippedFile);
+                    this.metrics.recordSkippedReportFile(skippedFile);
+                } finally {
+                    parseEvent.end();
+                    suiteCount += fileSuiteCount.get();
                 }
             }
         }
-        return testSuites;
+        return suiteCount;
+    }
+
+    /**
+     * Scans the report files for testcase attributes that have the same value on every testcase. Only attributes are
+     * read, nothing is unmarshalled, and the scan stops as soon as no attribute is left that could be constant.
+     * The time taken and the bytes read are recorded in the metrics as the scan phase.
+     *
+     * @param ignoredAttributes The local names of attributes not to consider
+     * @return The constant attributes, by local name, in the order they appear on the first testcase.
+     *         Empty if there are no testcases, or if a report is read from standard input or a pipe, since those
+     *         can only be read once.
+     * @throws JAXBException Thrown when a report file is not well-formed XML
+     * @throws IOException Thrown when we encounter an error reading the file
+     */
+    public Map<String, String> findConstantTestCaseAttributes(final Set<String> ignoredAttributes) throws JAXBException, IOException {
+        final AtomicReference<Map<String, String>> constantAttributes = new AtomicReference<>();
+        boolean scanned = this.scanReportFiles(reader -> {
+            if (reader.getEventType() != XMLStreamConstants.START_ELEMENT || !TEST_CASE_ELEMENT.equals(reader.getLocalName())) {
+                return true;
+            }
+            Map<String, String> attributes = new LinkedHashMap<>();
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                String name = reader.getAttributeLocalName(i);
+                if (!STANDARD_TEST_CASE_ATTRIBUTES.contains(name) && !ignoredAttributes.contains(name)) {
+                    attributes.put(name, reader.getAttributeValue(i));
+                }
+            }
+            if (constantAttributes.get() == null) {
+                constantAttributes.set(attributes);
+            } else {
+                constantAttributes.get().entrySet().removeIf(entry -> !entry.getValue().equals(attributes.get(entry.getKey())));
+            }
+            return !constantAttributes.get().isEmpty();
+        });
+        return scanned && constantAttributes.get() != null ? constantAttributes.get() : new LinkedHashMap<>();
+    }
+
+    /**
+     * Scans the report files for the failure and error bodies of testcases, passing the length of each to the consumer,
+     * cut down to the body limit from {@link #setFieldLimits}. Nothing is unmarshalled. The time taken and the bytes
+     * read are recorded in the metrics as the scan phase.
+     * The scan stops at the first report read from standard input or a pipe, since those can only be read once.
+     *
+     * @param bodyLengthConsumer The consumer to pass the length of each body to
+     * @throws JAXBException Thrown when a report file is not well-formed XML
+     * @throws IOException Thrown when we encounter an error reading the file
+     */
+    public void measureFailureBodies(final LongConsumer bodyLengthConsumer) throws JAXBException, IOException {
+        final int maxBodyLength = this.maxBodyBytes;
+        final AtomicBoolean inTestCase = new AtomicBoolean();
+        // The length of the body being read, or -1 outside of a body
+        final AtomicLong bodyLength = new AtomicLong(-1);
+        this.scanReportFiles(reader -> {
+            switch (reader.getEventType()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    if (TEST_CASE_ELEMENT.equals(reader.getLocalName())) {
+                        inTestCase.set(true);
+                    } else if (inTestCase.get() && BODY_ELEMENTS.contains(reader.getLocalName())) {
+                        bodyLength.set(0);
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (bodyLength.get() >= 0) {
+                        bodyLength.addAndGet(reader.getTextLength());
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (TEST_CASE_ELEMENT.equals(reader.getLocalName())) {
+                        inTestCase.set(false);
+                    } else if (bodyLength.get() >= 0 && BODY_ELEMENTS.contains(reader.getLocalName())) {
+                        long length = bodyLength.getAndSet(-1);
+                        if (length > 0) {
+                            bodyLengthConsumer.accept(maxBodyLength > 0 ? Math.min(length, maxBodyLength) : length);
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Reads the report files as a stream of XML events, without unmarshalling anything, passing each event to the
+     * handler. The time taken and the bytes read are recorded in the metrics as the scan phase.
+     *
+     * @param handler Called with the reader positioned on each event. Returns false to end the scan.
+     * @return False if the scan reached a report read from standard input or a pipe, which can't be read ahead of
+     *         parsing, and stopped there
+     * @throws JAXBException Thrown when a report file is not well-formed XML
+     * @throws IOException Thrown when we encounter an error reading the file
+     */
+    private boolean scanReportFiles(final ScanHandler handler) throws JAXBException, IOException {
+        long startTime = this.metrics.startTimer();
+        long scannedBytes = 0;
+        try {
+            for (String reportFile : this.reportFiles) {
+                if (isStreamSource(reportFile)) {
+                    // Standard input and pipes can only be read once, so they can't be read ahead of parsing.
+                    return false;
+                }
+                try (InputStream fileInput = Files.newInputStream(Paths.get(reportFile))) {
+                    SalvagingStreamReader.EndTrackingInputStream input = new SalvagingStreamReader.EndTrackingInputStream(fileInput);
+                    XMLStreamReader reader = this.sanitizeInput
+                            ? this.inputFactory.createXMLStreamReader(new XMLSanitizingReader(input))
+                            : this.inputFactory.createXMLStreamReader(input);
+                    if (this.salvageTruncatedFiles) {
+                        reader = new SalvagingStreamReader(reader, input);
+                    }
+                    try {
+                        while (reader.hasNext()) {
+                            if (reader.next() == XMLStreamConstants.DTD) {
+                                this.checkDoctype(reader, reportFile);
+                            }
+                            if (!handler.accept(reader)) {
+                                return true;
+                            }
+                        }
+                    } finally {
+                        reader.close();
+                        scannedBytes += input.getBytesRead();
+                    }
+                } catch (XMLStreamException e) {
+                    if (!this.skipInvalidFiles) {
+                        throw new UnmarshalException(e);
+                    }
+                } catch (JAXBException | IOException e) {
+                    // The file is reported when it's parsed.
+                    if (!this.skipInvalidFiles) {
+                        throw e;
+                    }
+                }
+            }
+            return true;
+        } finally {
+            this.metrics.recordScan(scannedBytes, startTime);
+        }
+    }
+
+    /**
+     * Handles the events of a scan. See {@link #scanReportFiles}.
+     */
+    private interface ScanHandler {
+        /**
+         * @param reader The reader, positioned on the event
+         * @return Whether to keep scanning
+         * @throws XMLStreamException Thrown when the event can't be read
+         */
+        boolean accept(XMLStreamReader reader) throws XMLStreamException;
+    }
+
+    /**
+     * Parses a single report file, passing each JUnit testsuite object to the consumer as it is read.
+     * Standard input and named pipes are read as they are written, and can hold several documents one after another.
+     *
+     * @param unmarshaller The unmarshaller to use
+     * @param reportFile The report file to parse, or {@link #STANDARD_INPUT}
+     * @param suiteConsumer The consumer to pass each parsed test suite to
+     * @return The number of test suites parsed
+     * @throws JAXBException Thrown when we encounter a JAXB parser exception, or the file is not a JUnit report
+     * @throws IOException Thrown when we encounter an error reading the file
+     */
+    private int parseReportFile(final Unmarshaller unmarshaller, final String reportFile,
+                                final Consumer<JUnitTestSuite> suiteConsumer) throws JAXBException, IOException {
+        if (!isStreamSource(reportFile)) {
+            try (InputStream input = Files.newInputStream(Paths.get(reportFile))) {
+                return this.parseDocument(unmarshaller, reportFile, input, suiteConsumer);
+            }
+        }
+        int suiteCount = 0;
+        try (ConcatenatedDocumentInputStream documents = new ConcatenatedDocumentInputStream(openStreamSource(reportFile))) {
+            // The XML reader closes its input at the end of each document, which must not close the stream.
+            InputStream document = nonClosing(documents);
+            try {
+                do {
+                    suiteCount += this.parseDocument(unmarshaller, reportFile, document, suiteConsumer);
+                } while (documents.nextDocument());
+            } finally {
+                this.streamBytes = documents.getBytesRead();
+            }
+        }
+        return suiteCount;
+    }
+
+    /**
+     * @param reportFile A report file path, or {@link #STANDARD_INPUT}
+     * @return Whether the report is read from standard input or a named pipe, which can only be read once, instead of a file
+     */
+    private static boolean isStreamSource(final String reportFile) {
+        if (STANDARD_INPUT.equals(reportFile)) {
+            return true;
+        }
+        Path path = Paths.get(reportFile);
+        return Files.exists(path) && !Files.isRegularFile(path) && !Files.isDirectory(path);
+    }
+
+    /**
+     * @param reportFile A named pipe, or {@link #STANDARD_INPUT}
+     * @return The stream to read. Standard input is left open when the stream is closed.
+     * @throws IOException Thrown when the pipe can't be opened
+     */
+    private static InputStream openStreamSource(final String reportFile) throws IOException {
+        return STANDARD_INPUT.equals(reportFile) ? nonClosing(System.in) : Files.newInputStream(Paths.get(reportFile));
+    }
+
+    /**
+     * @param input A stream
+     * @return A view of the stream that leaves it open when closed
+     */
+    private static InputStream nonClosing(final InputStream input) {
+        return new FilterInputStream(input) {
+            @Override
+            public void close() {}
+        };
+    }
+
+    /**
+     * Parses a single XML document, passing each JUnit testsuite object to the consumer as it is read.
+     * The root element can either be a testsuites element wrapping any number of suites, or a single testsuite.
+     *
+     * @param unmarshaller The unmarshaller to use
+     * @param reportFile The report file being parsed
+     * @param source The document to parse, which is left open
+     * @param suiteConsumer The consumer to pass each parsed test suite to
+     * @return The number of test suites parsed
+     * @throws JAXBException Thrown when we encounter a JAXB parser exception, or the file is not a JUnit report
+     * @throws IOException Thrown when we encounter an error reading the file
+     */
+    private int parseDocument(final Unmarshaller unmarshaller, final String reportFile, final InputStream source,
+                              final Consumer<JUnitTestSuite> suiteConsumer) throws JAXBException, IOException {
+        int suiteCount = 0;
+        try {
+            SalvagingStreamReader.EndTrackingInputStream input = new SalvagingStreamReader.EndTrackingInputStream(source);
+            XMLSanitizingReader sanitizingReader = this.sanitizeInput ? new XMLSanitizingReader(input) : null;
+            XMLStreamReader reader = sanitizingReader != null
+                    ? this.inputFactory.createXMLStreamReader(sanitizingReader)
+                    : this.inputFactory.createXMLStreamReader(input);
+            // Salvaging has to see the reader's own events, so it goes underneath any other wrapper.
+            SalvagingStreamReader salvagingReader = null;
+            if (this.salvageTruncatedFiles) {
+                salvagingReader = new SalvagingStreamReader(reader, input);
+                reader = salvagingReader;
+            }
+            FieldLimitingStreamReader limitingReader = null;
+            if (this.maxMessageBytes > 0 || this.maxBodyBytes > 0 || this.maxPropertyBytes > 0) {
+                limitingReader = new FieldLimitingStreamReader(reader, this.maxMessageBytes, this.maxBodyBytes, this.maxPropertyBytes);
+                reader = limitingReader;
+            }
+            try {
+                this.moveToRootElement(reader, reportFile);
+                String rootName = reader.getLocalName();
+                if (TEST_SUITE_ELEMENT.equals(rootName)) {
+                    suiteConsumer.accept(unmarshalSuite(unmarshaller, reader, salvagingReader));
+                    suiteCount++;
+                } else if (TEST_SUITES_ELEMENT.equals(rootName)) {
+                    // Unmarshal the suites one at a time, skipping anything else in the wrapper.
+                    int depth = 1;
+                    reader.next();
+                    while (depth > 0 && reader.getEventType() != XMLStreamConstants.END_DOCUMENT) {
+                        int event = reader.getEventType();
+                        if (event == XMLStreamConstants.START_ELEMENT && depth == 1 && TEST_SUITE_ELEMENT.equals(reader.getLocalName())) {
+                            // Leaves the reader on the event after the suite's end tag.
+                            suiteConsumer.accept(unmarshalSuite(unmarshaller, reader, salvagingReader));
+                            suiteCount++;
+                            continue;
+                        }
+                        if (event == XMLStreamConstants.START_ELEMENT) {
+                            depth++;
+                        } else if (event == XMLStreamConstants.END_ELEMENT) {
+                            depth--;
+                        }
+                        if (depth > 0) {
+                            reader.next();
+                        }
+                    }
+                } else {
+                    throw new UnmarshalException(String.format("Unexpected root element '%s' in report file %s.", rootName, reportFile));
+                }
+            } finally {
+                reader.close();
+                if (limitingReader != null) {
+                    this.truncatedFields += limitingReader.getTruncatedFields();
+                }
+                if (sanitizingReader != null && sanitizingReader.getRepairedCharacters() > 0) {
+                    this.repairedCharacters.merge(reportFile, sanitizingReader.getRepairedCharacters(), Long::sum);
+                }
+                if (salvagingReader != null && salvagingReader.isTruncated()) {
+                    this.salvagedFiles.put(reportFile, salvagingReader.getTruncationLine());
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new UnmarshalException(e);
+        }
+        return suiteCount;
+    }
+
+    /**
+     * Unmarshals the testsuite element the reader is on. If the file ends inside the suite, the testcase that was
+     * still open is dropped, since only part of it was read.
+     *
+     * @param unmarshaller The unmarshaller to use
+     * @param reader The reader, on the suite's start tag
+     * @param salvagingReader The reader recovering truncated files, or null if they aren't recovered
+     * @return The unmarshalled suite
+     * @throws JAXBException Thrown when we encounter a JAXB parser exception
+     */
+    private static JUnitTestSuite unmarshalSuite(final Unmarshaller unmarshaller, final XMLStreamReader reader,
+                                                 final SalvagingStreamReader salvagingReader) throws JAXBException {
+        boolean truncatedBefore = salvagingReader != null && salvagingReader.isTruncated();
+        JUnitTestSuite suite = unmarshaller.unmarshal(reader, JUnitTestSuite.class).getValue();
+        if (salvagingReader != null && !truncatedBefore && salvagingReader.wasOpenAtTruncation(TEST_CASE_ELEMENT)) {
+            List<JUnitTestCase> testCases = suite.getTestCases();
+            if (testCases != null && !testCases.isEmpty()) {
+                testCases.remove(testCases.size() - 1);
+            }
+        }
+        return suite;
+    }
+
+    /**
+     * Moves the reader from the start of the document to the root element, checking the DOCTYPE if there is one.
+     *
+     * @param reader The reader, at the start of the document
+     * @param reportFile The report file being read
+     * @throws XMLStreamException Thrown when the XML is not well-formed, or has no root element
+     * @throws UnmarshalException Thrown when the report has a DOCTYPE, and DOCTYPEs are rejected
+     */
+    private void moveToRootElement(final XMLStreamReader reader, final String reportFile) throws XMLStreamException, UnmarshalException {
+        int event = reader.getEventType();
+        while (event != XMLStreamConstants.START_ELEMENT) {
+            if (event == XMLStreamConstants.DTD) {
+                this.checkDoctype(reader, reportFile);
+            } else if (event == XMLStreamConstants.END_DOCUMENT) {
+                throw new XMLStreamException(String.format("Report file %s has no root element.", reportFile));
+            }
+            event = reader.next();
+        }
+    }
+
+    /**
+     * @param reader The reader, on a DTD event
+     * @param reportFile The report file being read
+     * @throws UnmarshalException Thrown when DOCTYPEs are rejected
+     */
+    private void checkDoctype(final XMLStreamReader reader, final String reportFile) throws UnmarshalException {
+        if (this.doctypePolicy == DoctypePolicy.reject) {
+            throw new UnmarshalException(String.format("Report file %s has a DOCTYPE declaration at line %d, and DOCTYPEs are rejected.",
+                    reportFile, reader.getLocation().getLineNumber()));
+        }
     }
 
     /**
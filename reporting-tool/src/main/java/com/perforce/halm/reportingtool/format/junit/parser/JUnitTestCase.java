@@ -30,7 +30,9 @@ import javax.xml.bind.annotation.XmlAnyAttribute;
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.namespace.QName;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -55,6 +57,16 @@ public class JUnitTestCase {
     private JUnitTestCaseError error;
     @XmlElement
     private JUnitTestCaseFailure failure;
+    // Runs of a test rerun by Maven Surefire. Flaky runs failed before the test passed; rerun runs failed after the
+    // test's failure or error.
+    @XmlElement(name = "flakyFailure")
+    private List<JUnitTestCaseRerun> flakyFailures;
+    @XmlElement(name = "flakyError")
+    private List<JUnitTestCaseRerun> flakyErrors;
+    @XmlElement(name = "rerunFailure")
+    private List<JUnitTestCaseRerun> rerunFailures;
+    @XmlElement(name = "rerunError")
+    private List<JUnitTestCaseRerun> rerunErrors;
 
     public String getName() { return this.name; }
     public String getClassName() { return this.className; }
@@ -79,4 +91,8 @@ public class JUnitTestCase {
     public JUnitTestCaseFailure getFailure() {
         return this.failure;
     }
+    public List<JUnitTestCaseRerun> getFlakyFailures() { return this.flakyFailures != null ? this.flakyFailures : Collections.emptyList(); }
+    public List<JUnitTestCaseRerun> getFlakyErrors() { return this.flakyErrors != null ? this.flakyErrors : Collections.emptyList(); }
+    public List<JUnitTestCaseRerun> getRerunFailures() { return this.rerunFailures != null ? this.rerunFailures : Collections.emptyList(); }
+    public List<JUnitTestCaseRerun> getRerunErrors() { return this.rerunErrors != null ? this.rerunErrors : Collections.emptyList(); }
 }
@@ -0,0 +1,88 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.format.junit.parser;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+
+/**
+ * Creates the XML input factories used to read report files. Report files come from third-party tools, so the
+ * factories never resolve external DTDs or entities, which would block on the network before parsing even starts,
+ * and they limit entity expansion so a malformed report can't blow up in memory.
+ */
+public final class ReportXMLInputFactory {
+    /** The most entity references expanded in a report */
+    public static final int ENTITY_EXPANSION_LIMIT = 1000;
+    /** The most characters a single entity can expand to */
+    public static final int MAX_ENTITY_SIZE = 64 * 1024;
+    /** The most characters all the entities in a report can expand to */
+    public static final int TOTAL_ENTITY_SIZE_LIMIT = 1024 * 1024;
+
+    // JDK parser properties. Other StAX implementations may not support them, in which case they are left unset.
+    private static final String ENTITY_EXPANSION_LIMIT_PROPERTY = "http://www.oracle.com/xml/jaxp/properties/entityExpansionLimit";
+    private static final String MAX_ENTITY_SIZE_PROPERTY = "http://www.oracle.com/xml/jaxp/properties/maxGeneralEntitySizeLimit";
+    private static final String TOTAL_ENTITY_SIZE_LIMIT_PROPERTY = "http://www.oracle.com/xml/jaxp/properties/totalEntitySizeLimit";
+    private static final String IGNORE_EXTERNAL_DTD_PROPERTY = "http://java.sun.com/xml/stream/properties/ignore-external-dtd";
+
+    /**
+     * Creates a new input factory for report files.
+     *
+     * @param doctypePolicy How a DOCTYPE declaration is handled
+     * @return See description
+     */
+    public static XMLInputFactory create(final DoctypePolicy doctypePolicy) {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        // The DOCTYPE is read for its internal entities, which is the default. When it is ignored the parser skips it, and
+        // a rejected DOCTYPE is reported by the caller when the parser reaches it.
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, doctypePolicy == DoctypePolicy.internal);
+        setPropertyIfSupported(factory, IGNORE_EXTERNAL_DTD_PROPERTY, true);
+        setPropertyIfSupported(factory, XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        setPropertyIfSupported(factory, ENTITY_EXPANSION_LIMIT_PROPERTY, String.valueOf(ENTITY_EXPANSION_LIMIT));
+        setPropertyIfSupported(factory, MAX_ENTITY_SIZE_PROPERTY, String.valueOf(MAX_ENTITY_SIZE));
+        setPropertyIfSupported(factory, TOTAL_ENTITY_SIZE_LIMIT_PROPERTY, String.valueOf(TOTAL_ENTITY_SIZE_LIMIT));
+        return factory;
+    }
+
+    /**
+     * @param factory The factory to configure
+     * @param name The property name
+     * @param value The property value
+     */
+    private static void setPropertyIfSupported(final XMLInputFactory factory, final String name, final Object value) {
+        try {
+            factory.setProperty(name, value);
+        } catch (IllegalArgumentException ignored) {
+            // Not supported by this StAX implementation
+        }
+    }
+
+    /**
+     * Private constructor, so the class cannot be created
+     */
+    private ReportXMLInputFactory() {}
+}
@@ -0,0 +1,260 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.format.junit.parser;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Streaming reader that recovers from a report file that ends part way through, such as one left behind when a test
+ * JVM is killed mid-run. When the reader fails after the whole file has been read, the elements that are still open
+ * are closed with synthesized end tags, followed by the end of the document, so everything read before the
+ * truncation can still be unmarshalled. Errors before the end of the file are passed on as usual.
+ * <p>
+ * An element that was still open when the file ended is incomplete. The caller decides what to keep; see
+ * {@link #wasOpenAtTruncation(String)}.
+ */
+public class SalvagingStreamReader extends StreamReaderDelegate {
+    private final EndTrackingInputStream input;
+    private final Deque<QName> openElements = new ArrayDeque<>();
+    private List<String> openAtTruncation = null;
+    private Location truncationLocation = null;
+
+    // The synthesized event the reader is on once the file has been truncated
+    private int synthesizedEvent = -1;
+    private QName synthesizedName = null;
+
+    /**
+     * Constructor
+     *
+     * @param reader The reader to recover
+     * @param input The stream the reader is reading from, used to tell truncation from other errors
+     */
+    public SalvagingStreamReader(final XMLStreamReader reader, final EndTrackingInputStream input) {
+        super(reader);
+        this.input = input;
+    }
+
+    /**
+     * @return Whether the file ended part way through, and the open elements were closed by this reader
+     */
+    public boolean isTruncated() { return this.openAtTruncation != null; }
+
+    /**
+     * @return The line the file was truncated on, or -1 if the file wasn't truncated or the line is unknown
+     */
+    public int getTruncationLine() {
+        return this.truncationLocation != null ? this.truncationLocation.getLineNumber() : -1;
+    }
+
+    /**
+     * @param localName The local name of an element
+     * @return Whether an element with this name was open, and so incomplete, when the file was truncated
+     */
+    public boolean wasOpenAtTruncation(final String localName) {
+        return this.openAtTruncation != null && this.openAtTruncation.contains(localName);
+    }
+
+    @Override
+    public int next() throws XMLStreamException {
+        if (this.synthesizedEvent >= 0) {
+            return this.closeNextElement();
+        }
+        int event;
+        try {
+            event = super.next();
+        } catch (XMLStreamException e) {
+            if (!this.input.isAtEnd() || this.openElements.isEmpty()) {
+                throw e;
+            }
+            this.truncationLocation = e.getLocation();
+            this.openAtTruncation = new ArrayList<>();
+            for (QName element : this.openElements) {
+                this.openAtTruncation.add(element.getLocalPart());
+            }
+            return this.closeNextElement();
+        }
+        if (event == XMLStreamConstants.START_ELEMENT) {
+            this.openElements.push(super.getName());
+        } else if (event == XMLStreamConstants.END_ELEMENT) {
+            this.openElements.pop();
+        }
+        return event;
+    }
+
+    private int closeNextElement() {
+        if (this.openElements.isEmpty()) {
+            this.synthesizedEvent = XMLStreamConstants.END_DOCUMENT;
+            this.synthesizedName = null;
+        } else {
+            this.synthesizedEvent = XMLStreamConstants.END_ELEMENT;
+            this.synthesizedName = this.openElements.pop();
+        }
+        return this.synthesizedEvent;
+    }
+
+    @Override
+    public int nextTag() throws XMLStreamException {
+        int event = this.next();
+        while ((this.isCharacters() && this.isWhiteSpace()) || event == XMLStreamConstants.SPACE ||
+                event == XMLStreamConstants.COMMENT || event == XMLStreamConstants.PROCESSING_INSTRUCTION) {
+            event = this.next();
+        }
+        if (event != XMLStreamConstants.START_ELEMENT && event != XMLStreamConstants.END_ELEMENT) {
+            throw new XMLStreamException("Expected a start or end tag.", this.getLocation());
+        }
+        return event;
+    }
+
+    @Override
+    public boolean hasNext() throws XMLStreamException {
+        if (this.synthesizedEvent >= 0) {
+            return this.synthesizedEvent != XMLStreamConstants.END_DOCUMENT;
+        }
+        return super.hasNext();
+    }
+
+    @Override
+    public int getEventType() {
+        return this.synthesizedEvent >= 0 ? this.synthesizedEvent : super.getEventType();
+    }
+
+    @Override
+    public boolean isStartElement() {
+        return this.synthesizedEvent < 0 && super.isStartElement();
+    }
+
+    @Override
+    public boolean isEndElement() {
+        return this.synthesizedEvent >= 0 ? this.synthesizedEvent == XMLStreamConstants.END_ELEMENT : super.isEndElement();
+    }
+
+    @Override
+    public boolean isCharacters() {
+        return this.synthesizedEvent < 0 && super.isCharacters();
+    }
+
+    @Override
+    public boolean isWhiteSpace() {
+        return this.synthesizedEvent < 0 && super.isWhiteSpace();
+    }
+
+    @Override
+    public boolean hasText() {
+        return this.synthesizedEvent < 0 && super.hasText();
+    }
+
+    @Override
+    public boolean hasName() {
+        return this.synthesizedEvent >= 0 ? this.synthesizedName != null : super.hasName();
+    }
+
+    @Override
+    public QName getName() {
+        return this.synthesizedEvent >= 0 ? this.synthesizedName : super.getName();
+    }
+
+    @Override
+    public String getLocalName() {
+        return this.synthesizedEvent >= 0 ? this.synthesizedName.getLocalPart() : super.getLocalName();
+    }
+
+    @Override
+    public String getNamespaceURI() {
+        return this.synthesizedEvent >= 0 ? this.synthesizedName.getNamespaceURI() : super.getNamespaceURI();
+    }
+
+    @Override
+    public String getPrefix() {
+        return this.synthesizedEvent >= 0 ? this.synthesizedName.getPrefix() : super.getPrefix();
+    }
+
+    @Override
+    public int getNamespaceCount() {
+        return this.synthesizedEvent >= 0 ? 0 : super.getNamespaceCount();
+    }
+
+    @Override
+    public Location getLocation() {
+        return this.synthesizedEvent >= 0 && this.truncationLocation != null ? this.truncationLocation : super.getLocation();
+    }
+
+    /**
+     * Input stream that notes when it has been read to the end. The XML reader reads ahead, so this can be set before
+     * the reader reaches the end, but an error is only treated as truncation once it is.
+     */
+    public static class EndTrackingInputStream extends FilterInputStream {
+        private boolean atEnd = false;
+        private long bytesRead = 0;
+
+        /**
+         * Constructor
+         *
+         * @param input The stream to track
+         */
+        public EndTrackingInputStream(final InputStream input) {
+            super(input);
+        }
+
+        /**
+         * @return Whether the end of the stream has been read
+         */
+        public boolean isAtEnd() { return this.atEnd; }
+
+        /**
+         * @return The number of bytes read from the stream so far
+         */
+        public long getBytesRead() { return this.bytesRead; }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            this.atEnd |= read < 0;
+            this.bytesRead += read >= 0 ? 1 : 0;
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            this.atEnd |= read < 0;
+            this.bytesRead += Math.max(0, read);
+            return read;
+        }
+    }
+}
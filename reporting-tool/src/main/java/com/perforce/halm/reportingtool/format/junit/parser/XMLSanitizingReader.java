@@ -0,0 +1,282 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.format.junit.parser;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reader that repairs report input that isn't valid XML, so a stray control character in test output doesn't fail
+ * the whole report. Input is decoded and repaired as it is read, in constant memory:
+ * <ul>
+ *     <li>Byte sequences that aren't valid in the report's encoding are replaced with U+FFFD.</li>
+ *     <li>Characters that XML 1.0 doesn't allow, such as control characters, are dropped.</li>
+ *     <li>Character references to those characters, such as {@code &#27;}, are dropped.</li>
+ *     <li>Unpaired surrogates are replaced with U+FFFD.</li>
+ * </ul>
+ * The encoding is taken from the byte order mark or the XML declaration, defaulting to UTF-8.
+ * Readers are not thread safe.
+ */
+public class XMLSanitizingReader extends Reader {
+    private static final char REPLACEMENT_CHARACTER = '\uFFFD';
+    private static final int BUFFER_SIZE = 8192;
+    private static final int PROLOG_BYTES = 1024;
+    // The longest character reference we look for, such as "&#x10FFFF;"
+    private static final int MAX_REFERENCE_LENGTH = 12;
+    private static final Pattern ENCODING_PATTERN = Pattern.compile("^<\\?xml[^>]*?encoding\\s*=\\s*[\"']([A-Za-z0-9._:-]+)[\"']");
+
+    private final InputStream input;
+    private final CharsetDecoder decoder;
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CharBuffer decoded = CharBuffer.allocate(BUFFER_SIZE);
+    private boolean endOfInput = false;
+    private boolean flushed = false;
+    // Whether the last character passed along was the high half of a valid surrogate pair
+    private boolean inSurrogatePair = false;
+    private long repairedCharacters = 0;
+
+    /**
+     * Constructor
+     *
+     * @param input The report input. It is closed when the reader is closed.
+     * @throws IOException Thrown when the start of the input can't be read
+     */
+    public XMLSanitizingReader(final InputStream input) throws IOException {
+        BufferedInputStream bufferedInput = new BufferedInputStream(input, BUFFER_SIZE);
+        this.input = bufferedInput;
+        this.decoder = detectCharset(bufferedInput).newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        this.bytes.flip();
+        this.decoded.flip();
+    }
+
+    /**
+     * @return The number of characters that have been replaced or dropped so far
+     */
+    public long getRepairedCharacters() { return this.repairedCharacters; }
+
+    @Override
+    public int read(char[] target, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        int count = 0;
+        while (count < length) {
+            int c = this.peek(0);
+            if (c < 0) {
+                break;
+            }
+            if (c == '&' && this.peek(1) == '#') {
+                int referenceLength = this.getInvalidReferenceLength();
+                if (referenceLength > 0) {
+                    this.decoded.position(this.decoded.position() + referenceLength);
+                    this.repairedCharacters++;
+                    continue;
+                }
+            }
+            char ch = this.decoded.get();
+            if (Character.isHighSurrogate(ch)) {
+                int next = this.peek(0);
+                this.inSurrogatePair = next >= 0 && Character.isLowSurrogate((char) next);
+                target[offset + count++] = this.inSurrogatePair ? ch : this.repair(REPLACEMENT_CHARACTER);
+            } else if (Character.isLowSurrogate(ch)) {
+                target[offset + count++] = this.inSurrogatePair ? ch : this.repair(REPLACEMENT_CHARACTER);
+                this.inSurrogatePair = false;
+            } else if (isAllowed(ch)) {
+                target[offset + count++] = ch;
+            } else {
+                this.repairedCharacters++;
+            }
+        }
+        return count == 0 ? -1 : count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.input.close();
+    }
+
+    /**
+     * @param replacement The character to use instead
+     * @return The replacement, after counting the repair
+     */
+    private char repair(final char replacement) {
+        this.repairedCharacters++;
+        return replacement;
+    }
+
+    /**
+     * Checks whether the reader is at a character reference to a character XML doesn't allow.
+     *
+     * @return The length of the reference, or 0 if it isn't one
+     * @throws IOException Thrown when the input can't be read
+     */
+    private int getInvalidReferenceLength() throws IOException {
+        int index = 2;
+        int radix = 10;
+        if (this.peek(index) == 'x') {
+            radix = 16;
+            index++;
+        }
+        long codePoint = 0;
+        int digits = 0;
+        for (int c = this.peek(index); c != ';'; c = this.peek(++index)) {
+            int digit = c >= 0 ? Character.digit(c, radix) : -1;
+            if (digit < 0 || index >= MAX_REFERENCE_LENGTH - 1) {
+                return 0;
+            }
+            codePoint = codePoint * radix + digit;
+            digits++;
+        }
+        return digits > 0 && !isAllowed(codePoint) ? index + 1 : 0;
+    }
+
+    /**
+     * @param offset The number of characters ahead to look
+     * @return The decoded character at the offset, or -1 at the end of the input
+     * @throws IOException Thrown when the input can't be read
+     */
+    private int peek(final int offset) throws IOException {
+        while (this.decoded.remaining() <= offset) {
+            if (!this.decodeMore()) {
+                return -1;
+            }
+        }
+        return this.decoded.get(this.decoded.position() + offset);
+    }
+
+    /**
+     * Decodes more of the input, replacing byte sequences that aren't valid in the encoding.
+     *
+     * @return Whether any characters were decoded
+     * @throws IOException Thrown when the input can't be read
+     */
+    private boolean decodeMore() throws IOException {
+        if (this.flushed) {
+            return false;
+        }
+        this.decoded.compact();
+        int before = this.decoded.position();
+        try {
+            while (this.decoded.position() == before && this.decoded.hasRemaining()) {
+                if (!this.endOfInput) {
+                    this.bytes.compact();
+                    int read = this.input.read(this.bytes.array(), this.bytes.position(), this.bytes.remaining());
+                    if (read < 0) {
+                        this.endOfInput = true;
+                    } else {
+                        this.bytes.position(this.bytes.position() + read);
+                    }
+                    this.bytes.flip();
+                }
+                CoderResult result = this.decoder.decode(this.bytes, this.decoded, this.endOfInput);
+                if (result.isError()) {
+                    this.bytes.position(this.bytes.position() + result.length());
+                    this.decoded.put(this.repair(REPLACEMENT_CHARACTER));
+                } else if (this.endOfInput && result.isUnderflow()) {
+                    this.decoder.flush(this.decoded);
+                    this.flushed = true;
+                    break;
+                }
+            }
+        } finally {
+            this.decoded.flip();
+        }
+        return this.decoded.remaining() > before;
+    }
+
+    /**
+     * @param codePoint The code point
+     * @return Whether XML 1.0 allows the character
+     */
+    private static boolean isAllowed(final long codePoint) {
+        return codePoint == 0x9 || codePoint == 0xA || codePoint == 0xD || (codePoint >= 0x20 && codePoint <= 0xD7FF)
+                || (codePoint >= 0xE000 && codePoint <= 0xFFFD) || (codePoint >= 0x10000 && codePoint <= 0x10FFFF);
+    }
+
+    /**
+     * Finds the encoding of the input from its byte order mark or XML declaration, and skips the byte order mark.
+     *
+     * @param input The input, at its start
+     * @return The encoding, UTF-8 if none is given or it isn't supported
+     * @throws IOException Thrown when the input can't be read
+     */
+    private static Charset detectCharset(final BufferedInputStream input) throws IOException {
+        input.mark(PROLOG_BYTES);
+        byte[] prolog = new byte[PROLOG_BYTES];
+        int length = 0;
+        for (int read = 0; read >= 0 && length < prolog.length; length += read) {
+            read = input.read(prolog, length, prolog.length - length);
+            if (read < 0) {
+                break;
+            }
+        }
+        input.reset();
+
+        if (length >= 3 && (prolog[0] & 0xFF) == 0xEF && (prolog[1] & 0xFF) == 0xBB && (prolog[2] & 0xFF) == 0xBF) {
+            skipFully(input, 3);
+            return StandardCharsets.UTF_8;
+        } else if (length >= 2 && (prolog[0] & 0xFF) == 0xFE && (prolog[1] & 0xFF) == 0xFF) {
+            skipFully(input, 2);
+            return StandardCharsets.UTF_16BE;
+        } else if (length >= 2 && (prolog[0] & 0xFF) == 0xFF && (prolog[1] & 0xFF) == 0xFE) {
+            skipFully(input, 2);
+            return StandardCharsets.UTF_16LE;
+        }
+        Matcher matcher = ENCODING_PATTERN.matcher(new String(prolog, 0, length, StandardCharsets.ISO_8859_1));
+        if (matcher.find()) {
+            try {
+                return Charset.forName(matcher.group(1));
+            } catch (IllegalArgumentException ignored) {
+                // Unknown or unsupported encoding, fall back to UTF-8
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static void skipFully(final InputStream input, final long count) throws IOException {
+        for (long skipped = 0; skipped < count; ) {
+            long result = input.skip(count - skipped);
+            if (result <= 0) {
+                return;
+            }
+            skipped += result;
+        }
+    }
+}
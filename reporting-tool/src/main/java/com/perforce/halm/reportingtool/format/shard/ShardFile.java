@@ -0,0 +1,253 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.format.shard;
+
+import com.perforce.halm.rest.types.IDLabelPair;
+import com.perforce.halm.rest.types.NameValuePair;
+import com.perforce.halm.rest.types.automation.build.AutomationResult;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Layout of the intermediate files written when the report files of one test run are converted on several nodes.
+ * <p>
+ * A shard file starts with {@link #MAGIC} and the format version, followed by a gzip stream holding the shard header
+ * and the converted results. The header holds the shard ID, the number of report files converted, the shard's start
+ * date and duration, and its build properties. Results follow in order of their uniqueName before collisions were
+ * resolved, then in the order they were converted, so shard files can be merged without sorting them again.
+ * <p>
+ * Numbers are written as variable length integers, and strings as UTF-8 prefixed with their length plus one, so
+ * null can be told apart from empty.
+ */
+public final class ShardFile {
+    /** The bytes every shard file starts with */
+    static final byte[] MAGIC = "HALMSHRD".getBytes(StandardCharsets.US_ASCII);
+    /** The version of the layout written by this reporting tool */
+    static final int VERSION = 1;
+
+    private static final int NULL_NUMBER = 0;
+    private static final int INTEGER_NUMBER = 1;
+    private static final int DECIMAL_NUMBER = 2;
+    private static final int LONG_NUMBER = 3;
+
+    /**
+     * Writes a converted result.
+     *
+     * @param output The output to write to
+     * @param result The result to write
+     * @throws IOException Thrown when the output can't be written
+     */
+    static void writeResult(final DataOutput output, final AutomationResult result) throws IOException {
+        writeString(output, result.getUniqueName());
+        writeString(output, result.getName());
+        if (result.getStatus() != null) {
+            output.writeBoolean(true);
+            writeNumber(output, result.getStatus().getId());
+            writeString(output, result.getStatus().getLabel());
+        } else {
+            output.writeBoolean(false);
+        }
+        writeStringList(output, result.getTags());
+        writeString(output, result.getDevice());
+        writeString(output, result.getManufacturer());
+        writeString(output, result.getModel());
+        writeString(output, result.getOS());
+        writeString(output, result.getOSVersion());
+        writeString(output, result.getBrowser());
+        writeString(output, result.getBrowserVersion());
+        writeString(output, result.getExternalURL());
+        writeString(output, result.getErrorMessage());
+        writeString(output, result.getStartDate());
+        writeNumber(output, result.getDuration());
+        writeProperties(output, result.getProperties());
+    }
+
+    /**
+     * Reads a converted result.
+     *
+     * @param input The input to read from
+     * @return The result
+     * @throws IOException Thrown when the input can't be read
+     */
+    static AutomationResult readResult(final DataInput input) throws IOException {
+        AutomationResult result = new AutomationResult();
+        result.setUniqueName(readString(input));
+        result.setName(readString(input));
+        if (input.readBoolean()) {
+            result.setStatus(new IDLabelPair(readNumber(input), readString(input)));
+        }
+        result.setTags(readStringList(input));
+        result.setDevice(readString(input));
+        result.setManufacturer(readString(input));
+        result.setModel(readString(input));
+        result.setOS(readString(input));
+        result.setOSVersion(readString(input));
+        result.setBrowser(readString(input));
+        result.setBrowserVersion(readString(input));
+        result.setExternalURL(readString(input));
+        result.setErrorMessage(readString(input));
+        result.setStartDate(readString(input));
+        result.setDuration(readNumber(input));
+        result.setProperties(readProperties(input));
+        return result;
+    }
+
+    static void writeProperties(final DataOutput output, final List<NameValuePair> properties) throws IOException {
+        if (properties == null) {
+            writeVarLong(output, 0);
+            return;
+        }
+        writeVarLong(output, properties.size() + 1L);
+        for (NameValuePair property : properties) {
+            writeString(output, property.getName());
+            writeString(output, property.getValue());
+        }
+    }
+
+    static List<NameValuePair> readProperties(final DataInput input) throws IOException {
+        long count = readVarLong(input) - 1;
+        if (count < 0) {
+            return null;
+        }
+        List<NameValuePair> properties = new ArrayList<>();
+        for (long i = 0; i < count; i++) {
+            properties.add(new NameValuePair(readString(input), readString(input)));
+        }
+        return properties;
+    }
+
+    private static void writeStringList(final DataOutput output, final List<String> values) throws IOException {
+        if (values == null) {
+            writeVarLong(output, 0);
+            return;
+        }
+        writeVarLong(output, values.size() + 1L);
+        for (String value : values) {
+            writeString(output, value);
+        }
+    }
+
+    private static List<String> readStringList(final DataInput input) throws IOException {
+        long count = readVarLong(input) - 1;
+        if (count < 0) {
+            return null;
+        }
+        List<String> values = new ArrayList<>();
+        for (long i = 0; i < count; i++) {
+            values.add(readString(input));
+        }
+        return values;
+    }
+
+    static void writeString(final DataOutput output, final String value) throws IOException {
+        if (value == null) {
+            writeVarLong(output, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(output, bytes.length + 1L);
+        output.write(bytes);
+    }
+
+    static String readString(final DataInput input) throws IOException {
+        long length = readVarLong(input) - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("The shard file is corrupt.");
+        }
+        byte[] bytes = new byte[(int) length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeNumber(final DataOutput output, final Number value) throws IOException {
+        if (value == null) {
+            output.writeByte(NULL_NUMBER);
+        } else if (value instanceof Double || value instanceof Float) {
+            output.writeByte(DECIMAL_NUMBER);
+            output.writeDouble(value.doubleValue());
+        } else {
+            // Integers and longs are told apart, so results match those converted on a single node.
+            output.writeByte(value instanceof Integer || value instanceof Short || value instanceof Byte ? INTEGER_NUMBER : LONG_NUMBER);
+            long number = value.longValue();
+            // Zigzag encoded, so small negative numbers stay short.
+            writeVarLong(output, (number << 1) ^ (number >> 63));
+        }
+    }
+
+    static Number readNumber(final DataInput input) throws IOException {
+        int type = input.readByte();
+        switch (type) {
+            case NULL_NUMBER:
+                return null;
+            case DECIMAL_NUMBER:
+                return input.readDouble();
+            case INTEGER_NUMBER:
+            case LONG_NUMBER:
+                long encoded = readVarLong(input);
+                long number = (encoded >>> 1) ^ -(encoded & 1);
+                if (type == INTEGER_NUMBER) {
+                    return (int) number;
+                }
+                return number;
+            default:
+                throw new IOException("The shard file is corrupt.");
+        }
+    }
+
+    static void writeVarLong(final DataOutput output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+
+    static long readVarLong(final DataInput input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = input.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("The shard file is corrupt.");
+    }
+
+    /**
+     * Private constructor so this cannot be initialized
+     */
+    private ShardFile() {}
+}
@@ -0,0 +1,342 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.format.shard;
+
+import com.perforce.halm.reportingtool.format.BuildSummary;
+import com.perforce.halm.reportingtool.format.DuplicateResultMerger;
+import com.perforce.halm.reportingtool.format.FailureDeduplicator;
+import com.perforce.halm.reportingtool.format.IMetaBuild;
+import com.perforce.halm.reportingtool.format.PayloadBudget;
+import com.perforce.halm.reportingtool.format.ResultFilter;
+import com.perforce.halm.reportingtool.format.UniqueNameTracker;
+import com.perforce.halm.reportingtool.format.junit.JUnitMetaBuild;
+import com.perforce.halm.reportingtool.metrics.RunPhase;
+import com.perforce.halm.reportingtool.models.BuildMetadata;
+import com.perforce.halm.reportingtool.models.ConversionOptions;
+import com.perforce.halm.rest.types.NameValuePair;
+import com.perforce.halm.rest.types.automation.build.AutomationBuild;
+import com.perforce.halm.rest.types.automation.build.AutomationResult;
+import com.perforce.halm.rest.types.automation.build.AutomationResultStatus;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Build formatter object for merging the shard files written on each node of a sharded test run into one build.
+ * <p>
+ * Each shard file is already sorted by uniqueName, so the shards are merged a result at a time, without holding them
+ * in memory. Results with the same uniqueName are taken in order of shard ID, then in the order they were converted,
+ * so {@link UniqueNameTracker} resolves collisions the same way however the shard files are listed. The build's start
+ * date is the earliest shard's, and its duration runs until the last shard finished; for shards without start dates,
+ * durations are added together. Shard build properties are kept, with identical ones only added once, except for
+ * counts such as skippedReportFiles, which are added together with any counted while merging.
+ * <p>
+ * When duplicate results are merged, such as the results of a shard and of its retry, results with the same
+ * uniqueName arrive together, so only one result is held while they are merged.
+ */
+public class ShardMetaBuild extends IMetaBuild {
+    /**
+     * Build properties that count something in each shard, so are added together when the shards are merged
+     */
+    private static final Set<String> COUNTER_PROPERTIES = new HashSet<>(Arrays.asList(
+            ResultFilter.EXCLUDED_RESULTS_PROPERTY, ResultFilter.PASSED_RESULTS_PROPERTY, ResultFilter.SAMPLED_PASSED_RESULTS_PROPERTY,
+            JUnitMetaBuild.SKIPPED_REPORT_FILES_PROPERTY, JUnitMetaBuild.TRUNCATED_REPORT_FILES_PROPERTY,
+            JUnitMetaBuild.TRUNCATED_FIELDS_PROPERTY, JUnitMetaBuild.REPAIRED_CHARACTERS_PROPERTY,
+            FailureDeduplicator.DUPLICATE_BODIES_PROPERTY, DuplicateResultMerger.MERGED_DUPLICATES_PROPERTY,
+            DuplicateResultMerger.FLAKY_RESULTS_PROPERTY, PayloadBudget.DROPPED_PASS_DETAILS_PROPERTY, PayloadBudget.DROPPED_BODIES_PROPERTY));
+
+    /**
+     * Function that merges the specified shard files, and returns an automation build object that can be sent to Helix ALM
+     *
+     * @param buildNumber The build number to specify when submitting the build
+     * @param reportFiles The shard files to merge
+     * @param buildMetadata The metadata for the build
+     * @return See description
+     */
+    @Override
+    public AutomationBuild generateAutomationBuild(final String buildNumber, final Iterable<String> reportFiles, final BuildMetadata buildMetadata) {
+        List<AutomationResult> results = new ArrayList<>();
+        AutomationBuild build = this.streamAutomationBuild(buildNumber, reportFiles, buildMetadata, results::add);
+        if (build != null) {
+            results.forEach(build::addResult);
+        }
+        return build;
+    }
+
+    /**
+     * Function that merges the specified shard files, passing each automation result to the consumer in uniqueName
+     * order. Returns the automation build object, without results, once every result has been passed along.
+     *
+     * @param buildNumber The build number to specify when submitting the build
+     * @param reportFiles The shard files to merge
+     * @param buildMetadata The metadata for the build
+     * @param resultConsumer The consumer to pass each automation result to
+     * @return See description
+     */
+    @Override
+    public AutomationBuild streamAutomationBuild(final String buildNumber, final Iterable<String> reportFiles, final BuildMetadata buildMetadata,
+                                                 final Consumer<AutomationResult> resultConsumer) {
+        List<ShardReader> shards = new ArrayList<>();
+        try {
+            long startTime = this.metrics.startTimer();
+            for (String shardFile : reportFiles) {
+                shards.add(new ShardReader(Paths.get(shardFile)));
+            }
+            this.metrics.recordPhase(RunPhase.parse, startTime);
+            if (shards.isEmpty()) {
+                return null;
+            }
+            shards.sort(Comparator.comparing(ShardReader::getShardID).thenComparing(ShardReader::getPath));
+            this.reportFileCount = 0;
+            for (int i = 0; i < shards.size(); i++) {
+                this.reportFileCount += shards.get(i).getReportFileCount();
+                if (i > 0 && shards.get(i).getShardID().equals(shards.get(i - 1).getShardID())) {
+                    //todo: ENHANCEMENT - Implement actual error logging.
+                    System.err.println(String.format("Shard %s is in both %s and %s.", shards.get(i).getShardID(),
+                            shards.get(i - 1).getPath(), shards.get(i).getPath()));
+                }
+            }
+
+            // The other filters don't depend on how a test turned out, so each shard has already applied them.
+            ConversionOptions outcomeOptions = new ConversionOptions();
+            outcomeOptions.setStatuses(this.conversionOptions.getStatuses());
+            outcomeOptions.setPassSampleRate(this.conversionOptions.getPassSampleRate());
+            ResultFilter resultFilter = new ResultFilter(outcomeOptions);
+            PayloadBudget payloadBudget = new PayloadBudget(this.conversionOptions.getPayloadBudgetBytes());
+            DuplicateResultMerger duplicateMerger = new DuplicateResultMerger(this.conversionOptions.getDuplicatePolicy());
+            FailureDeduplicator failureDeduplicator = this.conversionOptions.isDeduplicateFailures()
+                    ? new FailureDeduplicator(this.conversionOptions.isFingerprintLineNumbers()) : null;
+            if (payloadBudget.isActive() && (outcomeOptions.getStatuses().isEmpty()
+                    || outcomeOptions.getStatuses().contains(AutomationResultStatus.FAILED))) {
+                this.reserveFailureBodies(shards, payloadBudget);
+            }
+            this.mergeResults(shards, resultFilter, payloadBudget, duplicateMerger, failureDeduplicator, resultConsumer);
+
+            AutomationBuild build = new AutomationBuild();
+            setBuildMetadata(build, buildNumber, buildMetadata);
+            setMergedTiming(build, shards);
+            List<NameValuePair> properties = new ArrayList<>();
+            for (ShardReader shard : shards) {
+                properties.addAll(shard.getProperties());
+            }
+            AutomationBuild mergeProperties = new AutomationBuild();
+            resultFilter.addBuildProperties(mergeProperties);
+            duplicateMerger.addBuildProperties(mergeProperties);
+            if (failureDeduplicator != null) {
+                failureDeduplicator.addBuildProperties(mergeProperties);
+            }
+            payloadBudget.addBuildProperties(mergeProperties);
+            if (mergeProperties.getProperties() != null) {
+                properties.addAll(mergeProperties.getProperties());
+            }
+            addMergedProperties(build, properties);
+            return build;
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new RuntimeException(e);
+        } finally {
+            for (ShardReader shard : shards) {
+                try {
+                    shard.close();
+                } catch (IOException ignored) {}
+            }
+        }
+    }
+
+    /**
+     * Reads the shards ahead of merging them, to set aside room in the budget for every failure and error body.
+     * Failures can come after any number of passes, so their bodies are counted before anything is sent.
+     *
+     * @param shards The shards
+     * @param payloadBudget The budget for the merged build's payload
+     * @throws IOException Thrown when a shard file can't be read
+     */
+    private void reserveFailureBodies(final List<ShardReader> shards, final PayloadBudget payloadBudget) throws IOException {
+        long startTime = this.metrics.startTimer();
+        for (ShardReader shard : shards) {
+            try (ShardReader reader = new ShardReader(Paths.get(shard.getPath()))) {
+                while (reader.hasNext()) {
+                    payloadBudget.reserveBodies(reader.next());
+                }
+            }
+        }
+        this.metrics.recordPhase(RunPhase.scan, startTime);
+    }
+
+    /**
+     * Merges the results of the shards, which are each sorted by uniqueName, passing them to the consumer.
+     *
+     * @param shards The shards, in shard ID order
+     * @param resultFilter Applies the status filter and pass sampling to the merged results
+     * @param payloadBudget The budget for the merged build's payload
+     * @param duplicateMerger Merges results with the same uniqueName, if duplicates are merged
+     * @param failureDeduplicator Removes repeated failure bodies from the merged results, or null to keep every body
+     * @param resultConsumer The consumer to pass each automation result to
+     * @throws IOException Thrown when a shard file can't be read
+     */
+    private void mergeResults(final List<ShardReader> shards, final ResultFilter resultFilter, final PayloadBudget payloadBudget,
+                              final DuplicateResultMerger duplicateMerger, final FailureDeduplicator failureDeduplicator,
+                              final Consumer<AutomationResult> resultConsumer) throws IOException {
+        final UniqueNameTracker uniqueNameTracker = this.createUniqueNameTracker();
+        final Consumer<AutomationResult> recordingConsumer = result -> {
+            payloadBudget.release(result);
+            if (failureDeduplicator != null) {
+                failureDeduplicator.apply(result);
+            }
+            payloadBudget.apply(result);
+            this.metrics.recordResult(result);
+            resultConsumer.accept(result);
+        };
+        final Consumer<AutomationResult> mergedConsumer = result -> {
+            if (resultFilter.acceptOutcome(BuildSummary.getStatus(result), result::getUniqueName)) {
+                recordingConsumer.accept(result);
+            }
+        };
+        // The position in the list breaks ties, so each merge takes results in the same order.
+        PriorityQueue<Integer> next = new PriorityQueue<>(Math.max(1, shards.size()), (first, second) -> {
+            int compared = shards.get(first).peekUniqueName().compareTo(shards.get(second).peekUniqueName());
+            return compared != 0 ? compared : Integer.compare(first, second);
+        });
+        for (int i = 0; i < shards.size(); i++) {
+            if (shards.get(i).hasNext()) {
+                next.add(i);
+            }
+        }
+        String mergingUniqueName = null;
+        while (!next.isEmpty()) {
+            long startTime = this.metrics.startTimer();
+            int shard = next.poll();
+            AutomationResult result = shards.get(shard).next();
+            this.metrics.recordPhase(RunPhase.convert, startTime);
+            if (duplicateMerger.isActive()) {
+                // Every duplicate of the results being merged has been read once the uniqueName changes.
+                String uniqueName = result.getUniqueName() != null ? result.getUniqueName() : "";
+                if (!uniqueName.equals(mergingUniqueName)) {
+                    duplicateMerger.flush(uniqueNameTracker, mergedConsumer);
+                    mergingUniqueName = uniqueName;
+                }
+                duplicateMerger.add(result);
+            } else if (resultFilter.acceptOutcome(BuildSummary.getStatus(result), result::getUniqueName)) {
+                // Sampled by the uniqueName the result asked for, before it is made unique.
+                uniqueNameTracker.ensureUniqueNameForResult(result);
+                recordingConsumer.accept(result);
+            }
+            if (shards.get(shard).hasNext()) {
+                next.add(shard);
+            }
+        }
+        duplicateMerger.flush(uniqueNameTracker, mergedConsumer);
+    }
+
+    /**
+     * Adds the shards' build properties to the merged build. Counts are added together into one property, in the
+     * position of the first; other properties are added once for each distinct value.
+     *
+     * @param build The merged build
+     * @param properties The build properties of every shard, followed by those counted while merging
+     */
+    private static void addMergedProperties(final AutomationBuild build, final List<NameValuePair> properties) {
+        Map<String, NameValuePair> counters = new HashMap<>();
+        Set<String> addedProperties = new HashSet<>();
+        for (NameValuePair property : properties) {
+            Long count = isCounter(property.getName()) ? parseCount(property.getValue()) : null;
+            if (count != null) {
+                NameValuePair counter = counters.get(property.getName());
+                if (counter == null) {
+                    counter = new NameValuePair(property.getName(), String.valueOf(count));
+                    counters.put(property.getName(), counter);
+                    build.addProperty(counter);
+                } else {
+                    counter.setValue(String.valueOf(Long.parseLong(counter.getValue()) + count));
+                }
+            } else if (addedProperties.add(property.getName() + '\u0000' + property.getValue())) {
+                build.addProperty(property);
+            }
+        }
+    }
+
+    /**
+     * @param name A build property name
+     * @return Whether the property counts something, so is added together across shards
+     */
+    private static boolean isCounter(final String name) {
+        return name != null && (COUNTER_PROPERTIES.contains(name) || name.startsWith(FailureDeduplicator.FINGERPRINT_COUNT_PROPERTY_PREFIX));
+    }
+
+    /**
+     * @param value A build property value
+     * @return The count, or null if the value isn't one
+     */
+    private static Long parseCount(final String value) {
+        try {
+            return value != null ? Long.parseLong(value) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Sets the start date and duration of the build from those of the shards.
+     *
+     * @param build The build to set the timing on
+     * @param shards The shards
+     */
+    private static void setMergedTiming(final AutomationBuild build, final List<ShardReader> shards) {
+        Long earliestStart = null;
+        String startDate = null;
+        long latestEnd = 0;
+        long totalDuration = 0;
+        for (ShardReader shard : shards) {
+            long duration = shard.getDuration() != null ? shard.getDuration().longValue() : 0;
+            if (shard.getStartMillis() != null) {
+                if (earliestStart == null || shard.getStartMillis() < earliestStart) {
+                    earliestStart = shard.getStartMillis();
+                    startDate = shard.getStartDate();
+                }
+                latestEnd = Math.max(latestEnd, shard.getStartMillis() + duration);
+            } else {
+                totalDuration += duration;
+            }
+        }
+        if (earliestStart != null) {
+            build.setStartDate(startDate);
+            build.setDuration(latestEnd - earliestStart);
+        } else {
+            build.setDuration(totalDuration);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.format.shard;
+
+import com.perforce.halm.rest.types.NameValuePair;
+import com.perforce.halm.rest.types.automation.build.AutomationResult;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads a shard file one result at a time. The header is read when the file is opened; see {@link ShardFile}.
+ */
+public class ShardReader implements Closeable {
+    private final String path;
+    private final DataInputStream data;
+    private final String shardID;
+    private final int reportFileCount;
+    private final String startDate;
+    private final Long startMillis;
+    private final Number duration;
+    private final List<NameValuePair> properties;
+    private final long resultCount;
+    private long resultsRead = 0;
+    private AutomationResult nextResult = null;
+
+    /**
+     * Opens the shard file and reads its header.
+     *
+     * @param path The shard file
+     * @throws IOException Thrown when the file can't be read, or isn't a shard file
+     */
+    public ShardReader(final Path path) throws IOException {
+        this.path = path.toString();
+        InputStream input = new BufferedInputStream(Files.newInputStream(path), 64 * 1024);
+        try {
+            byte[] magic = new byte[ShardFile.MAGIC.length];
+            int read = 0;
+            while (read < magic.length) {
+                int count = input.read(magic, read, magic.length - read);
+                if (count < 0) {
+                    break;
+                }
+                read += count;
+            }
+            if (!Arrays.equals(magic, ShardFile.MAGIC)) {
+                throw new IOException(String.format("%s is not a shard file.", path));
+            }
+            int version = new DataInputStream(input).readInt();
+            if (version != ShardFile.VERSION) {
+                throw new IOException(String.format("Shard file %s has version %d, but only version %d can be read.", path, version, ShardFile.VERSION));
+            }
+            this.data = new DataInputStream(new GZIPInputStream(input, 64 * 1024));
+            this.shardID = ShardFile.readString(this.data);
+            this.reportFileCount = (int) ShardFile.readVarLong(this.data);
+            this.startDate = ShardFile.readString(this.data);
+            this.startMillis = this.data.readBoolean() ? this.data.readLong() : null;
+            this.duration = ShardFile.readNumber(this.data);
+            List<NameValuePair> buildProperties = ShardFile.readProperties(this.data);
+            this.properties = buildProperties != null ? buildProperties : Collections.emptyList();
+            this.resultCount = ShardFile.readVarLong(this.data);
+        } catch (IOException | RuntimeException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    public String getPath() { return this.path; }
+    public String getShardID() { return this.shardID; }
+    public int getReportFileCount() { return this.reportFileCount; }
+    public String getStartDate() { return this.startDate; }
+    public Number getDuration() { return this.duration; }
+    public List<NameValuePair> getProperties() { return this.properties; }
+    public long getResultCount() { return this.resultCount; }
+
+    /**
+     * @return The shard's start date in milliseconds since the epoch, or null if the shard has no start date
+     */
+    public Long getStartMillis() { return this.startMillis; }
+
+    /**
+     * @return Whether there is another result
+     * @throws IOException Thrown when the file can't be read
+     */
+    public boolean hasNext() throws IOException {
+        if (this.nextResult == null && this.resultsRead < this.resultCount) {
+            this.nextResult = ShardFile.readResult(this.data);
+            this.resultsRead++;
+        }
+        return this.nextResult != null;
+    }
+
+    /**
+     * @return The uniqueName of the next result, before collisions between shards were resolved. Only available once
+     *         {@link #hasNext()} has returned true.
+     */
+    public String peekUniqueName() {
+        if (this.nextResult == null) {
+            throw new NoSuchElementException();
+        }
+        return this.nextResult.getUniqueName() != null ? this.nextResult.getUniqueName() : "";
+    }
+
+    /**
+     * @return The next result
+     * @throws IOException Thrown when the file can't be read
+     */
+    public AutomationResult next() throws IOException {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        AutomationResult result = this.nextResult;
+        this.nextResult = null;
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.data.close();
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.format.shard;
+
+import com.perforce.halm.reportingtool.format.UniqueNameTracker;
+import com.perforce.halm.reportingtool.format.junit.JUnitUtils;
+import com.perforce.halm.rest.types.automation.build.AutomationBuild;
+import com.perforce.halm.rest.types.automation.build.AutomationResult;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Collects the converted results of one shard of a test run, and writes them to a shard file. Results are kept
+ * encoded until the file is written, as they have to be sorted by uniqueName first; see {@link ShardFile}.
+ * <p>
+ * Convert the results with a {@link BaseNameTracker}, so uniqueName collisions are left for the merge to resolve
+ * across every shard.
+ */
+public class ShardWriter {
+    private final String shardID;
+    private final List<EncodedResult> results = new ArrayList<>();
+    private final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    private final DataOutputStream encoder = new DataOutputStream(this.encoded);
+
+    /**
+     * A result encoded as it will be written, with the uniqueName it is sorted by
+     */
+    private static final class EncodedResult {
+        private final String uniqueName;
+        private final byte[] bytes;
+
+        EncodedResult(final String uniqueName, final byte[] bytes) {
+            this.uniqueName = uniqueName;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Tracker that gives results without a uniqueName their name, like {@link UniqueNameTracker}, but leaves
+     * collisions alone
+     */
+    public static class BaseNameTracker extends UniqueNameTracker {
+        @Override
+        public void ensureUniqueNameForResult(AutomationResult result) {
+            if (result.getUniqueName() == null || result.getUniqueName().isEmpty()) {
+                result.setUniqueName(result.getName() != null ? result.getName() : "");
+            }
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param shardID Identifies the shard, and orders its results against other shards with the same uniqueNames
+     */
+    public ShardWriter(final String shardID) {
+        this.shardID = shardID;
+    }
+
+    /**
+     * @return The number of results added so far
+     */
+    public int getResultCount() { return this.results.size(); }
+
+    /**
+     * Adds a converted result to the shard.
+     *
+     * @param result The result to add
+     */
+    public void addResult(final AutomationResult result) {
+        try {
+            this.encoded.reset();
+            ShardFile.writeResult(this.encoder, result);
+            this.encoder.flush();
+            String uniqueName = result.getUniqueName() != null ? result.getUniqueName() : "";
+            this.results.add(new EncodedResult(uniqueName, this.encoded.toByteArray()));
+        } catch (IOException e) {
+            // Only thrown by the stream, which writes to memory.
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the shard file.
+     *
+     * @param output The stream to write to. It is finished, but not closed.
+     * @param reportFileCount The number of report files converted for the shard
+     * @param build The build converted for the shard, without results
+     * @throws IOException Thrown when the output can't be written
+     */
+    public void write(final OutputStream output, final int reportFileCount, final AutomationBuild build) throws IOException {
+        // A stable sort, so results with the same uniqueName stay in the order they were converted.
+        this.results.sort(Comparator.comparing(result -> result.uniqueName));
+
+        output.write(ShardFile.MAGIC);
+        new DataOutputStream(output).writeInt(ShardFile.VERSION);
+        GZIPOutputStream compressed = new GZIPOutputStream(output, 64 * 1024);
+        DataOutputStream data = new DataOutputStream(compressed);
+        ShardFile.writeString(data, this.shardID);
+        ShardFile.writeVarLong(data, reportFileCount);
+        ShardFile.writeString(data, build.getStartDate());
+        Long startMillis = getStartMillis(build.getStartDate());
+        data.writeBoolean(startMillis != null);
+        if (startMillis != null) {
+            data.writeLong(startMillis);
+        }
+        ShardFile.writeNumber(data, build.getDuration());
+        ShardFile.writeProperties(data, build.getProperties());
+        ShardFile.writeVarLong(data, this.results.size());
+        for (EncodedResult result : this.results) {
+            data.write(result.bytes);
+        }
+        data.flush();
+        compressed.finish();
+    }
+
+    /**
+     * @param startDate The build's start date
+     * @return The start date in milliseconds since the epoch, or null if there isn't one or it can't be parsed
+     */
+    private static Long getStartMillis(final String startDate) {
+        if (startDate == null || startDate.isEmpty()) {
+            return null;
+        }
+        try {
+            return JUnitUtils.parseISO8601StringToInstant(startDate).toEpochMilli();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,400 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.input;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a directory for report files as a test run writes them, so each one can be converted as soon as it is
+ * complete instead of after the whole run. Report files already in the directory, and files written to it or to its
+ * subdirectories later, are returned by the iterator once they have settled: their size and modification time
+ * haven't changed for the settle time. Iteration blocks while waiting for files, and ends once the sentinel file
+ * appears in the directory and every report file has settled, or once the timeout has passed. At the timeout,
+ * files that haven't settled are returned as they are.
+ * <p>
+ * Iterating again returns the files already returned, then carries on watching, so a formatter that reads the report
+ * files twice still sees every file. Only iterate on one thread at a time.
+ */
+public class ReportDirectoryWatcher implements Iterable<String>, Closeable {
+    /** Report files matched by default */
+    public static final String DEFAULT_PATTERN = "*.xml";
+
+    private final Path directory;
+    private PathMatcher reportMatcher = FileSystems.getDefault().getPathMatcher("glob:" + DEFAULT_PATTERN);
+    private String sentinelName = null;
+    private long settleNanos = TimeUnit.SECONDS.toNanos(2);
+    private long timeoutNanos = 0;
+
+    private WatchService watchService = null;
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    private final Map<Path, PendingFile> pendingFiles = new LinkedHashMap<>();
+    private final Set<Path> knownFiles = new HashSet<>();
+    private final Set<Path> changedAfterRead = new HashSet<>();
+    private final List<String> settledFiles = new ArrayList<>();
+    private long deadline = 0;
+    private boolean sentinelFound = false;
+    private boolean finished = false;
+
+    /**
+     * A report file that has been seen, but hasn't settled yet
+     */
+    private static final class PendingFile {
+        private long size;
+        private long modified;
+        private long checkedAt;
+
+        PendingFile(final long size, final long modified, final long checkedAt) {
+            this.size = size;
+            this.modified = modified;
+            this.checkedAt = checkedAt;
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param directory The directory the test run writes its report files to
+     */
+    public ReportDirectoryWatcher(final Path directory) {
+        this.directory = directory.toAbsolutePath().normalize();
+    }
+
+    /**
+     * @param pattern Glob matched against the name of each file to find report files. Defaults to {@value #DEFAULT_PATTERN}.
+     */
+    public void setPattern(String pattern) {
+        this.reportMatcher = FileSystems.getDefault().getPathMatcher("glob:" + (pattern != null ? pattern : DEFAULT_PATTERN));
+    }
+
+    /**
+     * @param sentinelName Name of the file in the watched directory that marks the end of the test run, or null to
+     *                     only stop at the timeout
+     */
+    public void setSentinelName(String sentinelName) {
+        this.sentinelName = sentinelName != null && !sentinelName.isEmpty() ? sentinelName : null;
+    }
+
+    /**
+     * @param settleMillis How long a report file's size and modification time must stay the same before it is read
+     */
+    public void setSettleMillis(long settleMillis) {
+        this.settleNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, settleMillis));
+    }
+
+    /**
+     * @param timeoutSeconds How long to watch before reading the remaining files and stopping, or 0 to only stop at
+     *                       the sentinel file
+     */
+    public void setTimeoutSeconds(long timeoutSeconds) {
+        this.timeoutNanos = TimeUnit.SECONDS.toNanos(Math.max(0, timeoutSeconds));
+    }
+
+    /**
+     * Starts watching the directory, and finds the report files already in it.
+     *
+     * @throws IOException Thrown when the directory can't be watched
+     */
+    public void start() throws IOException {
+        if (this.sentinelName == null && this.timeoutNanos == 0) {
+            throw new IllegalStateException("A sentinel file or a timeout is needed to know when to stop watching.");
+        }
+        if (!Files.isDirectory(this.directory)) {
+            throw new NoSuchFileException(this.directory.toString(), null, "The watched directory does not exist.");
+        }
+        this.watchService = this.directory.getFileSystem().newWatchService();
+        this.deadline = System.nanoTime() + this.timeoutNanos;
+        this.registerTree(this.directory);
+    }
+
+    /**
+     * @return An iterator over the report file paths, in the order they settled
+     */
+    @Override
+    public Iterator<String> iterator() {
+        if (this.watchService == null && !this.finished) {
+            throw new IllegalStateException("The watcher has not been started.");
+        }
+        return new Iterator<String>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                while (this.index >= settledFiles.size() && !finished) {
+                    awaitReportFiles();
+                }
+                return this.index < settledFiles.size();
+            }
+
+            @Override
+            public String next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return settledFiles.get(this.index++);
+            }
+        };
+    }
+
+    /**
+     * Stops watching. Files that haven't settled are not returned.
+     */
+    @Override
+    public void close() {
+        this.finished = true;
+        if (this.watchService != null) {
+            try {
+                this.watchService.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    /**
+     * Waits until at least one report file settles, or watching ends.
+     */
+    private void awaitReportFiles() {
+        try {
+            int settledBefore = this.settledFiles.size();
+            while (!this.finished && this.settledFiles.size() == settledBefore) {
+                long now = System.nanoTime();
+                if (this.timeoutNanos > 0 && now - this.deadline >= 0) {
+                    this.finish(String.format("Stopped watching %s after %d seconds", this.directory,
+                            TimeUnit.NANOSECONDS.toSeconds(this.timeoutNanos)), true);
+                    break;
+                }
+                this.settlePendingFiles(now);
+                if (this.settledFiles.size() > settledBefore) {
+                    break;
+                }
+                if (this.sentinelFound && this.pendingFiles.isEmpty()) {
+                    this.finish(String.format("Found %s in %s", this.sentinelName, this.directory), false);
+                    break;
+                }
+                this.processEvents(this.waitNanos(now));
+            }
+        } catch (IOException e) {
+            this.close();
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.close();
+        } catch (ClosedWatchServiceException e) {
+            this.finished = true;
+        }
+    }
+
+    /**
+     * @param now The current time
+     * @return How long to wait for changes before checking the pending files or the timeout again, or -1 to wait
+     *         until something changes
+     */
+    private long waitNanos(final long now) {
+        long wait = -1;
+        for (PendingFile pending : this.pendingFiles.values()) {
+            long untilCheck = Math.max(0, pending.checkedAt + this.settleNanos - now);
+            wait = wait < 0 ? untilCheck : Math.min(wait, untilCheck);
+        }
+        if (this.timeoutNanos > 0) {
+            long untilDeadline = Math.max(0, this.deadline - now);
+            wait = wait < 0 ? untilDeadline : Math.min(wait, untilDeadline);
+        }
+        return wait;
+    }
+
+    /**
+     * Waits for changes in the watched directories, and records them.
+     *
+     * @param waitNanos How long to wait for the first change, or -1 to wait until something changes
+     * @throws IOException Thrown when a new directory can't be watched
+     * @throws InterruptedException Thrown when the thread is interrupted while waiting
+     */
+    private void processEvents(final long waitNanos) throws IOException, InterruptedException {
+        WatchKey key = waitNanos < 0 ? this.watchService.take() : this.watchService.poll(waitNanos, TimeUnit.NANOSECONDS);
+        while (key != null) {
+            Path watchedDirectory = this.watchedDirectories.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // Events were lost, so look at everything again.
+                    this.registerTree(this.directory);
+                } else if (watchedDirectory != null) {
+                    Path changed = watchedDirectory.resolve((Path) event.context());
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changed)) {
+                        this.registerTree(changed);
+                    } else if (event.kind() != StandardWatchEventKinds.ENTRY_DELETE) {
+                        this.fileChanged(changed);
+                    }
+                }
+            }
+            if (!key.reset()) {
+                this.watchedDirectories.remove(key);
+            }
+            key = this.watchService.poll();
+        }
+    }
+
+    /**
+     * Watches the directory and its subdirectories, and records the files in them.
+     *
+     * @param root The directory to watch
+     * @throws IOException Thrown when a directory can't be watched
+     */
+    private void registerTree(final Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+                if (!watchedDirectories.containsValue(dir)) {
+                    watchedDirectories.put(dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE), dir);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                fileChanged(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                // The file was removed while the directory was being read.
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Records that a file was created or written to. Pending report files have to settle again.
+     *
+     * @param file The file that changed
+     */
+    private void fileChanged(final Path file) {
+        if (this.sentinelName != null && this.directory.equals(file.getParent()) && this.sentinelName.equals(file.getFileName().toString())) {
+            this.sentinelFound = true;
+            return;
+        }
+        if (!this.reportMatcher.matches(file.getFileName())) {
+            return;
+        }
+        long now = System.nanoTime();
+        PendingFile pending = this.pendingFiles.get(file);
+        if (pending != null) {
+            pending.checkedAt = now;
+        } else if (this.knownFiles.add(file)) {
+            PendingFile added = new PendingFile(-1, -1, now);
+            try {
+                added.size = Files.size(file);
+                added.modified = Files.getLastModifiedTime(file).toMillis();
+            } catch (IOException ignored) {
+                // Checked again once the settle time has passed.
+            }
+            this.pendingFiles.put(file, added);
+        } else if (this.changedAfterRead.add(file)) {
+            //todo: ENHANCEMENT - Implement actual error logging.
+            System.err.println(String.format("Report file %s changed after it was read. The change is ignored.", file));
+        }
+    }
+
+    /**
+     * Moves the pending files whose size and modification time haven't changed for the settle time to the settled files.
+     *
+     * @param now The current time
+     */
+    private void settlePendingFiles(final long now) {
+        Iterator<Map.Entry<Path, PendingFile>> pendingIterator = this.pendingFiles.entrySet().iterator();
+        while (pendingIterator.hasNext()) {
+            Map.Entry<Path, PendingFile> entry = pendingIterator.next();
+            PendingFile pending = entry.getValue();
+            if (now - pending.checkedAt < this.settleNanos) {
+                continue;
+            }
+            long size;
+            long modified;
+            try {
+                size = Files.size(entry.getKey());
+                modified = Files.getLastModifiedTime(entry.getKey()).toMillis();
+            } catch (IOException e) {
+                // The file was removed before it settled.
+                pendingIterator.remove();
+                this.knownFiles.remove(entry.getKey());
+                continue;
+            }
+            if (size == pending.size && modified == pending.modified) {
+                pendingIterator.remove();
+                this.settledFiles.add(entry.getKey().toString());
+            } else {
+                pending.size = size;
+                pending.modified = modified;
+                pending.checkedAt = now;
+            }
+        }
+    }
+
+    /**
+     * Stops watching.
+     *
+     * @param reason Why watching stopped
+     * @param includePending Whether report files that haven't settled yet are returned as they are
+     */
+    private void finish(final String reason, final boolean includePending) {
+        int unsettled = this.pendingFiles.size();
+        if (includePending) {
+            for (Path pending : this.pendingFiles.keySet()) {
+                this.settledFiles.add(pending.toString());
+            }
+        }
+        this.pendingFiles.clear();
+        this.close();
+        //todo: ENHANCEMENT - Implement actual error logging.
+        System.err.println(String.format("%s. Read %d report files%s.", reason, this.settledFiles.size(),
+                includePending && unsettled > 0 ? String.format(", %d of them still being written", unsettled) : ""));
+    }
+}
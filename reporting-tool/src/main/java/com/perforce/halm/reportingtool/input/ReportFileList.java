@@ -0,0 +1,223 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.input;
+
+import com.perforce.halm.reportingtool.models.SkippedReportFile;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Report files given directly, or listed in list files, for report sets too large to pass as arguments. List files
+ * are read as the report files are parsed, so the full list is never held in memory. Each list file holds one path
+ * per line, or paths separated by NUL characters, such as the output of {@code find -print0}; a list with a NUL
+ * character near its start is read as NUL separated. Listed paths that don't exist are left out, instead of failing the
+ * run, and reported as skipped report files by {@link #getMissingFiles()}.
+ * <p>
+ * Iterating again reads the list files again, except for a list read from standard input, which can only be read once.
+ */
+public class ReportFileList implements Iterable<String> {
+    /** Marks an entry as a list file rather than a report file */
+    public static final String LIST_FILE_PREFIX = "@";
+    /** List file path that reads the list from standard input */
+    public static final String STANDARD_INPUT = "-";
+    /** How much of a list file is checked for NUL characters, enough to hold the longest path */
+    private static final int SEPARATOR_CHECK_LENGTH = 8 * 1024;
+
+    private final List<String> entries;
+    private List<SkippedReportFile> missingFiles = new ArrayList<>();
+    private boolean standardInputRead = false;
+
+    /**
+     * Constructor
+     *
+     * @param entries Report file paths, and list file paths starting with {@value #LIST_FILE_PREFIX}, in the order they are read
+     */
+    public ReportFileList(final List<String> entries) {
+        this.entries = new ArrayList<>(entries);
+    }
+
+    /**
+     * @param entries Report files and list files, as given to the constructor
+     * @return Whether any of the entries is a list file
+     */
+    public static boolean hasListFiles(final List<String> entries) {
+        for (String entry : entries) {
+            if (isListFile(entry)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The listed report files left out because they don't exist, found so far by the latest iteration
+     */
+    public List<SkippedReportFile> getMissingFiles() { return this.missingFiles; }
+
+    @Override
+    public Iterator<String> iterator() {
+        // Each iteration reads the list files again, so missing files are only counted for the latest one.
+        this.missingFiles = new ArrayList<>();
+        return new Iterator<String>() {
+            private int index = 0;
+            private String listFile = null;
+            private BufferedReader listReader = null;
+            private char separator = '\n';
+            private String nextFile = null;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    while (this.nextFile == null) {
+                        if (this.listReader != null) {
+                            this.nextFile = this.readListedFile();
+                        } else if (this.index < entries.size()) {
+                            String entry = entries.get(this.index++);
+                            if (isListFile(entry)) {
+                                this.openList(entry.substring(LIST_FILE_PREFIX.length()));
+                            } else {
+                                this.nextFile = entry;
+                            }
+                        } else {
+                            return false;
+                        }
+                    }
+                    return true;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public String next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String file = this.nextFile;
+                this.nextFile = null;
+                return file;
+            }
+
+            private void openList(final String path) throws IOException {
+                this.listFile = path;
+                if (STANDARD_INPUT.equals(path)) {
+                    if (standardInputRead) {
+                        throw new IllegalStateException("The report file list on standard input can only be read once.");
+                    }
+                    standardInputRead = true;
+                    // Standard input is left open.
+                    this.listReader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+                } else {
+                    this.listReader = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8);
+                }
+                this.separator = this.containsNul() ? '\0' : '\n';
+            }
+
+            /**
+             * @return Whether the start of the list file has a NUL character, without moving past it
+             * @throws IOException Thrown when the list file can't be read
+             */
+            private boolean containsNul() throws IOException {
+                char[] start = new char[SEPARATOR_CHECK_LENGTH];
+                this.listReader.mark(start.length);
+                int length = 0;
+                int read;
+                while (length < start.length && (read = this.listReader.read(start, length, start.length - length)) >= 0) {
+                    length += read;
+                }
+                this.listReader.reset();
+                for (int i = 0; i < length; i++) {
+                    if (start[i] == '\0') {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            /**
+             * @return The next listed report file that exists, or null once the list file has been read to the end
+             * @throws IOException Thrown when the list file can't be read
+             */
+            private String readListedFile() throws IOException {
+                String path;
+                while ((path = this.readEntry()) != null) {
+                    if (path.isEmpty()) {
+                        continue;
+                    }
+                    if (STANDARD_INPUT.equals(path) || Files.exists(Paths.get(path))) {
+                        return path;
+                    }
+                    missingFiles.add(new SkippedReportFile(path, String.format("The file listed in %s does not exist.",
+                            STANDARD_INPUT.equals(this.listFile) ? "standard input" : this.listFile), -1, -1, 0));
+                }
+                if (!STANDARD_INPUT.equals(this.listFile)) {
+                    this.listReader.close();
+                }
+                this.listReader = null;
+                return null;
+            }
+
+            /**
+             * @return The next entry in the list file, which may be empty, or null at the end of the file
+             * @throws IOException Thrown when the list file can't be read
+             */
+            private String readEntry() throws IOException {
+                StringBuilder entry = new StringBuilder();
+                int c;
+                while ((c = this.listReader.read()) >= 0) {
+                    if (c == this.separator) {
+                        return trimEntry(entry);
+                    }
+                    entry.append((char) c);
+                }
+                return entry.length() > 0 ? trimEntry(entry) : null;
+            }
+
+            private String trimEntry(final StringBuilder entry) {
+                // Lists written on Windows end their lines with \r\n.
+                if (this.separator != '\0' && entry.length() > 0 && entry.charAt(entry.length() - 1) == '\r') {
+                    entry.setLength(entry.length() - 1);
+                }
+                return entry.toString();
+            }
+        };
+    }
+
+    private static boolean isListFile(final String entry) {
+        return entry.startsWith(LIST_FILE_PREFIX) && entry.length() > LIST_FILE_PREFIX.length();
+    }
+}
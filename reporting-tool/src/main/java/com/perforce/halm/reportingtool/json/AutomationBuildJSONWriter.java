@@ -0,0 +1,320 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.json;
+
+import com.perforce.halm.rest.types.IDLabelPair;
+import com.perforce.halm.rest.types.NameValuePair;
+import com.perforce.halm.rest.types.automation.build.AutomationBuild;
+import com.perforce.halm.rest.types.automation.build.AutomationResult;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes AutomationBuild objects as JSON directly to a Writer, without building the document in memory first.
+ * Field names match the Helix ALM REST API automation build schema.
+ */
+public class AutomationBuildJSONWriter {
+    private final Writer writer;
+    private boolean firstField = true;
+    private boolean streamedBuildStarted = false;
+    private long streamedResultCount = 0;
+
+    /**
+     * Constructor
+     *
+     * @param writer The writer to send the JSON output to
+     */
+    public AutomationBuildJSONWriter(final Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * @param build The build to check
+     * @return Whether this writer knows how to write every field set on the build. Run configuration info is
+     *         polymorphic and owned by the REST API client, so builds that carry one cannot be written here.
+     */
+    public static boolean canWriteBuild(final AutomationBuild build) {
+        return build != null && build.getRunConfigurationInfo() == null;
+    }
+
+    /**
+     * Writes the complete build, including all of its results, as a single JSON object.
+     *
+     * @param build The build to write
+     * @throws IOException Thrown when the underlying writer fails
+     */
+    public void writeBuild(final AutomationBuild build) throws IOException {
+        this.beginObject();
+        this.writeBuildFields(build);
+        this.writeName("results");
+        this.writer.write('[');
+        if (build.getResults() != null) {
+            boolean first = true;
+            for (AutomationResult result : build.getResults()) {
+                if (!first) {
+                    this.writer.write(',');
+                }
+                first = false;
+                this.writeResult(result);
+            }
+        }
+        this.writer.write(']');
+        this.endObject();
+    }
+
+    /**
+     * Writes the next result of a build whose results are streamed before the build itself is known.
+     * The document is started with the first result, and must be completed with {@link #endStreamedBuild(AutomationBuild)}.
+     *
+     * @param result The result to write
+     * @throws IOException Thrown when the underlying writer fails
+     */
+    public void writeStreamedResult(final AutomationResult result) throws IOException {
+        if (!this.streamedBuildStarted) {
+            this.beginStreamedBuild();
+        } else if (this.streamedResultCount > 0) {
+            this.writer.write(',');
+        }
+        this.writeResult(result);
+        this.streamedResultCount++;
+    }
+
+    /**
+     * Completes a build whose results were written with {@link #writeStreamedResult(AutomationResult)}.
+     * The build level fields follow the results, as values such as the start date and duration are only
+     * known once every result has been converted.
+     *
+     * @param build The build to write the fields for. Any results on it are ignored.
+     * @throws IOException Thrown when the underlying writer fails
+     */
+    public void endStreamedBuild(final AutomationBuild build) throws IOException {
+        if (!this.streamedBuildStarted) {
+            this.beginStreamedBuild();
+        }
+        this.writer.write(']');
+        this.firstField = false;
+        this.writeBuildFields(build);
+        this.endObject();
+    }
+
+    /**
+     * Writes the build level fields only, as a single JSON object.
+     *
+     * @param build The build to write. Any results on it are ignored.
+     * @throws IOException Thrown when the underlying writer fails
+     */
+    public void writeBuildWithoutResults(final AutomationBuild build) throws IOException {
+        this.beginObject();
+        this.writeBuildFields(build);
+        this.endObject();
+    }
+
+    /**
+     * Writes a single result as a JSON object.
+     *
+     * @param result The result to write
+     * @throws IOException Thrown when the underlying writer fails
+     */
+    public void writeResult(final AutomationResult result) throws IOException {
+        this.beginObject();
+        this.writeStringField("name", result.getName());
+        this.writeStringField("uniqueName", result.getUniqueName());
+        this.writeIDLabelPairField("status", result.getStatus());
+        this.writeStringListField("tags", result.getTags());
+        this.writeStringField("device", result.getDevice());
+        this.writeStringField("manufacturer", result.getManufacturer());
+        this.writeStringField("model", result.getModel());
+        this.writeStringField("os", result.getOS());
+        this.writeStringField("osVersion", result.getOSVersion());
+        this.writeStringField("browser", result.getBrowser());
+        this.writeStringField("browserVersion", result.getBrowserVersion());
+        this.writeStringField("externalURL", result.getExternalURL());
+        this.writeStringField("errorMessage", result.getErrorMessage());
+        this.writeStringField("startDate", result.getStartDate());
+        this.writeNumberField("duration", result.getDuration());
+        this.writePropertiesField(result.getProperties());
+        this.endObject();
+    }
+
+    /**
+     * Writes every build level field except for the results.
+     *
+     * @param build The build to get data from
+     * @throws IOException Thrown when the underlying writer fails
+     */
+    protected void writeBuildFields(final AutomationBuild build) throws IOException {
+        this.writeStringField("number", build.getNumber());
+        this.writeStringField("description", build.getDescription());
+        this.writeStringField("branch", build.getBranch());
+        this.writeStringField("externalURL", build.getExternalURL());
+        this.writeStringField("startDate", build.getStartDate());
+        this.writeNumberField("duration", build.getDuration());
+        this.writeStringField("sourceOverride", build.getSourceOverride());
+        this.writeStringField("pendingRunID", build.getPendingRunID());
+        this.writeIDLabelPairField("testRunSet", build.getTestRunSet());
+        this.writePropertiesField(build.getProperties());
+    }
+
+    private void beginStreamedBuild() throws IOException {
+        this.beginObject();
+        this.writeName("results");
+        this.writer.write('[');
+        this.streamedBuildStarted = true;
+    }
+
+    protected void beginObject() throws IOException {
+        this.writer.write('{');
+        this.firstField = true;
+    }
+
+    protected void endObject() throws IOException {
+        this.writer.write('}');
+        this.firstField = false;
+    }
+
+    /**
+     * Writes a field name, including the separator from the previous field if needed.
+     *
+     * @param name The field name
+     * @throws IOException Thrown when the underlying writer fails
+     */
+    protected void writeName(final String name) throws IOException {
+        if (!this.firstField) {
+            this.writer.write(',');
+        }
+        this.firstField = false;
+        this.writeString(name);
+        this.writer.write(':');
+    }
+
+    private void writeStringField(final String name, final String value) throws IOException {
+        if (value != null) {
+            this.writeName(name);
+            this.writeString(value);
+        }
+    }
+
+    private void writeNumberField(final String name, final Number value) throws IOException {
+        if (value != null) {
+            this.writeName(name);
+            this.writer.write(value.toString());
+        }
+    }
+
+    private void writeIDLabelPairField(final String name, final IDLabelPair value) throws IOException {
+        if (value != null) {
+            this.writeName(name);
+            this.beginObject();
+            this.writeNumberField("id", value.getId());
+            this.writeStringField("label", value.getLabel());
+            this.endObject();
+        }
+    }
+
+    private void writeStringListField(final String name, final List<String> values) throws IOException {
+        if (values != null) {
+            this.writeName(name);
+            this.writer.write('[');
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    this.writer.write(',');
+                }
+                this.writeString(values.get(i));
+            }
+            this.writer.write(']');
+        }
+    }
+
+    private void writePropertiesField(final List<NameValuePair> properties) throws IOException {
+        if (properties != null) {
+            this.writeName("properties");
+            this.writer.write('[');
+            boolean first = true;
+            for (NameValuePair property : properties) {
+                if (!first) {
+                    this.writer.write(',');
+                }
+                first = false;
+                this.beginObject();
+                this.writeStringField("name", property.getName());
+                this.writeStringField("value", property.getValue());
+                this.endObject();
+            }
+            this.writer.write(']');
+        }
+    }
+
+    /**
+     * Writes a quoted JSON string to this writer's output.
+     *
+     * @param value The string to write
+     * @throws IOException Thrown when the underlying writer fails
+     */
+    private void writeString(final String value) throws IOException {
+        writeQuotedString(this.writer, value);
+    }
+
+    /**
+     * Writes a quoted JSON string, escaping characters as required by RFC 8259.
+     *
+     * @param writer The writer to send the string to
+     * @param value The string to write
+     * @throws IOException Thrown when the writer fails
+     */
+    public static void writeQuotedString(final Writer writer, final String value) throws IOException {
+        writer.write('"');
+        int start = 0;
+        final int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            String escaped = null;
+            if (c == '"') {
+                escaped = "\\\"";
+            } else if (c == '\\') {
+                escaped = "\\\\";
+            } else if (c == '\n') {
+                escaped = "\\n";
+            } else if (c == '\r') {
+                escaped = "\\r";
+            } else if (c == '\t') {
+                escaped = "\\t";
+            } else if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                escaped = String.format("\\u%04x", (int) c);
+            }
+            if (escaped != null) {
+                // Flush the unescaped run in one call, rather than writing character by character.
+                writer.write(value, start, i - start);
+                writer.write(escaped);
+                start = i + 1;
+            }
+        }
+        writer.write(value, start, length - start);
+        writer.write('"');
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.json;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the small JSON documents returned by the Helix ALM REST API, such as the response to a submitted build.
+ * Objects are read as maps in document order, arrays as lists, and numbers as Long or Double.
+ */
+public class JSONReader {
+    private final String text;
+    private int position = 0;
+
+    /**
+     * Constructor
+     *
+     * @param text The JSON document
+     */
+    private JSONReader(final String text) {
+        this.text = text;
+    }
+
+    /**
+     * Reads a JSON document.
+     *
+     * @param text The JSON document
+     * @return The value of the document: a Map, List, String, Long, Double, Boolean, or null
+     * @throws IOException Thrown if the text isn't valid JSON
+     */
+    public static Object read(final String text) throws IOException {
+        JSONReader reader = new JSONReader(text);
+        Object value = reader.readValue();
+        reader.skipWhitespace();
+        if (reader.position < text.length()) {
+            throw reader.error("Unexpected content after the JSON value");
+        }
+        return value;
+    }
+
+    /**
+     * Reads a JSON document, if it is an object.
+     *
+     * @param text The JSON document, may be null or empty
+     * @return The object's fields, or null if the text isn't a valid JSON object
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> readObject(final String text) {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        try {
+            Object value = read(text);
+            return value instanceof Map ? (Map<String, Object>) value : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private Object readValue() throws IOException {
+        this.skipWhitespace();
+        if (this.position >= this.text.length()) {
+            throw this.error("Unexpected end of the JSON document");
+        }
+        char c = this.text.charAt(this.position);
+        switch (c) {
+            case '{':
+                return this.readObjectValue();
+            case '[':
+                return this.readArray();
+            case '"':
+                return this.readString();
+            case 't':
+                this.expect("true");
+                return Boolean.TRUE;
+            case 'f':
+                this.expect("false");
+                return Boolean.FALSE;
+            case 'n':
+                this.expect("null");
+                return null;
+            default:
+                return this.readNumber();
+        }
+    }
+
+    private Map<String, Object> readObjectValue() throws IOException {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        this.position++;
+        this.skipWhitespace();
+        if (this.peek() == '}') {
+            this.position++;
+            return fields;
+        }
+        while (true) {
+            this.skipWhitespace();
+            if (this.peek() != '"') {
+                throw this.error("Expected a field name");
+            }
+            String name = this.readString();
+            this.skipWhitespace();
+            if (this.peek() != ':') {
+                throw this.error("Expected ':'");
+            }
+            this.position++;
+            fields.put(name, this.readValue());
+            this.skipWhitespace();
+            char c = this.peek();
+            this.position++;
+            if (c == '}') {
+                return fields;
+            } else if (c != ',') {
+                throw this.error("Expected ',' or '}'");
+            }
+        }
+    }
+
+    private List<Object> readArray() throws IOException {
+        List<Object> values = new ArrayList<>();
+        this.position++;
+        this.skipWhitespace();
+        if (this.peek() == ']') {
+            this.position++;
+            return values;
+        }
+        while (true) {
+            values.add(this.readValue());
+            this.skipWhitespace();
+            char c = this.peek();
+            this.position++;
+            if (c == ']') {
+                return values;
+            } else if (c != ',') {
+                throw this.error("Expected ',' or ']'");
+            }
+        }
+    }
+
+    private String readString() throws IOException {
+        StringBuilder value = new StringBuilder();
+        this.position++;
+        while (this.position < this.text.length()) {
+            char c = this.text.charAt(this.position++);
+            if (c == '"') {
+                return value.toString();
+            } else if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (this.position >= this.text.length()) {
+                break;
+            }
+            char escaped = this.text.charAt(this.position++);
+            switch (escaped) {
+                case 'b': value.append('\b'); break;
+                case 'f': value.append('\f'); break;
+                case 'n': value.append('\n'); break;
+                case 'r': value.append('\r'); break;
+                case 't': value.append('\t'); break;
+                case 'u':
+                    if (this.position + 4 > this.text.length()) {
+                        throw this.error("Invalid unicode escape");
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(this.text.substring(this.position, this.position + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw this.error("Invalid unicode escape");
+                    }
+                    this.position += 4;
+                    break;
+                default:
+                    value.append(escaped);
+            }
+        }
+        throw this.error("Unterminated string");
+    }
+
+    private Number readNumber() throws IOException {
+        int start = this.position;
+        boolean decimal = false;
+        while (this.position < this.text.length()) {
+            char c = this.text.charAt(this.position);
+            if (c == '.' || c == 'e' || c == 'E') {
+                decimal = true;
+            } else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+                break;
+            }
+            this.position++;
+        }
+        String number = this.text.substring(start, this.position);
+        try {
+            if (!decimal) {
+                try {
+                    return Long.parseLong(number);
+                } catch (NumberFormatException e) {
+                    // Too large for a long
+                }
+            }
+            return Double.parseDouble(number);
+        } catch (NumberFormatException e) {
+            this.position = start;
+            throw this.error("Expected a JSON value");
+        }
+    }
+
+    private void expect(final String literal) throws IOException {
+        if (!this.text.startsWith(literal, this.position)) {
+            throw this.error("Expected " + literal);
+        }
+        this.position += literal.length();
+    }
+
+    private char peek() throws IOException {
+        if (this.position >= this.text.length()) {
+            throw this.error("Unexpected end of the JSON document");
+        }
+        return this.text.charAt(this.position);
+    }
+
+    private void skipWhitespace() {
+        while (this.position < this.text.length() && Character.isWhitespace(this.text.charAt(this.position))) {
+            this.position++;
+        }
+    }
+
+    private IOException error(final String message) {
+        return new IOException(String.format("%s at position %d.", message, this.position));
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.ledger;
+
+import com.perforce.halm.reportingtool.format.ReportFormatType;
+import com.perforce.halm.reportingtool.json.AutomationBuildJSONWriter;
+import com.perforce.halm.reportingtool.metrics.CountingOutputStream;
+import com.perforce.halm.reportingtool.models.BuildMetadata;
+import com.perforce.halm.reportingtool.models.ConversionOptions;
+import com.perforce.halm.reportingtool.models.HelixALMSuiteContext;
+import com.perforce.halm.rest.types.NameValuePair;
+import com.perforce.halm.rest.types.automation.build.AutomationBuild;
+import com.perforce.halm.rest.types.automation.build.AutomationResult;
+import com.perforce.halm.rest.types.automation.build.AutomationResultStatus;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Fingerprints that recognize a submission that has already been made to a Helix ALM automation suite.
+ * <p>
+ * A build fingerprint covers the converted build and the suite it is submitted to. Results are hashed separately and
+ * their hashes added together, so the fingerprint doesn't depend on the order results were converted in. An input
+ * fingerprint covers the report file contents and everything that decides how they are converted, so unchanged
+ * inputs can be recognized without parsing them.
+ */
+public final class SubmissionFingerprint {
+    private static final String ALGORITHM = "SHA-256";
+    private static final BigInteger RESULT_SUM_MODULUS = BigInteger.ONE.shiftLeft(256);
+
+    /**
+     * @param build The converted build, with its results
+     * @param target The suite the build is submitted to
+     * @return The build fingerprint, or null if the build has data that can't be fingerprinted, such as run configuration info
+     * @throws IOException Thrown if the build can't be serialized
+     */
+    public static String ofBuild(final AutomationBuild build, final HelixALMSuiteContext target) throws IOException {
+        if (!AutomationBuildJSONWriter.canWriteBuild(build)) {
+            return null;
+        }
+        BigInteger resultSum = BigInteger.ZERO;
+        long resultCount = 0;
+        if (build.getResults() != null) {
+            for (AutomationResult result : build.getResults()) {
+                MessageDigest resultDigest = createDigest();
+                try (Writer writer = openWriter(resultDigest)) {
+                    new AutomationBuildJSONWriter(writer).writeResult(result);
+                }
+                resultSum = resultSum.add(new BigInteger(1, resultDigest.digest()));
+                resultCount++;
+            }
+        }
+
+        MessageDigest digest = createDigest();
+        try (DataOutputStream output = new DataOutputStream(new DigestOutputStream(new CountingOutputStream(null), digest))) {
+            writeString(output, "build");
+            writeTarget(output, target);
+            Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+            new AutomationBuildJSONWriter(writer).writeBuildWithoutResults(build);
+            writer.flush();
+            output.writeLong(resultCount);
+            output.write(resultSum.mod(RESULT_SUM_MODULUS).toByteArray());
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * @param reportFiles The report files, in the order they are converted
+     * @param formatType The format of the report files
+     * @param buildNumber The build number
+     * @param buildMetadata The metadata for the build
+     * @param conversionOptions The options the report files are converted with
+     * @param target The suite the build is submitted to
+     * @return The input fingerprint, or null if the inputs can't be fingerprinted, such as when a report file isn't a
+     *         regular file, or the metadata has run configuration info
+     * @throws IOException Thrown if a report file can't be read
+     */
+    public static String ofInputs(final List<String> reportFiles, final ReportFormatType formatType, final String buildNumber,
+                                  final BuildMetadata buildMetadata, final ConversionOptions conversionOptions,
+                                  final HelixALMSuiteContext target) throws IOException {
+        if (buildMetadata != null && buildMetadata.getRunConfigurationInfo() != null) {
+            return null;
+        }
+        for (String reportFile : reportFiles) {
+            if (!Files.isRegularFile(Paths.get(reportFile))) {
+                return null;
+            }
+        }
+
+        MessageDigest digest = createDigest();
+        try (DataOutputStream output = new DataOutputStream(new DigestOutputStream(new CountingOutputStream(null), digest))) {
+            writeString(output, "inputs");
+            writeTarget(output, target);
+            writeString(output, formatType.name());
+            writeString(output, buildNumber);
+            if (buildMetadata != null) {
+                writeString(output, buildMetadata.getDescription());
+                writeString(output, buildMetadata.getBranch());
+                writeString(output, buildMetadata.getExternalURL());
+                writeString(output, buildMetadata.getSourceOverride());
+                writeString(output, buildMetadata.getPendingRunID());
+                if (buildMetadata.getTestRunSet() != null) {
+                    writeString(output, String.valueOf(buildMetadata.getTestRunSet().getId()));
+                    writeString(output, buildMetadata.getTestRunSet().getLabel());
+                }
+                if (buildMetadata.getProperties() != null) {
+                    for (NameValuePair property : buildMetadata.getProperties()) {
+                        writeString(output, property.getName());
+                        writeString(output, property.getValue());
+                    }
+                }
+            }
+            writeOptions(output, conversionOptions);
+            byte[] buffer = new byte[64 * 1024];
+            for (String reportFile : reportFiles) {
+                // Only the contents count, so a retry in another workspace directory is recognized.
+                Path path = Paths.get(reportFile);
+                output.writeLong(Files.size(path));
+                try (InputStream input = Files.newInputStream(path)) {
+                    int read;
+                    while ((read = input.read(buffer)) >= 0) {
+                        output.write(buffer, 0, read);
+                    }
+                }
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static void writeTarget(final DataOutputStream output, final HelixALMSuiteContext target) throws IOException {
+        writeString(output, target.getRestAPIConnectionInfo() != null ? target.getRestAPIConnectionInfo().getUrl() : null);
+        writeString(output, target.getHelixALMProjectID());
+        writeString(output, target.getHelixALMSuiteID());
+    }
+
+    /**
+     * Writes every conversion option. Each one is written on its own, so a new option must be added here to be part
+     * of the fingerprint.
+     */
+    private static void writeOptions(final DataOutputStream output, final ConversionOptions options) throws IOException {
+        writeStrings(output, options.getIncludePatterns());
+        writeStrings(output, options.getExcludePatterns());
+        output.writeInt(options.getStatuses().size());
+        for (AutomationResultStatus status : options.getStatuses()) {
+            writeString(output, status.name());
+        }
+        writeStrings(output, options.getIncludeTags());
+        writeStrings(output, options.getExcludeTags());
+        output.writeDouble(options.getPassSampleRate());
+        writeString(output, options.getGranularity().name());
+        writeString(output, options.getDuplicatePolicy().name());
+        output.writeBoolean(options.isHoistConstantAttributes());
+        output.writeBoolean(options.isDeduplicateFailures());
+        output.writeBoolean(options.isFingerprintLineNumbers());
+        output.writeInt(options.getMaxMessageBytes());
+        output.writeInt(options.getMaxBodyBytes());
+        output.writeInt(options.getMaxPropertyBytes());
+        output.writeLong(options.getPayloadBudgetBytes());
+        writeString(output, options.getDoctypePolicy().name());
+        output.writeBoolean(options.isSanitizeInput());
+        output.writeBoolean(options.isAllowPartialBuilds());
+        output.writeBoolean(options.isSalvageTruncatedReports());
+    }
+
+    /**
+     * Writes a list of strings with its size, in order.
+     */
+    private static void writeStrings(final DataOutputStream output, final List<String> values) throws IOException {
+        output.writeInt(values.size());
+        for (String value : values) {
+            writeString(output, value);
+        }
+    }
+
+    /**
+     * Writes a string with its length, so neighbouring values can't run together. Null is written differently to empty.
+     */
+    private static void writeString(final DataOutputStream output, final String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static Writer openWriter(final MessageDigest digest) {
+        return new OutputStreamWriter(new DigestOutputStream(new CountingOutputStream(null), digest), StandardCharsets.UTF_8);
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(final byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Private constructor so this cannot be initialized
+     */
+    private SubmissionFingerprint() {}
+}
@@ -0,0 +1,126 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.ledger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Local record of the submissions Helix ALM has acknowledged, so a retried job doesn't submit the same build twice.
+ * <p>
+ * The ledger is a text file with a line for each fingerprint: the fingerprint, when it was recorded, and a
+ * description, separated by tabs. Lines starting with '#' are ignored. Fingerprints are only ever appended, so several
+ * jobs can share a ledger; delete the file, or lines from it, to submit a build again. One ledger object can be shared
+ * by submitters running at the same time.
+ */
+public class SubmissionLedger {
+    private static final char COMMENT = '#';
+    private static final char SEPARATOR = '\t';
+
+    private final Path path;
+    private Set<String> fingerprints;
+
+    /**
+     * Constructor. The ledger file is read when it is first needed, and created when the first fingerprint is recorded.
+     *
+     * @param path The ledger file
+     */
+    public SubmissionLedger(final Path path) {
+        this.path = path;
+    }
+
+    /**
+     * @return The ledger file
+     */
+    public Path getPath() { return this.path; }
+
+    /**
+     * @param fingerprint A submission fingerprint
+     * @return Whether the fingerprint has been recorded
+     * @throws IOException Thrown if the ledger file can't be read
+     */
+    public synchronized boolean contains(final String fingerprint) throws IOException {
+        return fingerprint != null && this.load().contains(fingerprint);
+    }
+
+    /**
+     * Records a fingerprint, if it hasn't been recorded already.
+     *
+     * @param fingerprint A submission fingerprint
+     * @param description Describes the submission, for whoever reads the ledger file. Tabs and line breaks are replaced.
+     * @throws IOException Thrown if the ledger file can't be written
+     */
+    public synchronized void record(final String fingerprint, final String description) throws IOException {
+        if (fingerprint == null || !this.load().add(fingerprint)) {
+            return;
+        }
+        String line = fingerprint + SEPARATOR + Instant.now() + SEPARATOR +
+                (description != null ? description.replaceAll("[\\t\\r\\n]", " ") : "") + System.lineSeparator();
+        Path parent = this.path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        // Each line is written at once, so jobs appending to the same ledger don't interleave their lines.
+        try (Writer writer = Files.newBufferedWriter(this.path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE)) {
+            writer.write(line);
+        }
+    }
+
+    /**
+     * @return The recorded fingerprints, read from the ledger file the first time
+     * @throws IOException Thrown if the ledger file can't be read
+     */
+    private Set<String> load() throws IOException {
+        if (this.fingerprints == null) {
+            Set<String> loaded = new HashSet<>();
+            if (Files.exists(this.path)) {
+                try (BufferedReader reader = Files.newBufferedReader(this.path, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        line = line.trim();
+                        if (line.isEmpty() || line.charAt(0) == COMMENT) {
+                            continue;
+                        }
+                        int separator = line.indexOf(SEPARATOR);
+                        loaded.add(separator >= 0 ? line.substring(0, separator) : line);
+                    }
+                }
+            }
+            this.fingerprints = loaded;
+        }
+        return this.fingerprints;
+    }
+}
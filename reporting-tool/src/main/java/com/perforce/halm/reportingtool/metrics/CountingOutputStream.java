@@ -0,0 +1,80 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream that counts the bytes written through it. Without a target stream, the bytes are discarded, which
+ * allows measuring the size of content without keeping it.
+ */
+public class CountingOutputStream extends OutputStream {
+    private final OutputStream out;
+    private long count = 0;
+
+    /**
+     * Constructor
+     *
+     * @param out The stream to pass bytes on to, or null to discard them
+     */
+    public CountingOutputStream(final OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (this.out != null) {
+            this.out.write(b);
+        }
+        this.count++;
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        if (this.out != null) {
+            this.out.write(buffer, offset, length);
+        }
+        this.count += length;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (this.out != null) {
+            this.out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.out != null) {
+            this.out.close();
+        }
+    }
+
+    public long getCount() { return this.count; }
+}
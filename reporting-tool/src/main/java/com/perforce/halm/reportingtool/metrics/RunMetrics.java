@@ -0,0 +1,277 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.metrics;
+
+import com.perforce.halm.reportingtool.models.SkippedReportFile;
+import com.perforce.halm.rest.responses.SubmitAutomationBuildResponse;
+import com.perforce.halm.rest.types.automation.build.AutomationResult;
+import com.perforce.halm.rest.types.automation.build.AutomationResultStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects timing, throughput and size measurements for a single reporting tool run.
+ * Use {@link #DISABLED} when measurements are not wanted; every recording method returns immediately on it, so
+ * instrumented code does not need to check whether metrics are enabled. Instances are not thread safe.
+ */
+public class RunMetrics {
+    /**
+     * Shared instance that records nothing
+     */
+    public static final RunMetrics DISABLED = new RunMetrics(false);
+
+    private final boolean enabled;
+    private final long runStartNanos;
+    private final long runStartMillis;
+    private final Map<RunPhase, Long> phaseNanos = new EnumMap<>(RunPhase.class);
+    private final List<ReportFileMetrics> reportFiles = new ArrayList<>();
+    private final List<SkippedReportFile> skippedReportFiles = new ArrayList<>();
+    private final Map<String, Long> resultsByStatus = new LinkedHashMap<>();
+    private long scanBytes = 0;
+    private long suiteCount = 0;
+    private long resultCount = 0;
+    private long payloadBytes = -1;
+    private long payloadWireBytes = -1;
+    private int submitRetries = 0;
+    private Boolean submitSucceeded = null;
+
+    /**
+     * Measurements for a single report file
+     */
+    public static class ReportFileMetrics {
+        private final String path;
+        private final long bytes;
+        private final long parseNanos;
+        private final long repairedCharacters;
+
+        ReportFileMetrics(String path, long bytes, long parseNanos, long repairedCharacters) {
+            this.path = path;
+            this.bytes = bytes;
+            this.parseNanos = parseNanos;
+            this.repairedCharacters = repairedCharacters;
+        }
+
+        public String getPath() { return this.path; }
+        public long getBytes() { return this.bytes; }
+        public long getParseNanos() { return this.parseNanos; }
+        public long getRepairedCharacters() { return this.repairedCharacters; }
+    }
+
+    /**
+     * Constructor, for metrics that are recorded
+     */
+    public RunMetrics() {
+        this(true);
+    }
+
+    private RunMetrics(final boolean enabled) {
+        this.enabled = enabled;
+        this.runStartNanos = enabled ? System.nanoTime() : 0;
+        this.runStartMillis = enabled ? System.currentTimeMillis() : 0;
+    }
+
+    public boolean isEnabled() { return this.enabled; }
+
+    /**
+     * @return A start time to pass to {@link #recordPhase(RunPhase, long)}, or 0 when disabled
+     */
+    public long startTimer() {
+        return this.enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Adds the time since the start time to the phase. Phases can be recorded more than once, the times are summed.
+     *
+     * @param phase The phase to add the time to
+     * @param startNanos The start time returned by {@link #startTimer()}
+     */
+    public void recordPhase(final RunPhase phase, final long startNanos) {
+        if (this.enabled) {
+            this.phaseNanos.merge(phase, System.nanoTime() - startNanos, Long::sum);
+        }
+    }
+
+    /**
+     * @param path The report file path
+     * @param bytes The size of the report file
+     * @param startNanos The time parsing the file started, returned by {@link #startTimer()}
+     */
+    public void recordReportFile(final String path, final long bytes, final long startNanos) {
+        this.recordReportFile(path, bytes, 0, startNanos);
+    }
+
+    /**
+     * @param path The report file path
+     * @param bytes The size of the report file
+     * @param repairedCharacters The number of invalid characters repaired while reading the file
+     * @param startNanos The time parsing the file started, returned by {@link #startTimer()}
+     */
+    public void recordReportFile(final String path, final long bytes, final long repairedCharacters, final long startNanos) {
+        if (this.enabled) {
+            long elapsed = System.nanoTime() - startNanos;
+            this.reportFiles.add(new ReportFileMetrics(path, bytes, elapsed, repairedCharacters));
+            this.phaseNanos.merge(RunPhase.parse, elapsed, Long::sum);
+        }
+    }
+
+    /**
+     * @param bytes The number of bytes read from the report files before they are parsed
+     * @param startNanos The time the scan started, returned by {@link #startTimer()}
+     */
+    public void recordScan(final long bytes, final long startNanos) {
+        if (this.enabled) {
+            this.scanBytes += bytes;
+            this.phaseNanos.merge(RunPhase.scan, System.nanoTime() - startNanos, Long::sum);
+        }
+    }
+
+    /**
+     * @param skippedFile A report file that was skipped because it couldn't be read
+     */
+    public void recordSkippedReportFile(final SkippedReportFile skippedFile) {
+        if (this.enabled) {
+            this.skippedReportFiles.add(skippedFile);
+        }
+    }
+
+    public void recordSuite() {
+        if (this.enabled) {
+            this.suiteCount++;
+        }
+    }
+
+    /**
+     * @param result The converted result, counted by its status
+     */
+    public void recordResult(final AutomationResult result) {
+        if (this.enabled) {
+            this.resultCount++;
+            this.resultsByStatus.merge(getStatusName(result), 1L, Long::sum);
+        }
+    }
+
+    /**
+     * @param bodyBytes The size of the JSON request body
+     * @param wireBytes The size sent over the wire after compression, or -1 if the body was not compressed
+     */
+    public void recordPayload(final long bodyBytes, final long wireBytes) {
+        if (this.enabled) {
+            this.payloadBytes = bodyBytes;
+            this.payloadWireBytes = wireBytes;
+        }
+    }
+
+    /**
+     * Counts a submission that had to be sent again, such as a compressed submission that the server refused.
+     */
+    public void recordSubmitRetry() {
+        if (this.enabled) {
+            this.submitRetries++;
+        }
+    }
+
+    /**
+     * @param response The final response to the submission
+     */
+    public void recordSubmitResponse(final SubmitAutomationBuildResponse response) {
+        if (this.enabled) {
+            this.submitSucceeded = response != null && (response.getErrorMessage() == null || response.getErrorMessage().isEmpty());
+        }
+    }
+
+    public long getRunStartMillis() { return this.runStartMillis; }
+    /** @return The time since the run started */
+    public long getRunNanos() { return this.enabled ? System.nanoTime() - this.runStartNanos : 0; }
+    /** @return The time recorded for the phase, or 0 if it was not run */
+    public long getPhaseNanos(RunPhase phase) { return this.phaseNanos.getOrDefault(phase, 0L); }
+    public List<ReportFileMetrics> getReportFiles() { return Collections.unmodifiableList(this.reportFiles); }
+    public List<SkippedReportFile> getSkippedReportFiles() { return Collections.unmodifiableList(this.skippedReportFiles); }
+    public Map<String, Long> getResultsByStatus() { return Collections.unmodifiableMap(this.resultsByStatus); }
+    /** @return The number of bytes read from the report files before they were parsed */
+    public long getScanBytes() { return this.scanBytes; }
+    public long getSuiteCount() { return this.suiteCount; }
+    public long getResultCount() { return this.resultCount; }
+    /** @return The size of the JSON request body, or -1 if no build was sent */
+    public long getPayloadBytes() { return this.payloadBytes; }
+    /** @return The size sent over the wire after compression, or -1 if the body was not compressed */
+    public long getPayloadWireBytes() { return this.payloadWireBytes; }
+    public int getSubmitRetries() { return this.submitRetries; }
+    /** @return Whether the build was accepted, or null if no build was sent */
+    public Boolean getSubmitSucceeded() { return this.submitSucceeded; }
+
+    /**
+     * @return The total size of all report files
+     */
+    public long getReportBytes() {
+        long total = 0;
+        for (ReportFileMetrics file : this.reportFiles) {
+            total += file.getBytes();
+        }
+        return total;
+    }
+
+    /**
+     * @return The number of invalid characters repaired across all report files
+     */
+    public long getRepairedCharacters() {
+        long total = 0;
+        for (ReportFileMetrics file : this.reportFiles) {
+            total += file.getRepairedCharacters();
+        }
+        return total;
+    }
+
+    /**
+     * @param count The number of items processed
+     * @return The number of items processed per second of parsing and conversion time
+     */
+    public double getRatePerSecond(final long count) {
+        long nanos = this.getPhaseNanos(RunPhase.parse) + this.getPhaseNanos(RunPhase.convert);
+        return nanos > 0 ? count * 1e9 / nanos : 0;
+    }
+
+    /**
+     * @param result The result to get the status for
+     * @return The lowercase name of the result's status
+     */
+    private static String getStatusName(final AutomationResult result) {
+        if (result.getStatus() != null && result.getStatus().getId() != null) {
+            int id = result.getStatus().getId().intValue();
+            for (AutomationResultStatus status : AutomationResultStatus.values()) {
+                if (status.id() == id) {
+                    return status.name().toLowerCase();
+                }
+            }
+        }
+        return "unknown";
+    }
+}
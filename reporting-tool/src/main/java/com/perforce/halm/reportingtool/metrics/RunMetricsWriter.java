@@ -0,0 +1,224 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.metrics;
+
+import com.perforce.halm.reportingtool.json.AutomationBuildJSONWriter;
+import com.perforce.halm.reportingtool.models.SkippedReportFile;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes the metrics recorded for a run as a JSON summary, or as a Prometheus node exporter textfile collector file.
+ */
+public class RunMetricsWriter {
+    private static final String PROMETHEUS_PREFIX = "halm_reporting_tool_";
+
+    private final RunMetrics metrics;
+
+    /**
+     * Constructor
+     *
+     * @param metrics The metrics to write
+     */
+    public RunMetricsWriter(final RunMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Writes the metrics as a single JSON object.
+     *
+     * @param output The file to write
+     * @throws IOException Thrown when the file can't be written
+     */
+    public void writeJSON(final Path output) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            this.writeJSON(writer);
+        }
+    }
+
+    /**
+     * Writes the metrics as a single JSON object.
+     *
+     * @param writer The writer to send the JSON to
+     * @throws IOException Thrown when the writer fails
+     */
+    public void writeJSON(final Writer writer) throws IOException {
+        writer.write("{\"startTime\":");
+        AutomationBuildJSONWriter.writeQuotedString(writer, Instant.ofEpochMilli(this.metrics.getRunStartMillis()).toString());
+        writer.write(",\"durationSeconds\":" + seconds(this.metrics.getRunNanos()));
+
+        writer.write(",\"phaseSeconds\":{");
+        boolean first = true;
+        for (RunPhase phase : RunPhase.values()) {
+            writer.write((first ? "\"" : ",\"") + phase.name() + "\":" + seconds(this.metrics.getPhaseNanos(phase)));
+            first = false;
+        }
+
+        writer.write("},\"reportFiles\":[");
+        first = true;
+        for (RunMetrics.ReportFileMetrics file : this.metrics.getReportFiles()) {
+            writer.write(first ? "{\"path\":" : ",{\"path\":");
+            AutomationBuildJSONWriter.writeQuotedString(writer, file.getPath());
+            writer.write(",\"bytes\":" + file.getBytes() + ",\"parseSeconds\":" + seconds(file.getParseNanos()) +
+                    ",\"repairedCharacters\":" + file.getRepairedCharacters() + "}");
+            first = false;
+        }
+
+        writer.write("],\"skippedReportFiles\":[");
+        first = true;
+        for (SkippedReportFile file : this.metrics.getSkippedReportFiles()) {
+            writer.write(first ? "{\"path\":" : ",{\"path\":");
+            AutomationBuildJSONWriter.writeQuotedString(writer, file.getPath());
+            writer.write(",\"error\":");
+            AutomationBuildJSONWriter.writeQuotedString(writer, file.getError());
+            writer.write(",\"line\":" + file.getLineNumber() + ",\"column\":" + file.getColumnNumber() + ",\"suitesRead\":" + file.getSuitesRead() + "}");
+            first = false;
+        }
+
+        writer.write("],\"reportBytes\":" + this.metrics.getReportBytes());
+        writer.write(",\"scanBytes\":" + this.metrics.getScanBytes());
+        writer.write(",\"suites\":" + this.metrics.getSuiteCount());
+        writer.write(",\"results\":" + this.metrics.getResultCount());
+        writer.write(",\"suitesPerSecond\":" + rate(this.metrics.getRatePerSecond(this.metrics.getSuiteCount())));
+        writer.write(",\"resultsPerSecond\":" + rate(this.metrics.getRatePerSecond(this.metrics.getResultCount())));
+
+        writer.write(",\"resultsByStatus\":{");
+        first = true;
+        for (Map.Entry<String, Long> status : this.metrics.getResultsByStatus().entrySet()) {
+            writer.write((first ? "\"" : ",\"") + status.getKey() + "\":" + status.getValue());
+            first = false;
+        }
+
+        writer.write("},\"payloadBytes\":" + nullIfNegative(this.metrics.getPayloadBytes()));
+        writer.write(",\"payloadWireBytes\":" + nullIfNegative(this.metrics.getPayloadWireBytes()));
+        writer.write(",\"submitRetries\":" + this.metrics.getSubmitRetries());
+        writer.write(",\"submitSucceeded\":" + this.metrics.getSubmitSucceeded());
+        writer.write("}\n");
+    }
+
+    /**
+     * Writes the metrics in the Prometheus text exposition format. The file is written next to the output and then
+     * moved into place, so a textfile collector never reads a partially written file.
+     *
+     * @param output The file to write, which should have a .prom extension for the textfile collector
+     * @throws IOException Thrown when the file can't be written
+     */
+    public void writePrometheusTextfile(final Path output) throws IOException {
+        Path absoluteOutput = output.toAbsolutePath();
+        Path temporary = absoluteOutput.resolveSibling(absoluteOutput.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            this.writePrometheus(writer);
+        }
+        try {
+            Files.move(temporary, absoluteOutput, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Some file systems can't replace atomically; a plain replace is still better than no metrics.
+            Files.move(temporary, absoluteOutput, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Writes the metrics in the Prometheus text exposition format.
+     *
+     * @param writer The writer to send the metrics to
+     * @throws IOException Thrown when the writer fails
+     */
+    public void writePrometheus(final Writer writer) throws IOException {
+        writeGauge(writer, "last_run_timestamp_seconds", "Time the last run started.", null,
+                seconds(this.metrics.getRunStartMillis() * 1000000L));
+        writeGauge(writer, "run_seconds", "Wall time of the last run.", null, seconds(this.metrics.getRunNanos()));
+        writeHeader(writer, "phase_seconds", "Wall time of each phase of the last run.");
+        for (RunPhase phase : RunPhase.values()) {
+            writeSample(writer, "phase_seconds", "phase=\"" + phase.name() + "\"", seconds(this.metrics.getPhaseNanos(phase)));
+        }
+        writeGauge(writer, "report_files", "Report files read.", null, Integer.toString(this.metrics.getReportFiles().size()));
+        writeGauge(writer, "report_files_skipped", "Report files skipped because they couldn't be read.", null,
+                Integer.toString(this.metrics.getSkippedReportFiles().size()));
+        writeGauge(writer, "report_bytes", "Total size of the report files read.", null, Long.toString(this.metrics.getReportBytes()));
+        writeGauge(writer, "report_scan_bytes", "Bytes read from the report files before parsing them.", null,
+                Long.toString(this.metrics.getScanBytes()));
+        writeGauge(writer, "report_repaired_characters", "Invalid characters repaired in the report files read.", null,
+                Long.toString(this.metrics.getRepairedCharacters()));
+        writeGauge(writer, "suites", "Test suites converted.", null, Long.toString(this.metrics.getSuiteCount()));
+        writeGauge(writer, "results_per_second", "Results converted per second of parse and convert time.", null,
+                rate(this.metrics.getRatePerSecond(this.metrics.getResultCount())));
+        writeHeader(writer, "results", "Results converted, by status.");
+        for (Map.Entry<String, Long> status : this.metrics.getResultsByStatus().entrySet()) {
+            writeSample(writer, "results", "status=\"" + status.getKey() + "\"", Long.toString(status.getValue()));
+        }
+        if (this.metrics.getPayloadBytes() >= 0) {
+            writeHeader(writer, "payload_bytes", "Size of the submitted build, as JSON and as sent over the wire.");
+            writeSample(writer, "payload_bytes", "encoding=\"identity\"", Long.toString(this.metrics.getPayloadBytes()));
+            if (this.metrics.getPayloadWireBytes() >= 0) {
+                writeSample(writer, "payload_bytes", "encoding=\"gzip\"", Long.toString(this.metrics.getPayloadWireBytes()));
+            }
+        }
+        writeGauge(writer, "submit_retries", "Submissions that had to be sent again.", null, Integer.toString(this.metrics.getSubmitRetries()));
+        if (this.metrics.getSubmitSucceeded() != null) {
+            writeGauge(writer, "submit_success", "Whether the build was accepted.", null, this.metrics.getSubmitSucceeded() ? "1" : "0");
+        }
+    }
+
+    private static void writeGauge(final Writer writer, final String name, final String help, final String labels,
+                                   final String value) throws IOException {
+        writeHeader(writer, name, help);
+        writeSample(writer, name, labels, value);
+    }
+
+    private static void writeHeader(final Writer writer, final String name, final String help) throws IOException {
+        writer.write("# HELP " + PROMETHEUS_PREFIX + name + " " + help + "\n");
+        writer.write("# TYPE " + PROMETHEUS_PREFIX + name + " gauge\n");
+    }
+
+    private static void writeSample(final Writer writer, final String name, final String labels, final String value) throws IOException {
+        writer.write(PROMETHEUS_PREFIX + name);
+        if (labels != null) {
+            writer.write("{" + labels + "}");
+        }
+        writer.write(" " + value + "\n");
+    }
+
+    private static String seconds(final long nanos) {
+        return String.format(Locale.ROOT, "%.6f", nanos / 1e9);
+    }
+
+    private static String rate(final double perSecond) {
+        return String.format(Locale.ROOT, "%.1f", perSecond);
+    }
+
+    private static String nullIfNegative(final long value) {
+        return value >= 0 ? Long.toString(value) : "null";
+    }
+}
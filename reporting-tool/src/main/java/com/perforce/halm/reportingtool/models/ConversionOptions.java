@@ -0,0 +1,138 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.models;
+
+import com.perforce.halm.reportingtool.format.DuplicatePolicy;
+import com.perforce.halm.reportingtool.format.ResultGranularity;
+import com.perforce.halm.reportingtool.format.junit.parser.DoctypePolicy;
+import com.perforce.halm.rest.types.automation.build.AutomationResultStatus;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Object that encapsulates the optional settings for how report files are converted into an automation build.
+ * The defaults convert every result in the report files.
+ */
+public class ConversionOptions {
+    private List<String> includePatterns = new ArrayList<>();
+    private List<String> excludePatterns = new ArrayList<>();
+    private Set<AutomationResultStatus> statuses = EnumSet.noneOf(AutomationResultStatus.class);
+    private List<String> includeTags = new ArrayList<>();
+    private List<String> excludeTags = new ArrayList<>();
+    private double passSampleRate = 1;
+    private ResultGranularity granularity = ResultGranularity.testcase;
+    private DuplicatePolicy duplicatePolicy = DuplicatePolicy.rename;
+    private boolean hoistConstantAttributes = false;
+    private boolean deduplicateFailures = false;
+    private boolean fingerprintLineNumbers = false;
+    private int maxMessageBytes = 0;
+    private int maxBodyBytes = 0;
+    private int maxPropertyBytes = 0;
+    private long payloadBudgetBytes = 0;
+    private DoctypePolicy doctypePolicy = DoctypePolicy.internal;
+    private boolean sanitizeInput = false;
+    private boolean allowPartialBuilds = false;
+    private boolean salvageTruncatedReports = false;
+
+    /** @return Globs matched against each result's class name and suite name. If any are set, only matching results are kept. */
+    public List<String> getIncludePatterns() { return this.includePatterns; }
+    public void setIncludePatterns(List<String> includePatterns) { this.includePatterns = includePatterns != null ? includePatterns : new ArrayList<>(); }
+    /** @return Globs matched against each result's class name and suite name. Matching results are dropped. */
+    public List<String> getExcludePatterns() { return this.excludePatterns; }
+    public void setExcludePatterns(List<String> excludePatterns) { this.excludePatterns = excludePatterns != null ? excludePatterns : new ArrayList<>(); }
+    /** @return The statuses to keep. If empty, results with any status are kept. */
+    public Set<AutomationResultStatus> getStatuses() { return this.statuses; }
+    public void setStatuses(Set<AutomationResultStatus> statuses) { this.statuses = statuses != null ? statuses : EnumSet.noneOf(AutomationResultStatus.class); }
+    /** @return If any are set, only results with at least one of these tags are kept */
+    public List<String> getIncludeTags() { return this.includeTags; }
+    public void setIncludeTags(List<String> includeTags) { this.includeTags = includeTags != null ? includeTags : new ArrayList<>(); }
+    /** @return Results with any of these tags are dropped */
+    public List<String> getExcludeTags() { return this.excludeTags; }
+    public void setExcludeTags(List<String> excludeTags) { this.excludeTags = excludeTags != null ? excludeTags : new ArrayList<>(); }
+    /** @return The portion of passing results to keep, from 0 (none) to 1 (all). Other results are always kept. */
+    public double getPassSampleRate() { return this.passSampleRate; }
+    public void setPassSampleRate(double passSampleRate) {
+        if (passSampleRate < 0 || passSampleRate > 1) {
+            throw new IllegalArgumentException("The pass sample rate must be from 0 to 1.");
+        }
+        this.passSampleRate = passSampleRate;
+    }
+    /** @return How finely results are reported, such as combining the invocations of parameterized tests */
+    public ResultGranularity getGranularity() { return this.granularity; }
+    public void setGranularity(ResultGranularity granularity) { this.granularity = granularity != null ? granularity : ResultGranularity.testcase; }
+    /** @return How results with the same uniqueName, such as those of a retried shard, are merged */
+    public DuplicatePolicy getDuplicatePolicy() { return this.duplicatePolicy; }
+    public void setDuplicatePolicy(DuplicatePolicy duplicatePolicy) { this.duplicatePolicy = duplicatePolicy != null ? duplicatePolicy : DuplicatePolicy.rename; }
+    /** @return Whether testcase attributes with the same value on every result are added to the build once, instead of to each result */
+    public boolean isHoistConstantAttributes() { return this.hoistConstantAttributes; }
+    public void setHoistConstantAttributes(boolean hoistConstantAttributes) { this.hoistConstantAttributes = hoistConstantAttributes; }
+    /** @return Whether failure and error bodies repeated across results are only kept on the first result, and referenced by fingerprint after that */
+    public boolean isDeduplicateFailures() { return this.deduplicateFailures; }
+    public void setDeduplicateFailures(boolean deduplicateFailures) { this.deduplicateFailures = deduplicateFailures; }
+    /** @return Whether bodies that only differ by stack frame line numbers get different fingerprints */
+    public boolean isFingerprintLineNumbers() { return this.fingerprintLineNumbers; }
+    public void setFingerprintLineNumbers(boolean fingerprintLineNumbers) { this.fingerprintLineNumbers = fingerprintLineNumbers; }
+    /** @return The most bytes kept from an error or failure message, or 0 for no limit */
+    public int getMaxMessageBytes() { return this.maxMessageBytes; }
+    public void setMaxMessageBytes(int maxMessageBytes) { this.maxMessageBytes = requireNotNegative(maxMessageBytes, "message"); }
+    /** @return The most bytes kept from a failure, error or output body, or 0 for no limit */
+    public int getMaxBodyBytes() { return this.maxBodyBytes; }
+    public void setMaxBodyBytes(int maxBodyBytes) { this.maxBodyBytes = requireNotNegative(maxBodyBytes, "body"); }
+    /** @return The most bytes kept from a property value, or 0 for no limit */
+    public int getMaxPropertyBytes() { return this.maxPropertyBytes; }
+    public void setMaxPropertyBytes(int maxPropertyBytes) { this.maxPropertyBytes = requireNotNegative(maxPropertyBytes, "property"); }
+    /** @return The estimated size all the results can use before detail is removed from them, or 0 for no budget */
+    public long getPayloadBudgetBytes() { return this.payloadBudgetBytes; }
+    public void setPayloadBudgetBytes(long payloadBudgetBytes) {
+        if (payloadBudgetBytes < 0) {
+            throw new IllegalArgumentException("The payload budget can't be negative.");
+        }
+        this.payloadBudgetBytes = payloadBudgetBytes;
+    }
+    /** @return How a DOCTYPE declaration in a report file is handled. External DTDs are never loaded. */
+    public DoctypePolicy getDoctypePolicy() { return this.doctypePolicy; }
+    public void setDoctypePolicy(DoctypePolicy doctypePolicy) { this.doctypePolicy = doctypePolicy != null ? doctypePolicy : DoctypePolicy.internal; }
+    /** @return Whether characters and byte sequences that aren't valid XML are repaired as report files are read, instead of failing the report */
+    public boolean isSanitizeInput() { return this.sanitizeInput; }
+    public void setSanitizeInput(boolean sanitizeInput) { this.sanitizeInput = sanitizeInput; }
+    /** @return Whether report files that can't be read are skipped and the rest of the build is still converted, instead of failing the build */
+    public boolean isAllowPartialBuilds() { return this.allowPartialBuilds; }
+    public void setAllowPartialBuilds(boolean allowPartialBuilds) { this.allowPartialBuilds = allowPartialBuilds; }
+    /** @return Whether a report file that ends part way through keeps the testcases closed before the end, instead of failing */
+    public boolean isSalvageTruncatedReports() { return this.salvageTruncatedReports; }
+    public void setSalvageTruncatedReports(boolean salvageTruncatedReports) { this.salvageTruncatedReports = salvageTruncatedReports; }
+
+    private static int requireNotNegative(int limit, String field) {
+        if (limit < 0) {
+            throw new IllegalArgumentException(String.format("The %s size limit can't be negative.", field));
+        }
+        return limit;
+    }
+}
@@ -36,6 +36,7 @@ import java.util.List;
 public class ReportContext {
     private ReportFormatType reportFormatType;
     private List<String> reportFiles;
+    private Iterable<String> reportFileSource;
 
     /**
      * Default constructor
@@ -57,11 +58,22 @@ public class ReportContext {
     public void setReportFormatType(ReportFormatType reportFormatType) { this.reportFormatType = reportFormatType; }
     public List<String> getReportFiles() { return reportFiles; }
     public void setReportFiles(List<String> reportFiles) { this.reportFiles = reportFiles; }
+    /**
+     * @return The report files to read. A source set with {@link #setReportFileSource(Iterable)} is used instead of
+     *         the report file list.
+     */
+    public Iterable<String> getReportFileSource() { return this.reportFileSource != null ? this.reportFileSource : this.reportFiles; }
+    /**
+     * @param reportFileSource A source of report files that is read as the build is converted, such as a watched
+     *                         directory, instead of a list known up front
+     */
+    public void setReportFileSource(Iterable<String> reportFileSource) { this.reportFileSource = reportFileSource; }
 
     /**
      * @return Whether the context members are valid or not
      */
     public boolean isValidContext() {
-        return this.reportFormatType != null && this.reportFiles != null && !this.reportFiles.isEmpty();
+        return this.reportFormatType != null &&
+                (this.reportFileSource != null || (this.reportFiles != null && !this.reportFiles.isEmpty()));
     }
 }
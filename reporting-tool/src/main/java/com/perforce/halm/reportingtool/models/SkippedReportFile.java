@@ -0,0 +1,128 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.models;
+
+import org.xml.sax.SAXParseException;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * A report file that could not be read in full, and why. Suites read from the file before the error are kept.
+ */
+public class SkippedReportFile {
+    private final String path;
+    private final String error;
+    private final int lineNumber;
+    private final int columnNumber;
+    private final int suitesRead;
+
+    /**
+     * Constructor
+     *
+     * @param path The report file path
+     * @param error A description of the error
+     * @param lineNumber The line the error was found on, or -1 if unknown
+     * @param columnNumber The column the error was found at, or -1 if unknown
+     * @param suitesRead The number of suites read from the file before the error
+     */
+    public SkippedReportFile(final String path, final String error, final int lineNumber, final int columnNumber, final int suitesRead) {
+        this.path = path;
+        this.error = error;
+        this.lineNumber = lineNumber;
+        this.columnNumber = columnNumber;
+        this.suitesRead = suitesRead;
+    }
+
+    /**
+     * Creates a skipped file from the exception that stopped it being read, finding the position of the error from
+     * the exception or the exceptions it wraps.
+     *
+     * @param path The report file path
+     * @param exception The exception that stopped the file being read
+     * @param suitesRead The number of suites read from the file before the error
+     * @return See description
+     */
+    public static SkippedReportFile fromException(final String path, final Throwable exception, final int suitesRead) {
+        int lineNumber = -1;
+        int columnNumber = -1;
+        Throwable innermost = exception;
+        for (Throwable cause = exception; cause != null; cause = getCause(cause)) {
+            innermost = cause;
+            if (lineNumber < 0 && cause instanceof XMLStreamException && ((XMLStreamException) cause).getLocation() != null) {
+                Location location = ((XMLStreamException) cause).getLocation();
+                lineNumber = location.getLineNumber();
+                columnNumber = location.getColumnNumber();
+            } else if (lineNumber < 0 && cause instanceof SAXParseException) {
+                lineNumber = ((SAXParseException) cause).getLineNumber();
+                columnNumber = ((SAXParseException) cause).getColumnNumber();
+            }
+        }
+        String message = innermost.getMessage() != null ? innermost.getMessage() : exception.toString();
+        // Parser messages can start with their own position, and span lines.
+        message = message.replaceFirst("^ParseError at \\[row,col]:\\[\\d+,\\d+]\\s*Message:\\s*", "").replaceAll("\\s+", " ").trim();
+        return new SkippedReportFile(path, message, lineNumber, columnNumber, suitesRead);
+    }
+
+    public String getPath() { return this.path; }
+    public String getError() { return this.error; }
+    public int getLineNumber() { return this.lineNumber; }
+    public int getColumnNumber() { return this.columnNumber; }
+    public int getSuitesRead() { return this.suitesRead; }
+
+    /**
+     * @return A one line description of the file and the error
+     */
+    @Override
+    public String toString() {
+        StringBuilder description = new StringBuilder(this.path);
+        if (this.lineNumber >= 0) {
+            description.append(" (line ").append(this.lineNumber);
+            if (this.columnNumber >= 0) {
+                description.append(", column ").append(this.columnNumber);
+            }
+            description.append(')');
+        }
+        description.append(": ").append(this.error);
+        if (this.suitesRead > 0) {
+            description.append(String.format(" (%d suites read before the error were kept)", this.suitesRead));
+        }
+        return description.toString();
+    }
+
+    /**
+     * @return The exception wrapped by the exception, including JAXB's linked exceptions
+     */
+    private static Throwable getCause(final Throwable exception) {
+        if (exception instanceof JAXBException && ((JAXBException) exception).getLinkedException() != null
+                && ((JAXBException) exception).getLinkedException() != exception) {
+            return ((JAXBException) exception).getLinkedException();
+        }
+        return exception.getCause() != exception ? exception.getCause() : null;
+    }
+}
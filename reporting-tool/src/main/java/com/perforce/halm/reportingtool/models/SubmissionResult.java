@@ -0,0 +1,60 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.models;
+
+import com.perforce.halm.rest.responses.SubmitAutomationBuildResponse;
+
+/**
+ * The outcome of submitting a build: the REST API response, or that the submission was skipped because a ledger shows
+ * the build was already submitted. A skipped submission has a response without an error message, so it is treated as
+ * a success by callers that only check the response.
+ */
+public class SubmissionResult {
+    private final SubmitAutomationBuildResponse response;
+    private final boolean alreadySubmitted;
+
+    /**
+     * Constructor
+     *
+     * @param response The response object
+     * @param alreadySubmitted Whether the submission was skipped because the build was already submitted
+     */
+    public SubmissionResult(final SubmitAutomationBuildResponse response, final boolean alreadySubmitted) {
+        this.response = response;
+        this.alreadySubmitted = alreadySubmitted;
+    }
+
+    public SubmitAutomationBuildResponse getResponse() { return this.response; }
+    public boolean isAlreadySubmitted() { return this.alreadySubmitted; }
+
+    /**
+     * @return The response's error message, or null if the build was submitted or already had been
+     */
+    public String getErrorMessage() {
+        return this.response != null ? this.response.getErrorMessage() : null;
+    }
+}
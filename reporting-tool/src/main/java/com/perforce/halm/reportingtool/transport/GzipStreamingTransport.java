@@ -0,0 +1,223 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.transport;
+
+import com.perforce.halm.reportingtool.events.ReportingEvent;
+import com.perforce.halm.reportingtool.events.ReportingEvents;
+import com.perforce.halm.reportingtool.json.AutomationBuildJSONWriter;
+import com.perforce.halm.reportingtool.json.JSONReader;
+import com.perforce.halm.reportingtool.metrics.CountingOutputStream;
+import com.perforce.halm.reportingtool.metrics.RunMetrics;
+import com.perforce.halm.rest.responses.SubmitAutomationBuildResponse;
+import com.perforce.halm.rest.types.automation.build.AutomationBuild;
+
+import javax.net.ssl.SSLException;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Submits an automation build by serializing it straight into a chunked, gzip compressed HTTP request body.
+ * The JSON document is never held in memory as a whole; it is compressed and sent as it is written.
+ */
+public class GzipStreamingTransport {
+    /**
+     * Size of each chunk sent to the server, and of the buffers in front of the compressor.
+     */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final String baseURL;
+    private final String accessToken;
+    private RunMetrics metrics = RunMetrics.DISABLED;
+
+    /**
+     * Constructor
+     *
+     * @param baseURL The Helix ALM REST API base URL
+     * @param accessToken The bearer token returned by the Helix ALM REST API for the project
+     */
+    public GzipStreamingTransport(final String baseURL, final String accessToken) {
+        this.baseURL = baseURL;
+        this.accessToken = accessToken;
+    }
+
+    /**
+     * @param metrics The metrics to record the request body size in
+     */
+    public void setMetrics(RunMetrics metrics) {
+        this.metrics = metrics != null ? metrics : RunMetrics.DISABLED;
+    }
+
+    /**
+     * Attempts to submit the build using a compressed request body.
+     * Returns null if the server or build can't be handled this way, in which case the caller should fall back to the
+     * REST API client.
+     *
+     * @param build The build to submit
+     * @param projectID The Helix ALM project identifier
+     * @param suiteID The Helix ALM automation suite identifier
+     * @return The response object, or null if the caller needs to fall back to an uncompressed submission
+     * @throws IOException Thrown when the request fails for reasons other than the server rejecting compression
+     */
+    public SubmitAutomationBuildResponse submitAutomationBuild(final AutomationBuild build, final String projectID,
+                                                               final String suiteID) throws IOException {
+        if (!AutomationBuildJSONWriter.canWriteBuild(build)) {
+            return null;
+        }
+
+        HttpURLConnection connection = (HttpURLConnection) this.getSubmitBuildURL(projectID, suiteID).openConnection();
+        ReportingEvent submitEvent = ReportingEvents.get().beginSubmit("gzip", projectID, suiteID);
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setChunkedStreamingMode(CHUNK_SIZE);
+            connection.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
+            connection.setRequestProperty("Content-Encoding", "gzip");
+            connection.setRequestProperty("Accept", "application/json");
+            connection.setRequestProperty("Authorization", "Bearer " + this.accessToken);
+
+            CountingOutputStream wireBytes = new CountingOutputStream(connection.getOutputStream());
+            CountingOutputStream bodyBytes = new CountingOutputStream(new GZIPOutputStream(wireBytes, CHUNK_SIZE));
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(bodyBytes, StandardCharsets.UTF_8), CHUNK_SIZE)) {
+                new AutomationBuildJSONWriter(writer).writeBuild(build);
+            }
+            this.metrics.recordPayload(bodyBytes.getCount(), wireBytes.getCount());
+            submitEvent.setPayloadBytes(bodyBytes.getCount());
+
+            SubmitAutomationBuildResponse response = this.readResponse(connection);
+            submitEvent.setStatusCode(connection.getResponseCode());
+            return response;
+        } catch (SSLException e) {
+            // Certificates accepted through the SSL fingerprint are only known to the REST API client.
+            return null;
+        } finally {
+            submitEvent.end();
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Converts the HTTP response into a response object. The error message is the only field read from the response,
+     * since it's the only one checked once a build is submitted. For a failed request, it is the message in the
+     * response body.
+     *
+     * @param connection The connection to read the response from
+     * @return The response object, or null if the server refused the compressed or chunked request body
+     * @throws IOException Thrown when the response can't be read
+     */
+    private SubmitAutomationBuildResponse readResponse(final HttpURLConnection connection) throws IOException {
+        int status = connection.getResponseCode();
+        if (status == HttpURLConnection.HTTP_UNSUPPORTED_TYPE || status == HttpURLConnection.HTTP_LENGTH_REQUIRED) {
+            return null;
+        }
+
+        SubmitAutomationBuildResponse response = new SubmitAutomationBuildResponse();
+        if (status < 200 || status >= 300) {
+            String message = getErrorMessage(JSONReader.readObject(readStream(connection.getErrorStream())));
+            response.setErrorMessage(message != null
+                    ? message
+                    : String.format("The Helix ALM REST API returned HTTP %d when submitting the build.", status));
+        } else {
+            Map<String, Object> fields = JSONReader.readObject(readStream(connection.getInputStream()));
+            Object message = fields != null ? fields.get("errorMessage") : null;
+            if (message instanceof String) {
+                response.setErrorMessage((String) message);
+            }
+        }
+        return response;
+    }
+
+    /**
+     * @param fields The fields of the error response body, may be null
+     * @return The error message in the response body, or null if it has none
+     */
+    private static String getErrorMessage(final Map<String, Object> fields) {
+        if (fields != null) {
+            for (String name : new String[] {"message", "errorMessage"}) {
+                Object message = fields.get(name);
+                if (message instanceof String && !((String) message).isEmpty()) {
+                    return (String) message;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The REST API client doesn't expose its request URLs, so this is the endpoint it posts builds to, as documented
+     * for the Helix ALM REST API.
+     *
+     * @param projectID The Helix ALM project identifier
+     * @param suiteID The Helix ALM automation suite identifier
+     * @return The URL for the submit automation build endpoint
+     * @throws IOException Thrown if the URL is not valid
+     */
+    private URL getSubmitBuildURL(final String projectID, final String suiteID) throws IOException {
+        String base = this.baseURL.endsWith("/") ? this.baseURL.substring(0, this.baseURL.length() - 1) : this.baseURL;
+        return new URL(String.format("%s/%s/automationSuites/%s/builds", base, encodePathSegment(projectID), encodePathSegment(suiteID)));
+    }
+
+    /**
+     * @param segment The path segment to encode
+     * @return See description
+     * @throws IOException Thrown if UTF-8 is not supported
+     */
+    private static String encodePathSegment(final String segment) throws IOException {
+        return URLEncoder.encode(segment, StandardCharsets.UTF_8.name()).replace("+", "%20");
+    }
+
+    /**
+     * Reads the remaining content of the stream as a UTF-8 string.
+     *
+     * @param stream The stream to read, may be null
+     * @return See description
+     * @throws IOException Thrown when the stream can't be read
+     */
+    private static String readStream(final InputStream stream) throws IOException {
+        if (stream == null) {
+            return "";
+        }
+        try (InputStream in = stream) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                content.write(buffer, 0, read);
+            }
+            return new String(content.toByteArray(), StandardCharsets.UTF_8).trim();
+        }
+    }
+}
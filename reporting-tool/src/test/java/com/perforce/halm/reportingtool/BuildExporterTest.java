@@ -0,0 +1,93 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool;
+
+import com.perforce.halm.reportingtool.format.ReportFormatType;
+import com.perforce.halm.reportingtool.format.junit.JUnitMetaTestCommon;
+import com.perforce.halm.reportingtool.json.ExportFormat;
+import com.perforce.halm.reportingtool.models.ReportContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test class for verifying builds exported to JSON files instead of being submitted
+ */
+class BuildExporterTest extends JUnitMetaTestCommon {
+    BuildExporterTest() {
+        super(Arrays.asList(
+            "single_case_metadata.xml",
+            "single_suite_no_tests.xml"
+        ));
+    }
+
+    @Test void exportJSON(@TempDir Path outputDir) throws IOException {
+        Path output = outputDir.resolve("build.json");
+        BuildExporter exporter = new BuildExporter("Build 1", this.buildReportContext("single_case_metadata.xml"), null);
+        assertTrue(exporter.exportAutomationBuild(output.toString(), ExportFormat.json));
+
+        String json = new String(Files.readAllBytes(output), StandardCharsets.UTF_8).trim();
+        assertTrue(json.startsWith("{\"results\":[{\"name\":\"Login\",\"uniqueName\":\"login_validation\""));
+        assertTrue(json.endsWith(",\"number\":\"Build 1\",\"startDate\":\"2022-05-14T04:36:20\",\"duration\":123}"));
+    }
+
+    @Test void exportNDJSON(@TempDir Path outputDir) throws IOException {
+        Path output = outputDir.resolve("build.ndjson");
+        BuildExporter exporter = new BuildExporter("Build 2", this.buildReportContext("single_case_metadata.xml", "single_suite_no_tests.xml"), null);
+        assertTrue(exporter.exportAutomationBuild(output.toString(), ExportFormat.ndjson));
+
+        List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).startsWith("{\"name\":\"Login\""));
+        assertTrue(lines.get(1).startsWith("{\"number\":\"Build 2\""));
+        assertFalse(lines.get(1).contains("\"results\""));
+    }
+
+    @Test void exportEmptyBuild(@TempDir Path outputDir) throws IOException {
+        Path output = outputDir.resolve("empty.json");
+        BuildExporter exporter = new BuildExporter("Build 3", this.buildReportContext("single_suite_no_tests.xml"), null);
+        assertTrue(exporter.exportAutomationBuild(output.toString(), ExportFormat.json));
+        assertEquals("{\"results\":[],\"number\":\"Build 3\",\"startDate\":\"2022-05-14T04:36:20\",\"duration\":0}",
+                new String(Files.readAllBytes(output), StandardCharsets.UTF_8).trim());
+    }
+
+    /**
+     * @param fileNames The report filenames to load
+     * @return A JUnit report context for the temporary report files
+     */
+    private ReportContext buildReportContext(String ... fileNames) {
+        return new ReportContext(ReportFormatType.JUnit, this.buildReportFileList(fileNames));
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool;
+
+import com.perforce.halm.reportingtool.format.DuplicatePolicy;
+import com.perforce.halm.reportingtool.format.ReportFormatType;
+import com.perforce.halm.reportingtool.format.ResultGranularity;
+import com.perforce.halm.reportingtool.format.junit.parser.DoctypePolicy;
+import com.perforce.halm.reportingtool.ledger.SubmissionFingerprint;
+import com.perforce.halm.reportingtool.ledger.SubmissionLedger;
+import com.perforce.halm.reportingtool.models.BuildMetadata;
+import com.perforce.halm.reportingtool.models.ConversionOptions;
+import com.perforce.halm.reportingtool.models.HelixALMSuiteContext;
+import com.perforce.halm.reportingtool.models.ReportContext;
+import com.perforce.halm.reportingtool.models.SubmissionResult;
+import com.perforce.halm.reportingtool.stub.HelixALMStubServer;
+import com.perforce.halm.reportingtool.synthetic.SyntheticReportGenerator;
+import com.perforce.halm.rest.ConnectionInfo;
+import com.perforce.halm.rest.types.automation.build.AutomationResultStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test class for verifying build submissions against the stub Helix ALM REST API server
+ */
+class BuildSubmitterTest {
+    private static final Pattern BUILD_NUMBER = Pattern.compile("\"number\":\"([^\"]+)\"");
+
+    @Test void submitBuildsConcurrently(@TempDir Path tempDir) throws Exception {
+        final int buildCount = 12;
+        SyntheticReportGenerator generator = new SyntheticReportGenerator();
+        generator.setTestCaseCount(300);
+        generator.setFileCount(3);
+        generator.setTestCasesPerSuite(50);
+        generator.setFailureRatio(0.1);
+        List<String> reportFiles = new ArrayList<>();
+        for (Path report : generator.writeReports(tempDir)) {
+            reportFiles.add(report.toString());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (HelixALMStubServer server = new HelixALMStubServer(true)) {
+            List<CompletableFuture<SubmissionResult>> futures = new ArrayList<>();
+            for (int i = 0; i < buildCount; i++) {
+                HelixALMSuiteContext suiteContext = new HelixALMSuiteContext(
+                        new ConnectionInfo(server.getBaseURL(), "user", "pass"), "1", String.valueOf(i));
+                BuildSubmitter submitter = new BuildSubmitter("Build " + i,
+                        new ReportContext(ReportFormatType.JUnit, reportFiles), suiteContext, new BuildMetadata());
+                submitter.setTransportType(SubmitTransportType.gzip);
+                futures.add(submitter.submitAutomationBuildAsync(executor));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(60, TimeUnit.SECONDS);
+            for (CompletableFuture<SubmissionResult> future : futures) {
+                assertNull(future.get().getErrorMessage());
+            }
+
+            List<HelixALMStubServer.SubmittedBuild> submitted = server.getSubmittedBuilds();
+            assertEquals(buildCount, submitted.size());
+            Set<String> buildNumbers = new TreeSet<>();
+            for (HelixALMStubServer.SubmittedBuild build : submitted) {
+                Matcher matcher = BUILD_NUMBER.matcher(build.getBody());
+                assertTrue(matcher.find());
+                assertEquals("Build " + build.getSuiteID(), matcher.group(1), "Each build should go to its own suite.");
+                buildNumbers.add(matcher.group(1));
+                // Every build has all results, with no uniqueNames renamed because of another build's results.
+                assertEquals(300, countOccurrences(build.getBody(), "\"uniqueName\":"));
+                assertFalse(build.getBody().matches("(?s).*\"uniqueName\":\"[^\"]*\\.1\".*"));
+            }
+            assertEquals(buildCount, buildNumbers.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test void ledgerSkipsBuildsAlreadySubmitted(@TempDir Path tempDir) throws Exception {
+        SyntheticReportGenerator generator = new SyntheticReportGenerator();
+        generator.setTestCaseCount(40);
+        generator.setFileCount(2);
+        generator.setTestCasesPerSuite(10);
+        generator.setFailureRatio(0.2);
+        List<String> reportFiles = new ArrayList<>();
+        for (Path report : generator.writeReports(tempDir.resolve("reports"))) {
+            reportFiles.add(report.toString());
+        }
+        SubmissionLedger ledger = new SubmissionLedger(tempDir.resolve("ledger.tsv"));
+
+        PrintStream err = System.err;
+        System.setErr(new PrintStream(new ByteArrayOutputStream()));
+        try (HelixALMStubServer server = new HelixALMStubServer(true)) {
+            BuildSubmitter first = this.createSubmitter(server, reportFiles, "1", ledger);
+            SubmissionResult firstResult = first.submitAutomationBuild();
+            assertNull(firstResult.getErrorMessage());
+            assertFalse(firstResult.isAlreadySubmitted());
+
+            // A retried job with the same report files is recognized without parsing them, by a new ledger object.
+            BuildSubmitter retried = this.createSubmitter(server, reportFiles, "1", new SubmissionLedger(ledger.getPath()));
+            SubmissionResult retriedResult = retried.submitAutomationBuildAsync(Runnable::run).get();
+            assertNull(retriedResult.getErrorMessage());
+            assertTrue(retriedResult.isAlreadySubmitted());
+
+            // Report files that changed without changing the build are recognized once converted.
+            Files.write(Paths.get(reportFiles.get(0)), "\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+            BuildSubmitter rewritten = this.createSubmitter(server, reportFiles, "1", ledger);
+            SubmissionResult rewrittenResult = rewritten.submitAutomationBuild();
+            assertNull(rewrittenResult.getErrorMessage());
+            assertTrue(rewrittenResult.isAlreadySubmitted());
+
+            // The same build is still submitted to another suite.
+            BuildSubmitter otherSuite = this.createSubmitter(server, reportFiles, "2", ledger);
+            SubmissionResult otherSuiteResult = otherSuite.submitAutomationBuild();
+            assertNull(otherSuiteResult.getErrorMessage());
+            assertFalse(otherSuiteResult.isAlreadySubmitted());
+
+            List<HelixALMStubServer.SubmittedBuild> submitted = server.getSubmittedBuilds();
+            assertEquals(2, submitted.size());
+            assertEquals("1", submitted.get(0).getSuiteID());
+            assertEquals("2", submitted.get(1).getSuiteID());
+        } finally {
+            System.setErr(err);
+        }
+    }
+
+    @Test void inputFingerprintCoversConversionOptions(@TempDir Path tempDir) throws Exception {
+        Path report = tempDir.resolve("report.xml");
+        Files.write(report, "<testsuite/>".getBytes(StandardCharsets.UTF_8));
+        List<Consumer<ConversionOptions>> changes = Arrays.asList(
+                options -> options.setIncludePatterns(Collections.singletonList("com.example.*")),
+                options -> options.setExcludePatterns(Collections.singletonList("com.example.*")),
+                options -> options.setStatuses(EnumSet.of(AutomationResultStatus.FAILED)),
+                options -> options.setIncludeTags(Collections.singletonList("smoke")),
+                options -> options.setExcludeTags(Collections.singletonList("smoke")),
+                options -> options.setPassSampleRate(0.5),
+                options -> options.setGranularity(ResultGranularity.testclass),
+                options -> options.setDuplicatePolicy(DuplicatePolicy.last),
+                options -> options.setHoistConstantAttributes(true),
+                options -> options.setDeduplicateFailures(true),
+                options -> options.setFingerprintLineNumbers(true),
+                options -> options.setMaxMessageBytes(100),
+                options -> options.setMaxBodyBytes(100),
+                options -> options.setMaxPropertyBytes(100),
+                options -> options.setPayloadBudgetBytes(100),
+                options -> options.setDoctypePolicy(DoctypePolicy.reject),
+                options -> options.setSanitizeInput(true),
+                options -> options.setAllowPartialBuilds(true),
+                options -> options.setSalvageTruncatedReports(true));
+
+        // Every option decides how the report files are converted, so changing any of them gives a new fingerprint.
+        Set<String> fingerprints = new HashSet<>();
+        assertTrue(fingerprints.add(fingerprintInputs(report, new ConversionOptions())));
+        for (Consumer<ConversionOptions> change : changes) {
+            ConversionOptions options = new ConversionOptions();
+            change.accept(options);
+            assertTrue(fingerprints.add(fingerprintInputs(report, options)));
+        }
+        assertEquals(fingerprintInputs(report, new ConversionOptions()), fingerprintInputs(report, new ConversionOptions()));
+    }
+
+    @Test void invalidSubmissionCompletesWithError() throws Exception {
+        BuildSubmitter submitter = new BuildSubmitter("Build 1", new ReportContext(ReportFormatType.JUnit, Collections.emptyList()),
+                new HelixALMSuiteContext(), null);
+        SubmissionResult result = submitter.submitAutomationBuildAsync(Runnable::run).get();
+        assertNotNull(result.getErrorMessage());
+        assertFalse(result.isAlreadySubmitted());
+        assertThrows(NullPointerException.class, () -> submitter.submitAutomationBuildAsync(null));
+    }
+
+    private BuildSubmitter createSubmitter(final HelixALMStubServer server, final List<String> reportFiles,
+                                           final String suiteID, final SubmissionLedger ledger) {
+        HelixALMSuiteContext suiteContext = new HelixALMSuiteContext(
+                new ConnectionInfo(server.getBaseURL(), "user", "pass"), "1", suiteID);
+        BuildSubmitter submitter = new BuildSubmitter("Build 1", new ReportContext(ReportFormatType.JUnit, reportFiles),
+                suiteContext, new BuildMetadata());
+        submitter.setTransportType(SubmitTransportType.gzip);
+        submitter.setSubmissionLedger(ledger);
+        return submitter;
+    }
+
+    private static String fingerprintInputs(final Path report, final ConversionOptions options) throws Exception {
+        return SubmissionFingerprint.ofInputs(Collections.singletonList(report.toString()), ReportFormatType.JUnit, "Build 1",
+                new BuildMetadata(), options, new HelixALMSuiteContext(new ConnectionInfo("http://localhost", "user", "pass"), "1", "1"));
+    }
+
+    private static int countOccurrences(final String text, final String value) {
+        int count = 0;
+        for (int index = text.indexOf(value); index >= 0; index = text.indexOf(value, index + value.length())) {
+            count++;
+        }
+        return count;
+    }
+}
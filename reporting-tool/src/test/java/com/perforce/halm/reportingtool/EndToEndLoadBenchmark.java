@@ -0,0 +1,147 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool;
+
+import com.perforce.halm.reportingtool.stub.HelixALMStubServer;
+import com.perforce.halm.reportingtool.synthetic.SyntheticReportGenerator;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * End-to-end load benchmark. Drives the real command line entry point against the stub Helix ALM REST API server,
+ * and reports throughput, latency percentiles and peak memory use for each report size.
+ * Excluded from the regular test run; use the 'loadTest' Gradle task. Configured with these system properties:
+ * <ul>
+ *     <li>loadTest.testcases - Comma separated report sizes, in testcases (default: 1000,10000,100000)</li>
+ *     <li>loadTest.iterations - Submissions per report size (default: 5)</li>
+ *     <li>loadTest.latencyMS - Stub server latency added to every response (default: 0)</li>
+ *     <li>loadTest.errorRate - Portion of submissions the stub server fails, from 0 to 1 (default: 0)</li>
+ *     <li>loadTest.transport - Submission transport to use (default: client)</li>
+ * </ul>
+ */
+@Tag("benchmark")
+class EndToEndLoadBenchmark {
+    @Test void submitSyntheticReports(@TempDir Path tempDir) throws IOException {
+        List<Integer> sizes = new ArrayList<>();
+        for (String size : System.getProperty("loadTest.testcases", "1000,10000,100000").split(",")) {
+            sizes.add(Integer.parseInt(size.trim()));
+        }
+        int iterations = Integer.getInteger("loadTest.iterations", 5);
+        String transport = System.getProperty("loadTest.transport", SubmitTransportType.client.name());
+
+        try (HelixALMStubServer server = new HelixALMStubServer(false)) {
+            server.setLatency(Long.getLong("loadTest.latencyMS", 0), 0);
+            server.setSubmitErrors(Double.parseDouble(System.getProperty("loadTest.errorRate", "0")), 500);
+
+            System.out.println(String.format("%-10s %6s %12s %10s %10s %10s %10s %14s %10s",
+                    "testcases", "runs", "cases/sec", "p50 ms", "p90 ms", "p99 ms", "max ms", "payload bytes", "peak RSS"));
+            for (int testCaseCount : sizes) {
+                SyntheticReportGenerator generator = new SyntheticReportGenerator();
+                generator.setTestCaseCount(testCaseCount);
+                Path report = generator.writeReports(tempDir.resolve("report-" + testCaseCount)).get(0);
+
+                server.reset();
+                List<Long> latencies = new ArrayList<>();
+                for (int i = 0; i < iterations; i++) {
+                    long start = System.nanoTime();
+                    App.main(new String[] {
+                            "-f", "JUnit", "-n", "Load " + testCaseCount + "." + i, "-p", "1", "-s", "1",
+                            "-H", server.getBaseURL(), "-U", "loadtest", "-P", "loadtest", "-T", transport,
+                            report.toString()
+                    });
+                    latencies.add((System.nanoTime() - start) / 1000000);
+                }
+                assertEquals(iterations, server.getSubmittedBuilds().size(), "Every run should have submitted a build.");
+
+                long totalBytes = 0;
+                for (HelixALMStubServer.SubmittedBuild build : server.getSubmittedBuilds()) {
+                    totalBytes += build.getRequestBytes();
+                }
+                Collections.sort(latencies);
+                long totalMS = Math.max(1, latencies.stream().mapToLong(Long::longValue).sum());
+                System.out.println(String.format("%-10d %6d %12d %10d %10d %10d %10d %14d %10s",
+                        testCaseCount, iterations, (long) testCaseCount * iterations * 1000 / totalMS,
+                        percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99),
+                        latencies.get(latencies.size() - 1), totalBytes / iterations, formatBytes(getPeakRSSBytes())));
+            }
+        }
+    }
+
+    /**
+     * @param sortedValues The values, sorted in ascending order
+     * @param percentile The percentile to get, from 0 to 100
+     * @return The nearest-rank percentile value
+     */
+    private static long percentile(final List<Long> sortedValues, final int percentile) {
+        int rank = (int) Math.ceil(percentile / 100.0 * sortedValues.size());
+        return sortedValues.get(Math.max(0, Math.min(sortedValues.size() - 1, rank - 1)));
+    }
+
+    /**
+     * @return The peak resident set size of this process on Linux, or the peak heap use on other platforms
+     */
+    private static long getPeakRSSBytes() {
+        Path status = Paths.get("/proc/self/status");
+        if (Files.isReadable(status)) {
+            try {
+                for (String line : Files.readAllLines(status, StandardCharsets.UTF_8)) {
+                    if (line.startsWith("VmHWM:")) {
+                        List<String> parts = Arrays.asList(line.trim().split("\\s+"));
+                        return Long.parseLong(parts.get(1)) * 1024;
+                    }
+                }
+            } catch (IOException | RuntimeException ignored) {}
+        }
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static String formatBytes(final long bytes) {
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.events.jfr;
+
+import com.perforce.halm.reportingtool.events.ReportingEvents;
+import com.perforce.halm.reportingtool.format.junit.JUnitMetaBuild;
+import com.perforce.halm.reportingtool.stub.HelixALMStubServer;
+import com.perforce.halm.reportingtool.synthetic.SyntheticReportGenerator;
+import com.perforce.halm.reportingtool.transport.GzipStreamingTransport;
+import com.perforce.halm.rest.types.automation.build.AutomationBuild;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test class for verifying the JFR events emitted while converting and submitting a build
+ */
+class JFRReportingEventsTest {
+    @Test void jfrEventsAreUsed() {
+        assertTrue(ReportingEvents.get() instanceof JFRReportingEvents);
+    }
+
+    @Test void conversionAndSubmitEventsAreRecorded(@TempDir Path tempDir) throws IOException {
+        SyntheticReportGenerator generator = new SyntheticReportGenerator();
+        generator.setTestCaseCount(40);
+        generator.setTestCasesPerSuite(20);
+        generator.setUniqueNameCollisionRatio(0.5);
+        Path report = generator.writeReports(tempDir.resolve("reports")).get(0);
+
+        Path recordingFile = tempDir.resolve("events.jfr");
+        try (Recording recording = new Recording();
+             HelixALMStubServer server = new HelixALMStubServer(false)) {
+            recording.enable("com.perforce.halm.reportingtool.*").withThreshold(Duration.ZERO);
+            recording.start();
+            AutomationBuild build = new JUnitMetaBuild().generateAutomationBuild("Events 1", Collections.singletonList(report.toString()), null);
+            new GzipStreamingTransport(server.getBaseURL(), "token").submitAutomationBuild(build, "1", "2");
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+        List<RecordedEvent> parseEvents = eventsNamed(events, "com.perforce.halm.reportingtool.ReportFileParse");
+        assertEquals(1, parseEvents.size());
+        assertEquals(report.toString(), parseEvents.get(0).getString("path"));
+        assertTrue(parseEvents.get(0).getLong("bytes") > 0);
+
+        List<RecordedEvent> conversionEvents = eventsNamed(events, "com.perforce.halm.reportingtool.SuiteConversion");
+        assertEquals(2, conversionEvents.size());
+        assertEquals(20, conversionEvents.get(0).getInt("testCaseCount"));
+
+        assertFalse(eventsNamed(events, "com.perforce.halm.reportingtool.UniqueNameCollision").isEmpty());
+
+        List<RecordedEvent> submitEvents = eventsNamed(events, "com.perforce.halm.reportingtool.SubmitBuild");
+        assertEquals(1, submitEvents.size());
+        assertEquals("gzip", submitEvents.get(0).getString("transport"));
+        assertEquals(201, submitEvents.get(0).getInt("statusCode"));
+        assertTrue(submitEvents.get(0).getLong("payloadBytes") > 0);
+    }
+
+    private static List<RecordedEvent> eventsNamed(final List<RecordedEvent> events, final String name) {
+        return events.stream().filter(event -> name.equals(event.getEventType().getName())).collect(Collectors.toList());
+    }
+}
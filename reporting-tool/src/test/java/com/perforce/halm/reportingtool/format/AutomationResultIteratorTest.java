@@ -0,0 +1,140 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.format;
+
+import com.perforce.halm.reportingtool.format.junit.JUnitMetaBuild;
+import com.perforce.halm.reportingtool.metrics.RunMetrics;
+import com.perforce.halm.reportingtool.synthetic.SyntheticReportGenerator;
+import com.perforce.halm.rest.types.automation.build.AutomationBuild;
+import com.perforce.halm.rest.types.automation.build.AutomationResult;
+import com.perforce.halm.rest.types.automation.build.AutomationResultStatus;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test class for verifying the streamed build summary and the result iterator
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class AutomationResultIteratorTest {
+    private final List<String> reportFiles = new ArrayList<>();
+
+    @BeforeAll
+    void writeReports(@TempDir Path tempDir) throws IOException {
+        SyntheticReportGenerator generator = new SyntheticReportGenerator();
+        generator.setTestCaseCount(1000);
+        generator.setTestCasesPerSuite(100);
+        generator.setFileCount(2);
+        generator.setFailureRatio(0.2);
+        generator.setSkippedRatio(0.1);
+        for (Path report : generator.writeReports(tempDir)) {
+            this.reportFiles.add(report.toString());
+        }
+    }
+
+    @Test void streamResultsSummarizesBuild() {
+        AutomationBuild expected = new JUnitMetaBuild().generateAutomationBuild("Build 1", this.reportFiles, null);
+        List<AutomationResult> streamed = new ArrayList<>();
+        BuildSummary summary = new JUnitMetaBuild().streamResults("Build 1", this.reportFiles, null, streamed::add);
+
+        assertNotNull(summary);
+        assertNull(summary.getBuild().getResults());
+        assertEquals(expected.getDuration(), summary.getDuration());
+        assertEquals(expected.getStartDate(), summary.getStartDate());
+        assertEquals(1000, summary.getResultCount());
+        assertEquals(streamed.size(), summary.getResultCount());
+        for (AutomationResultStatus status : AutomationResultStatus.values()) {
+            long count = expected.getResults().stream().filter(result -> BuildSummary.getStatus(result) == status).count();
+            assertEquals(count, summary.getResultCount(status), status.name());
+        }
+        assertTrue(summary.getResultCount(AutomationResultStatus.FAILED) > 0);
+    }
+
+    @Test void iterateAllResults() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (AutomationResultIterator results = new JUnitMetaBuild().iterateResults("Build 1", this.reportFiles, null, 8, executor)) {
+            int count = 0;
+            while (results.hasNext()) {
+                assertNotNull(results.next().getUniqueName());
+                count++;
+                assertNull(results.getSummary());
+            }
+            assertEquals(1000, count);
+            assertNotNull(results.getSummary());
+            assertEquals(1000, results.getSummary().getResultCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test void slowConsumerThrottlesConversion() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        RunMetrics metrics = new RunMetrics();
+        JUnitMetaBuild metaBuild = new JUnitMetaBuild();
+        metaBuild.setMetrics(metrics);
+        try (AutomationResultIterator results = metaBuild.iterateResults("Build 1", this.reportFiles, null, 4, executor)) {
+            assertTrue(results.hasNext());
+            Thread.sleep(250);
+            // The buffer, plus the result waiting to be added to it
+            assertTrue(metrics.getResultCount() <= 6, "Conversion should wait for the consumer.");
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS), "Closing the iterator should stop conversion.");
+    }
+
+    @Test void missingFileFailsIteration() {
+        List<String> files = new ArrayList<>(this.reportFiles);
+        files.add(files.get(0) + ".missing");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        PrintStream systemErrStream = System.err;
+        System.setErr(new PrintStream(new OutputStream(){public void write(int i){}}));
+        try (AutomationResultIterator results = new JUnitMetaBuild().iterateResults("Build 1", files, null, 16, executor)) {
+            assertThrows(RuntimeException.class, () -> {
+                while (results.hasNext()) {
+                    results.next();
+                }
+            });
+            assertNull(results.getSummary());
+        } finally {
+            System.setErr(systemErrStream);
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.format;
+
+import com.perforce.halm.reportingtool.format.junit.JUnitMetaTestCommon;
+import com.perforce.halm.reportingtool.models.ConversionOptions;
+import com.perforce.halm.rest.types.automation.build.AutomationBuild;
+import com.perforce.halm.rest.types.automation.build.AutomationResult;
+import com.perforce.halm.rest.types.automation.build.AutomationResultStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test class for verifying that duplicate results, such as those of a retried shard, are merged
+ */
+class DuplicateResultMergerTest extends JUnitMetaTestCommon {
+    DuplicateResultMergerTest() {
+        super(Arrays.asList(
+            "retried_shard.xml",
+            "retried_shard_retry.xml",
+            "surefire_reruns.xml"
+        ));
+    }
+
+    @Test void renameKeepsEveryResult() {
+        AutomationBuild build = this.convert(DuplicatePolicy.rename, "retried_shard.xml", "retried_shard_retry.xml");
+        assertEquals(Arrays.asList("Suite:com.example.UserTest:login", "Suite:com.example.UserTest:search",
+                "Suite:com.example.UserTest:logout", "Suite:com.example.UserTest:search.1", "Suite:com.example.UserTest:logout.1"),
+                build.getResults().stream().map(AutomationResult::getUniqueName).collect(Collectors.toList()));
+        assertNull(build.getProperties());
+    }
+
+    @Test void mergeByPolicy() {
+        AutomationBuild last = this.convert(DuplicatePolicy.last, "retried_shard.xml", "retried_shard_retry.xml");
+        assertEquals(3, last.getResults().size());
+        assertEquals("Suite:com.example.UserTest:search", last.getResults().get(1).getUniqueName());
+        assertEquals(AutomationResultStatus.PASSED, BuildSummary.getStatus(last.getResults().get(1)));
+        assertEquals(Arrays.asList("attempts=2"), describeProperties(last.getResults().get(1).getProperties()));
+        assertEquals("still broken", last.getResults().get(2).getErrorMessage());
+        assertEquals(Arrays.asList("mergedDuplicateResults=2"), describeProperties(last.getProperties()));
+
+        AutomationBuild worst = this.convert(DuplicatePolicy.worst, "retried_shard.xml", "retried_shard_retry.xml");
+        assertEquals("timeout", worst.getResults().get(1).getErrorMessage());
+        // Ties keep the later result.
+        assertEquals("still broken", worst.getResults().get(2).getErrorMessage());
+
+        AutomationBuild best = this.convert(DuplicatePolicy.best, "retried_shard_retry.xml", "retried_shard.xml");
+        assertEquals(AutomationResultStatus.PASSED, BuildSummary.getStatus(best.getResults().get(0)));
+        assertEquals(Arrays.asList("attempts=2"), describeProperties(best.getResults().get(0).getProperties()));
+        assertEquals("broken", best.getResults().get(1).getErrorMessage());
+    }
+
+    @Test void markFlakyResults() {
+        AutomationBuild build = this.convert(DuplicatePolicy.flaky, "retried_shard.xml", "retried_shard_retry.xml");
+        assertEquals(3, build.getResults().size());
+        AutomationResult search = build.getResults().get(1);
+        assertEquals(AutomationResultStatus.PASSED, BuildSummary.getStatus(search));
+        assertEquals(Arrays.asList("attempts=2", "flaky=true"), describeProperties(search.getProperties()));
+        AutomationResult logout = build.getResults().get(2);
+        assertEquals(AutomationResultStatus.FAILED, BuildSummary.getStatus(logout));
+        assertEquals(Arrays.asList("attempts=2"), describeProperties(logout.getProperties()));
+        assertEquals(Arrays.asList("mergedDuplicateResults=2", "flakyResults=1"), describeProperties(build.getProperties()));
+    }
+
+    @Test void filterMergedResults() {
+        // search fails, then passes on its retry. Filters apply to the merged result, so the passing retry isn't
+        // dropped before the merge, leaving the failure to be reported.
+        ConversionOptions sampled = new ConversionOptions();
+        sampled.setDuplicatePolicy(DuplicatePolicy.flaky);
+        sampled.setPassSampleRate(0);
+        AutomationBuild build = this.generateAutomationBuild("Build 1", null, sampled, "retried_shard.xml", "retried_shard_retry.xml");
+        assertEquals(Arrays.asList("Suite:com.example.UserTest:logout"),
+                build.getResults().stream().map(AutomationResult::getUniqueName).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("passedResults=2", "sampledPassedResults=0", "mergedDuplicateResults=2", "flakyResults=1"),
+                describeProperties(build.getProperties()));
+
+        ConversionOptions passed = new ConversionOptions();
+        passed.setDuplicatePolicy(DuplicatePolicy.flaky);
+        passed.setStatuses(EnumSet.of(AutomationResultStatus.PASSED));
+        build = this.generateAutomationBuild("Build 1", null, passed, "retried_shard.xml", "retried_shard_retry.xml");
+        assertEquals(2, build.getResults().size());
+        AutomationResult search = build.getResults().get(1);
+        assertEquals("Suite:com.example.UserTest:search", search.getUniqueName());
+        assertEquals(Arrays.asList("attempts=2", "flaky=true"), describeProperties(search.getProperties()));
+        assertEquals(Arrays.asList("excludedResults=1", "mergedDuplicateResults=2", "flakyResults=1"), describeProperties(build.getProperties()));
+
+        // Filters that don't depend on the outcome count each test once, however many runs it has.
+        ConversionOptions excluded = new ConversionOptions();
+        excluded.setDuplicatePolicy(DuplicatePolicy.last);
+        excluded.setExcludePatterns(Arrays.asList("com.example.*"));
+        build = this.generateAutomationBuild("Build 1", null, excluded, "retried_shard.xml", "retried_shard_retry.xml");
+        assertTrue(build.getResults() == null || build.getResults().isEmpty());
+        assertEquals(Arrays.asList("excludedResults=3"), describeProperties(build.getProperties()));
+    }
+
+    @Test void surefireReruns() {
+        List<AutomationResult> results = this.convert(DuplicatePolicy.rename, "surefire_reruns.xml").getResults();
+        AutomationResult search = results.get(0);
+        assertEquals(AutomationResultStatus.PASSED, BuildSummary.getStatus(search));
+        assertEquals(Arrays.asList("attempts=3", "flaky=true", "flakyFailure=java.lang.AssertionError: timeout",
+                "flakyError=java.net.SocketException: reset"), describeProperties(search.getProperties()));
+        AutomationResult logout = results.get(1);
+        assertEquals(AutomationResultStatus.FAILED, BuildSummary.getStatus(logout));
+        assertEquals("broken", logout.getErrorMessage());
+        assertEquals(Arrays.asList("attempts=2", "rerunFailure=java.lang.AssertionError: still broken"), describeProperties(logout.getProperties()));
+
+        // Runs Surefire already merged are counted when the result is merged again.
+        AutomationBuild merged = this.convert(DuplicatePolicy.flaky, "retried_shard.xml", "surefire_reruns.xml");
+        AutomationResult mergedSearch = merged.getResults().get(1);
+        assertTrue(describeProperties(mergedSearch.getProperties()).contains("attempts=4"));
+        assertEquals(1, describeProperties(mergedSearch.getProperties()).stream().filter("flaky=true"::equals).count());
+    }
+
+    private AutomationBuild convert(final DuplicatePolicy policy, final String ... fileNames) {
+        ConversionOptions options = new ConversionOptions();
+        options.setDuplicatePolicy(policy);
+        return this.generateAutomationBuild("Build 1", null, options, fileNames);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.format;
+
+import com.perforce.halm.reportingtool.format.junit.JUnitMetaTestCommon;
+import com.perforce.halm.reportingtool.models.ConversionOptions;
+import com.perforce.halm.rest.types.automation.build.AutomationBuild;
+import com.perforce.halm.rest.types.automation.build.AutomationResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test class for verifying failure body fingerprinting and deduplication
+ */
+class FailureDeduplicatorTest extends JUnitMetaTestCommon {
+    private static final String TRACE =
+            "java.lang.IllegalStateException: fixture unavailable\n" +
+            "\tat com.example.Fixture.lambda$start$%d(Fixture.java:%d)\n" +
+            "\tat com.example.Fixture$$Lambda$%d/0x0000000800c0b440.run(Unknown Source)\n" +
+            "\tat com.example.Fixture.start(Fixture.java:20)\n";
+
+    FailureDeduplicatorTest() {
+        super(Collections.singletonList("repeated_failures.xml"));
+    }
+
+    @Test void normalize() {
+        String trace = String.format(TRACE, 5, 42, 99);
+        String normalized = FailureDeduplicator.normalize(trace.replace("\n", "  \r\n"), false);
+        assertEquals("java.lang.IllegalStateException: fixture unavailable\n" +
+                "\tat com.example.Fixture.lambda$start$(Fixture.java)\n" +
+                "\tat com.example.Fixture$$Lambda.run(Unknown Source)\n" +
+                "\tat com.example.Fixture.start(Fixture.java)", normalized);
+        assertTrue(FailureDeduplicator.normalize(trace, true).contains("(Fixture.java:42)"));
+    }
+
+    @Test void fingerprint() {
+        FailureDeduplicator ignoringLines = new FailureDeduplicator(false);
+        FailureDeduplicator keepingLines = new FailureDeduplicator(true);
+        String first = String.format(TRACE, 0, 42, 17);
+        String renumbered = String.format(TRACE, 3, 42, 18);
+        String moved = String.format(TRACE, 0, 43, 17);
+        assertEquals(16, ignoringLines.fingerprint(first).length());
+        assertEquals(ignoringLines.fingerprint(first), ignoringLines.fingerprint(renumbered));
+        assertEquals(ignoringLines.fingerprint(first), ignoringLines.fingerprint(moved));
+        assertEquals(keepingLines.fingerprint(first), keepingLines.fingerprint(renumbered));
+        assertNotEquals(keepingLines.fingerprint(first), keepingLines.fingerprint(moved));
+        assertNotEquals(ignoringLines.fingerprint(first), ignoringLines.fingerprint("java.lang.AssertionError"));
+    }
+
+    @Test void deduplicateBuild() {
+        AutomationBuild build = this.convert(false);
+        List<AutomationResult> results = build.getResults();
+        String fingerprint = getProperty(results.get(0), "failureFingerprint");
+        assertNotNull(getProperty(results.get(0), "failureValue"));
+
+        // Later results with the same trace only reference it, whether it was a failure or an error.
+        assertNull(getProperty(results.get(1), "failureValue"));
+        assertEquals(fingerprint, getProperty(results.get(1), "failureFingerprint"));
+        assertNull(getProperty(results.get(2), "errorValue"));
+        assertEquals(fingerprint, getProperty(results.get(2), "errorFingerprint"));
+        assertNotNull(getProperty(results.get(3), "failureValue"));
+
+        // Only the repeated fingerprint is counted on the build.
+        assertEquals("3", getProperty(build, FailureDeduplicator.FINGERPRINT_COUNT_PROPERTY_PREFIX + fingerprint));
+        assertEquals("2", getProperty(build, FailureDeduplicator.DUPLICATE_BODIES_PROPERTY));
+        assertEquals(2, build.getProperties().size());
+
+        // Keeping line numbers separates the error, which was thrown from a different line.
+        AutomationBuild withLines = this.convert(true);
+        assertNotNull(getProperty(withLines.getResults().get(2), "errorValue"));
+        assertEquals("1", getProperty(withLines, FailureDeduplicator.DUPLICATE_BODIES_PROPERTY));
+    }
+
+    @Test void keepBodyOfMergedResult() {
+        // Bodies are deduplicated after a rerun is merged, so the run kept for each test still has its body.
+        for (DuplicatePolicy policy : new DuplicatePolicy[] { DuplicatePolicy.last, DuplicatePolicy.worst }) {
+            ConversionOptions options = new ConversionOptions();
+            options.setDeduplicateFailures(true);
+            options.setDuplicatePolicy(policy);
+            AutomationBuild build = this.generateAutomationBuild("1", null, options, "repeated_failures.xml", "repeated_failures.xml");
+            List<AutomationResult> results = build.getResults();
+            assertEquals(4, results.size());
+            String fingerprint = getProperty(results.get(0), "failureFingerprint");
+            assertNotNull(getProperty(results.get(0), "failureValue"), policy.name());
+            assertNull(getProperty(results.get(1), "failureValue"));
+            assertEquals(fingerprint, getProperty(results.get(1), "failureFingerprint"));
+            assertNotNull(getProperty(results.get(3), "failureValue"), policy.name());
+
+            // Only the bodies of the merged results are counted.
+            assertEquals("3", getProperty(build, FailureDeduplicator.FINGERPRINT_COUNT_PROPERTY_PREFIX + fingerprint));
+            assertEquals("2", getProperty(build, FailureDeduplicator.DUPLICATE_BODIES_PROPERTY));
+        }
+    }
+
+    @Test void disabledByDefault() {
+        AutomationBuild build = this.generateAutomationBuild("1", null, "repeated_failures.xml");
+        for (AutomationResult result : build.getResults()) {
+            assertNull(getProperty(result, "failureFingerprint"));
+            assertNull(getProperty(result, "errorFingerprint"));
+        }
+        assertNull(build.getProperties());
+    }
+
+    private AutomationBuild convert(boolean keepLineNumbers) {
+        ConversionOptions options = new ConversionOptions();
+        options.setDeduplicateFailures(true);
+        options.setFingerprintLineNumbers(keepLineNumbers);
+        return this.generateAutomationBuild("1", null, options, "repeated_failures.xml");
+    }
+
+    private static String getProperty(AutomationResult result, String name) {
+        return findProperty(result.getProperties(), name);
+    }
+
+    private static String getProperty(AutomationBuild build, String name) {
+        return findProperty(build.getProperties(), name);
+    }
+}
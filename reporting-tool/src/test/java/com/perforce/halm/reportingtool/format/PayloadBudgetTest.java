@@ -0,0 +1,203 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.format;
+
+import com.perforce.halm.reportingtool.format.junit.JUnitMetaBuild;
+import com.perforce.halm.reportingtool.format.junit.JUnitMetaTestCommon;
+import com.perforce.halm.reportingtool.format.junit.parser.FieldLimitingStreamReader;
+import com.perforce.halm.reportingtool.format.junit.parser.JUnitJAXBParser;
+import com.perforce.halm.reportingtool.models.ConversionOptions;
+import com.perforce.halm.rest.types.IDLabelPair;
+import com.perforce.halm.rest.types.NameValuePair;
+import com.perforce.halm.rest.types.automation.build.AutomationBuild;
+import com.perforce.halm.rest.types.automation.build.AutomationResult;
+import com.perforce.halm.rest.types.automation.build.AutomationResultStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test class for verifying field size limits and the overall payload budget
+ */
+class PayloadBudgetTest extends JUnitMetaTestCommon {
+    // The failure body in oversized_fields.xml is this line repeated
+    private static final int BODY_LINES = 500;
+    private static final String BODY_LINE = "\tat com.example.Runaway.dump(Runaway.java:1)\n";
+
+    PayloadBudgetTest() {
+        super(Arrays.asList("oversized_fields.xml", "passes_before_failure.xml"));
+    }
+
+    @Test void truncateFieldsWhileReading() {
+        ConversionOptions options = new ConversionOptions();
+        options.setMaxMessageBytes(11);
+        options.setMaxBodyBytes(1000);
+        options.setMaxPropertyBytes(4);
+        AutomationBuild build = this.generateAutomationBuild("1", null, options, "oversized_fields.xml");
+        List<AutomationResult> results = build.getResults();
+
+        // Truncated fields keep what fits, without splitting a character, and are marked with their original size.
+        assertEquals("ééééé" + String.format(FieldLimitingStreamReader.TRUNCATION_MARKER_FORMAT, 200), results.get(0).getErrorMessage());
+        String body = findProperty(results.get(0).getProperties(), "failureValue");
+        String marker = String.format(FieldLimitingStreamReader.TRUNCATION_MARKER_FORMAT, BODY_LINES * BODY_LINE.length());
+        assertTrue(body.endsWith(marker));
+        assertEquals(1000, body.length() - marker.length());
+        assertTrue(BODY_LINE.startsWith(body.substring(0, 10)));
+        assertEquals("some" + String.format(FieldLimitingStreamReader.TRUNCATION_MARKER_FORMAT, 7), findProperty(results.get(0).getProperties(), "owner"));
+
+        // Fields within their limits are untouched.
+        assertEquals("short", results.get(1).getErrorMessage());
+        assertEquals("tiny", findProperty(results.get(1).getProperties(), "errorValue"));
+        // The message, the body, the owner attribute and the suite's build property
+        assertEquals("4", findProperty(build.getProperties(), JUnitMetaBuild.TRUNCATED_FIELDS_PROPERTY));
+    }
+
+    @Test void degradeWhenBudgetIsUsed() {
+        PayloadBudget budget = new PayloadBudget(2000);
+        int passesWithDetails = 0;
+        int failuresWithBodies = 0;
+        int firstPassWithoutDetails = -1;
+        int firstFailureWithoutBody = -1;
+        for (int i = 0; i < 20; i++) {
+            AutomationResult pass = createResult("pass" + i, AutomationResultStatus.PASSED, "detail");
+            budget.apply(pass);
+            passesWithDetails += pass.getProperties() != null ? 1 : 0;
+            if (pass.getProperties() == null && firstPassWithoutDetails < 0) {
+                firstPassWithoutDetails = i;
+            }
+            AutomationResult failure = createResult("fail" + i, AutomationResultStatus.FAILED, "failureValue");
+            budget.apply(failure);
+            failuresWithBodies += findProperty(failure.getProperties(), "failureValue") != null ? 1 : 0;
+            if (findProperty(failure.getProperties(), "failureValue") == null && firstFailureWithoutBody < 0) {
+                firstFailureWithoutBody = i;
+            }
+            // Failures never lose anything but their body
+            assertEquals("fail" + i, failure.getName());
+            assertNotNull(findProperty(failure.getProperties(), "failureType"));
+        }
+
+        // Passing results lose their details before failures lose their bodies.
+        assertTrue(passesWithDetails > 0 && passesWithDetails < 20);
+        assertTrue(firstPassWithoutDetails >= 0 && firstPassWithoutDetails <= firstFailureWithoutBody);
+        assertTrue(failuresWithBodies >= passesWithDetails && failuresWithBodies < 20);
+        assertEquals(20 - passesWithDetails, budget.getDroppedPassDetails());
+        assertEquals(20 - failuresWithBodies, budget.getDroppedBodies());
+
+        AutomationBuild build = new AutomationBuild();
+        budget.addBuildProperties(build);
+        assertEquals(String.valueOf(budget.getDroppedPassDetails()), findProperty(build.getProperties(), PayloadBudget.DROPPED_PASS_DETAILS_PROPERTY));
+        assertEquals(String.valueOf(budget.getDroppedBodies()), findProperty(build.getProperties(), PayloadBudget.DROPPED_BODIES_PROPERTY));
+    }
+
+    @Test void keepFailuresThatComeAfterPasses() {
+        PayloadBudget reserved = new PayloadBudget(6000);
+        PayloadBudget unreserved = new PayloadBudget(6000);
+        for (int i = 0; i < 5; i++) {
+            reserved.reserveBodies(createResult("fail" + i, AutomationResultStatus.FAILED, "failureValue"));
+        }
+        assertTrue(reserved.getReservedBytes() > 0);
+        for (PayloadBudget budget : Arrays.asList(reserved, unreserved)) {
+            for (int i = 0; i < 20; i++) {
+                AutomationResult pass = createResult("pass" + i, AutomationResultStatus.PASSED, "detail");
+                budget.release(pass);
+                budget.apply(pass);
+            }
+            for (int i = 0; i < 5; i++) {
+                AutomationResult failure = createResult("fail" + i, AutomationResultStatus.FAILED, "failureValue");
+                budget.release(failure);
+                budget.apply(failure);
+            }
+        }
+
+        // With the room for the failure bodies set aside, passes give up their details instead.
+        assertTrue(reserved.getDroppedPassDetails() > unreserved.getDroppedPassDetails());
+        assertEquals(0, reserved.getDroppedBodies());
+        assertEquals(0, reserved.getReservedBytes());
+        assertTrue(reserved.getUsedBytes() <= 6000);
+        // Without it, the passes use up the budget before the last failures arrive.
+        assertTrue(unreserved.getDroppedBodies() > 0);
+    }
+
+    @Test void measureFailureBodiesAhead() throws Exception {
+        JUnitJAXBParser parser = new JUnitJAXBParser(this.buildReportFileList("oversized_fields.xml"));
+        List<Long> bodyLengths = new ArrayList<>();
+        parser.measureFailureBodies(bodyLengths::add);
+        assertEquals(Arrays.asList((long) BODY_LINES * BODY_LINE.length(), 4L), bodyLengths);
+
+        // Bodies are measured as they will be kept.
+        bodyLengths.clear();
+        parser.setFieldLimits(0, 1000, 0);
+        parser.measureFailureBodies(bodyLengths::add);
+        assertEquals(Arrays.asList(1000L, 4L), bodyLengths);
+    }
+
+    @Test void reserveFailureBodiesWhenConverting() {
+        ConversionOptions options = new ConversionOptions();
+        options.setPayloadBudgetBytes(4200);
+        AutomationBuild build = this.generateAutomationBuild("1", null, options, "passes_before_failure.xml");
+        List<AutomationResult> results = build.getResults();
+
+        // The failure comes last, but its body was counted before the passes were sent, so half of them give up
+        // their details instead of it losing its body.
+        AutomationResult failure = results.get(results.size() - 1);
+        assertEquals("refund", failure.getName());
+        assertTrue(findProperty(failure.getProperties(), "failureValue").contains("Checkout.java:79"));
+        assertEquals("checkout-team-with-a-rather-long-name", findProperty(results.get(3).getProperties(), "owner"));
+        assertNull(results.get(4).getProperties());
+        assertNull(findProperty(build.getProperties(), PayloadBudget.DROPPED_BODIES_PROPERTY));
+        assertEquals("4", findProperty(build.getProperties(), PayloadBudget.DROPPED_PASS_DETAILS_PROPERTY));
+    }
+
+    @Test void noBudget() {
+        PayloadBudget budget = new PayloadBudget(0);
+        AutomationResult failure = createResult("fail", AutomationResultStatus.FAILED, "failureValue");
+        budget.apply(failure);
+        assertEquals(2, failure.getProperties().size());
+        assertEquals(0, budget.getUsedBytes());
+        AutomationBuild build = new AutomationBuild();
+        budget.addBuildProperties(build);
+        assertNull(build.getProperties());
+        assertThrows(IllegalArgumentException.class, () -> new ConversionOptions().setPayloadBudgetBytes(-1));
+        assertThrows(IllegalArgumentException.class, () -> new ConversionOptions().setMaxBodyBytes(-1));
+    }
+
+    private static AutomationResult createResult(String name, AutomationResultStatus status, String propertyName) {
+        AutomationResult result = new AutomationResult();
+        result.setName(name);
+        result.setStatus(new IDLabelPair(status.id(), ""));
+        result.addProperty(new NameValuePair(propertyName, String.join("", Collections.nCopies(40, "-"))));
+        if (status == AutomationResultStatus.FAILED) {
+            result.addProperty(new NameValuePair("failureType", "AssertionError"));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.format;
+
+import com.perforce.halm.reportingtool.format.junit.JUnitMetaTestCommon;
+import com.perforce.halm.reportingtool.models.ConversionOptions;
+import com.perforce.halm.rest.types.IDLabelPair;
+import com.perforce.halm.rest.types.automation.build.AutomationBuild;
+import com.perforce.halm.rest.types.automation.build.AutomationResult;
+import com.perforce.halm.rest.types.automation.build.AutomationResultStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test class for verifying parameterized and per class result granularity
+ */
+class ResultAggregatorTest extends JUnitMetaTestCommon {
+    ResultAggregatorTest() {
+        super(Collections.singletonList("parameterized.xml"));
+    }
+
+    @Test void stripParameterSuffix() {
+        assertEquals("add", ResultGranularity.stripParameterSuffix("add[1]"));
+        assertEquals("add", ResultGranularity.stripParameterSuffix("add [1, 2]"));
+        assertEquals("divide(int, int)", ResultGranularity.stripParameterSuffix("divide(int, int)[2]"));
+        assertEquals("nested", ResultGranularity.stripParameterSuffix("nested[[1, 2], [3]]"));
+        assertEquals("plain", ResultGranularity.stripParameterSuffix("plain"));
+        assertEquals("[1]", ResultGranularity.stripParameterSuffix("[1]"));
+        assertEquals("broken]", ResultGranularity.stripParameterSuffix("broken]"));
+    }
+
+    @Test void combineParameterizedInvocations() {
+        List<AutomationResult> results = this.convert(ResultGranularity.parameterized).getResults();
+        assertEquals(3, results.size());
+
+        AutomationResult add = results.get(0);
+        assertEquals("add", add.getName());
+        assertEquals("Suite:com.example.MathTest:add", add.getUniqueName());
+        assertEquals(AutomationResultStatus.FAILED, BuildSummary.getStatus(add));
+        assertEquals(300L, add.getDuration().longValue());
+        assertEquals("expected 4", add.getErrorMessage());
+        assertEquals(Arrays.asList("failedMember=add[2]: expected 4", "memberCount=3"), describeProperties(add.getProperties()));
+
+        AutomationResult divide = results.get(1);
+        assertEquals("divide(int, int)", divide.getName());
+        assertEquals(AutomationResultStatus.PASSED, BuildSummary.getStatus(divide));
+        assertEquals(Collections.singletonList("memberCount=2"), describeProperties(divide.getProperties()));
+
+        assertEquals(AutomationResultStatus.SKIPPED, BuildSummary.getStatus(results.get(2)));
+    }
+
+    @Test void combinePerClass() {
+        List<AutomationResult> results = this.convert(ResultGranularity.testclass).getResults();
+        assertEquals(2, results.size());
+        assertEquals("com.example.MathTest", results.get(0).getName());
+        assertEquals("Suite:com.example.MathTest", results.get(0).getUniqueName());
+        assertEquals(AutomationResultStatus.FAILED, BuildSummary.getStatus(results.get(0)));
+        assertEquals(500L, results.get(0).getDuration().longValue());
+        assertEquals("com.example.TextTest", results.get(1).getName());
+        assertEquals(AutomationResultStatus.SKIPPED, BuildSummary.getStatus(results.get(1)));
+    }
+
+    @Test void limitListedFailedMembers() {
+        ResultAggregator aggregator = new ResultAggregator();
+        for (int i = 0; i < ResultAggregator.MAX_FAILED_MEMBERS + 5; i++) {
+            AutomationResult member = new AutomationResult();
+            member.setName("test[" + i + "]");
+            member.setStatus(new IDLabelPair(AutomationResultStatus.FAILED.id(), ""));
+            aggregator.add("test", "test", "Suite:Class:test", member);
+        }
+        List<AutomationResult> results = new ArrayList<>();
+        aggregator.flush(new UniqueNameTracker(), results::add);
+        List<String> properties = describeProperties(results.get(0).getProperties());
+        assertEquals(ResultAggregator.MAX_FAILED_MEMBERS + 2, properties.size());
+        assertTrue(properties.contains("omittedFailedMembers=5"));
+        assertEquals(0, aggregator.getGroupCount());
+    }
+
+    private AutomationBuild convert(final ResultGranularity granularity) {
+        ConversionOptions options = new ConversionOptions();
+        options.setGranularity(granularity);
+        AutomationBuild build = this.generateAutomationBuild("Build 1", null, options, "parameterized.xml");
+        assertEquals(600L, build.getDuration().longValue());
+        return build;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.format;
+
+import com.perforce.halm.reportingtool.format.junit.JUnitMetaBuild;
+import com.perforce.halm.reportingtool.models.BuildMetadata;
+import com.perforce.halm.reportingtool.models.ConversionOptions;
+import com.perforce.halm.reportingtool.synthetic.SyntheticReportGenerator;
+import com.perforce.halm.rest.types.NameValuePair;
+import com.perforce.halm.rest.types.automation.build.AutomationBuild;
+import com.perforce.halm.rest.types.automation.build.AutomationResult;
+import com.perforce.halm.rest.types.automation.build.AutomationResultStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test class for verifying which results are kept by the result filter, and the build properties it adds
+ */
+class ResultFilterTest {
+    private static final Supplier<List<String>> NO_TAGS = Collections::emptyList;
+
+    @Test void noOptionsKeepsEverything() {
+        ResultFilter filter = new ResultFilter(null);
+        assertFalse(filter.isActive());
+        assertTrue(filter.accept("Suite", "com.example.Test", AutomationResultStatus.FAILED, NO_TAGS, () -> "key"));
+    }
+
+    @Test void filterByGlobStatusAndTags() {
+        ConversionOptions options = new ConversionOptions();
+        options.setIncludePatterns(Arrays.asList("com.example.*", "Smoke?"));
+        options.setExcludePatterns(Collections.singletonList("*.slow.*"));
+        options.setStatuses(EnumSet.of(AutomationResultStatus.PASSED, AutomationResultStatus.FAILED));
+        options.setExcludeTags(Collections.singletonList("quarantined"));
+        ResultFilter filter = new ResultFilter(options);
+
+        assertTrue(filter.accept("Suite", "com.example.FastTest", AutomationResultStatus.FAILED, NO_TAGS, () -> "a"));
+        assertTrue(filter.accept("Smoke1", "org.other.Test", AutomationResultStatus.PASSED, NO_TAGS, () -> "b"));
+        assertFalse(filter.accept("Smoke12", "org.other.Test", AutomationResultStatus.PASSED, NO_TAGS, () -> "c"));
+        assertFalse(filter.accept("Suite", "com.example.slow.Test", AutomationResultStatus.FAILED, NO_TAGS, () -> "d"));
+        assertFalse(filter.accept("Suite", "com.example.FastTest", AutomationResultStatus.SKIPPED, NO_TAGS, () -> "e"));
+        assertFalse(filter.accept("Suite", "com.example.FastTest", AutomationResultStatus.FAILED,
+                () -> Arrays.asList("ui", "quarantined"), () -> "f"));
+        assertEquals(4, filter.getExcludedResults());
+
+        AutomationBuild build = new AutomationBuild();
+        filter.addBuildProperties(build);
+        assertEquals(1, build.getProperties().size());
+        assertEquals(ResultFilter.EXCLUDED_RESULTS_PROPERTY, build.getProperties().get(0).getName());
+        assertEquals("4", build.getProperties().get(0).getValue());
+    }
+
+    @Test void includeTagsRequireAMatch() {
+        ConversionOptions options = new ConversionOptions();
+        options.setIncludeTags(Collections.singletonList("smoke"));
+        ResultFilter filter = new ResultFilter(options);
+        assertTrue(filter.accept("Suite", "Test", AutomationResultStatus.PASSED, () -> Arrays.asList("ui", "smoke"), () -> "a"));
+        assertFalse(filter.accept("Suite", "Test", AutomationResultStatus.PASSED, () -> null, () -> "b"));
+    }
+
+    @Test void samplingIsDeterministic() {
+        int kept = 0;
+        for (int i = 0; i < 10000; i++) {
+            String key = "Suite:com.example.Test:test" + i;
+            boolean sampled = ResultFilter.isSampled(key, 0.1);
+            assertEquals(sampled, ResultFilter.isSampled(key, 0.1));
+            if (sampled) {
+                kept++;
+                assertTrue(ResultFilter.isSampled(key, 0.5), "Raising the rate should keep the same tests.");
+            }
+            assertFalse(ResultFilter.isSampled(key, 0));
+            assertTrue(ResultFilter.isSampled(key, 1));
+        }
+        assertTrue(kept > 800 && kept < 1200, "About 10% should be kept, was " + kept);
+    }
+
+    @Test void samplePassesDuringConversion(@TempDir Path tempDir) throws IOException {
+        SyntheticReportGenerator generator = new SyntheticReportGenerator();
+        generator.setTestCaseCount(2000);
+        generator.setFailureRatio(0.05);
+        generator.setSkippedRatio(0.05);
+        String report = generator.writeReports(tempDir).get(0).toString();
+        AutomationBuild full = new JUnitMetaBuild().generateAutomationBuild("Build 1", Collections.singletonList(report), null);
+        long passed = full.getResults().stream().filter(result -> BuildSummary.getStatus(result) == AutomationResultStatus.PASSED).count();
+
+        ConversionOptions options = new ConversionOptions();
+        options.setPassSampleRate(0);
+        JUnitMetaBuild metaBuild = new JUnitMetaBuild();
+        metaBuild.setConversionOptions(options);
+        AutomationBuild sampled = metaBuild.generateAutomationBuild("Build 1", Collections.singletonList(report), null);
+
+        List<AutomationResult> results = sampled.getResults();
+        assertEquals(full.getResults().size() - passed, results.size());
+        assertTrue(results.stream().noneMatch(result -> BuildSummary.getStatus(result) == AutomationResultStatus.PASSED));
+        assertEquals(full.getDuration(), sampled.getDuration(), "Dropped results should still count towards the build duration.");
+        List<String> properties = sampled.getProperties().stream()
+                .map(property -> property.getName() + "=" + property.getValue()).collect(Collectors.toList());
+        assertEquals(Arrays.asList(ResultFilter.PASSED_RESULTS_PROPERTY + "=" + passed, ResultFilter.SAMPLED_PASSED_RESULTS_PROPERTY + "=0"), properties);
+    }
+
+    @Test void buildMetadataPropertiesAreNotModified(@TempDir Path tempDir) throws IOException {
+        SyntheticReportGenerator generator = new SyntheticReportGenerator();
+        generator.setTestCaseCount(10);
+        String report = generator.writeReports(tempDir).get(0).toString();
+        BuildMetadata metadata = new BuildMetadata();
+        metadata.addProperty(new NameValuePair("release", "1.0"));
+
+        ConversionOptions options = new ConversionOptions();
+        options.setPassSampleRate(0.5);
+        JUnitMetaBuild metaBuild = new JUnitMetaBuild();
+        metaBuild.setConversionOptions(options);
+        AutomationBuild build = metaBuild.generateAutomationBuild("Build 1", Collections.singletonList(report), metadata);
+        assertEquals(3, build.getProperties().size());
+        assertEquals(1, metadata.getProperties().size());
+    }
+}
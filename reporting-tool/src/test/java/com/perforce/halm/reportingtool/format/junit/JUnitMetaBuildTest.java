@@ -27,10 +27,15 @@
 package com.perforce.halm.reportingtool.format.junit;
 
 import com.perforce.halm.reportingtool.format.junit.parser.JUnitJAXBParser;
+import com.perforce.halm.reportingtool.metrics.RunMetrics;
+import com.perforce.halm.reportingtool.metrics.RunPhase;
 import com.perforce.halm.reportingtool.models.BuildMetadata;
+import com.perforce.halm.reportingtool.models.ConversionOptions;
+import com.perforce.halm.reportingtool.models.SkippedReportFile;
 import com.perforce.halm.rest.types.IDLabelPair;
 import com.perforce.halm.rest.types.NameValuePair;
 import com.perforce.halm.rest.types.automation.build.AutomationBuild;
+import com.perforce.halm.rest.types.automation.build.AutomationResult;
 import com.perforce.halm.rest.types.automation.jenkins.*;
 import org.junit.jupiter.api.Test;
 
@@ -38,6 +43,7 @@ import javax.xml.bind.JAXBException;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.util.*;
 
@@ -48,9 +54,12 @@ class JUnitMetaBuildTest extends JUnitMetaTestCommon {
     JUnitMetaBuildTest() {
         super(Arrays.asList(
             "invalid.xml",
+            "single_case_metadata.xml",
             "single_suite_metadata.xml",
             "single_suite_no_tests.xml",
-            "wrapper_two_suites_no_tests.xml"
+            "wrapper_two_suites_no_tests.xml",
+            "two_suites_constant_attributes.xml",
+            "wrapper_truncated.xml"
         ));
     }
 
@@ -149,6 +158,100 @@ class JUnitMetaBuildTest extends JUnitMetaTestCommon {
         assertEquals(expected.getJenkins().getBuildParameters().size(), config.getJenkins().getBuildParameters().size());
     }
 
+    @Test void hoistConstantAttributes() {
+        List<String> reportFiles = this.buildReportFileList("two_suites_constant_attributes.xml");
+        ConversionOptions options = new ConversionOptions();
+        options.setHoistConstantAttributes(true);
+        RunMetrics metrics = new RunMetrics();
+        JUnitMetaBuild metaBuild = new JUnitMetaBuild();
+        metaBuild.setConversionOptions(options);
+        metaBuild.setMetrics(metrics);
+        AutomationBuild build = assertDoesNotThrow(() -> metaBuild.generateAutomationBuild("Build 4", reportFiles, null));
+
+        // The scan for constant attributes is measured separately from parsing, and read the whole file.
+        assertEquals(metrics.getReportBytes(), metrics.getScanBytes());
+        assertTrue(metrics.getPhaseNanos(RunPhase.scan) > 0);
+
+        // Attributes that are the same on every test case are on the build, and left off the results.
+        Map<String, String> expectedProperties = new HashMap<>();
+        expectedProperties.put("device", "Pixel 6");
+        expectedProperties.put("os", "Android");
+        expectedProperties.put("farm", "east");
+        this.assertPropertiesMatch(expectedProperties, build.getProperties());
+        assertEquals(3, build.getResults().size());
+        for (AutomationResult result : build.getResults()) {
+            assertNull(result.getDevice());
+            assertNull(result.getOS());
+            assertEquals(1, result.getProperties().size());
+            assertEquals("owner", result.getProperties().get(0).getName());
+        }
+        // uniqueName describes each result, so it's never hoisted even if it matched.
+        assertEquals("login", build.getResults().get(0).getUniqueName());
+
+        // Without the option, every result keeps its attributes.
+        AutomationBuild unhoisted = this.generateAutomationBuild("Build 5", null, "two_suites_constant_attributes.xml");
+        assertNull(unhoisted.getProperties());
+        assertEquals("Pixel 6", unhoisted.getResults().get(2).getDevice());
+        assertEquals(2, unhoisted.getResults().get(2).getProperties().size());
+    }
+
+    @Test void skipInvalidFiles() {
+        List<String> reportFiles = this.buildReportFileList("invalid.xml", "wrapper_truncated.xml", "missing.xml", "single_case_metadata.xml");
+        PrintStream systemErrStream = System.err;
+        System.setErr(new PrintStream(new ByteArrayOutputStream()));
+        try {
+            // By default, one unreadable file fails the build.
+            assertThrows(RuntimeException.class, () -> new JUnitMetaBuild().generateAutomationBuild("Build 6", reportFiles, null));
+
+            ConversionOptions options = new ConversionOptions();
+            options.setAllowPartialBuilds(true);
+            JUnitMetaBuild metaBuild = new JUnitMetaBuild();
+            metaBuild.setConversionOptions(options);
+            AutomationBuild build = assertDoesNotThrow(() -> metaBuild.generateAutomationBuild("Build 6", reportFiles, null));
+
+            // The complete suite before the truncation and the good file are still converted.
+            assertNotNull(build);
+            assertEquals(2, build.getResults().size());
+            assertEquals("testComplete", build.getResults().get(0).getName());
+
+            List<SkippedReportFile> skippedFiles = metaBuild.getSkippedReportFiles();
+            assertEquals(3, skippedFiles.size());
+            assertEquals(reportFiles.get(0), skippedFiles.get(0).getPath());
+            assertTrue(skippedFiles.get(0).getError().contains("invalid-xml-data"));
+            assertEquals(reportFiles.get(1), skippedFiles.get(1).getPath());
+            assertTrue(skippedFiles.get(1).getLineNumber() > 0);
+            assertEquals(1, skippedFiles.get(1).getSuitesRead());
+            assertEquals(reportFiles.get(2), skippedFiles.get(2).getPath());
+
+            long listed = build.getProperties().stream().filter(p -> JUnitMetaBuild.SKIPPED_REPORT_FILE_PROPERTY.equals(p.getName())).count();
+            assertEquals(3, listed);
+            assertTrue(build.getProperties().stream().anyMatch(p -> JUnitMetaBuild.SKIPPED_REPORT_FILES_PROPERTY.equals(p.getName()) && "3".equals(p.getValue())));
+        } finally {
+            System.setErr(systemErrStream);
+        }
+    }
+
+    @Test void salvageTruncatedFile() {
+        List<String> reportFiles = this.buildReportFileList("wrapper_truncated.xml");
+        ConversionOptions options = new ConversionOptions();
+        options.setSalvageTruncatedReports(true);
+        JUnitMetaBuild metaBuild = new JUnitMetaBuild();
+        metaBuild.setConversionOptions(options);
+        PrintStream systemErrStream = System.err;
+        System.setErr(new PrintStream(new ByteArrayOutputStream()));
+        try {
+            AutomationBuild build = assertDoesNotThrow(() -> metaBuild.generateAutomationBuild("Build 7", reportFiles, null));
+            assertEquals(3, build.getResults().size());
+            assertEquals("testSecond", build.getResults().get(2).getName());
+            assertTrue(metaBuild.getSkippedReportFiles().isEmpty());
+            assertTrue(build.getProperties().stream().anyMatch(p -> JUnitMetaBuild.TRUNCATED_REPORT_FILES_PROPERTY.equals(p.getName()) && "1".equals(p.getValue())));
+            assertTrue(build.getProperties().stream().anyMatch(p -> JUnitMetaBuild.TRUNCATED_REPORT_FILE_PROPERTY.equals(p.getName()) &&
+                    p.getValue().equals(reportFiles.get(0) + " (line 13)")));
+        } finally {
+            System.setErr(systemErrStream);
+        }
+    }
+
     @Test void processSuiteNoMetadata() {
         // The AutomationBuild should be created with no metadata in place
         AutomationBuild build = this.generateAutomationBuild("Build 2", null, "single_suite_no_tests.xml");
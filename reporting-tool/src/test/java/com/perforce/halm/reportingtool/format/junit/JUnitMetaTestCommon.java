@@ -27,6 +27,7 @@
 package com.perforce.halm.reportingtool.format.junit;
 
 import com.perforce.halm.reportingtool.models.BuildMetadata;
+import com.perforce.halm.reportingtool.models.ConversionOptions;
 import com.perforce.halm.rest.types.NameValuePair;
 import com.perforce.halm.rest.types.automation.build.AutomationBuild;
 import org.apache.commons.io.FileUtils;
@@ -88,8 +89,22 @@ public abstract class JUnitMetaTestCommon {
      * @return See description
      */
     protected AutomationBuild generateAutomationBuild(String buildNumber, BuildMetadata metadata, String ... fileNames) {
+        return this.generateAutomationBuild(buildNumber, metadata, null, fileNames);
+    }
+
+    /**
+     * Generates an automation build from the specified data, converted with the specified options
+     *
+     * @param buildNumber The build number to supply to the build
+     * @param metadata Any build metadata to use
+     * @param options The conversion options to use, or null for the defaults
+     * @param fileNames The report filenames to load
+     * @return See description
+     */
+    protected AutomationBuild generateAutomationBuild(String buildNumber, BuildMetadata metadata, ConversionOptions options, String ... fileNames) {
         List<String> reportFiles = this.buildReportFileList(fileNames);
         JUnitMetaBuild build = new JUnitMetaBuild();
+        build.setConversionOptions(options);
         return assertDoesNotThrow(() -> build.generateAutomationBuild(buildNumber, reportFiles, metadata),
                 "Unexpected exception encountered when parsing invalid XML.");
     }
@@ -111,4 +126,36 @@ public abstract class JUnitMetaTestCommon {
         }
         assertEquals(properties.size(), found);
     }
+
+    /**
+     * Finds the value of a property by name
+     *
+     * @param properties The properties list to search, may be null
+     * @param name The property name
+     * @return The value of the first property with the name, or null if there is none
+     */
+    protected static String findProperty(final List<NameValuePair> properties, final String name) {
+        if (properties != null) {
+            for (NameValuePair property : properties) {
+                if (name.equals(property.getName())) {
+                    return property.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Describes properties as name=value strings, in order, so their order can be checked too
+     *
+     * @param properties The properties list to describe
+     * @return See description
+     */
+    protected static List<String> describeProperties(final List<NameValuePair> properties) {
+        List<String> descriptions = new ArrayList<>();
+        for (NameValuePair property : properties) {
+            descriptions.add(property.getName() + "=" + property.getValue());
+        }
+        return descriptions;
+    }
 }
@@ -0,0 +1,313 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.format.junit.parser;
+
+import com.perforce.halm.reportingtool.metrics.RunMetrics;
+import com.perforce.halm.reportingtool.metrics.RunPhase;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.UnmarshalException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test class for verifying how the parser handles untrusted report input
+ */
+class JUnitJAXBParserTest {
+    private static final String SUITE = "<testsuite name=\"%s\" tests=\"1\"><testcase name=\"one\" classname=\"com.example.Test\"/></testsuite>";
+
+    @TempDir
+    Path tempDir;
+
+    @Test void externalDTDIsNeverLoaded() throws IOException {
+        // The DTD doesn't exist, so loading it would fail the parse.
+        String doctype = "<!DOCTYPE testsuite SYSTEM \"" + this.tempDir.resolve("missing.dtd").toUri() + "\">\n";
+        String report = this.writeReport("external.xml", doctype + String.format(SUITE, "Suite"));
+        for (DoctypePolicy policy : new DoctypePolicy[] {DoctypePolicy.ignore, DoctypePolicy.internal}) {
+            List<JUnitTestSuite> suites = assertDoesNotThrow(() -> parse(report, policy));
+            assertEquals("Suite", suites.get(0).getName());
+        }
+        JUnitJAXBParser parser = new JUnitJAXBParser(Collections.singletonList(report));
+        assertEquals(0, assertDoesNotThrow(() -> parser.findConstantTestCaseAttributes(Collections.emptySet())).size());
+    }
+
+    @Test void rejectDoctype() throws IOException {
+        String report = this.writeReport("doctype.xml", "<!DOCTYPE testsuite []>\n" + String.format(SUITE, "Suite"));
+        UnmarshalException e = assertThrows(UnmarshalException.class, () -> parse(report, DoctypePolicy.reject));
+        assertTrue(e.getMessage().contains("DOCTYPE"));
+
+        JUnitJAXBParser parser = new JUnitJAXBParser(Collections.singletonList(report));
+        parser.setDoctypePolicy(DoctypePolicy.reject);
+        assertThrows(UnmarshalException.class, () -> parser.findConstantTestCaseAttributes(Collections.emptySet()));
+
+        // Reports without a DOCTYPE are unaffected.
+        String plain = this.writeReport("plain.xml", String.format(SUITE, "Plain"));
+        assertEquals("Plain", assertDoesNotThrow(() -> parse(plain, DoctypePolicy.reject)).get(0).getName());
+    }
+
+    @Test void internalEntities() throws IOException {
+        String report = this.writeReport("entity.xml", "<!DOCTYPE testsuite [<!ENTITY product \"Helix ALM\">]>\n" + String.format(SUITE, "&product;"));
+        assertEquals("Helix ALM", assertDoesNotThrow(() -> parse(report, DoctypePolicy.internal)).get(0).getName());
+        // Internal entities are expanded by default.
+        JUnitJAXBParser parser = new JUnitJAXBParser(Collections.singletonList(report));
+        assertEquals("Helix ALM", assertDoesNotThrow(() -> parser.parseReportFiles()).get(0).getName());
+        // Ignoring the DOCTYPE leaves the entity undeclared.
+        assertThrows(JAXBException.class, () -> parse(report, DoctypePolicy.ignore));
+    }
+
+    @Test void entityExpansionIsLimited() throws IOException {
+        StringBuilder doctype = new StringBuilder("<!DOCTYPE testsuite [<!ENTITY e0 \"lol\">");
+        for (int i = 1; i <= 6; i++) {
+            doctype.append("<!ENTITY e").append(i).append(" \"").append(String.join("", Collections.nCopies(10, "&e" + (i - 1) + ";"))).append("\">");
+        }
+        doctype.append("]>\n");
+        String report = this.writeReport("bomb.xml", doctype + String.format(SUITE, "&e6;"));
+        assertThrows(JAXBException.class, () -> parse(report, DoctypePolicy.internal));
+    }
+
+    @Test void externalEntityIsNotExpanded() throws IOException {
+        Path secret = this.tempDir.resolve("secret.txt");
+        Files.write(secret, "top secret".getBytes(StandardCharsets.UTF_8));
+        String report = this.writeReport("xxe.xml", "<!DOCTYPE testsuite [<!ENTITY xxe SYSTEM \"" + secret.toUri() + "\">]>\n" + String.format(SUITE, "&xxe;"));
+        try {
+            assertFalse(parse(report, DoctypePolicy.internal).get(0).getName().contains("secret"));
+        } catch (JAXBException | IOException expected) {
+            // Failing the report is also acceptable
+        }
+    }
+
+    @Test void sanitizeInvalidCharacters() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<testsuite name=\"Colors\" tests=\"1\">".getBytes(StandardCharsets.UTF_8));
+        bytes.write("<testcase name=\"red\" classname=\"com.example.Test\"><failure message=\"\u001b[31mred&#27;\">".getBytes(StandardCharsets.UTF_8));
+        bytes.write(new byte[] {'b', 'a', 'd', (byte) 0xC3, '(', ' ', (byte) 0xFF});
+        bytes.write(" caf\u00e9 \uD83D\uDE00 &#x1F600; &amp;</failure></testcase></testsuite>".getBytes(StandardCharsets.UTF_8));
+        Path report = this.tempDir.resolve("invalid_characters.xml");
+        Files.write(report, bytes.toByteArray());
+        List<String> reportFiles = Collections.singletonList(report.toString());
+
+        // Without sanitizing, the report fails.
+        assertThrows(JAXBException.class, () -> new JUnitJAXBParser(reportFiles).parseReportFiles());
+
+        JUnitJAXBParser parser = new JUnitJAXBParser(reportFiles);
+        parser.setSanitizeInput(true);
+        JUnitTestCaseFailure failure = assertDoesNotThrow(() -> parser.parseReportFiles()).get(0).getTestCases().get(0).getFailure();
+        assertEquals("[31mred", failure.getMessage());
+        assertEquals("bad\uFFFD( \uFFFD caf\u00e9 \uD83D\uDE00 \uD83D\uDE00 &", failure.getValue());
+        // The escape character, the reference to it, and the two invalid byte sequences
+        assertEquals(4L, parser.getRepairedCharacters().get(report.toString()));
+    }
+
+    @Test void sanitizeDeclaredEncoding() throws IOException {
+        // A byte order mark, followed by a declared encoding that isn't UTF-8
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n<testsuite name=\"Caf\u00e9\" tests=\"0\"/>".getBytes(StandardCharsets.ISO_8859_1));
+        Path latin = this.tempDir.resolve("latin.xml");
+        Files.write(latin, bytes.toByteArray());
+        Path bom = this.tempDir.resolve("bom.xml");
+        Files.write(bom, ("\uFEFF<testsuite name=\"Caf\u00e9\" tests=\"0\"/>").getBytes(StandardCharsets.UTF_8));
+
+        JUnitJAXBParser parser = new JUnitJAXBParser(Arrays.asList(latin.toString(), bom.toString()));
+        parser.setSanitizeInput(true);
+        List<JUnitTestSuite> suites = assertDoesNotThrow(() -> parser.parseReportFiles());
+        assertEquals("Caf\u00e9", suites.get(0).getName());
+        assertEquals("Caf\u00e9", suites.get(1).getName());
+        assertTrue(parser.getRepairedCharacters().isEmpty());
+    }
+
+    @Test void sanitizeAcrossBufferBoundaries() throws IOException {
+        // Long enough to span many buffers, with references and surrogate pairs split at every offset.
+        StringBuilder expected = new StringBuilder();
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            body.append("x&#1;\uD83D\uDE00\u0007");
+            expected.append("x\uD83D\uDE00");
+        }
+        XMLSanitizingReader reader = new XMLSanitizingReader(new ByteArrayInputStream(body.toString().getBytes(StandardCharsets.UTF_8)));
+        StringBuilder actual = new StringBuilder();
+        char[] buffer = new char[7];
+        for (int read = reader.read(buffer); read >= 0; read = reader.read(buffer)) {
+            actual.append(buffer, 0, read);
+        }
+        assertEquals(expected.toString(), actual.toString());
+        assertEquals(10000, reader.getRepairedCharacters());
+    }
+
+    @Test void salvageTruncatedReports() throws IOException {
+        String wrapper = "<testsuites>\n" + String.format(SUITE, "Closed") + "\n" +
+                "<testsuite name=\"Crashed\">\n<properties><property name=\"os\" value=\"linux\"/></properties>\n" +
+                "<testcase name=\"passed\" classname=\"com.example.Test\"/>\n" +
+                "<testcase name=\"failed\" classname=\"com.example.Test\"><failure message=\"no\">trace</failure></testcase>\n" +
+                "<testcase name=\"running\" classname=\"com.example.Test\"><system-out>Started";
+        String single = String.format(SUITE, "Single").replace("</testsuite>", "<testcase name=\"two\" cla");
+        String betweenSuites = "<testsuites>" + String.format(SUITE, "First") + "<testsu";
+        List<String> reports = Arrays.asList(this.writeReport("wrapper.xml", wrapper), this.writeReport("single.xml", single),
+                this.writeReport("between.xml", betweenSuites));
+
+        // Without salvaging, a truncated file fails the parse.
+        assertThrows(UnmarshalException.class, () -> new JUnitJAXBParser(reports.subList(0, 1)).parseReportFiles());
+
+        JUnitJAXBParser parser = new JUnitJAXBParser(reports);
+        parser.setSalvageTruncatedFiles(true);
+        assertDoesNotThrow(() -> parser.findConstantTestCaseAttributes(Collections.emptySet()));
+        List<JUnitTestSuite> suites = assertDoesNotThrow(() -> parser.parseReportFiles());
+        assertEquals(4, suites.size());
+        assertEquals(1, suites.get(0).getTestCases().size());
+
+        // The testcase that was running when the file ended is dropped, the closed ones are kept.
+        JUnitTestSuite crashed = suites.get(1);
+        assertEquals("Crashed", crashed.getName());
+        assertEquals(1, crashed.getProperties().size());
+        assertEquals(2, crashed.getTestCases().size());
+        assertEquals("passed", crashed.getTestCases().get(0).getName());
+        assertEquals("failed", crashed.getTestCases().get(1).getName());
+        assertNotNull(crashed.getTestCases().get(1).getFailure());
+
+        // A testcase whose start tag was cut off was never opened.
+        assertEquals(1, suites.get(2).getTestCases().size());
+        assertEquals("First", suites.get(3).getName());
+
+        assertEquals(3, parser.getSalvagedFiles().size());
+        // The running testcase is on line 8, after the XML declaration.
+        assertEquals(8, parser.getSalvagedFiles().get(reports.get(0)).intValue());
+
+        // Errors before the end of the file are not truncation.
+        String broken = this.writeReport("broken.xml", "<testsuite name=\"Broken\"><testcase></testsuite>" + new String(new char[100000]).replace('\0', ' '));
+        JUnitJAXBParser brokenParser = new JUnitJAXBParser(Collections.singletonList(broken));
+        brokenParser.setSalvageTruncatedFiles(true);
+        assertThrows(UnmarshalException.class, () -> brokenParser.parseReportFiles());
+    }
+
+    @Test void concatenatedDocumentsFromStandardInput() throws JAXBException, IOException {
+        String documents = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<!DOCTYPE testsuite [<!ENTITY note \"a > b\">]>\n" +
+                "<testsuite name=\"First\"><!-- <testsuite> -> </testsuite> -->\n" +
+                "<testcase name=\"one\" classname=\"a/>b\"><system-out><![CDATA[</testsuite>]]]]></system-out></testcase></testsuite>\n" +
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<testsuites><testsuite name=\"Second\"/><testsuite name=\"Third\"/></testsuites>" +
+                String.format(SUITE, "Fourth") + "\n\n";
+        List<JUnitTestSuite> suites = this.parseStandardInput(documents.getBytes(StandardCharsets.UTF_8));
+        assertEquals(Arrays.asList("First", "Second", "Third", "Fourth"), names(suites));
+        assertEquals("a/>b", suites.get(0).getTestCases().get(0).getClassName());
+
+        // Wide encodings aren't split, but a single document is still read.
+        String utf16 = "<?xml version=\"1.0\" encoding=\"UTF-16\"?>" + String.format(SUITE, "Wide");
+        assertEquals(Collections.singletonList("Wide"), names(this.parseStandardInput(utf16.getBytes(StandardCharsets.UTF_16))));
+
+        // A document cut off part way through fails like a truncated file.
+        byte[] truncated = (String.format(SUITE, "Closed") + "<testsuite name=\"Open\">").getBytes(StandardCharsets.UTF_8);
+        assertThrows(UnmarshalException.class, () -> this.parseStandardInput(truncated));
+    }
+
+    @Test void namedPipe() throws Exception {
+        Path pipe = this.tempDir.resolve("report.pipe");
+        Process mkfifo;
+        try {
+            mkfifo = new ProcessBuilder("mkfifo", pipe.toString()).start();
+        } catch (IOException e) {
+            Assumptions.assumeTrue(false, "Named pipes aren't available.");
+            return;
+        }
+        Assumptions.assumeTrue(mkfifo.waitFor() == 0, "Named pipes aren't available.");
+
+        Thread producer = new Thread(() -> {
+            try (OutputStream output = Files.newOutputStream(pipe)) {
+                output.write((String.format(SUITE, "Piped") + String.format(SUITE, "Again")).getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        producer.start();
+        JUnitJAXBParser parser = new JUnitJAXBParser(Collections.singletonList(pipe.toString()));
+        assertEquals(0, parser.findConstantTestCaseAttributes(Collections.emptySet()).size());
+        List<JUnitTestSuite> suites = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> parser.parseReportFiles());
+        producer.join();
+        assertEquals(Arrays.asList("Piped", "Again"), names(suites));
+    }
+
+    @Test void parseTimeExcludesConsumer() throws JAXBException, IOException {
+        String report = this.writeReport("slow.xml", "<testsuites>" + String.format(SUITE, "First") + String.format(SUITE, "Second") + "</testsuites>");
+        RunMetrics metrics = new RunMetrics();
+        JUnitJAXBParser parser = new JUnitJAXBParser(Collections.singletonList(report));
+        parser.setMetrics(metrics);
+        parser.parseReportFiles(suite -> {
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertEquals(1, metrics.getReportFiles().size());
+        assertTrue(metrics.getPhaseNanos(RunPhase.parse) < Duration.ofSeconds(1).toNanos(),
+                "Time spent converting suites isn't counted as parsing.");
+        assertEquals(metrics.getReportFiles().get(0).getParseNanos(), metrics.getPhaseNanos(RunPhase.parse));
+    }
+
+    private List<JUnitTestSuite> parseStandardInput(byte[] input) throws JAXBException, IOException {
+        InputStream systemIn = System.in;
+        System.setIn(new ByteArrayInputStream(input));
+        try {
+            return new JUnitJAXBParser(Collections.singletonList(JUnitJAXBParser.STANDARD_INPUT)).parseReportFiles();
+        } finally {
+            System.setIn(systemIn);
+        }
+    }
+
+    private static List<String> names(List<JUnitTestSuite> suites) {
+        List<String> names = new ArrayList<>();
+        suites.forEach(suite -> names.add(suite.getName()));
+        return names;
+    }
+
+    private static List<JUnitTestSuite> parse(String report, DoctypePolicy policy) throws JAXBException, IOException {
+        JUnitJAXBParser parser = new JUnitJAXBParser(Collections.singletonList(report));
+        parser.setDoctypePolicy(policy);
+        return parser.parseReportFiles();
+    }
+
+    private String writeReport(String fileName, String body) throws IOException {
+        Path report = this.tempDir.resolve(fileName);
+        Files.write(report, ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + body).getBytes(StandardCharsets.UTF_8));
+        return report.toString();
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.format.shard;
+
+import com.perforce.halm.reportingtool.ShardConverter;
+import com.perforce.halm.reportingtool.format.DuplicatePolicy;
+import com.perforce.halm.reportingtool.format.DuplicateResultMerger;
+import com.perforce.halm.reportingtool.format.FailureDeduplicator;
+import com.perforce.halm.reportingtool.format.PayloadBudget;
+import com.perforce.halm.reportingtool.format.ReportFormatType;
+import com.perforce.halm.reportingtool.format.ResultFilter;
+import com.perforce.halm.reportingtool.format.junit.JUnitMetaTestCommon;
+import com.perforce.halm.reportingtool.models.ConversionOptions;
+import com.perforce.halm.reportingtool.models.ReportContext;
+import com.perforce.halm.rest.types.NameValuePair;
+import com.perforce.halm.rest.types.automation.build.AutomationBuild;
+import com.perforce.halm.rest.types.automation.build.AutomationResult;
+import com.perforce.halm.rest.types.automation.build.AutomationResultStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test class for verifying that shard files are written, and merged into one build
+ */
+class ShardMetaBuildTest extends JUnitMetaTestCommon {
+    ShardMetaBuildTest() {
+        super(Arrays.asList(
+            "two_suites_constant_attributes.xml",
+            "single_case_metadata.xml",
+            "repeated_failures.xml",
+            "retried_shard.xml",
+            "retried_shard_retry.xml",
+            "passes_before_failure.xml"
+        ));
+    }
+
+    @Test void mergeIsIndependentOfShardOrder(@TempDir Path tempDir) {
+        String nodeB = this.convertShard(tempDir.resolve("node-b.shard"), "two_suites_constant_attributes.xml", "single_case_metadata.xml");
+        String nodeA = this.convertShard(tempDir.resolve("node-a.shard"), "two_suites_constant_attributes.xml");
+
+        AutomationBuild merged = new ShardMetaBuild().generateAutomationBuild("Build 1", Arrays.asList(nodeB, nodeA), null);
+        AutomationBuild reversed = new ShardMetaBuild().generateAutomationBuild("Build 1", Arrays.asList(nodeA, nodeB), null);
+        assertEquals(uniqueNames(merged), uniqueNames(reversed));
+        // Results with the same uniqueName are taken in shard ID order, so node-a's keep theirs.
+        assertEquals(Arrays.asList("login", "login.1", "login_validation", "logout", "logout.1", "search", "search.1"), uniqueNames(merged));
+        assertEquals("Build 1", merged.getNumber());
+
+        // The build runs from the earliest shard's start until the last shard finished, as if one node had run every test.
+        AutomationBuild single = this.generateAutomationBuild("Build 1", null, "two_suites_constant_attributes.xml", "single_case_metadata.xml");
+        assertEquals(single.getStartDate(), merged.getStartDate());
+        assertEquals(single.getDuration().longValue(), merged.getDuration().longValue());
+    }
+
+    @Test void mergeRetriedShards(@TempDir Path tempDir) {
+        String shard = this.convertShard(tempDir.resolve("node-a.shard"), "two_suites_constant_attributes.xml");
+        String retry = this.convertShard(tempDir.resolve("node-a-retry.shard"), "two_suites_constant_attributes.xml");
+
+        ConversionOptions options = new ConversionOptions();
+        options.setDuplicatePolicy(DuplicatePolicy.last);
+        ShardMetaBuild metaBuild = new ShardMetaBuild();
+        metaBuild.setConversionOptions(options);
+        AutomationBuild merged = metaBuild.generateAutomationBuild("Build 1", Arrays.asList(shard, retry), null);
+        assertEquals(Arrays.asList("login", "logout", "search"), uniqueNames(merged));
+        for (AutomationResult result : merged.getResults()) {
+            assertTrue(result.getProperties().stream().anyMatch(property ->
+                    DuplicateResultMerger.ATTEMPTS_PROPERTY.equals(property.getName()) && "2".equals(property.getValue())));
+        }
+    }
+
+    @Test void sumShardCounts(@TempDir Path tempDir) {
+        // Each shard merges the duplicates of its own report files, and the merge merges those of the shards.
+        ConversionOptions options = new ConversionOptions();
+        options.setDuplicatePolicy(DuplicatePolicy.last);
+        String nodeA = this.convertShard(tempDir.resolve("node-a.shard"), options, "two_suites_constant_attributes.xml", "two_suites_constant_attributes.xml");
+        String nodeB = this.convertShard(tempDir.resolve("node-b.shard"), options, "two_suites_constant_attributes.xml", "two_suites_constant_attributes.xml");
+
+        ShardMetaBuild metaBuild = new ShardMetaBuild();
+        metaBuild.setConversionOptions(options);
+        AutomationBuild merged = metaBuild.generateAutomationBuild("Build 1", Arrays.asList(nodeA, nodeB), null);
+        assertEquals(Arrays.asList("login", "logout", "search"), uniqueNames(merged));
+        assertEquals(Collections.singletonList("9"), merged.getProperties().stream()
+                .filter(property -> DuplicateResultMerger.MERGED_DUPLICATES_PROPERTY.equals(property.getName()))
+                .map(NameValuePair::getValue).collect(Collectors.toList()));
+    }
+
+    @Test void deduplicateFailuresWhenMerging(@TempDir Path tempDir) {
+        // Shards keep every body, so the results kept by the merge are the ones that keep theirs.
+        String nodeA = this.convertShard(tempDir.resolve("node-a.shard"), "repeated_failures.xml");
+        String nodeB = this.convertShard(tempDir.resolve("node-b.shard"), "repeated_failures.xml");
+
+        ConversionOptions options = new ConversionOptions();
+        options.setDuplicatePolicy(DuplicatePolicy.last);
+        options.setDeduplicateFailures(true);
+        ShardMetaBuild metaBuild = new ShardMetaBuild();
+        metaBuild.setConversionOptions(options);
+        AutomationBuild merged = metaBuild.generateAutomationBuild("Build 1", Arrays.asList(nodeA, nodeB), null);
+        // Merged results are in uniqueName order, so "one" is the first with the repeated trace.
+        assertEquals(Arrays.asList("Suite:com.example.ATest:four", "Suite:com.example.ATest:one", "Suite:com.example.ATest:three",
+                "Suite:com.example.ATest:two"), uniqueNames(merged));
+        List<AutomationResult> results = merged.getResults();
+        assertNotNull(findProperty(results.get(1).getProperties(), "failureValue"));
+        assertNull(findProperty(results.get(2).getProperties(), "errorValue"));
+        assertNull(findProperty(results.get(3).getProperties(), "failureValue"));
+        assertNotNull(findProperty(results.get(3).getProperties(), "failureFingerprint"));
+        assertEquals("2", findProperty(merged.getProperties(), FailureDeduplicator.DUPLICATE_BODIES_PROPERTY));
+
+        ConversionOptions nodeOptions = new ConversionOptions();
+        nodeOptions.setDeduplicateFailures(true);
+        assertFalse(this.tryConvertShard(tempDir.resolve("node-c.shard"), nodeOptions));
+    }
+
+    @Test void filterMergedResults(@TempDir Path tempDir) {
+        // search fails on node-a and passes on node-b, so it passes once the shards are merged.
+        String nodeA = this.convertShard(tempDir.resolve("node-a.shard"), "retried_shard.xml");
+        String nodeB = this.convertShard(tempDir.resolve("node-b.shard"), "retried_shard_retry.xml");
+
+        ConversionOptions options = new ConversionOptions();
+        options.setDuplicatePolicy(DuplicatePolicy.flaky);
+        options.setStatuses(EnumSet.of(AutomationResultStatus.PASSED));
+        ShardMetaBuild metaBuild = new ShardMetaBuild();
+        metaBuild.setConversionOptions(options);
+        AutomationBuild merged = metaBuild.generateAutomationBuild("Build 1", Arrays.asList(nodeA, nodeB), null);
+        assertEquals(Arrays.asList("Suite:com.example.UserTest:login", "Suite:com.example.UserTest:search"), uniqueNames(merged));
+        assertEquals("true", findProperty(merged.getResults().get(1).getProperties(), DuplicateResultMerger.FLAKY_PROPERTY));
+        assertEquals("1", findProperty(merged.getProperties(), ResultFilter.EXCLUDED_RESULTS_PROPERTY));
+
+        // Each node only has some of the runs, so it can't filter by status or sample.
+        assertFalse(this.tryConvertShard(tempDir.resolve("node-c.shard"), options));
+        ConversionOptions sampled = new ConversionOptions();
+        sampled.setPassSampleRate(0.5);
+        assertFalse(this.tryConvertShard(tempDir.resolve("node-c.shard"), sampled));
+    }
+
+    @Test void reserveFailureBodiesWhenMerging(@TempDir Path tempDir) {
+        String nodeA = this.convertShard(tempDir.resolve("node-a.shard"), "passes_before_failure.xml");
+
+        ConversionOptions options = new ConversionOptions();
+        options.setPayloadBudgetBytes(4200);
+        ShardMetaBuild metaBuild = new ShardMetaBuild();
+        metaBuild.setConversionOptions(options);
+        AutomationBuild merged = metaBuild.generateAutomationBuild("Build 1", Collections.singletonList(nodeA), null);
+        // The shards are read ahead for failure bodies, so the passes merged first give up their details instead.
+        List<AutomationResult> results = merged.getResults();
+        assertEquals("Suite:com.example.Checkout:refund", results.get(results.size() - 1).getUniqueName());
+        assertNotNull(findProperty(results.get(results.size() - 1).getProperties(), "failureValue"));
+        assertNull(findProperty(merged.getProperties(), PayloadBudget.DROPPED_BODIES_PROPERTY));
+        assertEquals("4", findProperty(merged.getProperties(), PayloadBudget.DROPPED_PASS_DETAILS_PROPERTY));
+    }
+
+    @Test void resultsSurviveTheShardFile(@TempDir Path tempDir) {
+        String shard = this.convertShard(tempDir.resolve("shard.bin"), "single_case_metadata.xml");
+        AutomationBuild merged = new ShardMetaBuild().generateAutomationBuild("Build 2", Collections.singletonList(shard), null);
+        AutomationBuild single = this.generateAutomationBuild("Build 2", null, "single_case_metadata.xml");
+
+        assertEquals(1, merged.getResults().size());
+        AutomationResult expected = single.getResults().get(0);
+        AutomationResult actual = merged.getResults().get(0);
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getUniqueName(), actual.getUniqueName());
+        assertEquals(expected.getStatus().getId(), actual.getStatus().getId());
+        assertEquals(expected.getDuration(), actual.getDuration());
+        assertEquals(expected.getProperties().size(), actual.getProperties().size());
+        assertEquals(expected.getProperties().get(0).getValue(), actual.getProperties().get(0).getValue());
+    }
+
+    @Test void rejectsOtherFiles(@TempDir Path tempDir) throws IOException {
+        Path notAShard = tempDir.resolve("report.xml");
+        Files.write(notAShard, "<testsuite/>".getBytes(StandardCharsets.UTF_8));
+        PrintStream err = System.err;
+        System.setErr(new PrintStream(new ByteArrayOutputStream()));
+        try {
+            assertThrows(RuntimeException.class, () -> new ShardMetaBuild().generateAutomationBuild("Build 3",
+                    Collections.singletonList(notAShard.toString()), null));
+        } finally {
+            System.setErr(err);
+        }
+    }
+
+    @Test void rejectsHoistedAttributes(@TempDir Path tempDir) {
+        // Attributes constant on one node may differ on another, so each node can't hoist them on its own.
+        ConversionOptions options = new ConversionOptions();
+        options.setHoistConstantAttributes(true);
+        assertFalse(this.tryConvertShard(tempDir.resolve("node-a.shard"), options));
+        assertFalse(Files.exists(tempDir.resolve("node-a.shard")));
+    }
+
+    /**
+     * Converts a report file into a shard file, with standard error hidden.
+     *
+     * @param output The shard file to write
+     * @param options The conversion options to use
+     * @return Whether the shard file was written
+     */
+    private boolean tryConvertShard(Path output, ConversionOptions options) {
+        ShardConverter converter = new ShardConverter(new ReportContext(ReportFormatType.JUnit,
+                this.buildReportFileList("two_suites_constant_attributes.xml")));
+        converter.setConversionOptions(options);
+        PrintStream err = System.err;
+        System.setErr(new PrintStream(new ByteArrayOutputStream()));
+        try {
+            return converter.convertShard(output.toString(), output.getFileName().toString());
+        } finally {
+            System.setErr(err);
+        }
+    }
+
+    /**
+     * Converts report files into a shard file, named after its shard ID.
+     *
+     * @param output The shard file to write
+     * @param fileNames The report filenames to convert
+     * @return The shard file path
+     */
+    private String convertShard(Path output, String ... fileNames) {
+        return this.convertShard(output, null, fileNames);
+    }
+
+    /**
+     * Converts report files into a shard file, named after its shard ID.
+     *
+     * @param output The shard file to write
+     * @param options The conversion options to use, or null for the defaults
+     * @param fileNames The report filenames to convert
+     * @return The shard file path
+     */
+    private String convertShard(Path output, ConversionOptions options, String ... fileNames) {
+        ShardConverter converter = new ShardConverter(new ReportContext(ReportFormatType.JUnit, this.buildReportFileList(fileNames)));
+        converter.setConversionOptions(options);
+        assertTrue(converter.convertShard(output.toString(), output.getFileName().toString()));
+        return output.toString();
+    }
+
+    private static List<String> uniqueNames(AutomationBuild build) {
+        List<String> uniqueNames = new ArrayList<>();
+        for (AutomationResult result : build.getResults()) {
+            uniqueNames.add(result.getUniqueName());
+        }
+        return uniqueNames;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.input;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test class for verifying that watched report files are returned once they have been written
+ */
+class ReportDirectoryWatcherTest {
+    private static final String SENTINEL = "reports.done";
+
+    @TempDir
+    Path tempDir;
+
+    @Test void existingFilesAndSentinel() throws IOException {
+        Files.write(this.tempDir.resolve("TEST-a.xml"), "<testsuite/>".getBytes(StandardCharsets.UTF_8));
+        Files.createDirectories(this.tempDir.resolve("shard2"));
+        Files.write(this.tempDir.resolve("shard2").resolve("TEST-b.xml"), "<testsuite/>".getBytes(StandardCharsets.UTF_8));
+        Files.write(this.tempDir.resolve("output.txt"), "not a report".getBytes(StandardCharsets.UTF_8));
+        Files.createFile(this.tempDir.resolve(SENTINEL));
+
+        ReportDirectoryWatcher watcher = this.createWatcher(0);
+        List<String> files = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> collect(watcher));
+        Collections.sort(files);
+        assertEquals(Arrays.asList(this.tempDir.resolve("TEST-a.xml").toString(),
+                this.tempDir.resolve("shard2").resolve("TEST-b.xml").toString()), files);
+
+        // Iterating again returns the same files.
+        assertEquals(2, collect(watcher).size());
+    }
+
+    @Test void filesAreReturnedOnceSettled() throws Exception {
+        ReportDirectoryWatcher watcher = this.createWatcher(0);
+        Path report = this.tempDir.resolve("TEST-slow.xml");
+        CompletableFuture<Void> testRun = CompletableFuture.runAsync(() -> {
+            try (OutputStream output = Files.newOutputStream(report)) {
+                // Written in pieces, with pauses shorter than the settle time.
+                for (int i = 0; i < 5; i++) {
+                    output.write("<!-- still running -->\n".getBytes(StandardCharsets.UTF_8));
+                    output.flush();
+                    Thread.sleep(50);
+                }
+                output.write("<testsuite/>".getBytes(StandardCharsets.UTF_8));
+            } catch (IOException | InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        List<String> files = new ArrayList<>();
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            for (String file : watcher) {
+                files.add(file);
+                // The file is only returned once it has been completely written.
+                assertTrue(testRun.isDone());
+                assertTrue(new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8).endsWith("<testsuite/>"));
+                Files.createFile(this.tempDir.resolve(SENTINEL));
+            }
+        });
+        assertEquals(Collections.singletonList(report.toString()), files);
+    }
+
+    @Test void timeoutReturnsUnsettledFiles() throws IOException {
+        ReportDirectoryWatcher watcher = new ReportDirectoryWatcher(this.tempDir);
+        watcher.setSentinelName(null);
+        watcher.setSettleMillis(TimeUnit.MINUTES.toMillis(10));
+        watcher.setTimeoutSeconds(1);
+        watcher.start();
+        Files.write(this.tempDir.resolve("TEST-crashed.xml"), "<testsuite>".getBytes(StandardCharsets.UTF_8));
+
+        List<String> files = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> collect(watcher));
+        assertEquals(Collections.singletonList(this.tempDir.resolve("TEST-crashed.xml").toString()), files);
+    }
+
+    @Test void sentinelOrTimeoutIsNeeded() {
+        ReportDirectoryWatcher watcher = new ReportDirectoryWatcher(this.tempDir);
+        watcher.setSentinelName(null);
+        assertThrows(IllegalStateException.class, watcher::start);
+        assertThrows(IOException.class, () -> this.createWatcher(0, this.tempDir.resolve("missing")));
+    }
+
+    private ReportDirectoryWatcher createWatcher(long timeoutSeconds) throws IOException {
+        return this.createWatcher(timeoutSeconds, this.tempDir);
+    }
+
+    private ReportDirectoryWatcher createWatcher(long timeoutSeconds, Path directory) throws IOException {
+        ReportDirectoryWatcher watcher = new ReportDirectoryWatcher(directory);
+        watcher.setSentinelName(SENTINEL);
+        watcher.setSettleMillis(200);
+        watcher.setTimeoutSeconds(timeoutSeconds);
+        watcher.start();
+        return watcher;
+    }
+
+    private static List<String> collect(Iterable<String> files) {
+        List<String> collected = new ArrayList<>();
+        files.forEach(collected::add);
+        return collected;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.input;
+
+import com.perforce.halm.reportingtool.format.junit.JUnitMetaBuild;
+import com.perforce.halm.reportingtool.metrics.RunMetrics;
+import com.perforce.halm.rest.types.automation.build.AutomationBuild;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test class for verifying that report files are read from list files
+ */
+class ReportFileListTest {
+    @TempDir
+    Path tempDir;
+
+    @Test void newlineAndNulSeparatedLists() throws IOException {
+        String a = this.createReport("TEST-a.xml");
+        String b = this.createReport("TEST-b.xml");
+        String withNewline = this.createReport("TEST-odd\nname.xml");
+
+        Path lines = this.tempDir.resolve("lines.txt");
+        Files.write(lines, (a + "\r\n\n" + b + "\n").getBytes(StandardCharsets.UTF_8));
+        Path nulSeparated = this.tempDir.resolve("nul.txt");
+        Files.write(nulSeparated, (withNewline + "\0" + a).getBytes(StandardCharsets.UTF_8));
+
+        ReportFileList files = new ReportFileList(Arrays.asList(b, "@" + lines, "@" + nulSeparated));
+        assertEquals(Arrays.asList(b, a, b, withNewline, a), collect(files));
+
+        // Iterating again reads the list files again.
+        assertEquals(5, collect(files).size());
+    }
+
+    @Test void missingFilesAreSkipped() throws IOException {
+        String a = this.createReport("TEST-a.xml");
+        Path list = this.tempDir.resolve("list.txt");
+        Files.write(list, (this.tempDir.resolve("TEST-missing.xml") + "\n" + a + "\n").getBytes(StandardCharsets.UTF_8));
+
+        ReportFileList files = new ReportFileList(Collections.singletonList("@" + list));
+        assertEquals(Collections.singletonList(a), collect(files));
+        assertEquals(1, files.getMissingFiles().size());
+        assertEquals(this.tempDir.resolve("TEST-missing.xml").toString(), files.getMissingFiles().get(0).getPath());
+        assertTrue(files.getMissingFiles().get(0).getError().contains(list.toString()));
+
+        // Missing files are skipped report files in the converted build, and in the metrics.
+        RunMetrics metrics = new RunMetrics();
+        JUnitMetaBuild metaBuild = new JUnitMetaBuild();
+        metaBuild.setMetrics(metrics);
+        PrintStream err = System.err;
+        System.setErr(new PrintStream(new ByteArrayOutputStream()));
+        AutomationBuild build;
+        try {
+            build = metaBuild.generateAutomationBuild("Build 1", files, null);
+        } finally {
+            System.setErr(err);
+        }
+        assertEquals(1, files.getMissingFiles().size(), "Missing files are counted again for each iteration.");
+        assertEquals(1, metaBuild.getSkippedReportFiles().size());
+        assertEquals(2, metaBuild.getReportFileCount());
+        assertEquals(1, metrics.getSkippedReportFiles().size());
+        assertTrue(build.getProperties().stream().anyMatch(property ->
+                JUnitMetaBuild.SKIPPED_REPORT_FILES_PROPERTY.equals(property.getName()) && "1".equals(property.getValue())));
+    }
+
+    @Test void detectsListFiles() {
+        assertTrue(ReportFileList.hasListFiles(Arrays.asList("TEST-a.xml", "@list.txt")));
+        // A lone '@' is a report file.
+        assertFalse(ReportFileList.hasListFiles(Arrays.asList("TEST-a.xml", "@")));
+    }
+
+    private String createReport(String name) throws IOException {
+        Path report = this.tempDir.resolve(name);
+        Files.write(report, "<testsuite/>".getBytes(StandardCharsets.UTF_8));
+        return report.toString();
+    }
+
+    private static List<String> collect(Iterable<String> files) {
+        List<String> collected = new ArrayList<>();
+        files.forEach(collected::add);
+        return collected;
+    }
+}
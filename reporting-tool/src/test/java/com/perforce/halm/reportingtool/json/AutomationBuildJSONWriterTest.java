@@ -0,0 +1,194 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.json;
+
+import com.perforce.halm.rest.types.IDLabelPair;
+import com.perforce.halm.rest.types.NameValuePair;
+import com.perforce.halm.rest.types.automation.build.AutomationBuild;
+import com.perforce.halm.rest.types.automation.build.AutomationBuildRunConfiguration;
+import com.perforce.halm.rest.types.automation.build.AutomationResult;
+import com.perforce.halm.rest.types.automation.jenkins.AutomationBuildRunConfigurationJenkins;
+import org.junit.jupiter.api.Test;
+
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test class for verifying the JSON written for automation builds
+ */
+class AutomationBuildJSONWriterTest {
+    @Test void writeBuildWithResults() throws IOException {
+        AutomationBuild build = new AutomationBuild();
+        build.setNumber("Build 1");
+        build.setDuration(1500L);
+        build.addProperty(new NameValuePair("botID", "automation1"));
+
+        AutomationResult result = new AutomationResult();
+        result.setName("Login");
+        result.setUniqueName("suite:login:Login");
+        result.setStatus(new IDLabelPair(1, ""));
+        result.setTags(Arrays.asList("TC-1", "TC-2"));
+        result.setDuration(123L);
+        build.addResult(result);
+
+        StringWriter output = new StringWriter();
+        new AutomationBuildJSONWriter(output).writeBuild(build);
+        assertEquals("{\"number\":\"Build 1\",\"duration\":1500,\"properties\":[{\"name\":\"botID\",\"value\":\"automation1\"}]," +
+                "\"results\":[{\"name\":\"Login\",\"uniqueName\":\"suite:login:Login\",\"status\":{\"id\":1,\"label\":\"\"}," +
+                "\"tags\":[\"TC-1\",\"TC-2\"],\"duration\":123}]}", output.toString());
+    }
+
+    @Test void writeBuildWithoutResults() throws IOException {
+        AutomationBuild build = new AutomationBuild();
+        build.setNumber("Build 2");
+
+        StringWriter output = new StringWriter();
+        new AutomationBuildJSONWriter(output).writeBuild(build);
+        assertEquals("{\"number\":\"Build 2\",\"results\":[]}", output.toString());
+    }
+
+    @Test void escapeStrings() throws IOException {
+        AutomationBuild build = new AutomationBuild();
+        build.setNumber("quote\" slash\\ line\n tab\t bell\u0007 separator\u2028");
+
+        StringWriter output = new StringWriter();
+        new AutomationBuildJSONWriter(output).writeBuild(build);
+        assertEquals("{\"number\":\"quote\\\" slash\\\\ line\\n tab\\t bell\\u0007 separator\\u2028\",\"results\":[]}", output.toString());
+    }
+
+    @Test void writeEveryFieldOfTheRESTClientTypes() throws Exception {
+        // Every property of the REST API client's types is set, so a field added to the client fails here until the
+        // writer writes it too.
+        AutomationBuild build = new AutomationBuild();
+        fillProperties(build, "build");
+
+        StringWriter output = new StringWriter();
+        new AutomationBuildJSONWriter(output).writeBuild(build);
+        assertEquals(toJSONValue(build), JSONReader.read(output.toString()));
+    }
+
+    @Test void rejectRunConfiguration() {
+        AutomationBuild build = new AutomationBuild();
+        assertTrue(AutomationBuildJSONWriter.canWriteBuild(build));
+        build.setRunConfigurationInfo(new AutomationBuildRunConfigurationJenkins());
+        assertFalse(AutomationBuildJSONWriter.canWriteBuild(build));
+    }
+
+    /**
+     * Sets every bean property of a REST API client type to a distinct value. Run configuration info is left unset,
+     * since builds that carry one are submitted through the client.
+     *
+     * @param bean The object to fill
+     * @param prefix The start of each string value
+     */
+    private static void fillProperties(final Object bean, final String prefix) throws Exception {
+        for (PropertyDescriptor property : Introspector.getBeanInfo(bean.getClass(), Object.class).getPropertyDescriptors()) {
+            Method setter = property.getWriteMethod();
+            if (setter == null || property.getPropertyType() == AutomationBuildRunConfiguration.class) {
+                continue;
+            }
+            String value = prefix + "." + property.getName();
+            Class<?> type = property.getPropertyType();
+            if (type == String.class) {
+                setter.invoke(bean, value);
+            } else if (type == Number.class) {
+                setter.invoke(bean, (long) value.hashCode());
+            } else if (type == IDLabelPair.class) {
+                setter.invoke(bean, new IDLabelPair(value.length(), value));
+            } else if (type == List.class) {
+                Type elementType = ((ParameterizedType) setter.getGenericParameterTypes()[0]).getActualTypeArguments()[0];
+                if (elementType == String.class) {
+                    setter.invoke(bean, Arrays.asList(value + "1", value + "2"));
+                } else if (elementType == NameValuePair.class) {
+                    setter.invoke(bean, new ArrayList<>(Collections.singletonList(new NameValuePair(value, value + ".value"))));
+                } else {
+                    Object element = ((Class<?>) elementType).getConstructor().newInstance();
+                    fillProperties(element, value);
+                    setter.invoke(bean, new ArrayList<>(Collections.singletonList(element)));
+                }
+            } else {
+                fail("Unexpected property type " + type.getName() + " for " + property.getName());
+            }
+        }
+    }
+
+    /**
+     * @param value A REST API client object, or one of its property values
+     * @return The value as JSONReader reads it back, with a field for each bean property that is set
+     */
+    private static Object toJSONValue(final Object value) throws Exception {
+        if (value == null || value instanceof String) {
+            return value;
+        } else if (value instanceof Number) {
+            return ((Number) value).longValue();
+        } else if (value instanceof List) {
+            List<Object> values = new ArrayList<>();
+            for (Object element : (List<?>) value) {
+                values.add(toJSONValue(element));
+            }
+            return values;
+        }
+        Map<String, Object> fields = new LinkedHashMap<>();
+        for (PropertyDescriptor property : Introspector.getBeanInfo(value.getClass(), Object.class).getPropertyDescriptors()) {
+            Object fieldValue = property.getReadMethod() != null ? property.getReadMethod().invoke(value) : null;
+            if (fieldValue != null) {
+                fields.put(toFieldName(property.getName()), toJSONValue(fieldValue));
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * @param propertyName A bean property name, such as "OSVersion"
+     * @return The JSON field name, with a leading acronym in lower case, such as "osVersion"
+     */
+    private static String toFieldName(final String propertyName) {
+        int end = 0;
+        while (end < propertyName.length() && Character.isUpperCase(propertyName.charAt(end))) {
+            end++;
+        }
+        if (end > 1 && end < propertyName.length()) {
+            // The last capital starts the next word.
+            end--;
+        }
+        return propertyName.substring(0, end).toLowerCase(Locale.ROOT) + propertyName.substring(end);
+    }
+}
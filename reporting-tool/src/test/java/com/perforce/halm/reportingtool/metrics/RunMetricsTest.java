@@ -0,0 +1,113 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.metrics;
+
+import com.perforce.halm.reportingtool.App;
+import com.perforce.halm.reportingtool.stub.HelixALMStubServer;
+import com.perforce.halm.reportingtool.synthetic.SyntheticReportGenerator;
+import com.perforce.halm.rest.types.IDLabelPair;
+import com.perforce.halm.rest.types.automation.build.AutomationResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test class for verifying the metrics recorded for a run, and their JSON and Prometheus output
+ */
+class RunMetricsTest {
+    @Test void disabledMetricsRecordNothing() {
+        RunMetrics metrics = RunMetrics.DISABLED;
+        assertEquals(0, metrics.startTimer());
+        metrics.recordPhase(RunPhase.parse, 0);
+        metrics.recordReportFile("report.xml", 100, 0);
+        AutomationResult result = new AutomationResult();
+        result.setStatus(new IDLabelPair(1, ""));
+        metrics.recordResult(result);
+        metrics.recordSubmitRetry();
+
+        assertEquals(0, metrics.getPhaseNanos(RunPhase.parse));
+        assertTrue(metrics.getReportFiles().isEmpty());
+        assertEquals(0, metrics.getResultCount());
+        assertEquals(0, metrics.getSubmitRetries());
+    }
+
+    @Test void submissionWritesMetrics(@TempDir Path tempDir) throws IOException {
+        SyntheticReportGenerator generator = new SyntheticReportGenerator();
+        generator.setTestCaseCount(1000);
+        generator.setFailureRatio(0.25);
+        generator.setFileCount(2);
+        generator.setTestCasesPerSuite(250);
+        List<Path> reports = generator.writeReports(tempDir.resolve("reports"));
+        Path jsonOutput = tempDir.resolve("metrics.json");
+        Path prometheusOutput = tempDir.resolve("reporting_tool.prom");
+
+        try (HelixALMStubServer server = new HelixALMStubServer(false)) {
+            App.main(new String[] {
+                    "-f", "JUnit", "-n", "Metrics 1", "-p", "1", "-s", "1", "-H", server.getBaseURL(), "-U", "user", "-P", "pass",
+                    "-T", "gzip", "--metrics-json", jsonOutput.toString(), "--metrics-prometheus", prometheusOutput.toString(),
+                    reports.get(0).toString(), reports.get(1).toString()
+            });
+            assertEquals(1, server.getSubmittedBuilds().size());
+        }
+
+        String json = new String(Files.readAllBytes(jsonOutput), StandardCharsets.UTF_8);
+        assertTrue(json.contains("\"suites\":4,\"results\":1000,"));
+        assertTrue(json.contains("\"resultsByStatus\":{"));
+        assertTrue(json.contains("\"submitRetries\":0,\"submitSucceeded\":true}"));
+        assertTrue(json.contains(reports.get(1).getFileName().toString()));
+        assertFalse(json.contains("\"payloadBytes\":null"));
+        assertFalse(json.contains("\"payloadWireBytes\":null"));
+
+        List<String> prometheus = Files.readAllLines(prometheusOutput, StandardCharsets.UTF_8);
+        assertTrue(prometheus.contains("halm_reporting_tool_report_files 2"));
+        assertTrue(prometheus.contains("halm_reporting_tool_suites 4"));
+        assertTrue(prometheus.contains("halm_reporting_tool_submit_success 1"));
+        assertTrue(prometheus.stream().anyMatch(line -> line.startsWith("halm_reporting_tool_payload_bytes{encoding=\"gzip\"} ")));
+        assertTrue(prometheus.stream().anyMatch(line -> line.startsWith("halm_reporting_tool_phase_seconds{phase=\"authentication\"} ")));
+        long failed = Long.parseLong(findSample(prometheus, "halm_reporting_tool_results{status=\"failed\"}"));
+        long passed = Long.parseLong(findSample(prometheus, "halm_reporting_tool_results{status=\"passed\"}"));
+        assertEquals(1000, failed + passed);
+        assertFalse(Files.exists(tempDir.resolve("reporting_tool.prom.tmp")));
+    }
+
+    /**
+     * @param lines The Prometheus text format lines
+     * @param sample The sample name and labels
+     * @return The value of the sample
+     */
+    private static String findSample(final List<String> lines, final String sample) {
+        return lines.stream().filter(line -> line.startsWith(sample + " ")).findFirst()
+                .map(line -> line.substring(sample.length() + 1)).orElseThrow(() -> new AssertionError("Missing " + sample));
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.stub;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Stand-in for the Helix ALM REST API, bound to the loopback interface. Implements the endpoints used when submitting
+ * an automation build, with configurable latency and error injection, and records the size of every build received.
+ */
+public class HelixALMStubServer implements AutoCloseable {
+    private static final Pattern TOKEN_PATH = Pattern.compile("^/([^/]+)/token/?$");
+    private static final Pattern SUBMIT_BUILD_PATH = Pattern.compile("^/([^/]+)/automationSuites/([^/]+)/builds/?$");
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean recordBodies;
+    private final List<SubmittedBuild> submittedBuilds = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger tokenRequests = new AtomicInteger();
+    private final AtomicInteger submitRequests = new AtomicInteger();
+
+    private volatile long latencyMS = 0;
+    private volatile long latencyJitterMS = 0;
+    private volatile double submitErrorRate = 0;
+    private volatile int submitErrorStatus = 500;
+    private volatile boolean acceptCompressedBodies = true;
+    private final Random random = new Random(42);
+
+    /**
+     * Information recorded about each automation build request received by the server
+     */
+    public static class SubmittedBuild {
+        private final String projectID;
+        private final String suiteID;
+        private final boolean compressed;
+        private final long requestBytes;
+        private final long bodyBytes;
+        private final int status;
+        private final String body;
+
+        SubmittedBuild(String projectID, String suiteID, boolean compressed, long requestBytes, long bodyBytes, int status, String body) {
+            this.projectID = projectID;
+            this.suiteID = suiteID;
+            this.compressed = compressed;
+            this.requestBytes = requestBytes;
+            this.bodyBytes = bodyBytes;
+            this.status = status;
+            this.body = body;
+        }
+
+        public String getProjectID() { return this.projectID; }
+        public String getSuiteID() { return this.suiteID; }
+        public boolean isCompressed() { return this.compressed; }
+        /** @return The number of bytes sent over the wire, before decompression */
+        public long getRequestBytes() { return this.requestBytes; }
+        /** @return The number of bytes in the JSON body, after decompression */
+        public long getBodyBytes() { return this.bodyBytes; }
+        public int getStatus() { return this.status; }
+        /** @return The JSON body, only kept when the server was created with body recording enabled */
+        public String getBody() { return this.body; }
+    }
+
+    /**
+     * Creates and starts the server on an ephemeral loopback port.
+     *
+     * @param recordBodies Whether to keep the body of each submitted build. Keep this off for large load tests.
+     * @throws IOException Thrown when the server can't be bound
+     */
+    public HelixALMStubServer(final boolean recordBodies) throws IOException {
+        this.recordBodies = recordBodies;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.executor = Executors.newFixedThreadPool(8);
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    /**
+     * @return The base URL to pass to the reporting tool as the Helix ALM REST API URL
+     */
+    public String getBaseURL() {
+        return String.format("http://%s:%d", this.server.getAddress().getHostString(), this.server.getAddress().getPort());
+    }
+
+    /**
+     * Adds a delay before every response.
+     *
+     * @param latencyMS The fixed delay in milliseconds
+     * @param jitterMS The maximum random delay added on top of the fixed delay
+     */
+    public void setLatency(long latencyMS, long jitterMS) {
+        this.latencyMS = latencyMS;
+        this.latencyJitterMS = jitterMS;
+    }
+
+    /**
+     * Makes a portion of the submit build requests fail.
+     *
+     * @param errorRate The portion of requests to fail, from 0 to 1
+     * @param status The HTTP status code to fail the requests with
+     */
+    public void setSubmitErrors(double errorRate, int status) {
+        this.submitErrorRate = errorRate;
+        this.submitErrorStatus = status;
+    }
+
+    /**
+     * @param accept Whether gzip compressed request bodies are accepted. If not, they are rejected with HTTP 415.
+     */
+    public void setAcceptCompressedBodies(boolean accept) {
+        this.acceptCompressedBodies = accept;
+    }
+
+    public List<SubmittedBuild> getSubmittedBuilds() {
+        synchronized (this.submittedBuilds) {
+            return new ArrayList<>(this.submittedBuilds);
+        }
+    }
+    public int getTokenRequestCount() { return this.tokenRequests.get(); }
+    public int getSubmitRequestCount() { return this.submitRequests.get(); }
+
+    /**
+     * Clears all recorded requests.
+     */
+    public void reset() {
+        this.submittedBuilds.clear();
+        this.tokenRequests.set(0);
+        this.submitRequests.set(0);
+    }
+
+    @Override
+    public void close() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Routes each request to the matching endpoint.
+     *
+     * @param exchange The request
+     * @throws IOException Thrown when the request can't be read or answered
+     */
+    private void handle(final HttpExchange exchange) throws IOException {
+        try {
+            this.simulateLatency();
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            Matcher submitMatcher = SUBMIT_BUILD_PATH.matcher(path);
+            Matcher tokenMatcher = TOKEN_PATH.matcher(path);
+            if ("POST".equals(method) && submitMatcher.matches()) {
+                this.handleSubmitBuild(exchange, submitMatcher.group(1), submitMatcher.group(2));
+            } else if ("GET".equals(method) && tokenMatcher.matches()) {
+                this.tokenRequests.incrementAndGet();
+                respond(exchange, 200, "{\"accessToken\":\"stub-token\",\"expiresOn\":\"2099-01-01T00:00:00Z\"}");
+            } else if ("GET".equals(method)) {
+                // Anything else, including the certificate probe against the base URL, just needs to be reachable.
+                respond(exchange, 200, "{}");
+            } else {
+                respond(exchange, 404, "{\"message\":\"Not found\"}");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Reads the submitted build, recording its size, and responds based on the configured error injection.
+     *
+     * @param exchange The request
+     * @param projectID The project from the request path
+     * @param suiteID The automation suite from the request path
+     * @throws IOException Thrown when the request can't be read or answered
+     */
+    private void handleSubmitBuild(final HttpExchange exchange, final String projectID, final String suiteID) throws IOException {
+        this.submitRequests.incrementAndGet();
+        boolean compressed = "gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"));
+        if (compressed && !this.acceptCompressedBodies) {
+            drain(exchange.getRequestBody());
+            respond(exchange, 415, "{\"message\":\"Unsupported content encoding\"}");
+            return;
+        }
+
+        CountingInputStream wire = new CountingInputStream(exchange.getRequestBody());
+        CountingInputStream body = new CountingInputStream(compressed ? new GZIPInputStream(wire) : wire);
+        String content = this.recordBodies ? readToString(body) : null;
+        if (!this.recordBodies) {
+            drain(body);
+        }
+
+        int status = this.shouldFailSubmission() ? this.submitErrorStatus : 201;
+        this.submittedBuilds.add(new SubmittedBuild(projectID, suiteID, compressed, wire.getCount(), body.getCount(), status, content));
+        respond(exchange, status, status < 300 ? "{\"id\":" + this.submittedBuilds.size() + "}" : "{\"message\":\"Injected failure\"}");
+    }
+
+    private synchronized boolean shouldFailSubmission() {
+        return this.submitErrorRate > 0 && this.random.nextDouble() < this.submitErrorRate;
+    }
+
+    private void simulateLatency() {
+        long delay = this.latencyMS;
+        if (this.latencyJitterMS > 0) {
+            synchronized (this.random) {
+                delay += (long) (this.random.nextDouble() * this.latencyJitterMS);
+            }
+        }
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final String json) throws IOException {
+        byte[] content = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, content.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(content);
+        }
+    }
+
+    private static void drain(final InputStream in) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        while (in.read(buffer) != -1) {
+            // Discard
+        }
+    }
+
+    private static String readToString(final InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Input stream wrapper that counts the bytes read through it
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        CountingInputStream(InputStream in) { super(in); }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value != -1) {
+                this.count++;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                this.count += read;
+            }
+            return read;
+        }
+
+        long getCount() { return this.count; }
+    }
+}
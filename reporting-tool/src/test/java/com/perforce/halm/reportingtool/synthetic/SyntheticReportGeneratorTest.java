@@ -0,0 +1,113 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.synthetic;
+
+import com.perforce.halm.reportingtool.format.junit.JUnitMetaBuild;
+import com.perforce.halm.rest.types.automation.build.AutomationBuild;
+import com.perforce.halm.rest.types.automation.build.AutomationResult;
+import com.perforce.halm.rest.types.automation.build.AutomationResultStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test class for verifying the synthetic reports used for scale testing
+ */
+class SyntheticReportGeneratorTest {
+    @Test void sameSeedSameReport() throws IOException {
+        assertEquals(this.writeReport(7), this.writeReport(7));
+        assertNotEquals(this.writeReport(7), this.writeReport(8));
+    }
+
+    @Test void reportsConvertWithExpectedCounts(@TempDir Path outputDir) throws IOException {
+        SyntheticReportGenerator generator = new SyntheticReportGenerator();
+        generator.setTestCaseCount(2500);
+        generator.setTestCasesPerSuite(200);
+        generator.setFileCount(3);
+        generator.setFailureRatio(0.2);
+        generator.setErrorRatio(0.1);
+        generator.setSkippedRatio(0.1);
+        generator.setStackTraceLines(30);
+        generator.setSystemOutBytes(500);
+        generator.setNonStandardAttributes(true);
+        List<Path> reports = generator.writeReports(outputDir);
+        assertEquals(3, reports.size());
+        assertEquals(13, generator.getSuiteCount());
+
+        List<String> reportFiles = new ArrayList<>();
+        reports.forEach(report -> reportFiles.add(report.toString()));
+        AutomationBuild build = new JUnitMetaBuild().generateAutomationBuild("Synthetic", reportFiles, null);
+        assertEquals(2500, build.getResults().size());
+
+        int failed = 0;
+        int skipped = 0;
+        for (AutomationResult result : build.getResults()) {
+            if (result.getStatus().getId().intValue() == AutomationResultStatus.FAILED.id()) {
+                failed++;
+            } else if (result.getStatus().getId().intValue() == AutomationResultStatus.SKIPPED.id()) {
+                skipped++;
+            }
+            assertTrue("laptop,desktop,phone,tablet".contains(result.getDevice()));
+        }
+        // Ratios are applied randomly, so allow some spread around the expected counts.
+        assertTrue(Math.abs(failed - 750) < 100, "Failed results: " + failed);
+        assertTrue(Math.abs(skipped - 250) < 75, "Skipped results: " + skipped);
+    }
+
+    @Test void collisionsGetUniqueNameSuffixes() throws IOException {
+        SyntheticReportGenerator generator = new SyntheticReportGenerator();
+        generator.setTestCaseCount(100);
+        generator.setUniqueNameCollisionRatio(0.5);
+        generator.setTimestampPattern(SyntheticTimestampPattern.none);
+        Path report = generator.writeTemporaryReport();
+
+        List<String> reportFiles = new ArrayList<>();
+        reportFiles.add(report.toString());
+        AutomationBuild build = new JUnitMetaBuild().generateAutomationBuild("Collisions", reportFiles, null);
+        assertEquals(100, build.getResults().size());
+        assertTrue(build.getResults().stream().anyMatch(result -> result.getUniqueName().endsWith(".1")));
+    }
+
+    private String writeReport(final long seed) throws IOException {
+        SyntheticReportGenerator generator = new SyntheticReportGenerator();
+        generator.setSeed(seed);
+        generator.setTestCaseCount(50);
+        generator.setTestCasesPerSuite(20);
+        generator.setSkippedRatio(0.1);
+        generator.setTimestampPattern(SyntheticTimestampPattern.shuffled);
+        StringWriter writer = new StringWriter();
+        generator.writeReport(writer);
+        return writer.toString();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.transport;
+
+import com.perforce.halm.reportingtool.stub.HelixALMStubServer;
+import com.perforce.halm.rest.responses.SubmitAutomationBuildResponse;
+import com.perforce.halm.rest.types.IDLabelPair;
+import com.perforce.halm.rest.types.automation.build.AutomationBuild;
+import com.perforce.halm.rest.types.automation.build.AutomationResult;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test class for verifying compressed build submissions against the stub Helix ALM REST API server
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class GzipStreamingTransportTest {
+    private HelixALMStubServer server;
+
+    @BeforeAll
+    void startServer() throws IOException {
+        this.server = new HelixALMStubServer(true);
+    }
+
+    @AfterAll
+    void stopServer() {
+        this.server.close();
+    }
+
+    @BeforeEach
+    void resetServer() {
+        this.server.reset();
+        this.server.setAcceptCompressedBodies(true);
+        this.server.setSubmitErrors(0, 500);
+    }
+
+    @Test void submitCompressedBuild() throws IOException {
+        GzipStreamingTransport transport = new GzipStreamingTransport(this.server.getBaseURL(), "token");
+        SubmitAutomationBuildResponse response = transport.submitAutomationBuild(createBuild(500), "My Project", "7");
+        assertNotNull(response);
+        assertNull(response.getErrorMessage());
+
+        assertEquals(1, this.server.getSubmittedBuilds().size());
+        HelixALMStubServer.SubmittedBuild submitted = this.server.getSubmittedBuilds().get(0);
+        assertEquals("My Project", submitted.getProjectID());
+        assertEquals("7", submitted.getSuiteID());
+        assertTrue(submitted.isCompressed());
+        assertTrue(submitted.getRequestBytes() < submitted.getBodyBytes());
+        assertTrue(submitted.getBody().startsWith("{\"number\":\"Build 1\""));
+    }
+
+    @Test void fallBackWhenCompressionRejected() throws IOException {
+        this.server.setAcceptCompressedBodies(false);
+        GzipStreamingTransport transport = new GzipStreamingTransport(this.server.getBaseURL(), "token");
+        assertNull(transport.submitAutomationBuild(createBuild(10), "1", "1"), "A null response signals the caller to fall back.");
+        assertTrue(this.server.getSubmittedBuilds().isEmpty());
+    }
+
+    @Test void reportServerErrors() throws IOException {
+        this.server.setSubmitErrors(1, 500);
+        GzipStreamingTransport transport = new GzipStreamingTransport(this.server.getBaseURL(), "token");
+        SubmitAutomationBuildResponse response = transport.submitAutomationBuild(createBuild(10), "1", "1");
+        assertNotNull(response);
+        assertEquals("Injected failure", response.getErrorMessage(), "The message is read from the JSON error body.");
+    }
+
+    /**
+     * @param resultCount The number of passing results to add
+     * @return A build with the specified number of results
+     */
+    private static AutomationBuild createBuild(int resultCount) {
+        AutomationBuild build = new AutomationBuild();
+        build.setNumber("Build 1");
+        for (int i = 0; i < resultCount; i++) {
+            AutomationResult result = new AutomationResult();
+            result.setName("test" + i);
+            result.setUniqueName("Suite:com.example.Tests:test" + i);
+            result.setStatus(new IDLabelPair(1, ""));
+            result.setDuration(10L);
+            build.addResult(result);
+        }
+        return build;
+    }
+}
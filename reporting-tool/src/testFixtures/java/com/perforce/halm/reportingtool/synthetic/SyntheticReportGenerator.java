@@ -0,0 +1,318 @@
+/*
+ * *****************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2022, Perforce Software, Inc.  
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of 
+ * this software and associated documentation files (the "Software"), to deal in 
+ * the Software without restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the 
+ * Software, and to permit persons to whom the Software is furnished to do so, 
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ * *****************************************************************************
+ */
+
+package com.perforce.halm.reportingtool.synthetic;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates JUnit XML reports of any size for scale testing. The output is fully determined by the settings and the
+ * seed, so runs using the same settings can be compared.
+ * Can also be run from the command line with --name=value arguments matching the setters, e.g.
+ * --testcases=100000 --failureRatio=0.1 --output=build/synthetic
+ */
+public class SyntheticReportGenerator {
+    private static final String[] DEVICES = { "laptop", "desktop", "phone", "tablet" };
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss", Locale.ROOT);
+    private static final LocalDateTime RUN_START = LocalDateTime.of(2022, 5, 14, 4, 36, 20);
+
+    private long seed = 42;
+    private int testCaseCount = 1000;
+    private int testCasesPerSuite = 500;
+    private int fileCount = 1;
+    private double failureRatio = 0.1;
+    private double errorRatio = 0;
+    private double skippedRatio = 0;
+    private int stackTraceLines = 1;
+    private int systemOutBytes = 0;
+    private boolean nonStandardAttributes = false;
+    private double uniqueNameCollisionRatio = 0;
+    private SyntheticTimestampPattern timestampPattern = SyntheticTimestampPattern.sequential;
+
+    /** @param seed The seed for every random choice made by the generator */
+    public void setSeed(long seed) { this.seed = seed; }
+    /** @param testCaseCount The total number of testcases across all files */
+    public void setTestCaseCount(int testCaseCount) { this.testCaseCount = testCaseCount; }
+    /** @param testCasesPerSuite The number of testcases in each suite. The last suite may have fewer. */
+    public void setTestCasesPerSuite(int testCasesPerSuite) { this.testCasesPerSuite = testCasesPerSuite; }
+    /** @param fileCount The number of report files to split the suites between */
+    public void setFileCount(int fileCount) { this.fileCount = fileCount; }
+    /** @param failureRatio The portion of testcases that fail, from 0 to 1 */
+    public void setFailureRatio(double failureRatio) { this.failureRatio = failureRatio; }
+    /** @param errorRatio The portion of testcases that error, from 0 to 1 */
+    public void setErrorRatio(double errorRatio) { this.errorRatio = errorRatio; }
+    /** @param skippedRatio The portion of testcases that are skipped, from 0 to 1 */
+    public void setSkippedRatio(double skippedRatio) { this.skippedRatio = skippedRatio; }
+    /** @param stackTraceLines The number of stack frames in each failure or error */
+    public void setStackTraceLines(int stackTraceLines) { this.stackTraceLines = stackTraceLines; }
+    /** @param systemOutBytes The approximate size of the system-out element written for each testcase */
+    public void setSystemOutBytes(int systemOutBytes) { this.systemOutBytes = systemOutBytes; }
+    /** @param nonStandardAttributes Whether to write uniqueName, tags, device and other non-standard attributes */
+    public void setNonStandardAttributes(boolean nonStandardAttributes) { this.nonStandardAttributes = nonStandardAttributes; }
+    /** @param uniqueNameCollisionRatio The portion of testcases that reuse the name of the previous testcase in the suite */
+    public void setUniqueNameCollisionRatio(double uniqueNameCollisionRatio) { this.uniqueNameCollisionRatio = uniqueNameCollisionRatio; }
+    /** @param timestampPattern How suite timestamps are set */
+    public void setTimestampPattern(SyntheticTimestampPattern timestampPattern) { this.timestampPattern = timestampPattern; }
+
+    public int getTestCaseCount() { return this.testCaseCount; }
+
+    /**
+     * @return The number of suites the testcases are split into
+     */
+    public int getSuiteCount() {
+        return (this.testCaseCount + this.testCasesPerSuite - 1) / this.testCasesPerSuite;
+    }
+
+    /**
+     * Writes the report files to the directory, named report-0.xml, report-1.xml and so on.
+     *
+     * @param directory The directory to write to. It is created if needed.
+     * @return The paths of the files written, in order
+     * @throws IOException Thrown when a file can't be written
+     */
+    public List<Path> writeReports(final Path directory) throws IOException {
+        Files.createDirectories(directory);
+        int suiteCount = this.getSuiteCount();
+        int files = Math.max(1, Math.min(this.fileCount, suiteCount));
+        Random random = new Random(this.seed);
+        List<Path> reports = new ArrayList<>(files);
+        int firstSuite = 0;
+        for (int file = 0; file < files; file++) {
+            int suitesInFile = suiteCount / files + (file < suiteCount % files ? 1 : 0);
+            Path report = directory.resolve("report-" + file + ".xml");
+            try (Writer writer = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+                this.writeReport(writer, random, firstSuite, suitesInFile);
+            }
+            reports.add(report);
+            firstSuite += suitesInFile;
+        }
+        return reports;
+    }
+
+    /**
+     * Writes every suite to a single temporary report file.
+     *
+     * @return The report file. It is deleted when the JVM exits.
+     * @throws IOException Thrown when the file can't be written
+     */
+    public Path writeTemporaryReport() throws IOException {
+        Path report = Files.createTempFile("synthetic-report-", ".xml");
+        report.toFile().deleteOnExit();
+        try (Writer writer = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+            this.writeReport(writer);
+        }
+        return report;
+    }
+
+    /**
+     * Writes every suite as a single report.
+     *
+     * @param writer The writer to send the XML to
+     * @throws IOException Thrown when the writer fails
+     */
+    public void writeReport(final Writer writer) throws IOException {
+        this.writeReport(writer, new Random(this.seed), 0, this.getSuiteCount());
+    }
+
+    private void writeReport(final Writer writer, final Random random, final int firstSuite, final int suiteCount) throws IOException {
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<testsuites>\n");
+        for (int suite = firstSuite; suite < firstSuite + suiteCount; suite++) {
+            this.writeSuite(writer, random, suite);
+        }
+        writer.write("</testsuites>\n");
+    }
+
+    private void writeSuite(final Writer writer, final Random random, final int suite) throws IOException {
+        int casesInSuite = Math.min(this.testCasesPerSuite, this.testCaseCount - suite * this.testCasesPerSuite);
+        String className = "com.example.synthetic.Suite" + suite + "Test";
+        writer.write("  <testsuite name=\"Suite");
+        writer.write(Integer.toString(suite));
+        writer.write("\" tests=\"");
+        writer.write(Integer.toString(casesInSuite));
+        writer.write("\" time=\"");
+        writer.write(formatSeconds(casesInSuite * 10L));
+        writer.write('"');
+        String timestamp = this.getTimestamp(random, suite);
+        if (timestamp != null) {
+            writer.write(" timestamp=\"");
+            writer.write(timestamp);
+            writer.write('"');
+        }
+        writer.write(">\n");
+
+        int nameIndex = 0;
+        for (int testCase = 0; testCase < casesInSuite; testCase++) {
+            if (testCase == 0 || random.nextDouble() >= this.uniqueNameCollisionRatio) {
+                nameIndex = testCase;
+            }
+            this.writeTestCase(writer, random, suite, className, nameIndex);
+        }
+        writer.write("  </testsuite>\n");
+    }
+
+    private void writeTestCase(final Writer writer, final Random random, final int suite, final String className,
+                               final int nameIndex) throws IOException {
+        String name = "test" + nameIndex;
+        writer.write("    <testcase name=\"");
+        writer.write(name);
+        writer.write("\" classname=\"");
+        writer.write(className);
+        writer.write("\" time=\"");
+        writer.write(formatSeconds(1 + random.nextInt(20)));
+        writer.write('"');
+        if (this.nonStandardAttributes) {
+            writer.write(" uniqueName=\"Suite" + suite + "." + name + "\"");
+            writer.write(" tags=\"synthetic,TC-" + nameIndex + "\"");
+            writer.write(" device=\"" + DEVICES[random.nextInt(DEVICES.length)] + "\"");
+            writer.write(" os=\"Linux\" browser=\"Firefox\" owner=\"team" + (suite % 7) + "\"");
+        }
+        writer.write('>');
+
+        double outcome = random.nextDouble();
+        if (outcome < this.failureRatio) {
+            this.writeProblem(writer, "failure", "expected true but was false", "java.lang.AssertionError", className, name);
+        } else if (outcome < this.failureRatio + this.errorRatio) {
+            this.writeProblem(writer, "error", "Connection refused", "java.net.ConnectException", className, name);
+        } else if (outcome < this.failureRatio + this.errorRatio + this.skippedRatio) {
+            writer.write("<skipped message=\"Disabled for synthetic run\"/>");
+        }
+        if (this.systemOutBytes > 0) {
+            writer.write("<system-out>");
+            writeFiller(writer, random, this.systemOutBytes);
+            writer.write("</system-out>");
+        }
+        writer.write("</testcase>\n");
+    }
+
+    private void writeProblem(final Writer writer, final String element, final String message, final String type,
+                              final String className, final String name) throws IOException {
+        writer.write('<');
+        writer.write(element);
+        writer.write(" message=\"");
+        writer.write(message);
+        writer.write("\" type=\"");
+        writer.write(type);
+        writer.write("\">");
+        writer.write(type);
+        writer.write(": ");
+        writer.write(message);
+        for (int frame = 0; frame < this.stackTraceLines; frame++) {
+            if (frame == 0) {
+                writer.write("\n\tat " + className + "." + name + "(" + className.substring(className.lastIndexOf('.') + 1) + ".java:42)");
+            } else {
+                writer.write("\n\tat com.example.synthetic.framework.Layer" + frame + ".invoke(Layer" + frame + ".java:" + (frame * 10) + ")");
+            }
+        }
+        writer.write("</");
+        writer.write(element);
+        writer.write('>');
+    }
+
+    /**
+     * @param random The random source
+     * @param suite The suite index
+     * @return The timestamp for the suite, or null if it should not have one
+     */
+    private String getTimestamp(final Random random, final int suite) {
+        switch (this.timestampPattern) {
+            case sequential:
+                return RUN_START.plusSeconds(suite * (this.testCasesPerSuite / 100L + 1)).format(TIMESTAMP_FORMAT);
+            case identical:
+                return RUN_START.format(TIMESTAMP_FORMAT);
+            case shuffled:
+                return RUN_START.plusSeconds(random.nextInt(Math.max(1, this.getSuiteCount() * 10))).format(TIMESTAMP_FORMAT);
+            default:
+                return null;
+        }
+    }
+
+    private static String formatSeconds(final long hundredths) {
+        return String.format(Locale.ROOT, "%d.%02d", hundredths / 100, hundredths % 100);
+    }
+
+    private static void writeFiller(final Writer writer, final Random random, final int length) throws IOException {
+        char[] line = new char[Math.min(length, 80)];
+        int written = 0;
+        while (written < length) {
+            int size = Math.min(line.length, length - written);
+            for (int i = 0; i < size - 1; i++) {
+                line[i] = (char) ('a' + random.nextInt(26));
+            }
+            line[size - 1] = '\n';
+            writer.write(line, 0, size);
+            written += size;
+        }
+    }
+
+    /**
+     * Writes synthetic reports from the command line.
+     *
+     * @param args Settings as --name=value, matching the setters. --output sets the directory to write to.
+     * @throws IOException Thrown when a file can't be written
+     */
+    public static void main(String[] args) throws IOException {
+        SyntheticReportGenerator generator = new SyntheticReportGenerator();
+        Path output = Paths.get("synthetic-reports");
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            String name = arg.substring(2, separator);
+            String value = arg.substring(separator + 1);
+            switch (name) {
+                case "output": output = Paths.get(value); break;
+                case "seed": generator.setSeed(Long.parseLong(value)); break;
+                case "testcases": generator.setTestCaseCount(Integer.parseInt(value)); break;
+                case "testcasesPerSuite": generator.setTestCasesPerSuite(Integer.parseInt(value)); break;
+                case "files": generator.setFileCount(Integer.parseInt(value)); break;
+                case "failureRatio": generator.setFailureRatio(Double.parseDouble(value)); break;
+                case "errorRatio": generator.setErrorRatio(Double.parseDouble(value)); break;
+                case "skippedRatio": generator.setSkippedRatio(Double.parseDouble(value)); break;
+                case "stackTraceLines": generator.setStackTraceLines(Integer.parseInt(value)); break;
+                case "systemOutBytes": generator.setSystemOutBytes(Integer.parseInt(value)); break;
+                case "nonStandardAttributes": generator.setNonStandardAttributes(Boolean.parseBoolean(value)); break;
+                case "collisionRatio": generator.setUniqueNameCollisionRatio(Double.parseDouble(value)); break;
+                case "timestamps": generator.setTimestampPattern(SyntheticTimestampPattern.valueOf(value)); break;
+                default: throw new IllegalArgumentException("Unknown setting: " + name);
+            }
+        }
+        List<Path> reports = generator.writeReports(output);
+        System.out.println(String.format("Wrote %d testcases in %d suites to %d files in %s.",
+                generator.getTestCaseCount(), generator.getSuiteCount(), reports.size(), output.toAbsolutePath()));
+    }
+}